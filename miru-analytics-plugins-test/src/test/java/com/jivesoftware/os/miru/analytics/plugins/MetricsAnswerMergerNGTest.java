@@ -0,0 +1,140 @@
+package com.jivesoftware.os.miru.analytics.plugins;
+
+import com.google.common.base.Optional;
+import com.jivesoftware.os.miru.analytics.plugins.metrics.Metrics;
+import com.jivesoftware.os.miru.analytics.plugins.metrics.MetricsAnswer;
+import com.jivesoftware.os.miru.analytics.plugins.metrics.MetricsAnswerMerger;
+import com.jivesoftware.os.miru.analytics.plugins.metrics.MetricsQuery;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import com.jivesoftware.os.miru.plugin.solution.Waveform;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MetricsAnswerMergerNGTest {
+
+    private static final int NUM_SEGMENTS = 3;
+
+    private final MiruSolutionLog solutionLog = new MiruSolutionLog(MiruSolutionLogLevel.NONE);
+
+    @Test
+    public void testMinKeepsTrueZero() throws Exception {
+        MetricsAnswerMerger merger = merger(MetricsQuery.Aggregate.min);
+
+        // the first bucket holds a real 0, the second is empty in the first partition, the third is empty in both
+        MetricsAnswer first = answer("a", new long[] { 0, 0, 0 }, null, new long[] { 2, 0, 0 });
+        MetricsAnswer second = answer("a", new long[] { 5, 3, 0 }, null, new long[] { 1, 4, 0 });
+        MetricsAnswer third = answer("a", new long[] { 7, 9, 0 }, null, new long[] { 1, 1, 0 });
+
+        MetricsAnswer merged = merge(merger, first, second, third);
+        assertRaw(merged.waveforms, "a", 0, 3, 0);
+        assertRaw(merged.counts, "a", 4, 5, 0);
+        assertNull(merged.sums);
+
+        // the order partitions arrive in doesn't matter
+        assertRaw(merge(merger, third, second, first).waveforms, "a", 0, 3, 0);
+    }
+
+    @Test
+    public void testMaxSkipsEmptyBuckets() throws Exception {
+        MetricsAnswerMerger merger = merger(MetricsQuery.Aggregate.max);
+
+        MetricsAnswer first = answer("a", new long[] { 0, 6, 0 }, null, new long[] { 3, 1, 0 });
+        MetricsAnswer second = answer("a", new long[] { 0, 2, 4 }, null, new long[] { 0, 2, 1 });
+
+        MetricsAnswer merged = merge(merger, first, second);
+        assertRaw(merged.waveforms, "a", 0, 6, 4);
+        assertRaw(merged.counts, "a", 3, 3, 1);
+    }
+
+    @Test
+    public void testPercentileStraddlingBucketsTakeLarger() throws Exception {
+        MetricsAnswerMerger merger = merger(MetricsQuery.Aggregate.percentile);
+
+        // the first bucket straddles both partitions: the medians of { 1, 2, 3 } and { 10 } are 2 and 10, while the true lower
+        // median of { 1, 2, 3, 10 } is 2, so the merge overestimates it but stays within the partitions' medians
+        // the second bucket only has activities in the second partition, the third only in the first
+        MetricsAnswer first = answer("a", new long[] { 2, 0, 7 }, null, new long[] { 3, 0, 1 });
+        MetricsAnswer second = answer("a", new long[] { 10, 4, 0 }, null, new long[] { 1, 2, 0 });
+
+        MetricsAnswer merged = merge(merger, first, second);
+        assertRaw(merged.waveforms, "a", 10, 4, 7);
+        assertRaw(merged.counts, "a", 4, 2, 1);
+        assertRaw(merge(merger, second, first).waveforms, "a", 10, 4, 7);
+    }
+
+    @Test
+    public void testAvgMergesSumsAndCounts() throws Exception {
+        MetricsAnswerMerger merger = merger(MetricsQuery.Aggregate.avg);
+
+        // adding the averages would give 10 + 0 = 10 in the first bucket, the true average is (10 + 2) / (1 + 4) = 2
+        MetricsAnswer first = answer("a", new long[] { 10, 0, 6 }, new long[] { 10, 0, 12 }, new long[] { 1, 0, 2 });
+        MetricsAnswer second = answer("a", new long[] { 0, 5, 6 }, new long[] { 2, 5, 18 }, new long[] { 4, 1, 3 });
+        MetricsAnswer third = answer("a", new long[] { 0, 0, 0 }, new long[] { 0, 0, 0 }, new long[] { 0, 0, 0 });
+
+        MetricsAnswer merged = merge(merger, first, second, third);
+        assertRaw(merged.waveforms, "a", 2, 5, 6);
+        assertRaw(merged.sums, "a", 12, 5, 30);
+        assertRaw(merged.counts, "a", 5, 1, 5);
+    }
+
+    @Test
+    public void testSumAddsAndKeepsDistinctIds() throws Exception {
+        MetricsAnswerMerger merger = merger(MetricsQuery.Aggregate.sum);
+
+        MetricsAnswer first = answer("a", new long[] { 1, 2, 3 }, null, null);
+        MetricsAnswer second = new MetricsAnswer(Arrays.asList(
+            Waveform.compressed(new MiruValue("a"), new long[] { 10, 20, 30 }),
+            Waveform.compressed(new MiruValue("b"), new long[] { 4, 0, 0 })),
+            null, null, true);
+
+        MetricsAnswer merged = merge(merger, first, second);
+        assertEquals(merged.waveforms.size(), 2);
+        assertRaw(merged.waveforms, "a", 11, 22, 33);
+        assertRaw(merged.waveforms, "b", 4, 0, 0);
+        assertNull(merged.counts);
+        assertTrue(merged.resultsExhausted);
+    }
+
+    private MetricsAnswerMerger merger(MetricsQuery.Aggregate aggregate) {
+        return new MetricsAnswerMerger(new MiruTimeRange(0, 3_000), NUM_SEGMENTS, aggregate);
+    }
+
+    private MetricsAnswer merge(MetricsAnswerMerger merger, MetricsAnswer... answers) {
+        Optional<MetricsAnswer> last = Optional.absent();
+        for (MetricsAnswer answer : answers) {
+            last = Optional.of(merger.merge(last, answer, solutionLog));
+        }
+        return merger.done(last, null, solutionLog);
+    }
+
+    private MetricsAnswer answer(String id, long[] values, long[] sums, long[] counts) {
+        return new MetricsAnswer(waveforms(id, values), waveforms(id, sums), waveforms(id, counts), false);
+    }
+
+    private List<Waveform> waveforms(String id, long[] raw) {
+        return raw == null ? null : Collections.singletonList(Waveform.compressed(new MiruValue(id), raw));
+    }
+
+    private void assertRaw(List<Waveform> waveforms, String id, long... expected) {
+        for (Waveform waveform : waveforms) {
+            if (waveform.getId().equals(new MiruValue(id))) {
+                long[] raw = Metrics.decompress(waveform, NUM_SEGMENTS);
+                assertTrue(Arrays.equals(raw, expected), Arrays.toString(raw) + " != " + Arrays.toString(expected));
+                return;
+            }
+        }
+        throw new AssertionError("Missing waveform " + id + " in " + waveforms);
+    }
+}
@@ -0,0 +1,86 @@
+package com.jivesoftware.os.miru.analytics.plugins;
+
+import com.jivesoftware.os.miru.analytics.plugins.metrics.Metrics;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.solution.Waveform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ *
+ */
+public class MetricsNGTest {
+
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final Metrics metrics = new Metrics();
+
+    @Test
+    public void testAggregates() throws Exception {
+        Random random = new Random(1234);
+        int numBits = 12;
+        int[] indexes = { 0, 100, 250, 250, 400 };
+        long[] values = new long[indexes[indexes.length - 1]];
+        boolean[] present = new boolean[values.length];
+
+        RoaringBitmap rawAnswer = new RoaringBitmap();
+        List<RoaringBitmap> answers = new ArrayList<>();
+        for (int i = 0; i < numBits; i++) {
+            answers.add(null);
+        }
+        for (int id = 0; id < values.length; id++) {
+            if (random.nextInt(4) == 0) {
+                continue;
+            }
+            present[id] = true;
+            values[id] = random.nextInt(1 << numBits);
+            rawAnswer.add(id);
+            for (int i = 0; i < numBits; i++) {
+                if ((values[id] & (1L << i)) != 0) {
+                    if (answers.get(i) == null) {
+                        answers.set(i, new RoaringBitmap());
+                    }
+                    answers.get(i).add(id);
+                }
+            }
+        }
+
+        long[] sum = decompress(metrics.metricingSum("sum", bitmaps, rawAnswer, answers, indexes, numBits), indexes);
+        long[] avg = decompress(metrics.metricingAvg("avg", bitmaps, rawAnswer, answers, indexes, numBits), indexes);
+        long[] min = decompress(metrics.metricingMin("min", bitmaps, rawAnswer, answers, indexes, numBits), indexes);
+        long[] max = decompress(metrics.metricingMax("max", bitmaps, rawAnswer, answers, indexes, numBits), indexes);
+        long[] median = decompress(metrics.metricingPercentile("p50", bitmaps, rawAnswer, answers, indexes, numBits, 50f), indexes);
+        long[] p95 = decompress(metrics.metricingPercentile("p95", bitmaps, rawAnswer, answers, indexes, numBits, 95f), indexes);
+
+        for (int j = 0; j < indexes.length - 1; j++) {
+            long[] bucket = new long[indexes[j + 1] - indexes[j]];
+            int count = 0;
+            long expectedSum = 0;
+            for (int id = indexes[j]; id < indexes[j + 1]; id++) {
+                if (present[id]) {
+                    bucket[count++] = values[id];
+                    expectedSum += values[id];
+                }
+            }
+            Arrays.sort(bucket, 0, count);
+
+            assertEquals(sum[j], expectedSum);
+            assertEquals(avg[j], count == 0 ? 0 : expectedSum / count);
+            assertEquals(min[j], count == 0 ? 0 : bucket[0]);
+            assertEquals(max[j], count == 0 ? 0 : bucket[count - 1]);
+            assertEquals(median[j], count == 0 ? 0 : bucket[(int) Math.ceil(0.5 * count) - 1]);
+            assertEquals(p95[j], count == 0 ? 0 : bucket[(int) Math.ceil(0.95 * count) - 1]);
+        }
+    }
+
+    private long[] decompress(Waveform waveform, int[] indexes) {
+        long[] raw = new long[indexes.length - 1];
+        waveform.mergeWaveform(raw);
+        return raw;
+    }
+}
@@ -150,15 +150,17 @@ public class Analytics {
                 throw new RuntimeException("Time range is insufficient to be divided into " + scoreable.divideTimeRangeIntoNSegments + " segments");
             }
 
-            indexes[i] = new int[scoreable.divideTimeRangeIntoNSegments + 1];
+            long[] boundaries = new long[scoreable.divideTimeRangeIntoNSegments + 1];
+            for (int j = 0; j < boundaries.length; j++) {
+                boundaries[j] = currentTime;
+                currentTime += segmentDuration;
+            }
+            indexes[i] = timeIndex.getClosestIds(boundaries, stackBuffer);
             rawWaveformBuffer[i] = new long[scoreable.divideTimeRangeIntoNSegments];
             for (int j = 0; j < indexes[i].length; j++) {
-                int closestId = timeIndex.getClosestId(currentTime, stackBuffer);
-                if (closestId < 0) {
-                    closestId = -(closestId + 1); // handle negative "theoretical insertion" index
+                if (indexes[i][j] < 0) {
+                    indexes[i][j] = -(indexes[i][j] + 1); // handle negative "theoretical insertion" index
                 }
-                indexes[i][j] = closestId;
-                currentTime += segmentDuration;
             }
         }
         solutionLog.log(MiruSolutionLogLevel.INFO, "analytics bucket boundaries: {} millis.", System.currentTimeMillis() - start);
@@ -24,4 +24,9 @@ public class AnalyticsAnswerEvaluator implements MiruAnswerEvaluator<AnalyticsAn
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return true;
+    }
 }
@@ -7,6 +7,7 @@ public class AnalyticsConstants {
 
     public static final String ANALYTICS_PREFIX = "/plugin/analytics";
     public static final String CUSTOM_QUERY_ENDPOINT = "/custom";
+    public static final String BATCH_QUERY_ENDPOINT = "/batch";
 
     private AnalyticsConstants() {
     }
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitionResponses;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRequestAndReports;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequestAndReport;
@@ -23,6 +25,7 @@ import javax.ws.rs.core.Response;
 import org.nustaq.serialization.FSTConfiguration;
 
 import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.ANALYTICS_PREFIX;
+import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.BATCH_QUERY_ENDPOINT;
 import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.CUSTOM_QUERY_ENDPOINT;
 
 @Singleton
@@ -90,4 +93,22 @@ public class AnalyticsEndpoints {
             return Response.serverError().build();
         }
     }
+
+    @POST
+    @Path(BATCH_QUERY_ENDPOINT)
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response scoreAnalyticingBatch(byte[] rawBytes) {
+        try {
+            MiruBatchedRequestAndReports<AnalyticsQuery, AnalyticsReport> requestAndReports =
+                (MiruBatchedRequestAndReports<AnalyticsQuery, AnalyticsReport>) conf.asObject(rawBytes);
+            MiruBatchedPartitionResponses<AnalyticsAnswer> result = injectable.score(requestAndReports);
+            return Response.ok(conf.asByteArray(result), MediaType.APPLICATION_OCTET_STREAM).build();
+        } catch (InterruptedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Unavailable " + e.getMessage()).build();
+        } catch (Exception e) {
+            log.error("Failed to score analytics batch.", e);
+            return Response.serverError().build();
+        }
+    }
 }
@@ -8,6 +8,9 @@ import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.plugin.Miru;
 import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitionResponses;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitions;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRequestAndReports;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequestAndReport;
@@ -84,4 +87,11 @@ public class AnalyticsInjectable {
         }
     }
 
+    public MiruBatchedPartitionResponses<AnalyticsAnswer> score(MiruBatchedRequestAndReports<AnalyticsQuery, AnalyticsReport> requestAndReports)
+        throws InterruptedException {
+        LOG.debug("askImmediate: partitionIds={} request={}", requestAndReports.partitionIds.length, requestAndReports.request);
+        Miru miru = miruProvider.getMiru(requestAndReports.request.tenantId);
+        return MiruBatchedPartitions.askImmediate(requestAndReports, miru.getDefaultExecutor(), this::score);
+    }
+
 }
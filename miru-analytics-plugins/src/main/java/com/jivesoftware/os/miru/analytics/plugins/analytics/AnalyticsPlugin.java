@@ -8,6 +8,7 @@ import com.jivesoftware.os.miru.plugin.solution.FstRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -31,7 +32,18 @@ public class AnalyticsPlugin implements MiruPlugin<AnalyticsEndpoints, Analytics
 
     @Override
     public Collection<MiruRemotePartition<?, ?, ?>> getRemotePartitions(MiruProvider<? extends Miru> miruProvider) {
-        return Collections.singletonList(new AnalyticsRemotePartition(
-            new FstRemotePartitionReader(miruProvider.getReaderHttpClient(), miruProvider.getReaderStrategyCache(), false)));
+        AnalyticsPluginConfig config = miruProvider.getConfig(AnalyticsPluginConfig.class);
+        FstRemotePartitionReader remotePartitionReader = new FstRemotePartitionReader(miruProvider.getReaderHttpClient(),
+            miruProvider.getReaderStrategyCache(),
+            false);
+        ExecutorService batchExecutor = config.getRemoteBatchWindowMillis() > 0
+            ? miruProvider.allocateThreadPool("analytics-remote-batch", config.getRemoteBatchThreadPoolSize())
+            : null;
+        return Collections.singletonList(new AnalyticsRemotePartition(remotePartitionReader,
+            remotePartitionReader,
+            batchExecutor,
+            config.getRemoteBatchWindowMillis(),
+            config.getRemoteBatchMaxPartitions(),
+            config.getRemoteBatchAskTimeoutMillis()));
     }
 }
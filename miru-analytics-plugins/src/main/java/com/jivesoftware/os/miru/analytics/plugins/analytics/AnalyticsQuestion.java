@@ -13,6 +13,7 @@ import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmapsDebug;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruClosedPartitionAnswerCache;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
@@ -34,6 +35,7 @@ public class AnalyticsQuestion implements Question<AnalyticsQuery, AnalyticsAnsw
     private final MiruRemotePartition<AnalyticsQuery, AnalyticsAnswer, AnalyticsReport> remotePartition;
     private final MiruBitmapsDebug bitmapsDebug = new MiruBitmapsDebug();
     private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+    private final MiruClosedPartitionAnswerCache<AnalyticsAnswer> answerCache = new MiruClosedPartitionAnswerCache<>("analytics", AnalyticsAnswer.class);
 
     public AnalyticsQuestion(Analytics analytics,
         MiruRequest<AnalyticsQuery> request,
@@ -46,11 +48,16 @@ public class AnalyticsQuestion implements Question<AnalyticsQuery, AnalyticsAnsw
     @Override
     public <BM extends IBM, IBM> MiruPartitionResponse<AnalyticsAnswer> askLocal(MiruRequestHandle<BM, IBM, ?> handle,
         Optional<AnalyticsReport> report) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        return answerCache.askLocal(handle.getRequestContext(), request, stackBuffer, () -> answer(handle, stackBuffer));
+    }
+
+    private <BM extends IBM, IBM> MiruPartitionResponse<AnalyticsAnswer> answer(MiruRequestHandle<BM, IBM, ?> handle,
+        StackBuffer stackBuffer) throws Exception {
 
         MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
         MiruRequestContext<BM, IBM, ?> context = handle.getRequestContext();
         MiruBitmaps<BM, IBM> bitmaps = handle.getBitmaps();
-        StackBuffer stackBuffer = new StackBuffer();
 
         List<AnalyticsQueryScoreSet> scoreSets = request.query.scoreSets;
         int lastId = context.getActivityIndex().lastId(stackBuffer);
@@ -6,13 +6,17 @@ import com.jivesoftware.os.miru.api.MiruQueryServiceException;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionBatchReader;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionBatcher;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.mlogger.core.EndPointMetrics;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.concurrent.ExecutorService;
 
 import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.ANALYTICS_PREFIX;
+import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.BATCH_QUERY_ENDPOINT;
 import static com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsConstants.CUSTOM_QUERY_ENDPOINT;
 
 /**
@@ -22,11 +26,30 @@ public class AnalyticsRemotePartition implements MiruRemotePartition<AnalyticsQu
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
     private static final EndPointMetrics endPointMetrics = new EndPointMetrics("process", LOG);
+    private static final EndPointMetrics batchEndPointMetrics = new EndPointMetrics("batch", LOG);
 
     private final MiruRemotePartitionReader remotePartitionReader;
+    private final MiruRemotePartitionBatcher<AnalyticsQuery, AnalyticsAnswer, AnalyticsReport> remotePartitionBatcher;
 
     public AnalyticsRemotePartition(MiruRemotePartitionReader remotePartitionReader) {
+        this(remotePartitionReader, null, null, 0, 0, 0);
+    }
+
+    /**
+     * Asks for the same request against the same host are batched into one call when the batch window is greater than 0. Batches are sent from
+     * the batch executor, and each ask gives up on its batch after the ask timeout.
+     */
+    public AnalyticsRemotePartition(MiruRemotePartitionReader remotePartitionReader,
+        MiruRemotePartitionBatchReader remotePartitionBatchReader,
+        ExecutorService batchExecutor,
+        long batchWindowMillis,
+        int batchMaxPartitions,
+        long batchAskTimeoutMillis) {
         this.remotePartitionReader = remotePartitionReader;
+        this.remotePartitionBatcher = remotePartitionBatchReader != null && batchWindowMillis > 0
+            ? new MiruRemotePartitionBatcher<>("analytics", remotePartitionBatchReader, ANALYTICS_PREFIX + BATCH_QUERY_ENDPOINT, batchEndPointMetrics,
+                batchExecutor, batchWindowMillis, batchMaxPartitions, batchAskTimeoutMillis)
+            : null;
     }
 
     private String getEndpoint(MiruPartitionId partitionId) {
@@ -38,6 +61,9 @@ public class AnalyticsRemotePartition implements MiruRemotePartition<AnalyticsQu
         MiruPartitionId partitionId,
         MiruRequest<AnalyticsQuery> request,
         Optional<AnalyticsReport> report) throws MiruQueryServiceException {
+        if (remotePartitionBatcher != null) {
+            return remotePartitionBatcher.askRemote(host, partitionId, request, report);
+        }
         return remotePartitionReader.read("analytics",
             host,
             getEndpoint(partitionId),
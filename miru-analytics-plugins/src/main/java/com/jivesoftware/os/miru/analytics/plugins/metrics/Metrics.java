@@ -9,7 +9,13 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
- *
+ * Aggregates metric values held as a bit-sliced index, where the answer for bit {@code i} holds the activities whose value
+ * has bit {@code i} set. Sum and avg are computed from the cardinality of each slice. Min, max and percentiles walk the
+ * slices from the most significant bit down, narrowing each time bucket's candidates with one bitmap operation per bit.
+ * <p>
+ * Sum is not a single pass: it takes one bounded cardinality pass per populated slice, and avg takes one more over the raw
+ * answer for its counts. {@link MiruBitmaps} only counts one bitmap at a time, so fusing the slices into one walk of each
+ * container would first need a bounded cardinality over many bitmaps there.
  */
 public class Metrics {
 
@@ -39,15 +45,42 @@ public class Metrics {
         throws Exception {
 
         log.debug("Get metricing for answers={}", answers);
-        long[] rawCardinalities = new long[indexes.length - 1];
-        bitmaps.boundedCardinalities(rawAnswer, new int[][] { indexes }, new long[][] { rawCardinalities });
+        long[] counts = counts(indexes, rawAnswer, bitmaps);
+        long[] sums = sum(indexes, numBits, answers, bitmaps);
 
-        long[] waveform = sum(indexes, numBits, answers, bitmaps);
+        return Waveform.compressed(new MiruValue(id), average(sums, counts));
+    }
+
+    /**
+     * Counts the activities in each time bucket, which is what avg divides by and what tells an empty bucket apart from a
+     * bucket whose aggregate is 0.
+     */
+    public <BM extends IBM, IBM> Waveform metricingCount(String id,
+        MiruBitmaps<BM, IBM> bitmaps,
+        BM rawAnswer,
+        int[] indexes)
+        throws Exception {
 
-        for (int i = 0; i < waveform.length; i++) {
-            waveform[i] /= rawCardinalities[i];
+        return Waveform.compressed(new MiruValue(id), counts(indexes, rawAnswer, bitmaps));
+    }
+
+    public static long[] decompress(Waveform waveform, int length) {
+        long[] rawWaveform = new long[length];
+        waveform.mergeWaveform(rawWaveform);
+        return rawWaveform;
+    }
+
+    /**
+     * Divides each bucket's sum by its count, leaving empty buckets at 0.
+     */
+    public static long[] average(long[] sums, long[] counts) {
+        long[] averages = new long[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            if (counts[i] > 0) {
+                averages[i] = sums[i] / counts[i];
+            }
         }
-        return Waveform.compressed(new MiruValue(id), waveform);
+        return averages;
     }
 
     /*
@@ -59,37 +92,139 @@ public class Metrics {
     -----
     12341   avg (1+2+3+4+1)/5 max 4, min 1 (cardinality 5)
      */
-    public <BM extends IBM, IBM> Waveform metricingMin(MiruBitmaps<BM, IBM> bitmaps,
+    public <BM extends IBM, IBM> Waveform metricingMin(String id,
+        MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
         List<BM> answers,
         int[] indexes,
         int numBits)
         throws Exception {
 
-        return null; // TODO
+        log.debug("Get metricing for answers={}", answers);
+        long[] waveform = new long[indexes.length - 1];
+        for (int j = 0; j < waveform.length; j++) {
+            BM candidates = bucket(bitmaps, rawAnswer, indexes, j);
+            if (bitmaps.isEmpty(candidates)) {
+                continue;
+            }
+            long value = 0;
+            for (int i = numBits - 1; i >= 0; i--) {
+                BM slice = answers.get(i);
+                if (slice == null) {
+                    continue;
+                }
+                if (bitmaps.containsAll(slice, candidates)) {
+                    // every candidate has the bit, so the smallest does too
+                    value |= 1L << i;
+                } else {
+                    bitmaps.inPlaceAndNot(candidates, slice);
+                }
+            }
+            waveform[j] = value;
+        }
+        return Waveform.compressed(new MiruValue(id), waveform);
     }
 
-    public <BM extends IBM, IBM> Waveform metricingMax(MiruBitmaps<BM, IBM> bitmaps,
+    public <BM extends IBM, IBM> Waveform metricingMax(String id,
+        MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
         List<BM> answers,
         int[] indexes,
         int numBits)
         throws Exception {
 
-        return null; // TODO
+        log.debug("Get metricing for answers={}", answers);
+        long[] waveform = new long[indexes.length - 1];
+        for (int j = 0; j < waveform.length; j++) {
+            BM candidates = bucket(bitmaps, rawAnswer, indexes, j);
+            if (bitmaps.isEmpty(candidates)) {
+                continue;
+            }
+            long value = 0;
+            for (int i = numBits - 1; i >= 0; i--) {
+                BM slice = answers.get(i);
+                if (slice != null && bitmaps.intersects(candidates, slice)) {
+                    bitmaps.inPlaceAnd(candidates, slice);
+                    value |= 1L << i;
+                }
+            }
+            waveform[j] = value;
+        }
+        return Waveform.compressed(new MiruValue(id), waveform);
+    }
+
+    /**
+     * Finds the nearest-rank percentile in each time bucket, so the 50th percentile is the lower median.
+     */
+    public <BM extends IBM, IBM> Waveform metricingPercentile(String id,
+        MiruBitmaps<BM, IBM> bitmaps,
+        BM rawAnswer,
+        List<BM> answers,
+        int[] indexes,
+        int numBits,
+        float percentile)
+        throws Exception {
+
+        log.debug("Get metricing for answers={}", answers);
+        long[] waveform = new long[indexes.length - 1];
+        for (int j = 0; j < waveform.length; j++) {
+            BM candidates = bucket(bitmaps, rawAnswer, indexes, j);
+            long count = bitmaps.cardinality(candidates);
+            if (count == 0) {
+                continue;
+            }
+            // the 1-based rank of the wanted value among the candidates
+            long rank = Math.min(count, Math.max(1, (long) Math.ceil(percentile / 100d * count)));
+            long value = 0;
+            for (int i = numBits - 1; i >= 0; i--) {
+                BM slice = answers.get(i);
+                if (slice == null) {
+                    continue;
+                }
+                BM ones = bitmaps.and(Arrays.asList(candidates, slice));
+                long onesCount = bitmaps.cardinality(ones);
+                long zerosCount = count - onesCount;
+                if (rank <= zerosCount) {
+                    if (onesCount > 0) {
+                        bitmaps.inPlaceAndNot(candidates, slice);
+                    }
+                    count = zerosCount;
+                } else {
+                    rank -= zerosCount;
+                    candidates = ones;
+                    count = onesCount;
+                    value |= 1L << i;
+                }
+            }
+            waveform[j] = value;
+        }
+        return Waveform.compressed(new MiruValue(id), waveform);
+    }
+
+    private <BM extends IBM, IBM> BM bucket(MiruBitmaps<BM, IBM> bitmaps, BM rawAnswer, int[] indexes, int bucket) {
+        return bitmaps.and(Arrays.asList(rawAnswer, bitmaps.createWithRange(indexes[bucket], indexes[bucket + 1])));
     }
 
+    private <BM extends IBM, IBM> long[] counts(int[] indexes, BM rawAnswer, MiruBitmaps<BM, IBM> bitmaps) {
+        long[] counts = new long[indexes.length - 1];
+        bitmaps.boundedCardinalities(rawAnswer, new int[][] { indexes }, new long[][] { counts });
+        return counts;
+    }
+
+    /**
+     * Takes one bounded cardinality pass per set bit. Fusing the slices into a single pass would need container-level access
+     * which {@link MiruBitmaps} doesn't expose, so the slices are walked one at a time.
+     */
     private <BM extends IBM, IBM> long[] sum(int[] indexes, int numBits, List<BM> answers, MiruBitmaps<BM, IBM> bitmaps) {
-        long[] waveform = new long[indexes.length];
+        long[] waveform = new long[indexes.length - 1];
         long[] cardinalities = new long[indexes.length - 1];
         for (int i = 0; i < numBits; i++) {
             BM answer = answers.get(i);
             if (answer != null) {
-                int multiplier = 1 << (numBits - 1 - i);
                 Arrays.fill(cardinalities, 0);
                 bitmaps.boundedCardinalities(answer, new int[][] { indexes }, new long[][] { cardinalities });
-                for (int j = 0; j < indexes.length; j++) {
-                    waveform[j] += multiplier * cardinalities[j];
+                for (int j = 0; j < waveform.length; j++) {
+                    waveform[j] += cardinalities[j] << i;
                 }
             }
         }
@@ -7,21 +7,31 @@ import java.io.Serializable;
 import java.util.List;
 
 /**
- *
+ * Holds a waveform of the requested aggregate per filter. Partial answers also carry what partitions need to merge them
+ * exactly: the per-bucket activity counts, so an empty bucket is told apart from a bucket whose value is 0, and for avg
+ * the per-bucket sums, so averages are merged by total rather than by adding averages.
  */
 public class MetricsAnswer implements Serializable {
 
     public static final MetricsAnswer EMPTY_RESULTS = new MetricsAnswer(null,
+        null,
+        null,
         true);
 
     public final List<Waveform> waveforms;
+    public final List<Waveform> sums;
+    public final List<Waveform> counts;
     public final boolean resultsExhausted;
 
     @JsonCreator
     public MetricsAnswer(
         @JsonProperty("waveforms") List<Waveform> waveforms,
+        @JsonProperty("sums") List<Waveform> sums,
+        @JsonProperty("counts") List<Waveform> counts,
         @JsonProperty("resultsExhausted") boolean resultsExhausted) {
         this.waveforms = waveforms;
+        this.sums = sums;
+        this.counts = counts;
         this.resultsExhausted = resultsExhausted;
     }
 
@@ -29,6 +39,8 @@ public class MetricsAnswer implements Serializable {
     public String toString() {
         return "MetricsAnswer{"
             + "waveforms=" + waveforms
+            + ", sums=" + sums
+            + ", counts=" + counts
             + ", resultsExhausted=" + resultsExhausted
             + '}';
     }
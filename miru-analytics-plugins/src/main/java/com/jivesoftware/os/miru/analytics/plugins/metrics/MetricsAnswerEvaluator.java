@@ -24,4 +24,9 @@ public class MetricsAnswerEvaluator implements MiruAnswerEvaluator<MetricsAnswer
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return true;
+    }
 }
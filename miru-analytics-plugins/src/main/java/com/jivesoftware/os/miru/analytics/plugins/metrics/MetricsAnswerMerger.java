@@ -1,6 +1,7 @@
 package com.jivesoftware.os.miru.analytics.plugins.metrics;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.plugin.solution.MiruAnswerMerger;
@@ -8,21 +9,29 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.miru.plugin.solution.Waveform;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
- *
+ * Merges the per-partition waveforms of a metrics query. Sum, min and max merge exactly, and so does avg when the answers
+ * carry their sums and counts.
+ * <p>
+ * A percentile can't be merged from per-partition percentiles. When a time bucket has activities in more than one partition,
+ * the merged bucket takes the larger of their percentiles. The true percentile lies between the partitions' percentiles, so
+ * the merged value never underestimates it, but it can overestimate it by up to the gap between them. Buckets held by a single
+ * partition are exact.
  */
 public class MetricsAnswerMerger implements MiruAnswerMerger<MetricsAnswer> {
 
     private final MiruTimeRange timeRange;
     private final int divideTimeRangeIntoNSegments;
+    private final MetricsQuery.Aggregate aggregate;
 
-    public MetricsAnswerMerger(MiruTimeRange timeRange, int divideTimeRangeIntoNSegments) {
+    public MetricsAnswerMerger(MiruTimeRange timeRange, int divideTimeRangeIntoNSegments, MetricsQuery.Aggregate aggregate) {
         this.timeRange = timeRange;
         this.divideTimeRangeIntoNSegments = divideTimeRangeIntoNSegments;
+        this.aggregate = aggregate;
     }
 
     /**
@@ -40,34 +49,52 @@ public class MetricsAnswerMerger implements MiruAnswerMerger<MetricsAnswer> {
             return currentAnswer;
         }
 
-        List<Waveform> mergedWaveforms;
         MetricsAnswer lastAnswer = last.get();
         if (currentAnswer.waveforms == null) {
             if (lastAnswer.waveforms == null) {
                 solutionLog.log(MiruSolutionLogLevel.WARN, "merge: current and last waveforms are null.");
-                mergedWaveforms = null;
             } else {
                 solutionLog.log(MiruSolutionLogLevel.WARN, "merge: current waveforms are null, using last answer.");
-                mergedWaveforms = lastAnswer.waveforms;
             }
-        } else {
+            return new MetricsAnswer(lastAnswer.waveforms, lastAnswer.sums, lastAnswer.counts, currentAnswer.resultsExhausted);
+        } else if (lastAnswer.waveforms == null) {
+            solutionLog.log(MiruSolutionLogLevel.WARN, "merge: last waveforms are null, using current answer.");
+            return currentAnswer;
+        }
 
-            List<Waveform> biggerList = lastAnswer.waveforms.size() > currentAnswer.waveforms.size() ? lastAnswer.waveforms : currentAnswer.waveforms;
-            Map<MiruValue, Waveform> smallerSet = lastAnswer.waveforms.size() > currentAnswer.waveforms.size()
-                ? toMap(currentAnswer.waveforms)
-                : toMap(lastAnswer.waveforms);
+        Map<MiruValue, Waveform> lastWaveforms = toMap(lastAnswer.waveforms);
+        Map<MiruValue, Waveform> lastSums = toMap(lastAnswer.sums);
+        Map<MiruValue, Waveform> lastCounts = toMap(lastAnswer.counts);
+        Map<MiruValue, Waveform> currentSums = toMap(currentAnswer.sums);
+        Map<MiruValue, Waveform> currentCounts = toMap(currentAnswer.counts);
 
-            mergeWaveform(smallerSet, biggerList, solutionLog);
-            mergedWaveforms = biggerList;
-            solutionLog.log(MiruSolutionLogLevel.INFO, "merge: merged last answer size={}, with current answer size={}.",
-                lastAnswer.waveforms.size(), currentAnswer.waveforms.size());
+        int size = currentAnswer.waveforms.size() + lastAnswer.waveforms.size();
+        List<Waveform> mergedWaveforms = Lists.newArrayListWithCapacity(size);
+        List<Waveform> mergedSums = aggregate == MetricsQuery.Aggregate.avg ? Lists.newArrayListWithCapacity(size) : null;
+        List<Waveform> mergedCounts = aggregate != MetricsQuery.Aggregate.sum ? Lists.newArrayListWithCapacity(size) : null;
+        for (Waveform waveform : currentAnswer.waveforms) {
+            Waveform had = lastWaveforms.remove(waveform.getId());
+            Waveform merged = mergeWaveform(waveform, currentSums, currentCounts, had, lastSums, lastCounts, mergedSums, mergedCounts);
+            mergedWaveforms.add(merged);
+            if (had != null && solutionLog.isLogLevelEnabled(MiruSolutionLogLevel.DEBUG)) {
+                solutionLog.log(MiruSolutionLogLevel.DEBUG, "merge: key={} merging {} result {}",
+                    waveform.getId(), had, merged);
+            }
         }
+        for (Waveform had : lastWaveforms.values()) {
+            mergedWaveforms.add(mergeWaveform(had, lastSums, lastCounts, null, null, null, mergedSums, mergedCounts));
+        }
+        solutionLog.log(MiruSolutionLogLevel.INFO, "merge: merged last answer size={}, with current answer size={}.",
+            lastAnswer.waveforms.size(), currentAnswer.waveforms.size());
 
-        return new MetricsAnswer(mergedWaveforms, currentAnswer.resultsExhausted);
+        return new MetricsAnswer(mergedWaveforms, mergedSums, mergedCounts, currentAnswer.resultsExhausted);
 
     }
 
     private Map<MiruValue, Waveform> toMap(List<Waveform> waveforms) {
+        if (waveforms == null) {
+            return Collections.emptyMap();
+        }
         Map<MiruValue, Waveform> map = Maps.newHashMapWithExpectedSize(waveforms.size());
         for (Waveform waveform : waveforms) {
             map.put(waveform.getId(), waveform);
@@ -75,23 +102,100 @@ public class MetricsAnswerMerger implements MiruAnswerMerger<MetricsAnswer> {
         return map;
     }
 
-    private void mergeWaveform(Map<MiruValue, Waveform> mergedWaveforms, List<Waveform> waveforms, MiruSolutionLog solutionLog) {
-        long[] mergedWaveform = new long[divideTimeRangeIntoNSegments];
-        for (Waveform waveform : waveforms) {
+    /**
+     * Merges one waveform with the waveform of the same id from the other answer, if there is one, and adds the merged sums
+     * and counts to their lists.
+     */
+    private Waveform mergeWaveform(Waveform waveform,
+        Map<MiruValue, Waveform> sums,
+        Map<MiruValue, Waveform> counts,
+        Waveform had,
+        Map<MiruValue, Waveform> hadSums,
+        Map<MiruValue, Waveform> hadCounts,
+        List<Waveform> mergedSums,
+        List<Waveform> mergedCounts) {
+
+        MiruValue id = waveform.getId();
+        long[] values = Metrics.decompress(waveform, divideTimeRangeIntoNSegments);
+        long[] valueCounts = counts(counts.get(id), values);
+        long[] valueSums = mergedSums != null ? sums(sums.get(id), values, valueCounts) : null;
+        if (had != null) {
+            long[] hadValues = Metrics.decompress(had, divideTimeRangeIntoNSegments);
+            long[] hadValueCounts = counts(hadCounts.get(id), hadValues);
+            if (aggregate == MetricsQuery.Aggregate.sum) {
+                add(values, hadValues);
+            } else if (aggregate == MetricsQuery.Aggregate.avg) {
+                add(valueSums, sums(hadSums.get(id), hadValues, hadValueCounts));
+                add(valueCounts, hadValueCounts);
+                values = Metrics.average(valueSums, valueCounts);
+            } else {
+                mergeExtremes(values, valueCounts, hadValues, hadValueCounts);
+            }
+            if (aggregate != MetricsQuery.Aggregate.avg) {
+                add(valueCounts, hadValueCounts);
+            }
+        }
+        if (mergedSums != null) {
+            mergedSums.add(Waveform.compressed(id, valueSums));
+        }
+        if (mergedCounts != null) {
+            mergedCounts.add(Waveform.compressed(id, valueCounts));
+        }
+        return Waveform.compressed(id, values);
+    }
 
-            Waveform had = mergedWaveforms.remove(waveform.getId());
-            if (had != null) {
-                Arrays.fill(mergedWaveform, 0);
-                waveform.mergeWaveform(mergedWaveform);
-                had.mergeWaveform(mergedWaveform);
-                waveform.compress(mergedWaveform);
-                if (solutionLog.isLogLevelEnabled(MiruSolutionLogLevel.DEBUG)) {
-                    solutionLog.log(MiruSolutionLogLevel.DEBUG, "merge: key={} merging {} result {}",
-                        waveform.getId(), had, waveform);
-                }
+    /**
+     * Falls back to treating each non-zero bucket as a single activity for answers which didn't carry their counts.
+     */
+    private long[] counts(Waveform counts, long[] values) {
+        if (counts != null) {
+            return Metrics.decompress(counts, divideTimeRangeIntoNSegments);
+        }
+        long[] fallback = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            fallback[i] = values[i] != 0 ? 1 : 0;
+        }
+        return fallback;
+    }
+
+    /**
+     * Falls back to recovering each bucket's sum from its average for answers which didn't carry their sums.
+     */
+    private long[] sums(Waveform sums, long[] values, long[] counts) {
+        if (sums != null) {
+            return Metrics.decompress(sums, divideTimeRangeIntoNSegments);
+        }
+        long[] fallback = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            fallback[i] = values[i] * counts[i];
+        }
+        return fallback;
+    }
+
+    private static void add(long[] into, long[] from) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] += from[i];
+        }
+    }
+
+    /**
+     * Combines the buckets of two partitions for the order-based aggregates, using the counts to skip empty buckets so that a
+     * true value of 0 still wins a min. A percentile bucket which straddles partitions takes the larger of the two, which is an
+     * approximation, see the class comment.
+     */
+    private void mergeExtremes(long[] values, long[] counts, long[] hadValues, long[] hadCounts) {
+        for (int i = 0; i < values.length; i++) {
+            if (hadCounts[i] == 0) {
+                continue;
+            }
+            if (counts[i] == 0) {
+                values[i] = hadValues[i];
+            } else if (aggregate == MetricsQuery.Aggregate.min) {
+                values[i] = Math.min(values[i], hadValues[i]);
+            } else {
+                values[i] = Math.max(values[i], hadValues[i]);
             }
         }
-        waveforms.addAll(mergedWaveforms.values());
     }
 
     @Override
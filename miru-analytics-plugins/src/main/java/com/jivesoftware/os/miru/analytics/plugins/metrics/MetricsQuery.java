@@ -15,11 +15,17 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class MetricsQuery implements Serializable {
 
+    public enum Aggregate {
+        sum, avg, min, max, percentile
+    }
+
     public final MiruTimeRange timeRange;
     public final int divideTimeRangeIntoNSegments;
     public final String powerBitsFieldName;
     public final MiruFilter constraintsFilter;
     public final Map<String, MiruFilter> filters;
+    public final Aggregate aggregate;
+    public final float percentile;
 
     @JsonCreator
     public MetricsQuery(
@@ -27,7 +33,9 @@ public class MetricsQuery implements Serializable {
         @JsonProperty("divideTimeRangeIntoNSegments") int divideTimeRangeIntoNSegments,
         @JsonProperty("powerBitsFieldName") String powerBitsFieldName,
         @JsonProperty("constraintsFilter") MiruFilter constraintsFilter,
-        @JsonProperty("filters") Map<String, MiruFilter> filters) {
+        @JsonProperty("filters") Map<String, MiruFilter> filters,
+        @JsonProperty("aggregate") Aggregate aggregate,
+        @JsonProperty("percentile") float percentile) {
         Preconditions.checkArgument(!MiruTimeRange.ALL_TIME.equals(timeRange), "Requires an explicit time range");
         this.timeRange = checkNotNull(timeRange);
         Preconditions.checkArgument(divideTimeRangeIntoNSegments > 0, "Segments must be at least 1");
@@ -35,6 +43,10 @@ public class MetricsQuery implements Serializable {
         this.powerBitsFieldName = checkNotNull(powerBitsFieldName);
         this.constraintsFilter = checkNotNull(constraintsFilter);
         this.filters = checkNotNull(filters);
+        this.aggregate = aggregate != null ? aggregate : Aggregate.avg;
+        Preconditions.checkArgument(this.aggregate != Aggregate.percentile || percentile >= 0f && percentile <= 100f,
+            "Percentile must be between 0 and 100");
+        this.percentile = percentile;
     }
 
     @Override
@@ -45,6 +57,8 @@ public class MetricsQuery implements Serializable {
             ", powerBitsFieldName='" + powerBitsFieldName + '\'' +
             ", constraintsFilter=" + constraintsFilter +
             ", filters=" + filters +
+            ", aggregate=" + aggregate +
+            ", percentile=" + percentile +
             '}';
     }
 }
@@ -21,6 +21,7 @@ import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTimeIndex;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruClosedPartitionAnswerCache;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
@@ -46,6 +47,7 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
     private final MiruRemotePartition<MetricsQuery, MetricsAnswer, MetricsReport> remotePartition;
     private final MiruBitmapsDebug bitmapsDebug = new MiruBitmapsDebug();
     private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+    private final MiruClosedPartitionAnswerCache<MetricsAnswer> answerCache = new MiruClosedPartitionAnswerCache<>("metrics", MetricsAnswer.class);
 
     public MetricsQuestion(Metrics metrics,
         MiruRequest<MetricsQuery> request,
@@ -58,8 +60,13 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
     @Override
     public <BM extends IBM, IBM> MiruPartitionResponse<MetricsAnswer> askLocal(MiruRequestHandle<BM, IBM, ?> handle,
         Optional<MetricsReport> report) throws Exception {
-
         StackBuffer stackBuffer = new StackBuffer();
+        return answerCache.askLocal(handle.getRequestContext(), request, stackBuffer, () -> answer(handle, stackBuffer));
+    }
+
+    private <BM extends IBM, IBM> MiruPartitionResponse<MetricsAnswer> answer(MiruRequestHandle<BM, IBM, ?> handle,
+        StackBuffer stackBuffer) throws Exception {
+
         MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
         MiruRequestContext<BM, IBM, ?> context = handle.getRequestContext();
         MiruBitmaps<BM, IBM> bitmaps = handle.getBitmaps();
@@ -78,10 +85,14 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
 
             Set<String> keys = request.query.filters.keySet();
             List<Waveform> waveforms = Lists.newArrayListWithCapacity(keys.size());
+            List<Waveform> sums = newPartials(MetricsQuery.Aggregate.avg == request.query.aggregate, keys.size());
+            List<Waveform> counts = newPartials(MetricsQuery.Aggregate.sum != request.query.aggregate, keys.size());
             for (String key : keys) {
                 waveforms.add(Waveform.empty(new MiruValue(key), request.query.divideTimeRangeIntoNSegments));
+                addEmpty(sums, key);
+                addEmpty(counts, key);
             }
-            return new MiruPartitionResponse<>(new MetricsAnswer(waveforms, resultsExhausted), solutionLog.asList());
+            return new MiruPartitionResponse<>(new MetricsAnswer(waveforms, sums, counts, resultsExhausted), solutionLog.asList());
         }
 
         int lastId = context.getActivityIndex().lastId(stackBuffer);
@@ -127,14 +138,16 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
             throw new RuntimeException("Time range is insufficient to be divided into " + request.query.divideTimeRangeIntoNSegments + " segments");
         }
 
-        int[] indexes = new int[request.query.divideTimeRangeIntoNSegments + 1];
+        long[] boundaries = new long[request.query.divideTimeRangeIntoNSegments + 1];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = currentTime;
+            currentTime += segmentDuration;
+        }
+        int[] indexes = timeIndex.getClosestIds(boundaries, stackBuffer);
         for (int i = 0; i < indexes.length; i++) {
-            int closestId = timeIndex.getClosestId(currentTime, stackBuffer);
-            if (closestId < 0) {
-                closestId = -(closestId + 1); // handle negative "theoretical insertion" index
+            if (indexes[i] < 0) {
+                indexes[i] = -(indexes[i] + 1); // handle negative "theoretical insertion" index
             }
-            indexes[i] = timeIndex.getClosestId(currentTime, stackBuffer);
-            currentTime += segmentDuration;
         }
 
         MiruFieldIndex<BM, IBM> primaryFieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
@@ -150,6 +163,8 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
         }
 
         List<Waveform> waveforms = Lists.newArrayListWithCapacity(request.query.filters.size());
+        List<Waveform> sums = newPartials(MetricsQuery.Aggregate.avg == request.query.aggregate, request.query.filters.size());
+        List<Waveform> counts = newPartials(MetricsQuery.Aggregate.sum != request.query.aggregate, request.query.filters.size());
         start = System.currentTimeMillis();
         for (Map.Entry<String, MiruFilter> entry : request.query.filters.entrySet()) {
             Waveform waveform = null;
@@ -169,7 +184,7 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
                         }
                     }
 
-                    waveform = metrics.metricingAvg(entry.getKey(), bitmaps, rawAnswer, answers, indexes, 64);
+                    waveform = metricing(entry.getKey(), bitmaps, rawAnswer, answers, indexes, sums, counts);
                     if (solutionLog.isLogLevelEnabled(MiruSolutionLogLevel.DEBUG)) {
                         int cardinality = 0;
                         for (int i = 0; i < 64; i++) {
@@ -187,17 +202,58 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
             }
             if (waveform == null) {
                 waveform = Waveform.empty(new MiruValue(entry.getKey()), request.query.divideTimeRangeIntoNSegments);
+                addEmpty(sums, entry.getKey());
+                addEmpty(counts, entry.getKey());
             }
             waveforms.add(waveform);
         }
         solutionLog.log(MiruSolutionLogLevel.INFO, "metrics answered: {} millis.", System.currentTimeMillis() - start);
         solutionLog.log(MiruSolutionLogLevel.INFO, "metrics answered: {} iterations.", request.query.filters.size());
 
-        MetricsAnswer result = new MetricsAnswer(waveforms, resultsExhausted);
+        MetricsAnswer result = new MetricsAnswer(waveforms, sums, counts, resultsExhausted);
 
         return new MiruPartitionResponse<>(result, solutionLog.asList());
     }
 
+    private <BM extends IBM, IBM> Waveform metricing(String id,
+        MiruBitmaps<BM, IBM> bitmaps,
+        BM rawAnswer,
+        List<BM> answers,
+        int[] indexes,
+        List<Waveform> sums,
+        List<Waveform> counts) throws Exception {
+        if (counts != null) {
+            counts.add(metrics.metricingCount(id, bitmaps, rawAnswer, indexes));
+        }
+        switch (request.query.aggregate) {
+            case sum:
+                return metrics.metricingSum(id, bitmaps, rawAnswer, answers, indexes, 64);
+            case min:
+                return metrics.metricingMin(id, bitmaps, rawAnswer, answers, indexes, 64);
+            case max:
+                return metrics.metricingMax(id, bitmaps, rawAnswer, answers, indexes, 64);
+            case percentile:
+                return metrics.metricingPercentile(id, bitmaps, rawAnswer, answers, indexes, 64, request.query.percentile);
+            default:
+                // the sums and counts are kept alongside the average so partitions can be merged by total
+                Waveform sum = metrics.metricingSum(id, bitmaps, rawAnswer, answers, indexes, 64);
+                sums.add(sum);
+                int length = indexes.length - 1;
+                return Waveform.compressed(new MiruValue(id),
+                    Metrics.average(Metrics.decompress(sum, length), Metrics.decompress(counts.get(counts.size() - 1), length)));
+        }
+    }
+
+    private List<Waveform> newPartials(boolean needed, int size) {
+        return needed ? Lists.newArrayListWithCapacity(size) : null;
+    }
+
+    private void addEmpty(List<Waveform> partials, String id) {
+        if (partials != null) {
+            partials.add(Waveform.empty(new MiruValue(id), request.query.divideTimeRangeIntoNSegments));
+        }
+    }
+
     @Override
     public MiruPartitionResponse<MetricsAnswer> askRemote(MiruHost host,
         MiruPartitionId partitionId,
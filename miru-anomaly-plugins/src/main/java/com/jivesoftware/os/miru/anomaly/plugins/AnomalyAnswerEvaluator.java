@@ -24,4 +24,9 @@ public class AnomalyAnswerEvaluator implements MiruAnswerEvaluator<AnomalyAnswer
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
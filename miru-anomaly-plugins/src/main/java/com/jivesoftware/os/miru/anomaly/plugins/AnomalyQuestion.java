@@ -131,14 +131,16 @@ public class AnomalyQuestion implements Question<AnomalyQuery, AnomalyAnswer, An
             throw new RuntimeException("Time range is insufficient to be divided into " + request.query.divideTimeRangeIntoNSegments + " segments");
         }
 
-        int[] indexes = new int[request.query.divideTimeRangeIntoNSegments + 1];
+        long[] boundaries = new long[request.query.divideTimeRangeIntoNSegments + 1];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = currentTime;
+            currentTime += segmentDuration;
+        }
+        int[] indexes = timeIndex.getClosestIds(boundaries, stackBuffer);
         for (int i = 0; i < indexes.length; i++) {
-            int closestId = timeIndex.getClosestId(currentTime, stackBuffer);
-            if (closestId < 0) {
-                closestId = -(closestId + 1); // handle negative "theoretical insertion" index
+            if (indexes[i] < 0) {
+                indexes[i] = -(indexes[i] + 1); // handle negative "theoretical insertion" index
             }
-            indexes[i] = closestId;
-            currentTime += segmentDuration;
         }
 
         int fieldId = schema.getFieldId(request.query.expansionField);
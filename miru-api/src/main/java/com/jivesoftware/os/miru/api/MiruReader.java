@@ -12,6 +12,7 @@ public interface MiruReader {
     public static final String WARM_ALL_ENDPOINT = "/warmall";
     public static final String INSPECT_ENDPOINT = "/inspect";
     public static final String TIMESTAMPS_ENDPOINT = "/timestamps";
+    public static final String SNAPSHOT_ENDPOINT = "/snapshot";
 
     <P, R> R read(MiruTenantId tenantId, Optional<MiruActorId> actorId, P params, String endpoint, Class<R> resultClass, R defaultResult)
             throws MiruQueryServiceException;
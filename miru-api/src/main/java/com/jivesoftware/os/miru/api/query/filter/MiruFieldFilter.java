@@ -38,6 +38,16 @@ public class MiruFieldFilter implements Serializable {
         return new MiruFieldFilter(fieldType, fieldName, Arrays.asList(values));
     }
 
+    /**
+     * A filter on the value bits of a single-valued field, matching values between the inclusive bounds. A null bound is
+     * unbounded. Values compare by length and then as unsigned bytes, so numeric values should share a fixed-width encoding.
+     */
+    public static MiruFieldFilter ofRange(String fieldName, MiruValue lowerInclusive, MiruValue upperInclusive) {
+        return new MiruFieldFilter(MiruFieldType.valueBits, fieldName, Arrays.asList(
+            lowerInclusive != null ? lowerInclusive : new MiruValue(),
+            upperInclusive != null ? upperInclusive : new MiruValue()));
+    }
+
     public static MiruFieldFilter of(MiruFieldType fieldType, String fieldName, Collection<String> values) {
         List<MiruValue> miruValues = Lists.newArrayListWithCapacity(values.size());
         for (Object value : values) {
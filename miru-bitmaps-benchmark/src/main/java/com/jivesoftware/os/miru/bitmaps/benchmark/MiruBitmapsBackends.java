@@ -0,0 +1,45 @@
+package com.jivesoftware.os.miru.bitmaps.benchmark;
+
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+
+/**
+ * Resolves a {@link MiruBitmaps} implementation by variant from whichever roaring backend is on the classpath.
+ */
+public class MiruBitmapsBackends {
+
+    public static final String HEAP = "heap";
+    public static final String BUFFER = "buffer";
+
+    private static final String[] HEAP_CLASSES = {
+        "com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring",
+        "com.jivesoftware.os.miru.bitmaps.roaring5.MiruBitmapsRoaring"
+    };
+
+    private static final String[] BUFFER_CLASSES = {
+        "com.jivesoftware.os.miru.bitmaps.roaring6.buffer.MiruBitmapsRoaringBuffer",
+        "com.jivesoftware.os.miru.bitmaps.roaring5.buffer.MiruBitmapsRoaringBuffer"
+    };
+
+    private MiruBitmapsBackends() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <BM extends IBM, IBM> MiruBitmaps<BM, IBM> create(String variant) throws Exception {
+        String[] classNames;
+        if (HEAP.equals(variant)) {
+            classNames = HEAP_CLASSES;
+        } else if (BUFFER.equals(variant)) {
+            classNames = BUFFER_CLASSES;
+        } else {
+            throw new IllegalArgumentException("Unknown bitmaps variant: " + variant);
+        }
+        for (String className : classNames) {
+            try {
+                return (MiruBitmaps<BM, IBM>) Class.forName(className).newInstance();
+            } catch (ClassNotFoundException e) {
+                // try the next backend
+            }
+        }
+        throw new IllegalStateException("No " + variant + " bitmaps backend on the classpath");
+    }
+}
@@ -0,0 +1,224 @@
+package com.jivesoftware.os.miru.bitmaps.benchmark;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
+import com.jivesoftware.os.miru.plugin.index.MiruMultiTxIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruTxIndex;
+import com.jivesoftware.os.miru.plugin.solution.SimpleInvertedIndex;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the {@link MiruBitmaps} operations on the query and index hot paths against a field whose terms follow a Zipfian
+ * distribution, so a few head terms are dense and the long tail is sparse, as with real author and container fields.
+ * <p>
+ * Build with {@code mvn -pl miru-bitmaps-benchmark -am package} (add {@code -Dbenchmark.bitmaps=miru-bitmaps-roaring5} to
+ * measure roaring5) and run with {@code java -jar miru-bitmaps-benchmark/target/benchmarks.jar}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MiruBitmapsBenchmark {
+
+    private static final long SEED = 1_234L;
+    private static final int NUM_CARDINALITY_BUCKETS = 32;
+
+    @Param({ MiruBitmapsBackends.HEAP, MiruBitmapsBackends.BUFFER })
+    public String backend;
+
+    @Param({ "1000000" })
+    public int numIds;
+
+    @Param({ "1000" })
+    public int numTerms;
+
+    @Param({ "16" })
+    public int fanIn;
+
+    private MiruBitmaps<Object, Object> bitmaps;
+    private final StackBuffer stackBuffer = new StackBuffer();
+
+    private Object all;
+    private Object head;
+    private List<MiruTxIndex<Object>> orIndexes;
+    private List<MiruTxIndex<Object>> andIndexes;
+    private MiruMultiTxIndex<Object> multiTxIndex;
+    private int[][] indexBoundaries;
+    private int[] headKeys;
+    private byte[][] serializedAtoms;
+    private SortedTimeIndex timeIndex;
+    private long smallestTimestamp;
+    private long largestTimestamp;
+
+    @Setup
+    public void setup() throws Exception {
+        bitmaps = MiruBitmapsBackends.create(backend);
+
+        Random random = new Random(SEED);
+        int[][] termIds = zipfTermIds(random, numIds, numTerms);
+        Object[] terms = new Object[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            terms[i] = bitmaps.createWithBits(termIds[i]);
+        }
+
+        int[] allIds = new int[numIds];
+        for (int i = 0; i < numIds; i++) {
+            allIds[i] = i;
+        }
+        all = bitmaps.createWithBits(allIds);
+        head = terms[0];
+
+        // spread the fan-in across the distribution so the union mixes dense head terms with sparse tail terms
+        Object[] spread = new Object[Math.min(fanIn, numTerms)];
+        for (int i = 0; i < spread.length; i++) {
+            spread[i] = terms[(int) ((long) i * numTerms / spread.length)];
+        }
+        orIndexes = Lists.newArrayListWithCapacity(spread.length);
+        for (Object term : spread) {
+            orIndexes.add(new SimpleInvertedIndex<>(term));
+        }
+        andIndexes = Arrays.<MiruTxIndex<Object>>asList(new SimpleInvertedIndex<>(terms[0]), new SimpleInvertedIndex<>(terms[numTerms / 2]));
+        multiTxIndex = (tx, txStackBuffer) -> {
+            for (int i = 0; i < spread.length; i++) {
+                tx.tx(i, -1, spread[i], null, -1, txStackBuffer);
+            }
+        };
+
+        int[] boundaries = new int[NUM_CARDINALITY_BUCKETS + 1];
+        for (int i = 0; i <= NUM_CARDINALITY_BUCKETS; i++) {
+            boundaries[i] = (int) ((long) i * numIds / NUM_CARDINALITY_BUCKETS);
+        }
+        indexBoundaries = new int[][] { boundaries };
+
+        headKeys = bitmaps.keys(head);
+        serializedAtoms = serializeAtoms(head, headKeys);
+
+        long[] timestamps = new long[numIds];
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < numIds; i++) {
+            timestamp += 1 + random.nextInt(10);
+            timestamps[i] = timestamp;
+        }
+        timeIndex = new SortedTimeIndex(timestamps);
+        smallestTimestamp = timestamps[numIds / 4];
+        largestTimestamp = timestamps[numIds * 3 / 4];
+    }
+
+    @Benchmark
+    public Object orTx() throws Exception {
+        return bitmaps.orTx(orIndexes, stackBuffer);
+    }
+
+    @Benchmark
+    public Object andTx() throws Exception {
+        return bitmaps.andTx(andIndexes, stackBuffer);
+    }
+
+    @Benchmark
+    public void andNotMultiTx(Blackhole blackhole) throws Exception {
+        long[] counts = new long[orIndexes.size()];
+        blackhole.consume(bitmaps.andNotMultiTx(all, multiTxIndex, counts, Optional.absent(), stackBuffer));
+        blackhole.consume(counts);
+    }
+
+    @Benchmark
+    public long[][] boundedCardinalities() {
+        long[][] rawWaveform = new long[][] { new long[NUM_CARDINALITY_BUCKETS] };
+        bitmaps.boundedCardinalities(head, indexBoundaries, rawWaveform);
+        return rawWaveform;
+    }
+
+    @Benchmark
+    public byte[][] serializeAtomized() throws Exception {
+        return serializeAtoms(head, headKeys);
+    }
+
+    @Benchmark
+    public Object deserializeAtomized() throws Exception {
+        BitmapAndLastId<Object> container = new BitmapAndLastId<>();
+        bitmaps.deserializeAtomized(container, atomStream -> {
+            for (int i = 0; i < headKeys.length; i++) {
+                if (!atomStream.stream(headKeys[i], ByteStreams.newDataInput(serializedAtoms[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        return container.getBitmap();
+    }
+
+    @Benchmark
+    public Object buildTimeRangeMask() throws Exception {
+        return bitmaps.buildTimeRangeMask(timeIndex, smallestTimestamp, largestTimestamp, stackBuffer);
+    }
+
+    private byte[][] serializeAtoms(Object index, int[] keys) throws Exception {
+        long[] sizes = bitmaps.serializeAtomizedSizeInBytes(index, keys);
+        ByteArrayDataOutput[] outputs = new ByteArrayDataOutput[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            outputs[i] = ByteStreams.newDataOutput((int) sizes[i]);
+        }
+        bitmaps.serializeAtomized(index, keys, outputs);
+        byte[][] atoms = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            atoms[i] = outputs[i].toByteArray();
+        }
+        return atoms;
+    }
+
+    /**
+     * Assigns each id a term drawn from a Zipfian distribution (s = 1) and returns the sorted ids for each term by rank.
+     */
+    private static int[][] zipfTermIds(Random random, int numIds, int numTerms) {
+        double[] cumulative = new double[numTerms];
+        double sum = 0;
+        for (int i = 0; i < numTerms; i++) {
+            sum += 1d / (i + 1);
+            cumulative[i] = sum;
+        }
+
+        int[] termOfId = new int[numIds];
+        int[] counts = new int[numTerms];
+        for (int id = 0; id < numIds; id++) {
+            int term = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (term < 0) {
+                term = Math.min(-(term + 1), numTerms - 1);
+            }
+            termOfId[id] = term;
+            counts[term]++;
+        }
+
+        int[][] termIds = new int[numTerms][];
+        for (int i = 0; i < numTerms; i++) {
+            termIds[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int id = 0; id < numIds; id++) {
+            int term = termOfId[id];
+            termIds[term][counts[term]++] = id;
+        }
+        return termIds;
+    }
+}
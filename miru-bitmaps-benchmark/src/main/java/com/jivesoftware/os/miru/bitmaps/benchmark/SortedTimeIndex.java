@@ -0,0 +1,108 @@
+package com.jivesoftware.os.miru.bitmaps.benchmark;
+
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.plugin.index.MiruTimeIndex;
+import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only time index over a sorted array of timestamps, where each activity id is its position in the array.
+ */
+class SortedTimeIndex implements MiruTimeIndex {
+
+    private final long[] timestamps;
+
+    SortedTimeIndex(long[] timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    @Override
+    public boolean[] contains(List<Long> timestamps, StackBuffer stackBuffer) throws Exception {
+        boolean[] contains = new boolean[timestamps.size()];
+        for (int i = 0; i < contains.length; i++) {
+            contains[i] = Arrays.binarySearch(this.timestamps, timestamps.get(i)) >= 0;
+        }
+        return contains;
+    }
+
+    @Override
+    public boolean intersects(MiruTimeRange timeRange) throws Exception {
+        return timestamps.length > 0
+            && timeRange.smallestTimestamp <= getLargestTimestamp()
+            && timeRange.largestTimestamp >= getSmallestTimestamp();
+    }
+
+    @Override
+    public int getClosestId(long timestamp, StackBuffer stackBuffer) throws Exception {
+        int index = Arrays.binarySearch(timestamps, timestamp);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    @Override
+    public int[] getClosestIds(long[] timestamps, StackBuffer stackBuffer) throws Exception {
+        int[] ids = new int[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            ids[i] = getClosestId(timestamps[i], stackBuffer);
+        }
+        return ids;
+    }
+
+    @Override
+    public int getExactId(long timestamp, StackBuffer stackBuffer) throws Exception {
+        int index = Arrays.binarySearch(timestamps, timestamp);
+        return index >= 0 ? index : -1;
+    }
+
+    @Override
+    public long getLargestTimestamp() throws Exception {
+        return timestamps.length == 0 ? Long.MIN_VALUE : timestamps[timestamps.length - 1];
+    }
+
+    @Override
+    public long getSmallestTimestamp() throws Exception {
+        return timestamps.length == 0 ? Long.MAX_VALUE : timestamps[0];
+    }
+
+    @Override
+    public int smallestExclusiveTimestampIndex(long timestamp, StackBuffer stackBuffer) throws Exception {
+        int index = Arrays.binarySearch(timestamps, timestamp);
+        if (index >= 0) {
+            while (index < timestamps.length && timestamps[index] == timestamp) {
+                index++;
+            }
+            return index;
+        }
+        return -(index + 1);
+    }
+
+    @Override
+    public int largestInclusiveTimestampIndex(long timestamp, StackBuffer stackBuffer) throws Exception {
+        int index = Arrays.binarySearch(timestamps, timestamp);
+        if (index >= 0) {
+            while (index + 1 < timestamps.length && timestamps[index + 1] == timestamp) {
+                index++;
+            }
+            return index;
+        }
+        return -(index + 1) - 1;
+    }
+
+    @Override
+    public int lastId() {
+        return timestamps.length - 1;
+    }
+
+    @Override
+    public void nextId(StackBuffer stackBuffer, long[] timestamps, int[] ids, long[] monotonics) throws Exception {
+        throw new UnsupportedOperationException("Read only");
+    }
+
+    @Override
+    public void markClosed() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
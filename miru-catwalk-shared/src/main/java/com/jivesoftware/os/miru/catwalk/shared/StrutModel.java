@@ -1,33 +1,398 @@
 package com.jivesoftware.os.miru.catwalk.shared;
 
 import com.jivesoftware.os.miru.api.base.MiruTermId;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
+ * A decoded model held in primitive arrays. Each distinct term id is stored once in a shared term table, and each feature
+ * maps its keys, as sequences of term ordinals, to scores through an open-addressed table, so that a model costs a handful
+ * of arrays rather than an object graph per score.
+ *
  * @author jonathan.colt
  */
 public class StrutModel {
 
-    public final Map<StrutModelKey, StrutModelScore>[] model;
     public final long[] modelCounts;
     public final long totalCount;
     public final int[] numberOfModels;
     public final int[] totalNumPartitions;
 
-    public StrutModel(Map<StrutModelKey, StrutModelScore>[] model,
+    private final TermTable terms;
+    private final FeatureTable[] features;
+
+    private StrutModel(TermTable terms,
+        FeatureTable[] features,
         long[] modelCounts,
         long totalCount,
         int[] numberOfModels,
         int[] totalNumPartitions) {
-        this.model = model;
+        this.terms = terms;
+        this.features = features;
         this.modelCounts = modelCounts;
         this.totalCount = totalCount;
         this.numberOfModels = numberOfModels;
         this.totalNumPartitions = totalNumPartitions;
     }
 
-    public StrutModelScore score(int featureId, MiruTermId[] values) {
-        return model[featureId].get(new StrutModelKey(values));
+    /**
+     * Points the given view at the scores for the values of a feature, without allocating.
+     *
+     * @return false if the model has no scores for the values, in which case the view is left unchanged
+     */
+    public boolean score(int featureId, MiruTermId[] values, StrutModelScore score) {
+        FeatureTable table = features[featureId];
+        if (table.size == 0) {
+            return false;
+        }
+        if (score.ordinals.length < values.length) {
+            score.ordinals = new int[values.length];
+        }
+        int[] ordinals = score.ordinals;
+        for (int i = 0; i < values.length; i++) {
+            ordinals[i] = terms.find(values[i]);
+            if (ordinals[i] == -1) {
+                return false;
+            }
+        }
+        int entry = table.find(ordinals, values.length);
+        if (entry == -1) {
+            return false;
+        }
+        score.numerators = table.numerators;
+        score.offset = table.numeratorOffsets[entry];
+        score.length = table.numeratorOffsets[entry + 1] - score.offset;
+        score.denominator = table.denominators[entry];
+        return true;
+    }
+
+    /**
+     * @return true if no feature has any scores
+     */
+    public boolean isEmpty() {
+        for (FeatureTable feature : features) {
+            if (feature.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long sizeInBytes() {
+        long size = terms.sizeInBytes();
+        for (FeatureTable feature : features) {
+            size += feature.sizeInBytes();
+        }
+        return size + 8L * modelCounts.length + 4L * numberOfModels.length + 4L * totalNumPartitions.length;
+    }
+
+    private static int slotCount(int size) {
+        return Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Matches {@link Arrays#hashCode(int[])} over the given range.
+     */
+    private static int hash(int[] ordinals, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + ordinals[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class TermTable {
+
+        private final byte[] bytes;
+        private final int[] offsets;
+        private final int[] slots;
+
+        private TermTable(byte[] bytes, int[] offsets, int[] slots) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.slots = slots;
+        }
+
+        private int find(MiruTermId termId) {
+            byte[] find = termId.getBytes();
+            int mask = slots.length - 1;
+            for (int slot = spread(hash(find, 0, find.length)) & mask; ; slot = (slot + 1) & mask) {
+                int ordinal = slots[slot] - 1;
+                if (ordinal == -1) {
+                    return -1;
+                }
+                int offset = offsets[ordinal];
+                int length = offsets[ordinal + 1] - offset;
+                if (length == find.length && equals(find, bytes, offset)) {
+                    return ordinal;
+                }
+            }
+        }
+
+        private static boolean equals(byte[] find, byte[] bytes, int offset) {
+            for (int i = 0; i < find.length; i++) {
+                if (find[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long sizeInBytes() {
+            return bytes.length + 4L * offsets.length + 4L * slots.length;
+        }
+    }
+
+    private static class FeatureTable {
+
+        private final int size;
+        private final int[] keyOffsets;
+        private final int[] keys;
+        private final int[] numeratorOffsets;
+        private final long[] numerators;
+        private final long[] denominators;
+        private final int[] slots;
+
+        private FeatureTable(int size, int[] keyOffsets, int[] keys, int[] numeratorOffsets, long[] numerators, long[] denominators, int[] slots) {
+            this.size = size;
+            this.keyOffsets = keyOffsets;
+            this.keys = keys;
+            this.numeratorOffsets = numeratorOffsets;
+            this.numerators = numerators;
+            this.denominators = denominators;
+            this.slots = slots;
+        }
+
+        /**
+         * @return the entry whose key is the first length ordinals, or -1 if there is none
+         */
+        private int find(int[] ordinals, int length) {
+            int mask = slots.length - 1;
+            for (int slot = spread(hash(ordinals, 0, length)) & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot] - 1;
+                if (entry == -1) {
+                    return -1;
+                }
+                int offset = keyOffsets[entry];
+                if (keyOffsets[entry + 1] - offset == length && equals(ordinals, length, keys, offset)) {
+                    return entry;
+                }
+            }
+        }
+
+        private static boolean equals(int[] find, int length, int[] keys, int offset) {
+            for (int i = 0; i < length; i++) {
+                if (find[i] != keys[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long sizeInBytes() {
+            return 4L * keyOffsets.length + 4L * keys.length + 4L * numeratorOffsets.length + 8L * numerators.length + 8L * denominators.length
+                + 4L * slots.length;
+        }
+    }
+
+    /**
+     * Accumulates the scores of a model. A key which is added more than once for the same feature keeps its last score.
+     */
+    public static class Builder {
+
+        private final TermsBuilder terms = new TermsBuilder();
+        private final FeatureBuilder[] features;
+
+        public Builder(int numFeatures) {
+            this.features = new FeatureBuilder[numFeatures];
+            for (int i = 0; i < numFeatures; i++) {
+                features[i] = new FeatureBuilder();
+            }
+        }
+
+        public Builder add(int featureId, MiruTermId[] termIds, long[] numerators, long denominator) {
+            int[] ordinals = new int[termIds.length];
+            for (int i = 0; i < termIds.length; i++) {
+                ordinals[i] = terms.intern(termIds[i]);
+            }
+            features[featureId].put(ordinals, numerators, denominator);
+            return this;
+        }
+
+        public StrutModel build(long[] modelCounts, long totalCount, int[] numberOfModels, int[] totalNumPartitions) {
+            FeatureTable[] tables = new FeatureTable[features.length];
+            for (int i = 0; i < tables.length; i++) {
+                tables[i] = features[i].build();
+            }
+            return new StrutModel(terms.build(), tables, modelCounts, totalCount, numberOfModels, totalNumPartitions);
+        }
+    }
+
+    private static class TermsBuilder {
+
+        private byte[] bytes = new byte[256];
+        private int[] offsets = new int[17];
+        private int[] slots = new int[32];
+        private int count;
+
+        private int intern(MiruTermId termId) {
+            int ordinal = find(termId);
+            if (ordinal != -1) {
+                return ordinal;
+            }
+
+            byte[] add = termId.getBytes();
+            int offset = offsets[count];
+            if (offset + add.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + add.length));
+            }
+            System.arraycopy(add, 0, bytes, offset, add.length);
+            if (count + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count + 1] = offset + add.length;
+            ordinal = count;
+            count++;
+
+            if (count * 2 > slots.length) {
+                rehash(slots.length * 2);
+            } else {
+                insert(slots, hash(add, 0, add.length), ordinal);
+            }
+            return ordinal;
+        }
+
+        private int find(MiruTermId termId) {
+            return new TermTable(bytes, offsets, slots).find(termId);
+        }
+
+        private void rehash(int slotCount) {
+            int[] rehashed = new int[slotCount];
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                insert(rehashed, hash(bytes, offsets[ordinal], offsets[ordinal + 1] - offsets[ordinal]), ordinal);
+            }
+            slots = rehashed;
+        }
+
+        private static void insert(int[] slots, int hash, int ordinal) {
+            int mask = slots.length - 1;
+            int slot = spread(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ordinal + 1;
+        }
+
+        private TermTable build() {
+            rehash(slotCount(count));
+            return new TermTable(Arrays.copyOf(bytes, offsets[count]), Arrays.copyOf(offsets, count + 1), slots);
+        }
     }
 
+    private static class FeatureBuilder {
+
+        private int[] keyOffsets = new int[17];
+        private int[] keys = new int[16];
+        private int[] numeratorOffsets = new int[17];
+        private long[] numerators = new long[16];
+        private long[] denominators = new long[16];
+        private int[] slots = new int[32];
+        private int size;
+
+        private void put(int[] ordinals, long[] entryNumerators, long denominator) {
+            int entry = new FeatureTable(size, keyOffsets, keys, numeratorOffsets, numerators, denominators, slots).find(ordinals, ordinals.length);
+            if (entry != -1) {
+                replace(entry, entryNumerators, denominator);
+                return;
+            }
+
+            entry = size;
+            int keyOffset = keyOffsets[entry];
+            if (keyOffset + ordinals.length > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyOffset + ordinals.length));
+            }
+            System.arraycopy(ordinals, 0, keys, keyOffset, ordinals.length);
+            if (entry + 2 > keyOffsets.length) {
+                keyOffsets = Arrays.copyOf(keyOffsets, keyOffsets.length * 2);
+                numeratorOffsets = Arrays.copyOf(numeratorOffsets, numeratorOffsets.length * 2);
+                denominators = Arrays.copyOf(denominators, keyOffsets.length);
+            }
+            keyOffsets[entry + 1] = keyOffset + ordinals.length;
+            int numeratorOffset = numeratorOffsets[entry];
+            if (numeratorOffset + entryNumerators.length > numerators.length) {
+                numerators = Arrays.copyOf(numerators, Math.max(numerators.length * 2, numeratorOffset + entryNumerators.length));
+            }
+            System.arraycopy(entryNumerators, 0, numerators, numeratorOffset, entryNumerators.length);
+            numeratorOffsets[entry + 1] = numeratorOffset + entryNumerators.length;
+            denominators[entry] = denominator;
+            size++;
+
+            if (size * 2 > slots.length) {
+                rehash(slots.length * 2);
+            } else {
+                insert(slots, hash(ordinals, 0, ordinals.length), entry);
+            }
+        }
+
+        private void replace(int entry, long[] entryNumerators, long denominator) {
+            int offset = numeratorOffsets[entry];
+            int length = numeratorOffsets[entry + 1] - offset;
+            if (length == entryNumerators.length) {
+                System.arraycopy(entryNumerators, 0, numerators, offset, length);
+                denominators[entry] = denominator;
+                return;
+            }
+            // a differing arity has to be rebuilt, so rewrite the numerators with the entry's new run spliced in
+            long[] rewritten = new long[numeratorOffsets[size] - length + entryNumerators.length];
+            System.arraycopy(numerators, 0, rewritten, 0, offset);
+            System.arraycopy(entryNumerators, 0, rewritten, offset, entryNumerators.length);
+            System.arraycopy(numerators, offset + length, rewritten, offset + entryNumerators.length, numeratorOffsets[size] - offset - length);
+            int delta = entryNumerators.length - length;
+            for (int i = entry + 1; i <= size; i++) {
+                numeratorOffsets[i] += delta;
+            }
+            numerators = rewritten;
+            denominators[entry] = denominator;
+        }
+
+        private void rehash(int slotCount) {
+            int[] rehashed = new int[slotCount];
+            for (int entry = 0; entry < size; entry++) {
+                insert(rehashed, hash(keys, keyOffsets[entry], keyOffsets[entry + 1] - keyOffsets[entry]), entry);
+            }
+            slots = rehashed;
+        }
+
+        private static void insert(int[] slots, int hash, int entry) {
+            int mask = slots.length - 1;
+            int slot = spread(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+
+        private FeatureTable build() {
+            rehash(slotCount(size));
+            return new FeatureTable(size,
+                Arrays.copyOf(keyOffsets, size + 1),
+                Arrays.copyOf(keys, keyOffsets[size]),
+                Arrays.copyOf(numeratorOffsets, size + 1),
+                Arrays.copyOf(numerators, numeratorOffsets[size]),
+                Arrays.copyOf(denominators, size),
+                slots);
+        }
+    }
 }
@@ -1,15 +1,26 @@
 package com.jivesoftware.os.miru.catwalk.shared;
 
 /**
- *
+ * A view of one entry's scores in a {@link StrutModel}. A lookup points the view at the model's arrays rather than copying
+ * the entry, so one instance can be reused for every lookup made by a single thread.
  */
 public class StrutModelScore {
 
-    public final long[] numerators;
-    public final long denominator;
+    long[] numerators;
+    int offset;
+    int length;
+    long denominator;
+    int[] ordinals = new int[4];
 
-    public StrutModelScore(long[] numerators, long denominator) {
-        this.numerators = numerators;
-        this.denominator = denominator;
+    public int length() {
+        return length;
+    }
+
+    public long numerator(int index) {
+        return numerators[offset + index];
+    }
+
+    public long denominator() {
+        return denominator;
     }
 }
@@ -0,0 +1,183 @@
+package com.jivesoftware.os.miru.catwalk.shared;
+
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class StrutModelTest {
+
+    private static final long[] MODEL_COUNTS = { 1L };
+    private static final int[] NUMBER_OF_MODELS = { 1 };
+    private static final int[] TOTAL_NUM_PARTITIONS = { 1 };
+
+    @Test
+    public void testRoundTripMatchesReference() throws Exception {
+        int numFeatures = 3;
+        Random random = new Random(1234);
+        StrutModel.Builder builder = new StrutModel.Builder(numFeatures);
+        // keyed by feature and term list, last add wins
+        Map<List<Object>, long[]> reference = Maps.newHashMap();
+        for (int i = 0; i < 5_000; i++) {
+            int featureId = random.nextInt(numFeatures);
+            MiruTermId[] termIds = termIds(featureId + 1, random, 200);
+            long[] numerators = new long[1 + random.nextInt(3)];
+            for (int j = 0; j < numerators.length; j++) {
+                numerators[j] = random.nextInt(1_000);
+            }
+            long denominator = 1 + random.nextInt(1_000);
+            builder.add(featureId, termIds, numerators, denominator);
+            reference.put(key(featureId, termIds), scores(numerators, denominator));
+        }
+        StrutModel model = builder.build(MODEL_COUNTS, 1L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+
+        StrutModelScore score = new StrutModelScore();
+        for (Map.Entry<List<Object>, long[]> entry : reference.entrySet()) {
+            int featureId = (Integer) entry.getKey().get(0);
+            MiruTermId[] termIds = entry.getKey().subList(1, entry.getKey().size()).toArray(new MiruTermId[0]);
+            assertTrue(model.score(featureId, termIds, score), "Missing " + entry.getKey());
+            assertScores(score, entry.getValue(), "Mismatch for " + entry.getKey());
+        }
+
+        // keys that were never added, including known terms in an unknown combination or under another feature
+        Random misses = new Random(5678);
+        for (int i = 0; i < 1_000; i++) {
+            int featureId = misses.nextInt(numFeatures);
+            MiruTermId[] termIds = termIds(featureId + 1, misses, 400);
+            boolean expected = reference.containsKey(key(featureId, termIds));
+            assertEquals(model.score(featureId, termIds, score), expected, "Lookup disagrees for " + key(featureId, termIds));
+        }
+    }
+
+    @Test
+    public void testDuplicateKeyKeepsLastScore() throws Exception {
+        MiruTermId[] termIds = { term("a"), term("b") };
+        StrutModel model = new StrutModel.Builder(1)
+            .add(0, termIds, new long[] { 1, 2 }, 10)
+            .add(0, new MiruTermId[] { term("a"), term("b") }, new long[] { 3, 4 }, 20)
+            .build(MODEL_COUNTS, 1L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+
+        StrutModelScore score = new StrutModelScore();
+        assertTrue(model.score(0, termIds, score));
+        assertScores(score, new long[] { 3, 4, 20 }, "Mismatch");
+
+        // the same terms in another order are a different key
+        assertFalse(model.score(0, new MiruTermId[] { term("b"), term("a") }, score));
+    }
+
+    @Test
+    public void testArityChangeKeepsNeighbors() throws Exception {
+        StrutModel.Builder builder = new StrutModel.Builder(1);
+        for (int i = 0; i < 10; i++) {
+            builder.add(0, new MiruTermId[] { term("t" + i) }, new long[] { i, i }, 100 + i);
+        }
+        // grow one entry and shrink another, which splices the packed numerators of every later entry
+        builder.add(0, new MiruTermId[] { term("t3") }, new long[] { 30, 31, 32, 33 }, 300);
+        builder.add(0, new MiruTermId[] { term("t6") }, new long[] { 60 }, 600);
+        StrutModel model = builder.build(MODEL_COUNTS, 1L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+
+        StrutModelScore score = new StrutModelScore();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(model.score(0, new MiruTermId[] { term("t" + i) }, score));
+            long[] expected;
+            if (i == 3) {
+                expected = new long[] { 30, 31, 32, 33, 300 };
+            } else if (i == 6) {
+                expected = new long[] { 60, 600 };
+            } else {
+                expected = new long[] { i, i, 100 + i };
+            }
+            assertScores(score, expected, "Mismatch for t" + i);
+        }
+    }
+
+    @Test
+    public void testMissingTermsAndEmptyFeatures() throws Exception {
+        StrutModel model = new StrutModel.Builder(2)
+            .add(0, new MiruTermId[] { term("a") }, new long[] { 1 }, 2)
+            .build(MODEL_COUNTS, 1L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+
+        StrutModelScore score = new StrutModelScore();
+        assertTrue(model.score(0, new MiruTermId[] { term("a") }, score));
+
+        // a miss leaves the view pointing at the last hit
+        assertFalse(model.score(0, new MiruTermId[] { term("unknown") }, score));
+        assertFalse(model.score(0, new MiruTermId[] { term("a"), term("unknown") }, score));
+        assertFalse(model.score(0, new MiruTermId[] { term("a"), term("a") }, score));
+        assertFalse(model.score(1, new MiruTermId[] { term("a") }, score));
+        assertScores(score, new long[] { 1, 2 }, "Mismatch");
+
+        assertFalse(model.isEmpty());
+        StrutModel empty = new StrutModel.Builder(2).build(MODEL_COUNTS, 0L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.score(0, new MiruTermId[] { term("a") }, score));
+    }
+
+    @Test
+    public void testSizeInBytes() throws Exception {
+        StrutModel empty = new StrutModel.Builder(1).build(MODEL_COUNTS, 0L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS);
+        assertTrue(empty.sizeInBytes() > 0);
+
+        long lastSize = empty.sizeInBytes();
+        for (int count = 10; count <= 1_000; count *= 10) {
+            StrutModel.Builder builder = new StrutModel.Builder(1);
+            for (int i = 0; i < count; i++) {
+                builder.add(0, new MiruTermId[] { term("t" + i), term("shared") }, new long[] { i, i }, i + 1);
+            }
+            long size = builder.build(MODEL_COUNTS, 1L, NUMBER_OF_MODELS, TOTAL_NUM_PARTITIONS).sizeInBytes();
+            // at least the packed keys, numerators and denominators of every entry
+            assertTrue(size >= count * (2 * 4L + 2 * 8L + 8L), "Size " + size + " too small for " + count + " entries");
+            assertTrue(size > lastSize, "Size " + size + " did not grow past " + lastSize);
+            lastSize = size;
+        }
+    }
+
+    private static MiruTermId[] termIds(int length, Random random, int numTerms) {
+        MiruTermId[] termIds = new MiruTermId[length];
+        for (int i = 0; i < length; i++) {
+            termIds[i] = term("term" + random.nextInt(numTerms));
+        }
+        return termIds;
+    }
+
+    private static MiruTermId term(String value) {
+        return new MiruTermId(value.getBytes());
+    }
+
+    private static List<Object> key(int featureId, MiruTermId[] termIds) {
+        Object[] key = new Object[termIds.length + 1];
+        key[0] = featureId;
+        System.arraycopy(termIds, 0, key, 1, termIds.length);
+        return Arrays.asList(key);
+    }
+
+    private static long[] scores(long[] numerators, long denominator) {
+        long[] scores = Arrays.copyOf(numerators, numerators.length + 1);
+        scores[numerators.length] = denominator;
+        return scores;
+    }
+
+    private static void assertScores(StrutModelScore score, long[] expected, String message) {
+        long[] actual = scores(score);
+        assertTrue(Arrays.equals(actual, expected), message + ": " + Arrays.toString(actual) + " != " + Arrays.toString(expected));
+    }
+
+    private static long[] scores(StrutModelScore score) {
+        long[] scores = new long[score.length() + 1];
+        for (int i = 0; i < score.length(); i++) {
+            scores[i] = score.numerator(i);
+        }
+        scores[score.length()] = score.denominator();
+        return scores;
+    }
+}
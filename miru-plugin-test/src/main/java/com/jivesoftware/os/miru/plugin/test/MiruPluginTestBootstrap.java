@@ -307,6 +307,7 @@ public class MiruPluginTestBootstrap {
             new SingleSchemaProvider(miruSchema),
             walClient,
             new NoOpRealtimeDelivery(miruStats),
+            null,
             new RCVSSipTrackerFactory(),
             new RCVSSipIndexMarshaller(),
             new MiruTempDirectoryResourceLocator(),
@@ -7,7 +7,9 @@ import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruTermId;
 import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
 import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
 import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
 import com.jivesoftware.os.miru.plugin.MiruInterner;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
@@ -24,6 +26,8 @@ import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NavigableMap;
@@ -132,6 +136,49 @@ public class LuceneBackedQueryParserTest {
         assertTrue(storage.contains(8));
     }
 
+    @Test
+    public void testAndFilterPlan() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        fieldIndex.put(0, term("red"), RoaringBitmap.bitmapOf(0, 2, 4, 6, 8));
+        fieldIndex.put(0, term("green"), RoaringBitmap.bitmapOf(1, 3, 5, 7, 9));
+        fieldIndex.put(0, term("blue"), RoaringBitmap.bitmapOf(0, 1, 4, 5, 8, 9));
+
+        fieldIndex.put(1, term("yellow"), RoaringBitmap.bitmapOf(0, 2, 4, 6, 8));
+        fieldIndex.put(1, term("blue"), RoaringBitmap.bitmapOf(2, 3, 6, 7));
+
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and, false,
+            Arrays.asList(
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "red"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "blue"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "b", "yellow")),
+            null);
+        // (0, 2, 4, 6, 8) AND (0, 1, 4, 5, 8, 9) AND (0, 2, 4, 6, 8)
+        MiruSolutionLog solutionLog = new MiruSolutionLog(MiruSolutionLogLevel.NONE);
+        RoaringBitmap storage = aggregateUtil.filter("test", bitmaps, context, filter, solutionLog, null, 9, -1, -1, stackBuffer);
+        Assert.assertEquals(storage, RoaringBitmap.bitmapOf(0, 4, 8));
+
+        MiruFilter subFiltered = new MiruFilter(MiruFilterOperation.and, false,
+            filter.fieldFilters,
+            Collections.singletonList(new MiruFilter(MiruFilterOperation.or, false,
+                Arrays.asList(
+                    MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "green"),
+                    MiruFieldFilter.ofTerms(MiruFieldType.primary, "b", "blue")),
+                null)));
+        // (0, 4, 8) AND ((1, 3, 5, 7, 9) OR (2, 3, 6, 7))
+        storage = aggregateUtil.filter("test", bitmaps, context, subFiltered, solutionLog, null, 9, -1, -1, stackBuffer);
+        assertTrue(storage.isEmpty());
+
+        MiruFilter disjoint = new MiruFilter(MiruFilterOperation.and, false,
+            Arrays.asList(
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "red"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "green"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "b", "yellow", "blue")),
+            null);
+        // (0, 2, 4, 6, 8) AND (1, 3, 5, 7, 9) stops before the last clause
+        storage = aggregateUtil.filter("test", bitmaps, context, disjoint, solutionLog, null, 9, -1, -1, stackBuffer);
+        assertTrue(storage.isEmpty());
+    }
+
     private MiruTermId term(String term) {
         return new MiruTermId(term.getBytes(StandardCharsets.UTF_8));
     }
@@ -248,6 +295,11 @@ public class LuceneBackedQueryParserTest {
             throw new UnsupportedOperationException("Nope");
         }
 
+        @Override
+        public long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+            throw new UnsupportedOperationException("Nope");
+        }
+
         private class TestInvertedIndex implements MiruInvertedIndex<RoaringBitmap, RoaringBitmap> {
 
             private final int fieldId;
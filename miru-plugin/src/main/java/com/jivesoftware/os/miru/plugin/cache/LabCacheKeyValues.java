@@ -58,7 +58,7 @@ public class LabCacheKeyValues implements CacheKeyValues {
                 return true;
             },
             (index, key, timestamp, tombstoned, version, payload) -> {
-                return stream.stream(index, tombstoned ? null : payload.asByteBuffer());
+                return stream.stream(index, tombstoned ? null : payload == null ? null : payload.asByteBuffer());
             },
             true
         );
@@ -63,7 +63,7 @@ public class MiruFilerCacheKeyValues implements CacheKeyValues {
                                 for (int i = 0; i < keyBytes.length; i++) {
                                     if (keyBytes[i] != null) {
                                         byte[] payload = MapStore.INSTANCE.getPayload(filer, monkey, keyBytes[i], _stackBuffer);
-                                        if (!stream.stream(i, ByteBuffer.wrap(payload))) {
+                                        if (!stream.stream(i, payload == null ? null : ByteBuffer.wrap(payload))) {
                                             return null;
                                         }
                                     }
@@ -130,5 +130,10 @@ public interface MiruPluginCacheProvider<BM extends IBM, IBM> {
         int getLastId(byte[] cacheId) throws Exception;
 
         void setLastId(byte[] cacheId, int lastId) throws Exception;
+
+        /**
+         * Removes the bitmap and last id of every cache id of the given length that sorts within [fromInclusive, toExclusive).
+         */
+        void remove(int cacheIdLength, byte[] fromInclusive, byte[] toExclusive) throws Exception;
     }
 }
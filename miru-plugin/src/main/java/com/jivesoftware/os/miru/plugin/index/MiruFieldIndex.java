@@ -40,4 +40,9 @@ public interface MiruFieldIndex<BM extends IBM, IBM> {
 
     long getGlobalCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception;
 
+    /**
+     * @return an upper bound on the cardinality of the term for any single id, or -1 if no bound is known
+     */
+    long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception;
+
 }
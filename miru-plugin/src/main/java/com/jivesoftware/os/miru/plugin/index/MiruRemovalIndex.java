@@ -1,5 +1,17 @@
 package com.jivesoftware.os.miru.plugin.index;
 
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+
 public interface MiruRemovalIndex<BM extends IBM, IBM> extends MiruInvertedIndex<BM, IBM> {
 
+    /**
+     * Gets the removal bitmap for at least the given ids, reading only the parts of the index those ids fall in where the
+     * index is stored in parts. Bits outside the given ids may be missing from the result.
+     *
+     * @param container   the container for the bitmap
+     * @param ids         the ids of interest, in any order
+     * @param stackBuffer the stack buffer
+     * @throws Exception
+     */
+    void getIndexForIds(BitmapAndLastId<BM> container, int[] ids, StackBuffer stackBuffer) throws Exception;
 }
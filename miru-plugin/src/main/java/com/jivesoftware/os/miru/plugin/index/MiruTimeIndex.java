@@ -26,6 +26,14 @@ public interface MiruTimeIndex {
      */
     int getClosestId(long timestamp, StackBuffer stackBuffer) throws Exception;
 
+    /**
+     * Returns the closest id, as given by {@link #getClosestId}, for each of the timestamps in one pass.
+     *
+     * @param timestamps the activity timestamps in ascending order
+     * @return the actual index or nearest insertion point for each timestamp
+     */
+    int[] getClosestIds(long[] timestamps, StackBuffer stackBuffer) throws Exception;
+
     int getExactId(long timestamp, StackBuffer stackBuffer) throws Exception;
 
     long getLargestTimestamp() throws Exception;
@@ -54,6 +62,11 @@ public interface MiruTimeIndex {
 
     void nextId(StackBuffer stackBuffer, long[] timestamps, int[] ids, long[] monotonics) throws Exception;
 
+    /**
+     * Signals that the partition's writers have closed, so no further ids will be appended.
+     */
+    void markClosed();
+
     void close();
 
     interface TimeOrderAnomalyStream {
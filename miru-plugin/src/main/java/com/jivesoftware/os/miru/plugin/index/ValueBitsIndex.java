@@ -1,10 +1,25 @@
 package com.jivesoftware.os.miru.plugin.index;
 
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+
 /**
  *
  */
 public class ValueBitsIndex {
 
+    /**
+     * Each value bits field records, as the only bit under this term, the first id indexed once the field had value bits.
+     * Earlier ids may have no bits, and have to be answered from the field's terms or the activity index instead.
+     */
+    public static final MiruTermId FIRST_ID_TERM_ID = new MiruTermId(shortBytes((short) -1, new byte[2], 0));
+
+    /**
+     * @return true if the term holds a bit of the packed values, rather than the first id marker
+     */
+    public static boolean isValueBit(MiruTermId termId) {
+        return bytesShort(termId.getBytes()) >= 0;
+    }
+
     public static byte[] shortBytes(short v, byte[] bytes, int offset) {
         bytes[offset + 0] = (byte) (v >>> 8);
         bytes[offset + 1] = (byte) v;
@@ -9,6 +9,7 @@ import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import java.io.OutputStream;
 
 /**
  *
@@ -33,6 +34,10 @@ public interface MiruPartitionDirector {
 
     boolean compact(MiruTenantId tenantId, MiruPartitionId partitionId) throws Exception;
 
+    boolean canExportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId) throws Exception;
+
+    boolean exportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId, OutputStream outputStream) throws Exception;
+
     boolean rebuildTimeRange(MiruTimeRange miruTimeRange, boolean hotDeploy, boolean chunkStores, boolean labIndex) throws Exception;
 
     boolean expectedTopologies(Optional<MiruTenantId> tenantId, CoordinateStream stream) throws Exception;
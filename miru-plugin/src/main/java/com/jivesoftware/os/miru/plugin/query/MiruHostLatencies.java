@@ -0,0 +1,86 @@
+package com.jivesoftware.os.miru.plugin.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks a sliding window of query latencies for each reader instance, shared by every tenant and family routed to that
+ * reader, so that a tenant with no history of its own can start from what the readers are currently doing.
+ */
+class MiruHostLatencies {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final int windowSize;
+    private final float percentile;
+    private final Cache<String, Window> windows;
+
+    MiruHostLatencies(int windowSize, float percentile, long idleEvictionMillis) {
+        this.windowSize = windowSize;
+        this.percentile = percentile;
+        this.windows = CacheBuilder.newBuilder()
+            .expireAfterAccess(idleEvictionMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    void record(String instanceKey, long latency) {
+        Window window = windows.asMap().computeIfAbsent(instanceKey, key -> new Window(windowSize));
+        long value = window.record(latency, percentile);
+        LOG.set(ValueType.VALUE, "tas>host>" + instanceKey + ">p" + (int) percentile, value);
+    }
+
+    /**
+     * @return the latency percentile across the windows of every tracked reader, or the default if nothing has been recorded
+     */
+    long percentile(long defaultLatency) {
+        long[] merged = new long[0];
+        int count = 0;
+        for (Map.Entry<String, Window> entry : windows.asMap().entrySet()) {
+            long[] latencies = entry.getValue().snapshot();
+            if (count + latencies.length > merged.length) {
+                merged = Arrays.copyOf(merged, Math.max(merged.length * 2, count + latencies.length));
+            }
+            System.arraycopy(latencies, 0, merged, count, latencies.length);
+            count += latencies.length;
+        }
+        if (count == 0) {
+            return defaultLatency;
+        }
+        Arrays.sort(merged, 0, count);
+        return merged[index(count, percentile)];
+    }
+
+    private static int index(int count, float percentile) {
+        return Math.min(count - 1, (int) (count * percentile / 100f));
+    }
+
+    private static class Window {
+
+        private final long[] latencies;
+        private int next;
+        private int size;
+
+        private Window(int windowSize) {
+            this.latencies = new long[windowSize];
+        }
+
+        private synchronized long record(long latency, float percentile) {
+            latencies[next] = latency;
+            next = (next + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted[index(size, percentile)];
+        }
+
+        private synchronized long[] snapshot() {
+            return Arrays.copyOf(latencies, size);
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.jivesoftware.os.miru.plugin.query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Maps;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.jivesoftware.os.miru.api.MiruActorId;
 import com.jivesoftware.os.miru.api.MiruHost;
 import com.jivesoftware.os.miru.api.MiruHostProvider;
@@ -17,15 +18,19 @@ import com.jivesoftware.os.routing.bird.shared.ConnectionDescriptor;
 import com.jivesoftware.os.routing.bird.shared.HostPort;
 import com.jivesoftware.os.routing.bird.shared.HttpClientException;
 import com.jivesoftware.os.routing.bird.shared.InstanceDescriptor;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
- *
+ * Routes queries using a tail-at-scale strategy per tenant and family. Strategies are retained, up to a maximum number and
+ * until idle, so that each keeps its latency window and favored reader between queries. Reader latencies are also tracked
+ * across all tenants, and a new strategy takes its initial SLA from them.
  */
 public class MiruQueryTASRouting implements MiruRouting {
 
-    private final Map<MiruTenantIdAndFamily, TailAtScaleStrategy> strategyCache = Maps.newConcurrentMap();
+    private final Cache<MiruTenantIdAndFamily, TailAtScaleStrategy> strategyCache;
+    private final MiruHostLatencies hostLatencies;
 
     private final TenantAwareHttpClient<String> readerClient;
     private final ObjectMapper requestMapper;
@@ -44,6 +49,8 @@ public class MiruQueryTASRouting implements MiruRouting {
         int windowSize,
         float percentile,
         long initialSLAMillis,
+        int maxStrategies,
+        long strategyIdleMillis,
         MiruQueryEvent queryEvent) {
 
         this.readerClient = readerClient;
@@ -55,8 +62,13 @@ public class MiruQueryTASRouting implements MiruRouting {
         this.percentile = percentile;
         this.initialSLAMillis = initialSLAMillis;
         this.queryEvent = queryEvent;
-    }
 
+        this.strategyCache = CacheBuilder.newBuilder()
+            .maximumSize(maxStrategies)
+            .expireAfterAccess(strategyIdleMillis, TimeUnit.MILLISECONDS)
+            .build();
+        this.hostLatencies = new MiruHostLatencies(windowSize, percentile, strategyIdleMillis);
+    }
 
     @Override
     public <Q, A> MiruResponse<A> query(String routingTenant,
@@ -85,13 +97,12 @@ public class MiruQueryTASRouting implements MiruRouting {
         }
     }
 
-    private TailAtScaleStrategy getTenantStrategy(MiruTenantIdAndFamily miruTenantIdAndFamily) {
-        return strategyCache.getOrDefault(miruTenantIdAndFamily,
-            new TailAtScaleStrategy(executor, windowSize, percentile, initialSLAMillis)
+    TailAtScaleStrategy getTenantStrategy(MiruTenantIdAndFamily miruTenantIdAndFamily) throws ExecutionException {
+        return strategyCache.get(miruTenantIdAndFamily,
+            () -> new TailAtScaleStrategy(executor, windowSize, percentile, hostLatencies.percentile(initialSLAMillis))
         );
     }
 
-
     private void recordTenantStrategy(MiruTenantIdAndFamily tenantAndFamily,
         MiruActorId actorId,
         InterceptingNextClientStrategy interceptingNextClientStrategy,
@@ -104,6 +115,7 @@ public class MiruQueryTASRouting implements MiruRouting {
             ConnectionDescriptor favored = interceptingNextClientStrategy.favoredConnectionDescriptor;
             if (favored != null) {
                 InstanceDescriptor instanceDescriptor = favored.getInstanceDescriptor();
+                hostLatencies.record(instanceDescriptor.instanceKey, solution.totalElapsed);
                 queryEvent.event(tenantAndFamily.miruTenantId, actorId, tenantAndFamily.family, instanceDescriptor.instanceKey, solution.totalElapsed,
                     "success",
                     "attempt:" + interceptingNextClientStrategy.attempt,
@@ -23,7 +23,7 @@ import org.xerial.snappy.Snappy;
 /**
  * @author jonathan.colt
  */
-public class FstRemotePartitionReader implements MiruRemotePartitionReader {
+public class FstRemotePartitionReader implements MiruRemotePartitionReader, MiruRemotePartitionBatchReader {
 
     private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
     private static final byte[] EMPTY_RESPONSE = new byte[0];
@@ -100,16 +100,78 @@ public class FstRemotePartitionReader implements MiruRemotePartitionReader {
         }
     }
 
+    @Override
+    public <Q, A, P> MiruBatchedPartitionResponses<A> readBatch(String queryKey,
+        MiruHost host,
+        String endpoint,
+        MiruBatchedRequestAndReports<Q, P> requestAndReports,
+        EndPointMetrics endPointMetrics)
+        throws MiruQueryServiceException, MiruPartitionUnavailableException {
+
+        endPointMetrics.start();
+        try {
+            MiruHostSelectiveStrategy strategy = strategyPerHost.computeIfAbsent(host,
+                miruHost -> new MiruHostSelectiveStrategy(new MiruHost[] { miruHost }));
+            byte[] postBytes = packObject(requestAndReports, requestAndReports.request);
+            byte[] responseBytes = readerHttpClient.call("", strategy,
+                queryKey + ":" + requestAndReports.request.name + ":batch",
+                httpClient1 -> {
+                    HttpResponse httpResponse = httpClient1.postBytes(endpoint, postBytes, null);
+                    if (!RESPONSE_MAPPER.isSuccessStatusCode(httpResponse.getStatusCode())) {
+                        throw new NonSuccessStatusCodeException(httpResponse.getStatusCode(), "Non success status code: " + httpResponse.getStatusCode());
+                    }
+
+                    byte[] responseBody = httpResponse.getResponseBody();
+                    if (responseBody == null) {
+                        responseBody = EMPTY_RESPONSE;
+                    }
+
+                    return new ClientCall.ClientResponse<>(responseBody, true);
+                });
+            return unpackBatch(responseBytes);
+        } catch (NonSuccessStatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                throw new MiruPartitionUnavailableException("Remote partitions are unavailable for host: " + host + " endpoint: " + e.getMessage());
+            } else {
+                throw new MiruQueryServiceException("Failed remote batch read for host: " + host + " endpoint: " + endpoint, e);
+            }
+        } catch (HttpClientException e) {
+            throw new MiruQueryServiceException("Failed to batch query host: " + host + " endpoint: " + endpoint, e);
+        } catch (RuntimeException e) {
+            throw new MiruQueryServiceException("Failed remote batch read for host: " + host + " endpoint: " + endpoint, e);
+        } finally {
+            endPointMetrics.stop();
+        }
+    }
+
     private <Q, P> byte[] pack(MiruRequestAndReport<Q, P> requestAndReport) {
+        return packObject(requestAndReport, requestAndReport.request);
+    }
+
+    private <Q> byte[] packObject(Object object, MiruRequest<Q> request) {
         try {
-            byte[] packed = conf.asByteArray(requestAndReport);
+            byte[] packed = conf.asByteArray(object);
             if (enableSnappyCompression) {
                 return Snappy.compress(packed);
             }
             return packed;
         } catch (Exception x) {
             throw new RuntimeException("Error serializing request parameters object for request of type: "
-                + requestAndReport.request.query.getClass().getSimpleName(), x);
+                + request.query.getClass().getSimpleName(), x);
+        }
+    }
+
+    private <A> MiruBatchedPartitionResponses<A> unpackBatch(byte[] rawBytes) {
+        if (rawBytes == null || rawBytes.length == 0) {
+            throw new IllegalStateException("Empty response to batch request");
+        }
+        try {
+            if (enableSnappyCompression) {
+                rawBytes = Snappy.uncompress(rawBytes);
+            }
+            return (MiruBatchedPartitionResponses<A>) conf.asObject(rawBytes);
+        } catch (Exception x) {
+            throw new RuntimeException("Error deserializing batch response object for bytes of length=" + rawBytes.length, x);
         }
     }
 
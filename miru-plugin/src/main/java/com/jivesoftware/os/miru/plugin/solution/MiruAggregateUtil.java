@@ -1,12 +1,15 @@
 package com.jivesoftware.os.miru.plugin.solution;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Multiset.Entry;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.primitives.Bytes;
 import com.jivesoftware.os.filer.io.ByteArrayFiler;
 import com.jivesoftware.os.filer.io.ByteBufferBackedFiler;
@@ -27,15 +30,19 @@ import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruIntIterator;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.CacheKeyBitmaps;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.TimestampedCacheKeyValues;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.FieldMultiTermTxIndex;
 import com.jivesoftware.os.miru.plugin.index.IdAndTermIdStream;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndexProvider;
+import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.index.MiruTxIndex;
+import com.jivesoftware.os.miru.plugin.index.ValueBitsIndex;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.rcvs.marshall.api.UtilLexMarshaller;
@@ -48,6 +55,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.lang.mutable.MutableLong;
@@ -59,6 +72,14 @@ public class MiruAggregateUtil {
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    private static final int MAX_ESTIMATED_TERMS = 32;
+    private static final String FILTER_CACHE_NAME = "filter";
+    private static final long FILTER_CACHE_MAX_HEAP_PRESSURE_IN_BYTES = 1_024 * 1_024;
+    // not a versioned sha1, so never collides with a filter's cache id; its last id holds the cache version
+    private static final byte[] FILTER_CACHE_VERSION_ID = "filterCacheVersion".getBytes(Charsets.UTF_8);
+    private static final int FILTER_CACHE_ID_LENGTH = 4 + 20; // version and sha1
+    private static final int MAX_VALUE_BITS_PARTITIONS = 1_024;
+
     public interface StreamBitmaps<BM> {
 
         boolean stream(int streamIndex, int lastId, int fieldId, MiruTermId termId, int scoredToLastId, BM[] answers) throws Exception;
@@ -855,100 +876,159 @@ public class MiruAggregateUtil {
         LOG.debug("stream: bytesTraversed={}", bytesTraversed.longValue());
     }
 
-    /*TODO forced ascending gather doesn't work with current lastId merging strategy
+    /**
+     * Gathers like {@link #gather}, but splits the answer by container key and gathers each slice on the given executor, each
+     * with its own stack buffer. Slices are streamed in iteration order as they are gathered, so the id reported for a term is the
+     * first id a serial gather would have found, a descending gather still streams the most recent terms first, and the first
+     * slice is streamed while later slices are still being gathered. Once the stream stops, the remaining slices stop gathering.
+     * Counts are summed across slices, so when counts are included every slice completes before the first term is streamed.
+     * <p>
+     * Falls back to a serial gather when the answer fits in a single container, when the counter has ids outside the answer's
+     * containers, since those would not be counted by any slice, or when the field can be gathered from its value bits.
+     */
     public <BM extends IBM, IBM, S extends MiruSipCursor<S>> void gatherParallel(String name,
         MiruBitmaps<BM, IBM> bitmaps,
         MiruRequestContext<BM, IBM, S> requestContext,
         BM answer,
         int pivotFieldId,
         int batchSize,
+        boolean descending,
         boolean includeCounts,
-        int limit,
         Optional<BM> counter,
         MiruSolutionLog solutionLog,
         ExecutorService executorService,
-        TermIdLastIdCountStream stream,
+        IdAndTermIdStream idAndTermIdStream,
         StackBuffer stackBuffer) throws Exception {
 
+        int[] keys = bitmaps.keys(answer);
+        if (keys.length <= 1
+            || counter.isPresent() && !containsAll(keys, bitmaps.keys(counter.get()))
+            || requestContext.getSchema().getFieldDefinition(pivotFieldId).type.hasFeature(MiruFieldDefinition.Feature.indexedValueBits)) {
+            gather(name, bitmaps, requestContext, answer, pivotFieldId, batchSize, descending, includeCounts, counter, solutionLog, idAndTermIdStream,
+                stackBuffer);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
         BM[] splitAnswers = bitmaps.split(answer);
-        BM[] splitCounters = null;
-        if (counter.isPresent()) {
-            int[] keys = bitmaps.keys(answer);
-            splitCounters = bitmaps.extract(counter.get(), keys);
-        }
-        List<Future<List<TermIdLastIdCount>>> futures = Lists.newArrayListWithCapacity(splitAnswers.length);
-        for (int i = splitAnswers.length - 1; i >= 0; i--) {
-            BM splitAnswer = splitAnswers[i];
-            if (bitmaps.isEmpty(splitAnswer)) {
-                futures.add(null);
-            } else {
-                Optional<BM> splitCounter = splitCounters == null || splitCounters[i] == null ? Optional.absent() : Optional.fromNullable(splitCounters[i]);
+        BM[] splitCounters = counter.isPresent() ? bitmaps.extract(counter.get(), keys) : null;
+        MiruSolutionLog sliceLog = new MiruSolutionLog(MiruSolutionLogLevel.NONE);
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        List<BlockingQueue<GatheredTerm>> slices = Lists.newArrayListWithCapacity(splitAnswers.length);
+        List<Future<?>> futures = Lists.newArrayListWithCapacity(splitAnswers.length);
+        int streamedSlices = 0;
+        try {
+            for (int i = 0; i < splitAnswers.length; i++) {
+                int index = descending ? splitAnswers.length - 1 - i : i;
+                BM splitAnswer = splitAnswers[index];
+                Optional<BM> splitCounter;
+                if (splitCounters == null) {
+                    splitCounter = Optional.absent();
+                } else {
+                    // counting mutates the counter, and extracted slices share containers with the caller's counter
+                    splitCounter = Optional.of(splitCounters[index] == null ? bitmaps.create() : bitmaps.copy(splitCounters[index]));
+                }
+                BlockingQueue<GatheredTerm> slice = new LinkedBlockingQueue<>();
+                slices.add(slice);
                 futures.add(executorService.submit(() -> {
                     try {
-                        List<TermIdLastIdCount> gatherSplit = Lists.newArrayList();
-                        gatherActivityLookup(name,
-                            bitmaps,
-                            requestContext,
-                            splitAnswer,
-                            pivotFieldId,
-                            batchSize,
-                            false,
-                            includeCounts,
-                            splitCounter,
-                            solutionLog,
-                            (lastId, termId, count) -> {
-                                gatherSplit.add(new TermIdLastIdCount(termId, lastId, count));
-                                return true;
-                            },
-                            stackBuffer);
-                        return gatherSplit;
-                    } catch (InterruptedException e) {
-                        // ignore
-                        return null;
-                    } catch (Throwable t) {
-                        Throwable cause = t.getCause();
-                        if (cause instanceof InterruptedException || cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException) {
-                            // ignore
-                        } else {
-                            LOG.warn("Parallel gather failed", t);
+                        if (!stopped.get()) {
+                            gatherActivityLookup(name, bitmaps, requestContext, splitAnswer, pivotFieldId, batchSize, descending, includeCounts,
+                                splitCounter, sliceLog,
+                                (id, termId, count) -> {
+                                    if (stopped.get()) {
+                                        return false;
+                                    }
+                                    slice.add(new GatheredTerm(id, termId, count));
+                                    return true;
+                                },
+                                new StackBuffer());
                         }
-                        return null;
+                    } finally {
+                        slice.add(END_OF_SLICE);
                     }
+                    return null;
                 }));
             }
-        }
 
-        Map<MiruTermId, TermIdLastIdCount> results = Maps.newHashMap();
-        boolean done = false;
-        for (Future<List<TermIdLastIdCount>> future : futures) {
-            if (future != null) {
-                if (done) {
-                    future.cancel(true);
-                } else {
-                    List<TermIdLastIdCount> got = future.get();
-                    if (got != null) {
-                        for (TermIdLastIdCount termIdLastIdCount : got) {
-                            TermIdLastIdCount existing = results.putIfAbsent(termIdLastIdCount.termId, termIdLastIdCount);
-                            if (existing != null) {
-                                existing.lastId = Math.max(existing.lastId, termIdLastIdCount.lastId);
-                                existing.count += termIdLastIdCount.count;
-                            } else if (limit >= 0 && results.size() > limit) {
-                                done = true;
-                            }
+            if (includeCounts) {
+                Map<MiruTermId, GatheredTerm> merged = Maps.newLinkedHashMap();
+                for (int i = 0; i < slices.size(); i++) {
+                    BlockingQueue<GatheredTerm> slice = slices.get(i);
+                    for (GatheredTerm gatheredTerm = slice.take(); gatheredTerm != END_OF_SLICE; gatheredTerm = slice.take()) {
+                        GatheredTerm existing = merged.putIfAbsent(gatheredTerm.termId, gatheredTerm);
+                        if (existing != null) {
+                            existing.count += gatheredTerm.count;
+                        }
+                    }
+                    awaitSlice(futures.get(i));
+                    streamedSlices++;
+                }
+                for (GatheredTerm gatheredTerm : merged.values()) {
+                    if (!idAndTermIdStream.stream(gatheredTerm.id, gatheredTerm.termId, gatheredTerm.count)) {
+                        break;
+                    }
+                }
+            } else {
+                Set<MiruTermId> streamed = Sets.newHashSet();
+                done:
+                for (int i = 0; i < slices.size(); i++) {
+                    BlockingQueue<GatheredTerm> slice = slices.get(i);
+                    streamedSlices++;
+                    for (GatheredTerm gatheredTerm = slice.take(); gatheredTerm != END_OF_SLICE; gatheredTerm = slice.take()) {
+                        if (streamed.add(gatheredTerm.termId) && !idAndTermIdStream.stream(gatheredTerm.id, gatheredTerm.termId, -1)) {
+                            break done;
                         }
                     }
+                    awaitSlice(futures.get(i));
                 }
             }
+        } finally {
+            stopped.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
         }
+        solutionLog.log(MiruSolutionLogLevel.INFO, "gather parallel slices:{} streamed:{} took {} millis.",
+            splitAnswers.length, streamedSlices, System.currentTimeMillis() - start);
+    }
 
-        int count = 0;
-        for (TermIdLastIdCount termIdLastIdCount : results.values()) {
-            if ((limit >= 0 && count > limit) || !stream.stream(termIdLastIdCount)) {
-                break;
+    private static void awaitSlice(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
             }
-            count++;
+            throw new RuntimeException("Parallel gather failed", cause);
         }
-    }*/
+    }
+
+    private static boolean containsAll(int[] sortedKeys, int[] keys) {
+        for (int key : keys) {
+            if (Arrays.binarySearch(sortedKeys, key) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final GatheredTerm END_OF_SLICE = new GatheredTerm(-1, null, -1);
+
+    private static class GatheredTerm {
+
+        private final int id;
+        private final MiruTermId termId;
+        private long count;
+
+        private GatheredTerm(int id, MiruTermId termId, long count) {
+            this.id = id;
+            this.termId = termId;
+            this.count = count;
+        }
+    }
 
     public <BM extends IBM, IBM, S extends MiruSipCursor<S>> void gather(String name,
         MiruBitmaps<BM, IBM> bitmaps,
@@ -963,6 +1043,13 @@ public class MiruAggregateUtil {
         IdAndTermIdStream idAndTermIdStream,
         StackBuffer stackBuffer) throws Exception {
 
+        MiruFieldDefinition fieldDefinition = requestContext.getSchema().getFieldDefinition(pivotFieldId);
+        if (fieldDefinition.type.hasFeature(MiruFieldDefinition.Feature.indexedValueBits)
+            && gatherValueBits(name, bitmaps, requestContext, answer, pivotFieldId, descending, includeCounts, counter, solutionLog, idAndTermIdStream,
+            stackBuffer)) {
+            return;
+        }
+
         gatherActivityLookup(name,
             bitmaps,
             requestContext,
@@ -975,36 +1062,206 @@ public class MiruAggregateUtil {
             solutionLog,
             idAndTermIdStream,
             stackBuffer);
-
-        /*MiruFieldDefinition fieldDefinition = requestContext.getSchema().getFieldDefinition(pivotFieldId);
-        if (fieldDefinition.type.hasFeature(MiruFieldDefinition.Feature.indexedValueBits)) {
-            gatherValueBits(name, bitmaps, requestContext, answer, pivotFieldId, solutionLog, termIdStream, stackBuffer);
-        } else {
-            gatherActivityLookup(name, bitmaps, requestContext, answer, pivotFieldId, batchSize, solutionLog, termIdStream, stackBuffer);
-        }*/
     }
 
-    // ooh that tickles
-    /*private <BM extends IBM, IBM, S extends MiruSipCursor<S>> void gatherValueBits(String name,
+    /**
+     * Rebuilds the values of a single-term field for the answer from its value bits, without reading the activity index. The
+     * answer is partitioned by each bit in turn, so each remaining partition holds the activities sharing one value. Terms are
+     * streamed in the order a serial lookup would discover them, each with its first id in iteration order. When counting, the
+     * counter is partitioned along with the answer, so each count comes straight from its value's partition. Ids indexed
+     * before the field gained value bits, which no repair has since given bits, are resolved from the field's terms instead.
+     *
+     * @return false if the field has more than {@link #MAX_VALUE_BITS_PARTITIONS} values, in which case nothing was streamed
+     * and the caller should fall back to the activity index
+     */
+    private <BM extends IBM, IBM, S extends MiruSipCursor<S>> boolean gatherValueBits(String name,
         MiruBitmaps<BM, IBM> bitmaps,
         MiruRequestContext<BM, IBM, S> requestContext,
         BM answer,
         int pivotFieldId,
+        boolean descending,
+        boolean includeCounts,
+        Optional<BM> counter,
         MiruSolutionLog solutionLog,
-        TermIdStream termIdStream,
+        IdAndTermIdStream idAndTermIdStream,
         StackBuffer stackBuffer) throws Exception {
 
-        int[][] featureFieldIds = new int[][] { new int[] { pivotFieldId } };
-        gatherFeatures(name,
-            bitmaps,
-            requestContext,
-            streamBitmaps -> streamBitmaps.stream(0, -1, null, -1, answer),
-            featureFieldIds,
-            true,
-            (streamIndex, lastId, answerTermId, answerScoredLastId, featureId, termIds) -> featureId == -1 || termIdStream.stream(termIds[0]),
-            solutionLog,
+        long start = System.currentTimeMillis();
+        MiruFieldIndex<BM, IBM> valueBitsIndex = requestContext.getFieldIndexProvider().getFieldIndex(MiruFieldType.valueBits);
+        List<MiruTermId> bitTermIds = Lists.newArrayList();
+        valueBitsIndex.streamTermIdsForField(name, pivotFieldId, null,
+            termId -> {
+                if (ValueBitsIndex.isValueBit(termId)) {
+                    bitTermIds.add(termId);
+                }
+                return true;
+            },
             stackBuffer);
-    }*/
+
+        // the counter may hold ids outside the answer, which still count toward the values found in the answer
+        boolean partitionCounter = includeCounts && counter.isPresent();
+        BM universe = partitionCounter ? bitmaps.or(Arrays.asList(answer, counter.get())) : answer;
+        int firstId = valueBitsFirstId(name, valueBitsIndex, pivotFieldId, stackBuffer);
+
+        @SuppressWarnings("unchecked")
+        BitmapAndLastId<BM>[] bitBitmaps = new BitmapAndLastId[bitTermIds.size()];
+        valueBitsIndex.multiGet(name, pivotFieldId, bitTermIds.toArray(new MiruTermId[0]), bitBitmaps, stackBuffer);
+
+        int maxBit = -1;
+        int[] bits = new int[bitTermIds.size()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = ValueBitsIndex.bytesShort(bitTermIds.get(i).getBytes());
+            maxBit = Math.max(maxBit, bits[i]);
+        }
+
+        // the first two bytes of a packed value are its length, so every partition needs at least that much room
+        int valueLength = Math.max(2, maxBit / 8 + 1);
+        List<ValuePartition<BM>> partitions = Lists.newArrayList();
+        if (!bitmaps.isEmpty(universe)) {
+            partitions.add(new ValuePartition<>(universe, new byte[valueLength]));
+        }
+        for (int i = 0; i < bits.length; i++) {
+            if (bitBitmaps[i] == null || !bitBitmaps[i].isSet()) {
+                continue;
+            }
+            BM bitmap = bitBitmaps[i].getBitmap();
+            int bit = bits[i];
+            List<ValuePartition<BM>> next = Lists.newArrayListWithCapacity(partitions.size() * 2);
+            for (ValuePartition<BM> partition : partitions) {
+                BM set = bitmaps.and(Arrays.asList(partition.bitmap, bitmap));
+                if (bitmaps.isEmpty(set)) {
+                    next.add(partition);
+                    continue;
+                }
+                byte[] value = Arrays.copyOf(partition.value, valueLength);
+                value[bit / 8] |= (byte) (1 << (bit % 8));
+                next.add(new ValuePartition<>(set, value));
+                BM unset = bitmaps.andNot(partition.bitmap, bitmap);
+                if (!bitmaps.isEmpty(unset)) {
+                    next.add(new ValuePartition<>(unset, partition.value));
+                }
+            }
+            if (next.size() > MAX_VALUE_BITS_PARTITIONS) {
+                LOG.inc("gather>valueBits>tooManyValues");
+                solutionLog.log(MiruSolutionLogLevel.INFO, "gather value bits exceeded {} values, falling back", MAX_VALUE_BITS_PARTITIONS);
+                return false;
+            }
+            partitions = next;
+        }
+
+        Map<MiruTermId, ValuePartition<BM>> termPartitions = Maps.newHashMapWithExpectedSize(partitions.size());
+        BM unvalued = null;
+        for (ValuePartition<BM> partition : partitions) {
+            int length = ValueBitsIndex.bytesUnsignedShort(partition.value, 0);
+            if (length > 0) {
+                // trailing zero bytes have no bits indexed, so the partition value may be shorter than the packed value
+                byte[] raw = new byte[length];
+                System.arraycopy(partition.value, 2, raw, 0, Math.min(length, partition.value.length - 2));
+                partition.termId = new MiruTermId(raw);
+                termPartitions.put(partition.termId, partition);
+            } else {
+                unvalued = partition.bitmap;
+            }
+        }
+
+        if (unvalued != null && firstId > 0 && bitmaps.firstSetBit(unvalued) < firstId) {
+            BM older = bitmaps.removeRange(unvalued, firstId, Integer.MAX_VALUE);
+            partitionTerms(name, bitmaps, requestContext, pivotFieldId, older, termPartitions, stackBuffer);
+            LOG.inc("gather>valueBits>terms");
+            if (termPartitions.size() > MAX_VALUE_BITS_PARTITIONS) {
+                LOG.inc("gather>valueBits>tooManyValues");
+                solutionLog.log(MiruSolutionLogLevel.INFO, "gather value bits exceeded {} values, falling back", MAX_VALUE_BITS_PARTITIONS);
+                return false;
+            }
+        }
+
+        List<ValuePartition<BM>> valued = Lists.newArrayListWithCapacity(termPartitions.size());
+        for (ValuePartition<BM> partition : termPartitions.values()) {
+            BM answered = partitionCounter ? bitmaps.and(Arrays.asList(partition.bitmap, answer)) : partition.bitmap;
+            if (!bitmaps.isEmpty(answered)) {
+                partition.id = descending ? bitmaps.lastSetBit(answered) : bitmaps.firstSetBit(answered);
+                if (includeCounts) {
+                    partition.count = partitionCounter
+                        ? bitmaps.cardinality(bitmaps.and(Arrays.asList(partition.bitmap, counter.get())))
+                        : bitmaps.cardinality(partition.bitmap);
+                }
+                valued.add(partition);
+            }
+        }
+        Collections.sort(valued, descending
+            ? (o1, o2) -> Integer.compare(o2.id, o1.id)
+            : (o1, o2) -> Integer.compare(o1.id, o2.id));
+
+        LOG.inc("gather>valueBits");
+        solutionLog.log(MiruSolutionLogLevel.INFO, "gather value bits bits:{} values:{} took {} millis.",
+            bits.length, valued.size(), System.currentTimeMillis() - start);
+
+        for (int i = 0; i < valued.size(); i++) {
+            ValuePartition<BM> partition = valued.get(i);
+            if (!idAndTermIdStream.stream(partition.id, partition.termId, includeCounts ? partition.count : -1)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Partitions the ids, which were indexed before the field gained value bits, by the field's terms in the primary index.
+     * Each id joins the partition of its term, or a new partition if no value bits share the term.
+     */
+    private <BM extends IBM, IBM> void partitionTerms(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, ?> requestContext,
+        int fieldId,
+        BM ids,
+        Map<MiruTermId, ValuePartition<BM>> termPartitions,
+        StackBuffer stackBuffer) throws Exception {
+
+        MiruFieldIndex<BM, IBM> primaryIndex = requestContext.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
+        List<MiruTermId> termIds = Lists.newArrayList();
+        primaryIndex.streamTermIdsForField(name, fieldId, null,
+            termId -> {
+                termIds.add(termId);
+                return true;
+            },
+            stackBuffer);
+
+        @SuppressWarnings("unchecked")
+        BitmapAndLastId<BM>[] results = new BitmapAndLastId[termIds.size()];
+        primaryIndex.multiGet(name, fieldId, termIds.toArray(new MiruTermId[0]), results, stackBuffer);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null || !results[i].isSet()) {
+                continue;
+            }
+            BM termIdsBitmap = bitmaps.and(Arrays.asList(ids, results[i].getBitmap()));
+            if (bitmaps.isEmpty(termIdsBitmap)) {
+                continue;
+            }
+            MiruTermId termId = termIds.get(i);
+            ValuePartition<BM> partition = termPartitions.get(termId);
+            if (partition != null) {
+                partition.bitmap = bitmaps.or(Arrays.asList(partition.bitmap, termIdsBitmap));
+            } else {
+                partition = new ValuePartition<>(termIdsBitmap, null);
+                partition.termId = termId;
+                termPartitions.put(termId, partition);
+            }
+        }
+    }
+
+    private static class ValuePartition<BM> {
+
+        private BM bitmap;
+        private final byte[] value;
+        private MiruTermId termId;
+        private int id;
+        private long count;
+
+        private ValuePartition(BM bitmap, byte[] value) {
+            this.bitmap = bitmap;
+            this.value = value;
+        }
+    }
 
     private <BM extends IBM, IBM, S extends MiruSipCursor<S>> void gatherActivityLookup(String name,
         MiruBitmaps<BM, IBM> bitmaps,
@@ -1106,6 +1363,12 @@ public class MiruAggregateUtil {
         int maxWildcardExpansion,
         StackBuffer stackBuffer)
         throws Exception {
+        if (termCollector == null && considerIfIndexIdGreaterThanN < 0 && largestIndex >= 0 && context.getCacheProvider() != null) {
+            MiruFilter cacheable = cacheableFilter(filter);
+            if (cacheable != null) {
+                return cachedFilter(name, bitmaps, context, filter, cacheable, solutionLog, largestIndex, maxWildcardExpansion, stackBuffer);
+            }
+        }
         return filterInOut(name,
             bitmaps,
             context,
@@ -1119,6 +1382,201 @@ public class MiruAggregateUtil {
             stackBuffer);
     }
 
+    /**
+     * Answers a repeated filter from the partition's filter cache, evaluating only the ids appended since the cached result
+     * was computed. The cached result excludes the inclusive index mask, which is applied on every read so that removals
+     * and unhides are always current. Cache ids include the cache version, so a repair of existing ids, which would leave
+     * the cached ranges stale, starts over from empty results.
+     */
+    private <BM extends IBM, IBM> BM cachedFilter(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, ?> context,
+        MiruFilter filter,
+        MiruFilter cacheable,
+        MiruSolutionLog solutionLog,
+        int largestIndex,
+        int maxWildcardExpansion,
+        StackBuffer stackBuffer) throws Exception {
+
+        CacheKeyBitmaps<BM, IBM> filterCache = filterCache(context);
+        byte[] cacheId = filterCacheId(cacheable, maxWildcardExpansion, filterCacheVersion(filterCache));
+
+        // read the last id before the bitmap, so the bitmap is always at least as current as the last id
+        int cachedLastId = filterCache.getLastId(cacheId);
+        BM answer = null;
+        if (cachedLastId >= 0) {
+            answer = filterCache.get(cacheId, stackBuffer);
+            if (answer == null) {
+                answer = bitmaps.create();
+            }
+        }
+
+        if (cachedLastId < largestIndex) {
+            long start = System.currentTimeMillis();
+            BM appended = filterInOut(name, bitmaps, context, cacheable, solutionLog, null, true, largestIndex, cachedLastId, maxWildcardExpansion,
+                stackBuffer);
+            if (cachedLastId >= 0) {
+                bitmaps.inPlaceRemoveRange(appended, 0, cachedLastId + 1);
+            }
+            bitmaps.inPlaceRemoveRange(appended, largestIndex + 1, Integer.MAX_VALUE);
+            filterCache.or(cacheId, appended, stackBuffer);
+            filterCache.setLastId(cacheId, largestIndex);
+            if (answer == null) {
+                answer = appended;
+                LOG.inc("filter>cache>miss");
+            } else {
+                bitmaps.inPlaceOr(answer, appended);
+                LOG.inc("filter>cache>append");
+            }
+            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: cache evaluated ids ({}, {}] in {} millis.",
+                cachedLastId, largestIndex, System.currentTimeMillis() - start);
+        } else {
+            if (cachedLastId > largestIndex) {
+                bitmaps.inPlaceRemoveRange(answer, largestIndex + 1, cachedLastId + 1);
+            }
+            LOG.inc("filter>cache>hit");
+            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: cache hit at lastId={}.", cachedLastId);
+        }
+
+        if (filter.inclusiveFilter) {
+            bitmaps.inPlaceAnd(answer, bitmaps.buildIndexMask(largestIndex, context.getRemovalIndex(), null, stackBuffer));
+        }
+        return answer;
+    }
+
+    /**
+     * Invalidates every cached filter result for the partition. Must be called once existing ids have been re-indexed or
+     * removed, since cached results are only ever extended with newly appended ids. Callers hold the partition's write
+     * permits, so the version is never bumped concurrently.
+     * <p>
+     * Cache ids lead with their version, so the results of every older version are then removed as one range. This also
+     * sweeps up results that a query still holding an older version wrote after a previous invalidation.
+     */
+    public static <BM extends IBM, IBM> void invalidateFilterCache(MiruRequestContext<BM, IBM, ?> context) throws Exception {
+        if (context.getCacheProvider() == null) {
+            return;
+        }
+        CacheKeyBitmaps<BM, IBM> filterCache = filterCache(context);
+        int version = filterCacheVersion(filterCache) + 1;
+        filterCache.setLastId(FILTER_CACHE_VERSION_ID, version);
+        filterCache.remove(FILTER_CACHE_ID_LENGTH, FilerIO.intBytes(0), FilerIO.intBytes(version));
+        LOG.inc("filter>cache>invalidate");
+    }
+
+    private static <BM extends IBM, IBM> CacheKeyBitmaps<BM, IBM> filterCache(MiruRequestContext<BM, IBM, ?> context) {
+        return context.getCacheProvider().getCacheKeyBitmaps(FILTER_CACHE_NAME,
+            -1,
+            FILTER_CACHE_MAX_HEAP_PRESSURE_IN_BYTES,
+            "cuckoo",
+            1d);
+    }
+
+    private static int filterCacheVersion(CacheKeyBitmaps<?, ?> filterCache) throws Exception {
+        return Math.max(filterCache.getLastId(FILTER_CACHE_VERSION_ID), 0);
+    }
+
+    /**
+     * @return the filter whose results may be cached, or null if the filter cannot be evaluated incrementally. An inclusive
+     * mask is only supported at the root of an "and" filter, where it can be stripped and reapplied on read.
+     */
+    static MiruFilter cacheableFilter(MiruFilter filter) {
+        boolean hasFieldFilters = filter.fieldFilters != null && !filter.fieldFilters.isEmpty();
+        boolean hasSubFilters = filter.subFilters != null && !filter.subFilters.isEmpty();
+        if (!hasFieldFilters && !hasSubFilters) {
+            return null;
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                if (hasInclusiveFilter(subFilter)) {
+                    return null;
+                }
+            }
+        }
+        if (!filter.inclusiveFilter) {
+            return filter;
+        } else if (filter.operation == MiruFilterOperation.and) {
+            return new MiruFilter(filter.operation, false, filter.fieldFilters, filter.subFilters);
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean hasInclusiveFilter(MiruFilter filter) {
+        if (filter.inclusiveFilter) {
+            return true;
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                if (hasInclusiveFilter(subFilter)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Canonicalizes the filter so that reordered "and" and "or" clauses, and reordered values within a field filter, share a cache id.
+     * The lower and upper bounds of a value bits range are never reordered. The cache id is the version followed by the
+     * hash of the canonical filter, so that all the results of a version sort together.
+     */
+    static byte[] filterCacheId(MiruFilter filter, int maxWildcardExpansion, int version) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append(maxWildcardExpansion).append(':');
+        canonicalize(filter, canonical);
+        return Bytes.concat(FilerIO.intBytes(version), Hashing.sha1().hashString(canonical, Charsets.UTF_8).asBytes());
+    }
+
+    private static void canonicalize(MiruFilter filter, StringBuilder canonical) {
+        boolean commutative = filter.operation != MiruFilterOperation.pButNotQ;
+        List<String> clauses = new ArrayList<>();
+        if (filter.fieldFilters != null) {
+            for (MiruFieldFilter fieldFilter : filter.fieldFilters) {
+                // range bounds are positional, so they keep their order and are tagged, the values of any other filter are a set
+                boolean range = fieldFilter.fieldType == MiruFieldType.valueBits;
+                List<String> values = new ArrayList<>();
+                if (fieldFilter.values != null) {
+                    for (int i = 0; i < fieldFilter.values.size(); i++) {
+                        StringBuilder parts = new StringBuilder();
+                        if (range) {
+                            parts.append(i == 0 ? "min" : "max").append(':');
+                        }
+                        for (String part : fieldFilter.values.get(i).parts) {
+                            parts.append(part.length()).append(':').append(part);
+                        }
+                        values.add(parts.toString());
+                    }
+                }
+                if (!range) {
+                    Collections.sort(values);
+                }
+                StringBuilder clause = new StringBuilder();
+                clause.append('f').append(fieldFilter.fieldType.name()).append(':')
+                    .append(fieldFilter.fieldName.length()).append(':').append(fieldFilter.fieldName)
+                    .append('[');
+                for (String value : values) {
+                    clause.append(value.length()).append(':').append(value);
+                }
+                clauses.add(clause.append(']').toString());
+            }
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                StringBuilder clause = new StringBuilder();
+                canonicalize(subFilter, clause.append('s'));
+                clauses.add(clause.toString());
+            }
+        }
+        if (commutative) {
+            Collections.sort(clauses);
+        }
+        canonical.append(filter.operation.name()).append(filter.inclusiveFilter ? '+' : '-').append('(');
+        for (String clause : clauses) {
+            canonical.append(clause.length()).append(':').append(clause);
+        }
+        canonical.append(')');
+    }
+
     private <BM extends IBM, IBM> BM filterInOut(String name,
         MiruBitmaps<BM, IBM> bitmaps,
         MiruRequestContext<BM, IBM, ?> context,
@@ -1136,14 +1594,29 @@ public class MiruAggregateUtil {
         MiruTermComposer termComposer = context.getTermComposer();
         MiruFieldIndexProvider<BM, IBM> fieldIndexProvider = context.getFieldIndexProvider();
         List<MiruTxIndex<IBM>> filterBitmaps = new ArrayList<>();
-        if (filter.inclusiveFilter) {
+        // "and" clauses are deferred to the planner so they can be evaluated most selective first
+        boolean plan = filter.operation == MiruFilterOperation.and;
+        List<FilterClause<BM, IBM>> clauses = plan ? new ArrayList<>() : null;
+        if (filter.inclusiveFilter && !plan) {
             filterBitmaps.add(new SimpleInvertedIndex<>(bitmaps.buildIndexMask(largestIndex, context.getRemovalIndex(), null, stackBuffer)));
         }
         if (filter.fieldFilters != null) {
             boolean abortIfEmpty = filter.operation == MiruFilterOperation.and;
             for (MiruFieldFilter fieldFilter : filter.fieldFilters) {
                 int fieldId = schema.getFieldId(fieldFilter.fieldName);
-                if (fieldId >= 0) {
+                if (fieldId >= 0 && fieldFilter.fieldType == MiruFieldType.valueBits) {
+                    long start = System.currentTimeMillis();
+                    BM range = filterValueBitsRange(name, bitmaps, context, fieldId, fieldFilter.values, stackBuffer);
+                    solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: fieldId={} value bits range took {} millis.",
+                        fieldId, System.currentTimeMillis() - start);
+                    if (abortIfEmpty && termCollector == null && bitmaps.isEmpty(range)) {
+                        return range;
+                    } else if (plan) {
+                        clauses.add(new FilterClause<>(fieldId, range, bitmaps.cardinality(range)));
+                    } else {
+                        filterBitmaps.add(new SimpleInvertedIndex<>(range));
+                    }
+                } else if (fieldId >= 0) {
                     MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldId);
                     final List<MiruTermId> fieldTermIds = new ArrayList<>();
                     boolean fieldTermIn = filter.operation == MiruFilterOperation.pButNotQ && !filterBitmaps.isEmpty() ? !termIn : termIn;
@@ -1178,18 +1651,29 @@ public class MiruAggregateUtil {
                     } else if (!fieldTermIds.isEmpty()) {
                         start = System.currentTimeMillis();
                         MiruTermId[] termIds = fieldTermIds.toArray(new MiruTermId[fieldTermIds.size()]);
-                        FieldMultiTermTxIndex<BM, IBM> multiTxIndex = new FieldMultiTermTxIndex<>(name, fieldIndex, fieldId, considerIfLastIdGreaterThanN);
-                        multiTxIndex.setTermIds(termIds);
-                        BM r = bitmaps.orMultiTx(multiTxIndex, stackBuffer);
-                        filterBitmaps.add(new SimpleInvertedIndex<>(r));
-                        solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: fieldId={} bitmaps={} aggregate took {} millis.",
-                            fieldId, fieldTermIds.size(), System.currentTimeMillis() - start);
+                        if (plan) {
+                            long estimate = estimateCardinality(fieldDefinition, fieldIndex, termIds, stackBuffer);
+                            clauses.add(new FilterClause<>(fieldId, fieldIndex, termIds, estimate));
+                            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: fieldId={} bitmaps={} estimate={} took {} millis.",
+                                fieldId, fieldTermIds.size(), estimate, System.currentTimeMillis() - start);
+                        } else {
+                            FieldMultiTermTxIndex<BM, IBM> multiTxIndex = new FieldMultiTermTxIndex<>(name, fieldIndex, fieldId, considerIfLastIdGreaterThanN);
+                            multiTxIndex.setTermIds(termIds);
+                            BM r = bitmaps.orMultiTx(multiTxIndex, stackBuffer);
+                            filterBitmaps.add(new SimpleInvertedIndex<>(r));
+                            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: fieldId={} bitmaps={} aggregate took {} millis.",
+                                fieldId, fieldTermIds.size(), System.currentTimeMillis() - start);
+                        }
                     }
                 } else {
                     solutionLog.log(MiruSolutionLogLevel.INFO, "schema lacks field definition for fieldName:" + fieldFilter.fieldName);
                 }
             }
         }
+        if (plan) {
+            return executeAndPlan(name, bitmaps, context, filter, solutionLog, termCollector, termIn, largestIndex, considerIfLastIdGreaterThanN,
+                maxWildcardExpansion, clauses, stackBuffer);
+        }
         if (filter.subFilters != null) {
             for (MiruFilter subFilter : filter.subFilters) {
                 boolean subTermIn = (filter.operation == MiruFilterOperation.pButNotQ && !filterBitmaps.isEmpty()) ? !termIn : termIn;
@@ -1201,6 +1685,321 @@ public class MiruAggregateUtil {
         return executeFilter(bitmaps, filter.operation, solutionLog, filterBitmaps, stackBuffer);
     }
 
+    /**
+     * Evaluates an "and" filter most selective clause first, restricting each later clause to the running intersection and
+     * stopping as soon as the intersection is empty. Sub-filters follow the field clauses, and the inclusive mask is applied last.
+     * When terms are being collected every sub-filter must still be visited, so an empty intersection does not stop evaluation.
+     */
+    private <BM extends IBM, IBM> BM executeAndPlan(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, ?> context,
+        MiruFilter filter,
+        MiruSolutionLog solutionLog,
+        Map<FieldAndTermId, MutableInt> termCollector,
+        boolean termIn,
+        int largestIndex,
+        int considerIfLastIdGreaterThanN,
+        int maxWildcardExpansion,
+        List<FilterClause<BM, IBM>> clauses,
+        StackBuffer stackBuffer) throws Exception {
+
+        // stable, so clauses without an estimate keep their declared order
+        Collections.sort(clauses);
+
+        boolean shortCircuit = termCollector == null;
+        BM answer = null;
+        for (FilterClause<BM, IBM> clause : clauses) {
+            if (answer != null && bitmaps.isEmpty(answer)) {
+                // only reachable while collecting terms, and the field clauses have already collected theirs
+                break;
+            }
+            long start = System.currentTimeMillis();
+            answer = clause.filter(name, bitmaps, answer, considerIfLastIdGreaterThanN, stackBuffer);
+            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: fieldId={} bitmaps={} estimate={} planned aggregate took {} millis.",
+                clause.fieldId, clause.termIds.length, clause.estimate, System.currentTimeMillis() - start);
+            if (shortCircuit && bitmaps.isEmpty(answer)) {
+                LOG.inc("filter>plan>shortCircuit");
+                return answer;
+            }
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                BM subStorage = filterInOut(name, bitmaps, context, subFilter, solutionLog,
+                    termCollector, termIn, largestIndex, considerIfLastIdGreaterThanN, maxWildcardExpansion, stackBuffer);
+                if (answer == null) {
+                    answer = subStorage;
+                } else {
+                    bitmaps.inPlaceAnd(answer, subStorage);
+                }
+                if (shortCircuit && bitmaps.isEmpty(answer)) {
+                    LOG.inc("filter>plan>shortCircuit");
+                    return answer;
+                }
+            }
+        }
+        if (filter.inclusiveFilter) {
+            IBM indexMask = bitmaps.buildIndexMask(largestIndex, context.getRemovalIndex(), null, stackBuffer);
+            if (answer == null) {
+                answer = bitmaps.copy(indexMask);
+            } else {
+                bitmaps.inPlaceAnd(answer, indexMask);
+            }
+        }
+        return answer != null ? answer : bitmaps.create();
+    }
+
+    /**
+     * Evaluates a range filter over a field's value bits, where the filter's values are the inclusive lower and upper bounds
+     * and a bound without parts is unbounded. Values compare as their packed bytes do, that is by length and then as unsigned
+     * big-endian bytes, so the bounds and the indexed values should share a fixed-width encoding. Each bound costs one pass
+     * over the bits from the most significant down, no matter how many distinct values fall within the range.
+     */
+    private <BM extends IBM, IBM> BM filterValueBitsRange(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, ?> context,
+        int fieldId,
+        List<MiruValue> values,
+        StackBuffer stackBuffer) throws Exception {
+
+        MiruFieldIndex<BM, IBM> valueBitsIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.valueBits);
+        List<MiruTermId> bitTermIds = Lists.newArrayList();
+        valueBitsIndex.streamTermIdsForField(name, fieldId, null,
+            termId -> {
+                if (ValueBitsIndex.isValueBit(termId)) {
+                    bitTermIds.add(termId);
+                }
+                return true;
+            },
+            stackBuffer);
+
+        @SuppressWarnings("unchecked")
+        BitmapAndLastId<BM>[] bitBitmaps = new BitmapAndLastId[bitTermIds.size()];
+        valueBitsIndex.multiGet(name, fieldId, bitTermIds.toArray(new MiruTermId[0]), bitBitmaps, stackBuffer);
+
+        int maxBit = -1;
+        for (MiruTermId bitTermId : bitTermIds) {
+            maxBit = Math.max(maxBit, ValueBitsIndex.bytesShort(bitTermId.getBytes()));
+        }
+
+        MiruFieldDefinition fieldDefinition = context.getSchema().getFieldDefinition(fieldId);
+        byte[] lower = packedBound(context, fieldDefinition, values, 0, stackBuffer);
+        byte[] upper = packedBound(context, fieldDefinition, values, 1, stackBuffer);
+        int length = Math.max(Math.max(2, maxBit / 8 + 1), Math.max(lower != null ? lower.length : 0, upper != null ? upper.length : 0));
+
+        List<BM> slices = Lists.newArrayList(Collections.<BM>nCopies(length * 8, null));
+        for (int i = 0; i < bitBitmaps.length; i++) {
+            if (bitBitmaps[i] != null && bitBitmaps[i].isSet()) {
+                slices.set(ValueBitsIndex.bytesShort(bitTermIds.get(i).getBytes()), bitBitmaps[i].getBitmap());
+            }
+        }
+
+        // every value has a non-zero length, so the length bits identify the activities which have a value
+        List<IBM> lengthSlices = Lists.newArrayList();
+        for (int bit = 0; bit < 16; bit++) {
+            if (slices.get(bit) != null) {
+                lengthSlices.add(slices.get(bit));
+            }
+        }
+        BM valued = bitmaps.or(lengthSlices);
+        BM answer = valued;
+        if (lower != null && !bitmaps.isEmpty(answer)) {
+            answer = compareValueBits(bitmaps, slices, Arrays.copyOf(lower, length), answer, true);
+        }
+        if (upper != null && !bitmaps.isEmpty(answer)) {
+            answer = compareValueBits(bitmaps, slices, Arrays.copyOf(upper, length), answer, false);
+        }
+
+        // ids before the first with value bits were indexed as terms, unless a repair has since given them bits
+        int firstId = valueBitsFirstId(name, valueBitsIndex, fieldId, stackBuffer);
+        if (firstId > 0) {
+            BM termAnswer = filterTermsRange(name, bitmaps, context, fieldId, lower, upper, stackBuffer);
+            bitmaps.inPlaceRemoveRange(termAnswer, firstId, Integer.MAX_VALUE);
+            bitmaps.inPlaceAndNot(termAnswer, valued);
+            if (!bitmaps.isEmpty(termAnswer)) {
+                answer = bitmaps.or(Arrays.asList(answer, termAnswer));
+            }
+            LOG.inc("filter>valueBits>range>terms");
+        }
+        LOG.inc("filter>valueBits>range");
+        return answer;
+    }
+
+    /**
+     * Evaluates a range filter over the field's terms in the primary index, comparing each term's packed value to the bounds.
+     */
+    private <BM extends IBM, IBM> BM filterTermsRange(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, ?> context,
+        int fieldId,
+        byte[] lower,
+        byte[] upper,
+        StackBuffer stackBuffer) throws Exception {
+
+        MiruFieldIndex<BM, IBM> primaryIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
+        List<MiruTermId> inRange = Lists.newArrayList();
+        primaryIndex.streamTermIdsForField(name, fieldId, null,
+            termId -> {
+                byte[] packed = ValueBitsIndex.packValue(termId.getBytes());
+                if ((lower == null || comparePacked(packed, lower) >= 0) && (upper == null || comparePacked(packed, upper) <= 0)) {
+                    inRange.add(termId);
+                }
+                return true;
+            },
+            stackBuffer);
+        if (inRange.isEmpty()) {
+            return bitmaps.create();
+        }
+
+        @SuppressWarnings("unchecked")
+        BitmapAndLastId<BM>[] results = new BitmapAndLastId[inRange.size()];
+        primaryIndex.multiGet(name, fieldId, inRange.toArray(new MiruTermId[0]), results, stackBuffer);
+        List<IBM> termBitmaps = Lists.newArrayListWithCapacity(results.length);
+        for (BitmapAndLastId<BM> result : results) {
+            if (result != null && result.isSet()) {
+                termBitmaps.add(result.getBitmap());
+            }
+        }
+        return termBitmaps.isEmpty() ? bitmaps.create() : bitmaps.or(termBitmaps);
+    }
+
+    /**
+     * Orders packed values as their value bits do, as unsigned bytes with the shorter value padded with zeros. Since a packed
+     * value starts with its length, this orders by length and then by bytes.
+     */
+    static int comparePacked(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.max(a.length, b.length); i++) {
+            int c = Integer.compare(i < a.length ? a[i] & 0xFF : 0, i < b.length ? b[i] & 0xFF : 0);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the first id whose value bits are complete for the field, or {@link Integer#MAX_VALUE} if there is none, as in a
+     * partition indexed before the field gained value bits
+     */
+    private static <BM extends IBM, IBM> int valueBitsFirstId(String name,
+        MiruFieldIndex<BM, IBM> valueBitsIndex,
+        int fieldId,
+        StackBuffer stackBuffer) throws Exception {
+        MiruInvertedIndex<BM, IBM> firstIdIndex = valueBitsIndex.get(name, fieldId, ValueBitsIndex.FIRST_ID_TERM_ID);
+        int firstId = firstIdIndex != null ? firstIdIndex.lastId(stackBuffer) : -1;
+        return firstId < 0 ? Integer.MAX_VALUE : firstId;
+    }
+
+    private byte[] packedBound(MiruRequestContext<?, ?, ?> context,
+        MiruFieldDefinition fieldDefinition,
+        List<MiruValue> values,
+        int index,
+        StackBuffer stackBuffer) throws Exception {
+        if (values == null || values.size() <= index || values.get(index).parts == null || values.get(index).parts.length == 0) {
+            return null;
+        }
+        MiruTermId termId = context.getTermComposer().compose(context.getSchema(), fieldDefinition, stackBuffer, values.get(index).parts);
+        return ValueBitsIndex.packValue(termId.getBytes());
+    }
+
+    /**
+     * @return the candidates whose value is greater than or equal to the bound, or if not greater, less than or equal to it
+     */
+    private <BM extends IBM, IBM> BM compareValueBits(MiruBitmaps<BM, IBM> bitmaps, List<BM> slices, byte[] bound, BM candidates, boolean greater) {
+        // candidates which differ from the bound at a more significant bit are decided, and the rest are still equal
+        BM decided = bitmaps.create();
+        BM equal = bitmaps.copy(candidates);
+        for (int i = 0; i < bound.length && !bitmaps.isEmpty(equal); i++) {
+            for (int b = 7; b >= 0; b--) {
+                BM slice = slices.get(i * 8 + b);
+                if ((bound[i] & (1 << b)) != 0) {
+                    if (slice == null) {
+                        if (!greater) {
+                            bitmaps.inPlaceOr(decided, equal);
+                        }
+                        return decided;
+                    }
+                    if (!greater) {
+                        bitmaps.inPlaceOr(decided, bitmaps.andNot(equal, slice));
+                    }
+                    bitmaps.inPlaceAnd(equal, slice);
+                } else if (slice != null) {
+                    if (greater) {
+                        bitmaps.inPlaceOr(decided, bitmaps.and(Arrays.asList(equal, slice)));
+                    }
+                    bitmaps.inPlaceAndNot(equal, slice);
+                }
+            }
+        }
+        bitmaps.inPlaceOr(decided, equal);
+        return decided;
+    }
+
+    private <BM extends IBM, IBM> long estimateCardinality(MiruFieldDefinition fieldDefinition,
+        MiruFieldIndex<BM, IBM> fieldIndex,
+        MiruTermId[] termIds,
+        StackBuffer stackBuffer) throws Exception {
+        if (!fieldDefinition.type.hasFeature(MiruFieldDefinition.Feature.cardinality) || termIds.length > MAX_ESTIMATED_TERMS) {
+            return Long.MAX_VALUE;
+        }
+        long estimate = 0;
+        for (MiruTermId termId : termIds) {
+            estimate += Math.max(0, fieldIndex.getGlobalCardinality(fieldDefinition, termId, stackBuffer));
+        }
+        return estimate;
+    }
+
+    private static class FilterClause<BM extends IBM, IBM> implements Comparable<FilterClause<BM, IBM>> {
+
+        private final int fieldId;
+        private final MiruFieldIndex<BM, IBM> fieldIndex;
+        private final MiruTermId[] termIds;
+        private final long estimate;
+        private final BM bitmap;
+
+        private FilterClause(int fieldId, MiruFieldIndex<BM, IBM> fieldIndex, MiruTermId[] termIds, long estimate) {
+            this.fieldId = fieldId;
+            this.fieldIndex = fieldIndex;
+            this.termIds = termIds;
+            this.estimate = estimate;
+            this.bitmap = null;
+        }
+
+        private FilterClause(int fieldId, BM bitmap, long estimate) {
+            this.fieldId = fieldId;
+            this.fieldIndex = null;
+            this.termIds = new MiruTermId[0];
+            this.estimate = estimate;
+            this.bitmap = bitmap;
+        }
+
+        private BM filter(String name, MiruBitmaps<BM, IBM> bitmaps, BM mask, int considerIfLastIdGreaterThanN, StackBuffer stackBuffer) throws Exception {
+            if (bitmap != null) {
+                return mask == null ? bitmap : bitmaps.and(Arrays.asList(mask, bitmap));
+            }
+            if (mask == null) {
+                FieldMultiTermTxIndex<BM, IBM> multiTxIndex = new FieldMultiTermTxIndex<>(name, fieldIndex, fieldId, considerIfLastIdGreaterThanN);
+                multiTxIndex.setTermIds(termIds);
+                return bitmaps.orMultiTx(multiTxIndex, stackBuffer);
+            }
+
+            // terms whose last id precedes the first surviving id cannot intersect the mask
+            int considerIfLastIdGreaterThan = Math.max(considerIfLastIdGreaterThanN, bitmaps.firstSetBit(mask) - 1);
+            FieldMultiTermTxIndex<BM, IBM> multiTxIndex = new FieldMultiTermTxIndex<>(name, fieldIndex, fieldId, considerIfLastIdGreaterThan);
+            multiTxIndex.setTermIds(termIds);
+            BM answer = bitmaps.create();
+            bitmaps.multiTx(multiTxIndex, (index, lastId, bitmap) -> {
+                bitmaps.inPlaceAnd(bitmap, mask);
+                bitmaps.inPlaceOr(answer, bitmap);
+            }, stackBuffer);
+            return answer;
+        }
+
+        @Override
+        public int compareTo(FilterClause<BM, IBM> o) {
+            return Long.compare(estimate, o.estimate);
+        }
+    }
+
     private void collectTerm(int fieldId,
         MiruTermId termId,
         boolean fieldTermIn,
@@ -25,4 +25,12 @@ public interface MiruAnswerEvaluator<A> {
      * @return true if parallel solver should be used, or false for the serial solver
      */
     boolean useParallelSolver();
+
+    /**
+     * Specifies whether partition answers may be merged in the order they complete rather than in partition order. Only answers whose
+     * merge is commutative and which do not rely on the last answer for their reports should opt in. Partitions which have not completed
+     * within the merge budget are reported as incomplete.
+     * @return true to solve all partitions in parallel and merge in completion order, or false to merge in partition order
+     */
+    boolean mergeInCompletionOrder();
 }
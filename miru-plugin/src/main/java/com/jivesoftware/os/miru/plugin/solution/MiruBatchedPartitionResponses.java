@@ -0,0 +1,32 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The responses to a {@link MiruBatchedRequestAndReports}, in the same order as its partition ids. A null response means the
+ * partition could not be solved on the host, and should be solved by another replica.
+ *
+ * @param <A>
+ */
+public class MiruBatchedPartitionResponses<A> implements Serializable {
+
+    public final int[] partitionIds;
+    public final List<MiruPartitionResponse<A>> responses;
+
+    @JsonCreator
+    public MiruBatchedPartitionResponses(
+        @JsonProperty("partitionIds") int[] partitionIds,
+        @JsonProperty("responses") List<MiruPartitionResponse<A>> responses) {
+        this.partitionIds = partitionIds;
+        this.responses = responses;
+    }
+
+    @Override
+    public String toString() {
+        return "MiruBatchedPartitionResponses{" + "partitionIds=" + partitionIds.length + ", responses=" + responses.size() + '}';
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Solves the partitions of a {@link MiruBatchedRequestAndReports} concurrently on the local host.
+ */
+public class MiruBatchedPartitions {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    public interface PartitionAsker<Q, A, P> {
+
+        MiruPartitionResponse<A> ask(MiruPartitionId partitionId, MiruRequestAndReport<Q, P> requestAndReport) throws Exception;
+    }
+
+    private MiruBatchedPartitions() {
+    }
+
+    /**
+     * @return the response for each partition in request order, where a partition that is unavailable or fails is answered
+     * with null so the caller can solve it with another replica
+     */
+    public static <Q, A, P> MiruBatchedPartitionResponses<A> askImmediate(MiruBatchedRequestAndReports<Q, P> requestAndReports,
+        Executor executor,
+        PartitionAsker<Q, A, P> asker) throws InterruptedException {
+
+        int[] partitionIds = requestAndReports.partitionIds;
+        ExecutorCompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        @SuppressWarnings("unchecked")
+        MiruPartitionResponse<A>[] responses = new MiruPartitionResponse[partitionIds.length];
+        List<Future<Integer>> futures = new ArrayList<>(partitionIds.length);
+        try {
+            for (int i = 0; i < partitionIds.length; i++) {
+                int index = i;
+                MiruPartitionId partitionId = MiruPartitionId.of(partitionIds[i]);
+                MiruRequestAndReport<Q, P> requestAndReport = new MiruRequestAndReport<>(requestAndReports.request, requestAndReports.reports.get(i));
+                futures.add(completionService.submit(() -> {
+                    try {
+                        responses[index] = asker.ask(partitionId, requestAndReport);
+                    } catch (MiruPartitionUnavailableException e) {
+                        LOG.inc("batched>unavailable");
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        LOG.error("Failed to solve batched partition: {} for tenant: {}",
+                            new Object[] { partitionId, requestAndReports.request.tenantId }, e);
+                        LOG.inc("batched>failed");
+                    }
+                    return index;
+                }));
+            }
+            for (int i = 0; i < partitionIds.length; i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    LOG.error("Failed to solve batched partition for tenant: {}", new Object[] { requestAndReports.request.tenantId }, e.getCause());
+                }
+            }
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        LOG.inc("batched>partitions", partitionIds.length);
+        return new MiruBatchedPartitionResponses<>(partitionIds, Arrays.asList(responses));
+    }
+}
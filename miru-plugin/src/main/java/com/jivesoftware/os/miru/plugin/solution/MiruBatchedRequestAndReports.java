@@ -0,0 +1,36 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A request to be solved against several partitions on the same host, with the report for each partition in the same order
+ * as the partition ids.
+ *
+ * @param <Q>
+ * @param <R>
+ */
+public class MiruBatchedRequestAndReports<Q, R> implements Serializable {
+
+    public final MiruRequest<Q> request;
+    public final int[] partitionIds;
+    public final List<R> reports;
+
+    @JsonCreator
+    public MiruBatchedRequestAndReports(
+        @JsonProperty("request") MiruRequest<Q> request,
+        @JsonProperty("partitionIds") int[] partitionIds,
+        @JsonProperty("reports") List<R> reports) {
+        this.request = request;
+        this.partitionIds = partitionIds;
+        this.reports = reports;
+    }
+
+    @Override
+    public String toString() {
+        return "MiruBatchedRequestAndReports{" + "request=" + request + ", partitionIds=" + partitionIds.length + ", reports=" + reports + '}';
+    }
+
+}
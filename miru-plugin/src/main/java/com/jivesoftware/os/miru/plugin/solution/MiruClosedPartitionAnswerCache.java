@@ -0,0 +1,106 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.CacheKeyValues;
+import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Caches the local answers of a question for partitions whose writers have closed. A partition's writers only close once the
+ * end of its stream has been sipped and its settle threshold has passed, after which its indexes can no longer change, so an
+ * answer computed for a given query and authz expression remains valid for the life of the partition's context, and a repeated
+ * query is answered from the partition's persistent plugin cache.
+ * <p>
+ * Partitions with open writers, including those which have sipped the end of their stream but may still receive late
+ * activities, and contexts without a cache provider, are always answered directly.
+ */
+public class MiruClosedPartitionAnswerCache<A> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private static final byte[] ANSWER_KEY = { 0 };
+    private static final long MAX_HEAP_PRESSURE_IN_BYTES = 10 * 1024 * 1024;
+    private static final ObjectMapper MAPPER;
+
+    static {
+        MAPPER = new ObjectMapper();
+        MAPPER.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        MAPPER.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+        MAPPER.registerModule(new GuavaModule());
+    }
+
+    public interface Answerer<A> {
+
+        MiruPartitionResponse<A> answer() throws Exception;
+    }
+
+    private final String name;
+    private final Class<A> answerClass;
+
+    public MiruClosedPartitionAnswerCache(String name, Class<A> answerClass) {
+        this.name = name;
+        this.answerClass = answerClass;
+    }
+
+    public <BM extends IBM, IBM, S extends MiruSipCursor<S>> MiruPartitionResponse<A> askLocal(MiruRequestContext<BM, IBM, S> context,
+        MiruRequest<?> request,
+        StackBuffer stackBuffer,
+        Answerer<A> answerer) throws Exception {
+
+        MiruPluginCacheProvider<BM, IBM> cacheProvider = context.getCacheProvider();
+        if (cacheProvider == null || !context.isClosed()) {
+            return answerer.answer();
+        }
+
+        CacheKeyValues answerCache = cacheProvider.getKeyValues("answer-" + name, 4, true, MAX_HEAP_PRESSURE_IN_BYTES, "cuckoo", 0d);
+        byte[] cacheId = answerCacheId(request);
+
+        byte[][] cached = new byte[1][];
+        answerCache.get(cacheId, new byte[][] { ANSWER_KEY }, (index, value) -> {
+            if (value != null) {
+                byte[] bytes = new byte[value.remaining()];
+                value.get(bytes);
+                cached[0] = bytes;
+            }
+            return true;
+        }, stackBuffer);
+
+        if (cached[0] != null) {
+            LOG.inc("answerCache>" + name + ">hit");
+            MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
+            solutionLog.log(MiruSolutionLogLevel.INFO, "{} answered from closed partition cache.", name);
+            return new MiruPartitionResponse<>(MAPPER.readValue(Snappy.uncompress(cached[0]), answerClass), solutionLog.asList());
+        }
+
+        MiruPartitionResponse<A> response = answerer.answer();
+        if (response.answer != null) {
+            byte[] bytes = Snappy.compress(MAPPER.writeValueAsBytes(response.answer));
+            answerCache.put(cacheId, new byte[][] { ANSWER_KEY }, new byte[][] { bytes }, false, false, stackBuffer);
+            LOG.inc("answerCache>" + name + ">miss");
+        }
+        return response;
+    }
+
+    /**
+     * The cache id hashes the query and the authz expression, which together determine the answer. Properties are written in
+     * alphabetical order so that equal queries always share a cache id, while map and list order is retained because it
+     * determines the order of the answer.
+     */
+    static byte[] answerCacheId(MiruRequest<?> request) throws Exception {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putBytes(MAPPER.writeValueAsBytes(request.query));
+        hasher.putByte((byte) 0);
+        hasher.putBytes(MAPPER.writeValueAsBytes(request.authzExpression));
+        return hasher.hash().asBytes();
+    }
+}
@@ -0,0 +1,134 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
+import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+
+/**
+ * Defers the time/version and gathered field lookups for a result set until its final ids are known, then fetches them for
+ * all ids at once in ascending id order, using one time/version multi-get and one activity index getAll per gathered field.
+ * <p>
+ * Callers {@link #add(int)} each result id and hold onto the returned slot, call {@link #gather} once, and then read each
+ * slot's time/version and values.
+ */
+public class MiruDeferredGather {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final String name;
+    private final MiruFieldDefinition[] gatherFieldDefinitions;
+    private final boolean gatherTimeVersionRealtime;
+
+    private final TIntIntHashMap idToSlot = new TIntIntHashMap(10, 0.5f, -1, -1);
+    private final TIntArrayList ids = new TIntArrayList();
+
+    private TimeVersionRealtime[] timeVersionRealtimes;
+    private MiruValue[][][] values;
+
+    public MiruDeferredGather(String name, MiruFieldDefinition[] gatherFieldDefinitions, boolean gatherTimeVersionRealtime) {
+        this.name = name;
+        this.gatherFieldDefinitions = gatherFieldDefinitions;
+        this.gatherTimeVersionRealtime = gatherTimeVersionRealtime;
+    }
+
+    /**
+     * @return the slot from which the id's time/version and values can be read after {@link #gather}
+     */
+    public int add(int id) {
+        int slot = idToSlot.get(id);
+        if (slot == -1) {
+            slot = ids.size();
+            idToSlot.put(id, slot);
+            ids.add(id);
+        }
+        return slot;
+    }
+
+    /**
+     * @return the slot for an id that was already added, or -1 if it was not
+     */
+    public int getSlot(int id) {
+        return idToSlot.get(id);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public <BM extends IBM, IBM> void gather(MiruRequestContext<BM, IBM, ?> requestContext, StackBuffer stackBuffer) throws Exception {
+        int count = ids.size();
+        timeVersionRealtimes = new TimeVersionRealtime[count];
+        values = new MiruValue[count][][];
+        if (count == 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int[] sortedIds = ids.toArray();
+        Arrays.sort(sortedIds);
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = idToSlot.get(sortedIds[i]);
+        }
+
+        MiruActivityIndex activityIndex = requestContext.getActivityIndex();
+        if (gatherTimeVersionRealtime) {
+            TimeVersionRealtime[] sortedTimeVersionRealtimes = activityIndex.getAllTimeVersionRealtime(name, Arrays.copyOf(sortedIds, count), stackBuffer);
+            for (int i = 0; i < count; i++) {
+                timeVersionRealtimes[slots[i]] = sortedTimeVersionRealtimes[i];
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            values[i] = new MiruValue[gatherFieldDefinitions.length][];
+        }
+        MiruSchema schema = requestContext.getSchema();
+        MiruTermComposer termComposer = requestContext.getTermComposer();
+        for (int j = 0; j < gatherFieldDefinitions.length; j++) {
+            MiruFieldDefinition gatherFieldDefinition = gatherFieldDefinitions[j];
+            MiruTermId[][] termIds = activityIndex.getAll(name, Arrays.copyOf(sortedIds, count), gatherFieldDefinition, stackBuffer);
+            if (termIds == null) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                if (termIds[i] != null) {
+                    MiruValue[] gathered = new MiruValue[termIds[i].length];
+                    for (int k = 0; k < gathered.length; k++) {
+                        gathered[k] = new MiruValue(termComposer.decompose(schema, gatherFieldDefinition, stackBuffer, termIds[i][k]));
+                    }
+                    values[slots[i]][j] = gathered;
+                }
+            }
+        }
+
+        LOG.inc("deferredGather>ids", count);
+        LOG.inc("deferredGather>fields", gatherFieldDefinitions.length);
+        LOG.inc("deferredGather>" + name + ">ids", count);
+        LOG.debug("Deferred gather name:{} ids:{} fields:{} took {} ms", name, count, gatherFieldDefinitions.length, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the time/version for the slot, or null if it was not gathered or the activity is missing
+     */
+    public TimeVersionRealtime getTimeVersionRealtime(int slot) {
+        return timeVersionRealtimes[slot];
+    }
+
+    /**
+     * @return the values for each gathered field, where a field is null if the activity had no terms for it
+     */
+    public MiruValue[][] getValues(int slot) {
+        return values[slot];
+    }
+}
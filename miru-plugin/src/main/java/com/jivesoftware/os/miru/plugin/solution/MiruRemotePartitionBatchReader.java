@@ -0,0 +1,19 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+
+/**
+ * Reads the answers for several partitions of the same request from a remote host in a single call.
+ */
+public interface MiruRemotePartitionBatchReader {
+
+    <Q, A, P> MiruBatchedPartitionResponses<A> readBatch(String queryKey,
+        MiruHost host,
+        String endpoint,
+        MiruBatchedRequestAndReports<Q, P> requestAndReports,
+        EndPointMetrics endPointMetrics)
+        throws MiruQueryServiceException, MiruPartitionUnavailableException;
+}
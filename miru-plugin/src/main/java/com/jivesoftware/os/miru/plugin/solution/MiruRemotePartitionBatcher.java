@@ -0,0 +1,221 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Coalesces concurrent remote asks for the same request against the same host into a single batched call, so that a tenant
+ * with many partitions on one host pays for one round trip and one pack and unpack rather than one per partition.
+ * <p>
+ * The first ask for a request and host opens a batch and waits up to the batch window for the asks of the request's other
+ * partitions, unless the batch fills first. The batch is then sent to the host, which solves its partitions concurrently, and
+ * each ask receives the response for its own partition. A partition the host could not solve fails its ask as unavailable,
+ * so the solver moves on to another replica as it would for a single partition.
+ * <p>
+ * The batch is sent from the batch executor rather than from any asking thread, so an ask that is cancelled or times out
+ * only abandons its own slot and never fails the shared call for the asks that are still waiting.
+ */
+public class MiruRemotePartitionBatcher<Q, A, P> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final String queryKey;
+    private final MiruRemotePartitionBatchReader batchReader;
+    private final String batchEndpoint;
+    private final EndPointMetrics endPointMetrics;
+    private final ExecutorService batchExecutor;
+    private final long batchWindowMillis;
+    private final int maxBatchSize;
+    private final long askTimeoutMillis;
+    private final ConcurrentMap<BatchKey, Batch> openBatches = Maps.newConcurrentMap();
+
+    public MiruRemotePartitionBatcher(String queryKey,
+        MiruRemotePartitionBatchReader batchReader,
+        String batchEndpoint,
+        EndPointMetrics endPointMetrics,
+        ExecutorService batchExecutor,
+        long batchWindowMillis,
+        int maxBatchSize,
+        long askTimeoutMillis) {
+        this.queryKey = queryKey;
+        this.batchReader = batchReader;
+        this.batchEndpoint = batchEndpoint;
+        this.endPointMetrics = endPointMetrics;
+        this.batchExecutor = batchExecutor;
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.askTimeoutMillis = askTimeoutMillis;
+    }
+
+    public MiruPartitionResponse<A> askRemote(MiruHost host,
+        MiruPartitionId partitionId,
+        MiruRequest<Q> request,
+        Optional<P> report) throws MiruQueryServiceException {
+
+        BatchKey key = new BatchKey(host, request);
+        Batch batch;
+        int slot;
+        while (true) {
+            batch = openBatches.computeIfAbsent(key, k -> new Batch(request));
+            slot = batch.add(partitionId, report.orNull());
+            if (slot >= 0) {
+                break;
+            }
+            openBatches.remove(key, batch);
+        }
+
+        if (slot == 0) {
+            Batch sending = batch;
+            try {
+                batchExecutor.submit(() -> send(key, sending));
+            } catch (RejectedExecutionException e) {
+                openBatches.remove(key, batch);
+                batch.complete(null, e);
+            }
+        }
+        return batch.await(slot, partitionId, host);
+    }
+
+    private void send(BatchKey key, Batch batch) {
+        MiruBatchedPartitionResponses<A> responses = null;
+        Exception failure = null;
+        try {
+            batch.awaitFull();
+            MiruBatchedRequestAndReports<Q, P> requestAndReports = batch.seal();
+            responses = batchReader.readBatch(queryKey, key.host, batchEndpoint, requestAndReports, endPointMetrics);
+            LOG.inc("batcher>" + queryKey + ">batches");
+            LOG.inc("batcher>" + queryKey + ">partitions", requestAndReports.partitionIds.length);
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            openBatches.remove(key, batch);
+            batch.complete(responses, failure);
+        }
+    }
+
+    private class Batch {
+
+        private final MiruRequest<Q> request;
+        private final List<Integer> partitionIds = Lists.newArrayList();
+        private final List<P> reports = Lists.newArrayList();
+        private boolean sealed;
+        private boolean done;
+        private MiruBatchedPartitionResponses<A> responses;
+        private Exception failure;
+
+        private Batch(MiruRequest<Q> request) {
+            this.request = request;
+        }
+
+        private synchronized int add(MiruPartitionId partitionId, P report) {
+            if (sealed || partitionIds.size() >= maxBatchSize) {
+                return -1;
+            }
+            partitionIds.add(partitionId.getId());
+            reports.add(report);
+            notifyAll();
+            return partitionIds.size() - 1;
+        }
+
+        private synchronized void awaitFull() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + batchWindowMillis;
+            while (partitionIds.size() < maxBatchSize) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+        }
+
+        private synchronized MiruBatchedRequestAndReports<Q, P> seal() {
+            sealed = true;
+            int[] ids = new int[partitionIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = partitionIds.get(i);
+            }
+            return new MiruBatchedRequestAndReports<>(request, ids, Lists.newArrayList(reports));
+        }
+
+        private synchronized void complete(MiruBatchedPartitionResponses<A> responses, Exception failure) {
+            this.sealed = true;
+            this.done = true;
+            this.responses = responses;
+            this.failure = failure;
+            notifyAll();
+        }
+
+        private synchronized MiruPartitionResponse<A> await(int slot, MiruPartitionId partitionId, MiruHost host) throws MiruQueryServiceException {
+            long deadline = askTimeoutMillis > 0 ? System.currentTimeMillis() + askTimeoutMillis : Long.MAX_VALUE;
+            while (!done) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    LOG.inc("batcher>" + queryKey + ">timeout");
+                    throw new MiruPartitionUnavailableException("Timed out awaiting batch for host: " + host + " partition: " + partitionId);
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MiruQueryServiceException("Interrupted while awaiting batch for host: " + host, e);
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof MiruQueryServiceException) {
+                    throw (MiruQueryServiceException) failure;
+                } else if (failure instanceof MiruPartitionUnavailableException) {
+                    throw (MiruPartitionUnavailableException) failure;
+                }
+                throw new MiruQueryServiceException("Failed remote batch read for host: " + host, failure);
+            }
+            MiruPartitionResponse<A> response = slot < responses.responses.size() ? responses.responses.get(slot) : null;
+            if (response == null) {
+                throw new MiruPartitionUnavailableException("Remote partition is unavailable for host: " + host + " partition: " + partitionId);
+            }
+            return response;
+        }
+    }
+
+    private static class BatchKey {
+
+        private final MiruHost host;
+        private final MiruRequest<?> request;
+
+        private BatchKey(MiruHost host, MiruRequest<?> request) {
+            this.host = host;
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            BatchKey batchKey = (BatchKey) o;
+
+            // asks belong to the same batch only when they come from the same request instance
+            return request == batchKey.request && host.equals(batchKey.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * host.hashCode() + System.identityHashCode(request);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.jivesoftware.os.miru.plugin.query;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ *
+ */
+public class MiruHostLatenciesTest {
+
+    @Test
+    public void testDefaultUntilRecorded() throws Exception {
+        MiruHostLatencies hostLatencies = new MiruHostLatencies(10, 95f, 60_000);
+        assertEquals(hostLatencies.percentile(1_234), 1_234);
+
+        hostLatencies.record("a", 7);
+        assertEquals(hostLatencies.percentile(1_234), 7);
+    }
+
+    @Test
+    public void testPercentileMergesHosts() throws Exception {
+        MiruHostLatencies hostLatencies = new MiruHostLatencies(100, 95f, 60_000);
+        for (int i = 1; i <= 50; i++) {
+            hostLatencies.record("a", i);
+            hostLatencies.record("b", 50 + i);
+        }
+        // the merged window is 1..100, so the 95th percentile is the 96th smallest
+        assertEquals(hostLatencies.percentile(0), 96);
+    }
+
+    @Test
+    public void testWindowSlides() throws Exception {
+        MiruHostLatencies hostLatencies = new MiruHostLatencies(10, 50f, 60_000);
+        for (int i = 1; i <= 20; i++) {
+            hostLatencies.record("a", i);
+        }
+        // only 11..20 remain in the window
+        assertEquals(hostLatencies.percentile(0), 16);
+
+        for (int i = 0; i < 10; i++) {
+            hostLatencies.record("a", 1_000);
+        }
+        assertEquals(hostLatencies.percentile(0), 1_000);
+    }
+
+    @Test
+    public void testIdleHostsAreEvicted() throws Exception {
+        MiruHostLatencies hostLatencies = new MiruHostLatencies(10, 50f, 50);
+        hostLatencies.record("a", 100);
+        assertEquals(hostLatencies.percentile(0), 100);
+
+        Thread.sleep(200);
+        assertEquals(hostLatencies.percentile(0), 0);
+    }
+}
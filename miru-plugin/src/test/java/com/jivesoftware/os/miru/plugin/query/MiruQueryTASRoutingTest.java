@@ -0,0 +1,61 @@
+package com.jivesoftware.os.miru.plugin.query;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.routing.bird.http.client.TailAtScaleStrategy;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ *
+ */
+public class MiruQueryTASRoutingTest {
+
+    private final MiruTenantIdAndFamily tenantA = new MiruTenantIdAndFamily(new MiruTenantId("a".getBytes()), "reader");
+    private final MiruTenantIdAndFamily tenantB = new MiruTenantIdAndFamily(new MiruTenantId("b".getBytes()), "reader");
+
+    @Test
+    public void testStrategyIsRetainedPerTenantAndFamily() throws Exception {
+        MiruQueryTASRouting routing = routing(10, 60_000);
+
+        TailAtScaleStrategy strategy = routing.getTenantStrategy(tenantA);
+        assertSame(routing.getTenantStrategy(new MiruTenantIdAndFamily(new MiruTenantId("a".getBytes()), "reader")), strategy);
+        assertNotSame(routing.getTenantStrategy(new MiruTenantIdAndFamily(new MiruTenantId("a".getBytes()), "other")), strategy);
+        assertNotSame(routing.getTenantStrategy(tenantB), strategy);
+        assertSame(routing.getTenantStrategy(tenantA), strategy);
+    }
+
+    @Test
+    public void testStrategiesAreBoundedBySize() throws Exception {
+        MiruQueryTASRouting routing = routing(1, 60_000);
+
+        TailAtScaleStrategy strategy = routing.getTenantStrategy(tenantA);
+        routing.getTenantStrategy(tenantB);
+        assertNotSame(routing.getTenantStrategy(tenantA), strategy);
+    }
+
+    @Test
+    public void testIdleStrategiesExpire() throws Exception {
+        MiruQueryTASRouting routing = routing(10, 50);
+
+        TailAtScaleStrategy strategy = routing.getTenantStrategy(tenantA);
+        Thread.sleep(200);
+        assertNotSame(routing.getTenantStrategy(tenantA), strategy);
+    }
+
+    private MiruQueryTASRouting routing(int maxStrategies, long strategyIdleMillis) {
+        return new MiruQueryTASRouting(null,
+            null,
+            null,
+            MoreExecutors.sameThreadExecutor(),
+            100,
+            95f,
+            1_000,
+            maxStrategies,
+            strategyIdleMillis,
+            (tenantId, actorId, family, destination, latency, tags) -> {
+            });
+    }
+}
@@ -0,0 +1,90 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.jivesoftware.os.filer.io.FilerIO;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import java.util.Arrays;
+import java.util.Collections;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class FilterCacheIdTest {
+
+    private final MiruFieldFilter author = MiruFieldFilter.ofTerms(MiruFieldType.primary, "author", "bob", "jane");
+    private final MiruFieldFilter authorReordered = MiruFieldFilter.ofTerms(MiruFieldType.primary, "author", "jane", "bob");
+    private final MiruFieldFilter type = MiruFieldFilter.ofTerms(MiruFieldType.primary, "type", "doc");
+
+    @Test
+    public void testCommutativeClausesShareCacheId() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and, false, Arrays.asList(author, type), null);
+        MiruFilter reordered = new MiruFilter(MiruFilterOperation.and, false, Arrays.asList(type, authorReordered), null);
+        assertTrue(Arrays.equals(MiruAggregateUtil.filterCacheId(filter, -1, 0), MiruAggregateUtil.filterCacheId(reordered, -1, 0)));
+        assertFalse(Arrays.equals(MiruAggregateUtil.filterCacheId(filter, -1, 0), MiruAggregateUtil.filterCacheId(filter, 100, 0)));
+        assertFalse(Arrays.equals(MiruAggregateUtil.filterCacheId(filter, -1, 0), MiruAggregateUtil.filterCacheId(filter, -1, 1)));
+
+        MiruFilter or = new MiruFilter(MiruFilterOperation.or, false, Arrays.asList(author, type), null);
+        assertFalse(Arrays.equals(MiruAggregateUtil.filterCacheId(filter, -1, 0), MiruAggregateUtil.filterCacheId(or, -1, 0)));
+    }
+
+    @Test
+    public void testCacheIdLeadsWithVersion() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and, false, Arrays.asList(author, type), null);
+        byte[] cacheId = MiruAggregateUtil.filterCacheId(filter, -1, 7);
+        assertEquals(cacheId.length, 24);
+        assertTrue(Arrays.equals(Arrays.copyOf(cacheId, 4), FilerIO.intBytes(7)));
+    }
+
+    @Test
+    public void testPButNotQIsOrdered() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.pButNotQ, false, Arrays.asList(author, type), null);
+        MiruFilter reordered = new MiruFilter(MiruFilterOperation.pButNotQ, false, Arrays.asList(type, author), null);
+        assertFalse(Arrays.equals(MiruAggregateUtil.filterCacheId(filter, -1, 0), MiruAggregateUtil.filterCacheId(reordered, -1, 0)));
+    }
+
+    @Test
+    public void testRangeBoundsAreOrdered() throws Exception {
+        MiruValue x = new MiruValue("x");
+        MiruValue y = new MiruValue("y");
+        byte[] atLeastX = rangeCacheId(x, null);
+        byte[] atMostX = rangeCacheId(null, x);
+        byte[] xToY = rangeCacheId(x, y);
+        byte[] yToX = rangeCacheId(y, x);
+        assertFalse(Arrays.equals(atLeastX, atMostX));
+        assertFalse(Arrays.equals(xToY, yToX));
+        assertFalse(Arrays.equals(atLeastX, xToY));
+        assertTrue(Arrays.equals(xToY, rangeCacheId(new MiruValue("x"), new MiruValue("y"))));
+    }
+
+    private static byte[] rangeCacheId(MiruValue lower, MiruValue upper) {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and, false,
+            Collections.singletonList(MiruFieldFilter.ofRange("rating", lower, upper)), null);
+        return MiruAggregateUtil.filterCacheId(filter, -1, 0);
+    }
+
+    @Test
+    public void testCacheableFilter() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and, false, Arrays.asList(author, type), null);
+        assertEquals(MiruAggregateUtil.cacheableFilter(filter), filter);
+
+        MiruFilter inclusive = new MiruFilter(MiruFilterOperation.and, true, Arrays.asList(author, type), null);
+        MiruFilter cacheable = MiruAggregateUtil.cacheableFilter(inclusive);
+        assertNotNull(cacheable);
+        assertFalse(cacheable.inclusiveFilter);
+
+        assertNull(MiruAggregateUtil.cacheableFilter(new MiruFilter(MiruFilterOperation.or, true, Arrays.asList(author, type), null)));
+        assertNull(MiruAggregateUtil.cacheableFilter(MiruFilter.NO_FILTER));
+        assertNull(MiruAggregateUtil.cacheableFilter(new MiruFilter(MiruFilterOperation.and, false, null,
+            Collections.singletonList(inclusive))));
+    }
+}
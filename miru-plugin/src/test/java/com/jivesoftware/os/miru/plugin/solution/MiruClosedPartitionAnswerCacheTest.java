@@ -0,0 +1,160 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.CacheKeyValues;
+import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruClosedPartitionAnswerCacheTest {
+
+    private final MiruTenantId tenantId = new MiruTenantId("tenant".getBytes());
+    private final MiruClosedPartitionAnswerCache<MiruTimeRange> answerCache = new MiruClosedPartitionAnswerCache<>("test", MiruTimeRange.class);
+
+    private MiruRequestContext<Object, Object, ?> context;
+    private AtomicInteger answered;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        MiruPluginCacheProvider<Object, Object> cacheProvider = mock(MiruPluginCacheProvider.class);
+        when(cacheProvider.getKeyValues(anyString(), anyInt(), anyBoolean(), anyLong(), anyString(), anyDouble())).thenReturn(new InMemoryKeyValues());
+        context = mock(MiruRequestContext.class);
+        when(context.getCacheProvider()).thenReturn(cacheProvider);
+        answered = new AtomicInteger();
+    }
+
+    @Test
+    public void testAnswerCacheIdIsStable() throws Exception {
+        byte[] cacheId = MiruClosedPartitionAnswerCache.answerCacheId(request(new MiruTimeRange(1, 2), "a", "b"));
+
+        assertTrue(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(request(new MiruTimeRange(1, 2), "a", "b")), cacheId));
+        assertFalse(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(request(new MiruTimeRange(1, 3), "a", "b")), cacheId));
+        assertFalse(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(request(new MiruTimeRange(1, 2), "a")), cacheId));
+        assertFalse(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(request(new MiruTimeRange(1, 2), "b", "a")), cacheId));
+        assertFalse(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(new MiruRequest<>("test", tenantId, null,
+            MiruAuthzExpression.NOT_PROVIDED, new MiruTimeRange(1, 2), MiruSolutionLogLevel.NONE)), cacheId));
+
+        // the request name, tenant and log level don't affect the answer
+        assertTrue(Arrays.equals(MiruClosedPartitionAnswerCache.answerCacheId(new MiruRequest<>("other", new MiruTenantId("other".getBytes()), null,
+            new MiruAuthzExpression(Arrays.asList("a", "b")), new MiruTimeRange(1, 2), MiruSolutionLogLevel.DEBUG)), cacheId));
+    }
+
+    @Test
+    public void testOpenPartitionIsNotCached() throws Exception {
+        when(context.isClosed()).thenReturn(false);
+        MiruRequest<MiruTimeRange> request = request(new MiruTimeRange(1, 2), "a");
+
+        assertEquals(ask(request, 10).answer, new MiruTimeRange(10, 10));
+        assertEquals(ask(request, 11).answer, new MiruTimeRange(11, 11));
+        assertEquals(answered.get(), 2);
+    }
+
+    @Test
+    public void testHitAndMissAcrossClose() throws Exception {
+        MiruRequest<MiruTimeRange> request = request(new MiruTimeRange(1, 2), "a");
+
+        // answers from before the writers close are never stored, since late activities may still change them
+        when(context.isClosed()).thenReturn(false);
+        assertEquals(ask(request, 10).answer, new MiruTimeRange(10, 10));
+
+        when(context.isClosed()).thenReturn(true);
+        assertEquals(ask(request, 11).answer, new MiruTimeRange(11, 11));
+        assertEquals(answered.get(), 2);
+
+        // now answered from the cache
+        assertEquals(ask(request, 12).answer, new MiruTimeRange(11, 11));
+        assertEquals(answered.get(), 2);
+
+        // a different query misses
+        assertEquals(ask(request(new MiruTimeRange(1, 3), "a"), 13).answer, new MiruTimeRange(13, 13));
+        assertEquals(answered.get(), 3);
+    }
+
+    @Test
+    public void testNullAnswerIsNotCached() throws Exception {
+        when(context.isClosed()).thenReturn(true);
+        MiruRequest<MiruTimeRange> request = request(new MiruTimeRange(1, 2), "a");
+
+        MiruPartitionResponse<MiruTimeRange> response = answerCache.askLocal(context, request, new StackBuffer(), () -> {
+            answered.incrementAndGet();
+            return new MiruPartitionResponse<>(null, Collections.emptyList());
+        });
+        assertEquals(response.answer, null);
+        assertEquals(ask(request, 10).answer, new MiruTimeRange(10, 10));
+        assertEquals(answered.get(), 2);
+    }
+
+    private MiruPartitionResponse<MiruTimeRange> ask(MiruRequest<MiruTimeRange> request, long answer) throws Exception {
+        return answerCache.askLocal(context, request, new StackBuffer(), () -> {
+            answered.incrementAndGet();
+            return new MiruPartitionResponse<>(new MiruTimeRange(answer, answer), Collections.emptyList());
+        });
+    }
+
+    private MiruRequest<MiruTimeRange> request(MiruTimeRange query, String... authz) {
+        return new MiruRequest<>("test", tenantId, null, new MiruAuthzExpression(Arrays.asList(authz)), query, MiruSolutionLogLevel.NONE);
+    }
+
+    private static class InMemoryKeyValues implements CacheKeyValues {
+
+        private final Map<String, byte[]> values = Maps.newHashMap();
+
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public boolean get(byte[] cacheId, byte[][] keys, MiruPluginCacheProvider.IndexKeyValueStream stream, StackBuffer stackBuffer)
+            throws Exception {
+            for (int i = 0; i < keys.length; i++) {
+                byte[] value = values.get(key(cacheId, keys[i]));
+                if (!stream.stream(i, value == null ? null : ByteBuffer.wrap(value))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean rangeScan(byte[] cacheId, byte[] fromInclusive, byte[] toExclusive, MiruPluginCacheProvider.KeyValueStream stream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void put(byte[] cacheId, byte[][] keys, byte[][] values, boolean commitOnUpdate, boolean fsyncOnCommit, StackBuffer stackBuffer) {
+            for (int i = 0; i < keys.length; i++) {
+                this.values.put(key(cacheId, keys[i]), values[i]);
+            }
+        }
+
+        private static String key(byte[] cacheId, byte[] key) {
+            return BaseEncoding.base16().encode(cacheId) + ":" + BaseEncoding.base16().encode(key);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class MiruRemotePartitionBatcherTest {
+
+    @Test
+    public void testConcurrentAsksShareBatch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MiruRemotePartitionBatchReader batchReader = new MiruRemotePartitionBatchReader() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <Q, A, P> MiruBatchedPartitionResponses<A> readBatch(String queryKey,
+                MiruHost host,
+                String endpoint,
+                MiruBatchedRequestAndReports<Q, P> requestAndReports,
+                EndPointMetrics endPointMetrics) {
+                calls.incrementAndGet();
+                MiruPartitionResponse<A>[] responses = new MiruPartitionResponse[requestAndReports.partitionIds.length];
+                for (int i = 0; i < responses.length; i++) {
+                    int partitionId = requestAndReports.partitionIds[i];
+                    // odd partitions are unavailable on the host
+                    responses[i] = partitionId % 2 == 0 ? new MiruPartitionResponse<>((A) ("answer-" + partitionId), Collections.emptyList()) : null;
+                }
+                return new MiruBatchedPartitionResponses<>(requestAndReports.partitionIds, Arrays.asList(responses));
+            }
+        };
+
+        ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+        MiruRemotePartitionBatcher<String, String, String> batcher = new MiruRemotePartitionBatcher<>("test",
+            batchReader,
+            "/batch",
+            new EndPointMetrics("batch", MetricLoggerFactory.getLogger()),
+            batchExecutor,
+            10_000,
+            2,
+            10_000);
+        MiruRequest<String> request = new MiruRequest<>("test", new MiruTenantId("tenant".getBytes()), null, MiruAuthzExpression.NOT_PROVIDED, "query",
+            MiruSolutionLogLevel.NONE);
+        MiruHost host = new MiruHost("host");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MiruPartitionResponse<String>> even = executor.submit(() -> batcher.askRemote(host, MiruPartitionId.of(2), request, Optional.absent()));
+            Future<MiruPartitionResponse<String>> odd = executor.submit(() -> batcher.askRemote(host, MiruPartitionId.of(3), request, Optional.absent()));
+
+            assertEquals(even.get().answer, "answer-2");
+            try {
+                odd.get();
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof MiruPartitionUnavailableException);
+            }
+            assertEquals(calls.get(), 1);
+        } finally {
+            executor.shutdownNow();
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledAskDoesNotFailBatch() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MiruRemotePartitionBatchReader batchReader = new MiruRemotePartitionBatchReader() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <Q, A, P> MiruBatchedPartitionResponses<A> readBatch(String queryKey,
+                MiruHost host,
+                String endpoint,
+                MiruBatchedRequestAndReports<Q, P> requestAndReports,
+                EndPointMetrics endPointMetrics) {
+                reading.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                MiruPartitionResponse<A>[] responses = new MiruPartitionResponse[requestAndReports.partitionIds.length];
+                for (int i = 0; i < responses.length; i++) {
+                    responses[i] = new MiruPartitionResponse<>((A) ("answer-" + requestAndReports.partitionIds[i]), Collections.emptyList());
+                }
+                return new MiruBatchedPartitionResponses<>(requestAndReports.partitionIds, Arrays.asList(responses));
+            }
+        };
+
+        ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+        MiruRemotePartitionBatcher<String, String, String> batcher = new MiruRemotePartitionBatcher<>("test",
+            batchReader,
+            "/batch",
+            new EndPointMetrics("batch", MetricLoggerFactory.getLogger()),
+            batchExecutor,
+            10_000,
+            2,
+            10_000);
+        MiruRequest<String> request = new MiruRequest<>("test", new MiruTenantId("tenant".getBytes()), null, MiruAuthzExpression.NOT_PROVIDED, "query",
+            MiruSolutionLogLevel.NONE);
+        MiruHost host = new MiruHost("host");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MiruPartitionResponse<String>> first = executor.submit(() -> batcher.askRemote(host, MiruPartitionId.of(1), request, Optional.absent()));
+            Future<MiruPartitionResponse<String>> second = executor.submit(() -> batcher.askRemote(host, MiruPartitionId.of(2), request, Optional.absent()));
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+            // the solver gives up on whichever ask opened the batch, but the shared call carries on for the other
+            first.cancel(true);
+            release.countDown();
+
+            assertEquals(second.get(10, TimeUnit.SECONDS).answer, "answer-2");
+        } finally {
+            executor.shutdownNow();
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAskTimesOutAlone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MiruRemotePartitionBatchReader batchReader = new MiruRemotePartitionBatchReader() {
+            @Override
+            public <Q, A, P> MiruBatchedPartitionResponses<A> readBatch(String queryKey,
+                MiruHost host,
+                String endpoint,
+                MiruBatchedRequestAndReports<Q, P> requestAndReports,
+                EndPointMetrics endPointMetrics) {
+                Uninterruptibles.awaitUninterruptibly(release);
+                return new MiruBatchedPartitionResponses<>(requestAndReports.partitionIds, Collections.emptyList());
+            }
+        };
+
+        ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+        MiruRemotePartitionBatcher<String, String, String> batcher = new MiruRemotePartitionBatcher<>("test",
+            batchReader,
+            "/batch",
+            new EndPointMetrics("batch", MetricLoggerFactory.getLogger()),
+            batchExecutor,
+            0,
+            1,
+            100);
+        MiruRequest<String> request = new MiruRequest<>("test", new MiruTenantId("tenant".getBytes()), null, MiruAuthzExpression.NOT_PROVIDED, "query",
+            MiruSolutionLogLevel.NONE);
+
+        try {
+            batcher.askRemote(new MiruHost("host"), MiruPartitionId.of(1), request, Optional.absent());
+            fail();
+        } catch (MiruPartitionUnavailableException e) {
+            // expected
+        } finally {
+            release.countDown();
+            batchExecutor.shutdownNow();
+        }
+    }
+}
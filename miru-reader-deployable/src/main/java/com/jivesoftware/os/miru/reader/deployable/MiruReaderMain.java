@@ -85,8 +85,10 @@ import com.jivesoftware.os.miru.service.endpoint.MiruWriterEndpoints;
 import com.jivesoftware.os.miru.service.locator.MiruResourceLocator;
 import com.jivesoftware.os.miru.service.locator.MiruResourceLocatorInitializer;
 import com.jivesoftware.os.miru.service.partition.AmzaSipTrackerFactory;
+import com.jivesoftware.os.miru.service.partition.MiruPartitionSnapshotFetcher;
 import com.jivesoftware.os.miru.service.partition.PartitionErrorTracker;
 import com.jivesoftware.os.miru.service.partition.RCVSSipTrackerFactory;
+import com.jivesoftware.os.miru.service.partition.RoutingBirdPartitionSnapshotFetcher;
 import com.jivesoftware.os.miru.service.realtime.NoOpRealtimeDelivery;
 import com.jivesoftware.os.miru.service.realtime.RoutingBirdRealtimeDelivery;
 import com.jivesoftware.os.miru.service.stream.MiruIndexCallbacks;
@@ -306,6 +308,8 @@ public class MiruReaderMain {
 
             deployable.addHealthCheck(new TenantAwareHttpClientHealthCheck("reader", readerHttpClient));
 
+            Map<MiruHost, MiruHostSelectiveStrategy> readerStrategyCache = Maps.newConcurrentMap();
+
             @SuppressWarnings("unchecked")
             TenantAwareHttpClient<String> catwalkHttpClient = tenantRoutingHttpClientInitializer.builder(
                 tenantRoutingProvider.getConnections("miru-catwalk", "main", 10_000), // TODO config
@@ -322,6 +326,9 @@ public class MiruReaderMain {
             ExecutorService tasExecutors = deployable.newBoundedExecutor(1024, "manage-tas");
 
             MiruClusterClient clusterClient = new MiruClusterClientInitializer(tasExecutors, 100, 95, 1000).initialize(miruStats, "", manageHttpClient, mapper);
+            MiruPartitionSnapshotFetcher snapshotFetcher = miruServiceConfig.getPartitionBootstrapFromPeerEnabled()
+                ? new RoutingBirdPartitionSnapshotFetcher(clusterClient, readerHttpClient, readerStrategyCache)
+                : null;
             MiruSchemaProvider miruSchemaProvider = new ClusterSchemaProvider(clusterClient, 10000); // TODO config
 
             TimestampedOrderIdProvider timestampedOrderIdProvider = new OrderIdProviderImpl(new ConstantWriterIdProvider(0), new SnowflakeIdPacker(),
@@ -413,6 +420,7 @@ public class MiruReaderMain {
                     miruSchemaProvider,
                     rcvsWALClient,
                     realtimeDelivery,
+                    snapshotFetcher,
                     new RCVSSipTrackerFactory(),
                     new RCVSSipIndexMarshaller(),
                     diskResourceLocator,
@@ -463,6 +471,7 @@ public class MiruReaderMain {
                     miruSchemaProvider,
                     amzaWALClient,
                     realtimeDelivery,
+                    snapshotFetcher,
                     new AmzaSipTrackerFactory(),
                     new AmzaSipIndexMarshaller(),
                     diskResourceLocator,
@@ -544,7 +553,6 @@ public class MiruReaderMain {
 
             Map<Class<?>, MiruRemotePartition<?, ?, ?>> pluginRemotesMap = Maps.newConcurrentMap();
 
-            Map<MiruHost, MiruHostSelectiveStrategy> readerStrategyCache = Maps.newConcurrentMap();
 
             MiruProvider<Miru> miruProvider = new MiruProvider<Miru>() {
                 @Override
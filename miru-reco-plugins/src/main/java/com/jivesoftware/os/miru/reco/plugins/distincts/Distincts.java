@@ -13,6 +13,7 @@ import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
 import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.IdAndTermIdStream;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.index.TermIdStream;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
@@ -23,6 +24,7 @@ import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -33,9 +35,18 @@ public class Distincts {
 
     private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
     private final MiruTermComposer termComposer;
+    private final ExecutorService gatherExecutorService;
 
     public Distincts(MiruTermComposer termComposer) {
+        this(termComposer, null);
+    }
+
+    /**
+     * @param gatherExecutorService if non-null, constrained distincts are gathered in parallel slices on this executor
+     */
+    public Distincts(MiruTermComposer termComposer, ExecutorService gatherExecutorService) {
         this.termComposer = termComposer;
+        this.gatherExecutorService = gatherExecutorService;
     }
 
     public <BM extends IBM, IBM> DistinctsAnswer gather(String name,
@@ -129,30 +140,26 @@ public class Distincts {
 
                 start = System.currentTimeMillis();
                 //TODO expose batch size to query?
-                aggregateUtil.gather(name,
-                    bitmaps,
-                    requestContext,
-                    result,
-                    fieldId,
-                    gatherBatchSize,
-                    false,
-                    false,
-                    Optional.absent(),
-                    solutionLog,
-                    (id, termId, count) -> {
-                        if (prefixesAsBytes.length > 0) {
-                            byte[] termBytes = termId.getBytes();
-                            for (byte[] prefixAsBytes : prefixesAsBytes) {
-                                if (arrayStartsWith(termBytes, prefixAsBytes)) {
-                                    return termIdStream.stream(termId);
-                                }
+                IdAndTermIdStream idAndTermIdStream = (id, termId, count) -> {
+                    if (prefixesAsBytes.length > 0) {
+                        byte[] termBytes = termId.getBytes();
+                        for (byte[] prefixAsBytes : prefixesAsBytes) {
+                            if (arrayStartsWith(termBytes, prefixAsBytes)) {
+                                return termIdStream.stream(termId);
                             }
-                            return true;
-                        } else {
-                            return termIdStream.stream(termId);
                         }
-                    },
-                    stackBuffer);
+                        return true;
+                    } else {
+                        return termIdStream.stream(termId);
+                    }
+                };
+                if (gatherExecutorService != null) {
+                    aggregateUtil.gatherParallel(name, bitmaps, requestContext, result, fieldId, gatherBatchSize, false, false, Optional.absent(), solutionLog,
+                        gatherExecutorService, idAndTermIdStream, stackBuffer);
+                } else {
+                    aggregateUtil.gather(name, bitmaps, requestContext, result, fieldId, gatherBatchSize, false, false, Optional.absent(), solutionLog,
+                        idAndTermIdStream, stackBuffer);
+                }
                 solutionLog.log(MiruSolutionLogLevel.INFO, "distincts gatherDirect: gather {} ms.", System.currentTimeMillis() - start);
             }
         }
@@ -24,4 +24,9 @@ public class DistinctsAnswerEvaluator implements MiruAnswerEvaluator<DistinctsAn
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -8,6 +8,7 @@ import com.jivesoftware.os.miru.plugin.solution.FstRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -22,7 +23,12 @@ public class DistinctsPlugin implements MiruPlugin<DistinctsEndpoints, Distincts
     @Override
     public Collection<MiruEndpointInjectable<DistinctsInjectable>> getInjectables(MiruProvider<? extends Miru> miruProvider) {
 
-        Distincts distincts = new Distincts(miruProvider.getTermComposer());
+        DistinctsPluginConfig config = miruProvider.getConfig(DistinctsPluginConfig.class);
+        int gatherThreadPoolSize = config.getGatherThreadPoolSize();
+        ExecutorService gatherExecutorService = gatherThreadPoolSize > 1
+            ? miruProvider.allocateThreadPool("distincts-gather", gatherThreadPoolSize)
+            : null;
+        Distincts distincts = new Distincts(miruProvider.getTermComposer(), gatherExecutorService);
         return Collections.singletonList(new MiruEndpointInjectable<>(
             DistinctsInjectable.class,
             new DistinctsInjectable(miruProvider, distincts)
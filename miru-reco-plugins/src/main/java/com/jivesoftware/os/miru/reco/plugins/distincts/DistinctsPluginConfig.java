@@ -0,0 +1,14 @@
+package com.jivesoftware.os.miru.reco.plugins.distincts;
+
+import org.merlin.config.Config;
+import org.merlin.config.defaults.IntDefault;
+
+/**
+ *
+ */
+public interface DistinctsPluginConfig extends Config {
+
+    /** Distincts are gathered in parallel container slices on their own pool when greater than 1. */
+    @IntDefault(4)
+    int getGatherThreadPoolSize();
+}
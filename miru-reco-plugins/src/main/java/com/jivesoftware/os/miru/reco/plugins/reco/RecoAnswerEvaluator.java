@@ -38,4 +38,9 @@ public class RecoAnswerEvaluator implements MiruAnswerEvaluator<RecoAnswer> {
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitionResponses;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRequestAndReports;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequestAndReport;
@@ -24,6 +26,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.nustaq.serialization.FSTConfiguration;
 
+import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.BATCH_QUERY_ENDPOINT;
 import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.CUSTOM_QUERY_ENDPOINT;
 import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.TRENDING_PREFIX;
 
@@ -108,4 +111,28 @@ public class TrendingEndpoints {
             return Response.serverError().build();
         }
     }
+
+    @POST
+    @Path(BATCH_QUERY_ENDPOINT)
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response scoreTrendingBatch(byte[] rawBytes) {
+        MiruBatchedRequestAndReports<TrendingQuery, TrendingReport> requestAndReports;
+        try {
+            requestAndReports = (MiruBatchedRequestAndReports<TrendingQuery, TrendingReport>) conf.asObject(rawBytes);
+        } catch (Exception e) {
+            log.error("Failed to deserialize batch request", e);
+            return Response.serverError().build();
+        }
+
+        try {
+            MiruBatchedPartitionResponses<AnalyticsAnswer> result = injectable.scoreTrending(requestAndReports);
+            return Response.ok(conf.asByteArray(result), MediaType.APPLICATION_OCTET_STREAM).build();
+        } catch (InterruptedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Unavailable " + e.getMessage()).build();
+        } catch (Exception e) {
+            log.error("Failed to score trending batch for tenant: {}", new Object[] { requestAndReports.request.tenantId }, e);
+            return Response.serverError().build();
+        }
+    }
 }
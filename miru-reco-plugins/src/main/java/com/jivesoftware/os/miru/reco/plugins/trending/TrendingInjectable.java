@@ -17,6 +17,9 @@ import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.plugin.Miru;
 import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitionResponses;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitions;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRequestAndReports;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequestAndReport;
@@ -277,4 +280,12 @@ public class TrendingInjectable {
         }
         return new MiruTimeRange(minTimestamp, maxTimestamp);
     }
+
+    public MiruBatchedPartitionResponses<AnalyticsAnswer> scoreTrending(MiruBatchedRequestAndReports<TrendingQuery, TrendingReport> requestAndReports)
+        throws InterruptedException {
+        LOG.debug("askImmediate: partitionIds={} request={}", requestAndReports.partitionIds.length, requestAndReports.request);
+        Miru miru = provider.getMiru(requestAndReports.request.tenantId);
+        return MiruBatchedPartitions.askImmediate(requestAndReports, miru.getDefaultExecutor(), this::scoreTrending);
+    }
+
 }
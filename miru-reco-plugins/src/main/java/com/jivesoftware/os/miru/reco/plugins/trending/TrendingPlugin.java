@@ -10,6 +10,7 @@ import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.reco.plugins.distincts.Distincts;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -24,7 +25,12 @@ public class TrendingPlugin implements MiruPlugin<TrendingEndpoints, TrendingInj
     @Override
     public Collection<MiruEndpointInjectable<TrendingInjectable>> getInjectables(MiruProvider<? extends Miru> miruProvider) {
 
-        Distincts distincts = new Distincts(miruProvider.getTermComposer());
+        TrendingPluginConfig config = miruProvider.getConfig(TrendingPluginConfig.class);
+        int gatherThreadPoolSize = config.getGatherDistinctsThreadPoolSize();
+        ExecutorService gatherExecutorService = gatherThreadPoolSize > 1
+            ? miruProvider.allocateThreadPool("trending-gather", gatherThreadPoolSize)
+            : null;
+        Distincts distincts = new Distincts(miruProvider.getTermComposer(), gatherExecutorService);
         Analytics analytics = new Analytics();
         return Collections.singletonList(new MiruEndpointInjectable<>(
             TrendingInjectable.class,
@@ -34,7 +40,18 @@ public class TrendingPlugin implements MiruPlugin<TrendingEndpoints, TrendingInj
 
     @Override
     public Collection<MiruRemotePartition<?, ?, ?>> getRemotePartitions(MiruProvider<? extends Miru> miruProvider) {
-        return Collections.singletonList(new TrendingRemotePartition(
-            new FstRemotePartitionReader(miruProvider.getReaderHttpClient(), miruProvider.getReaderStrategyCache(), false)));
+        TrendingPluginConfig config = miruProvider.getConfig(TrendingPluginConfig.class);
+        FstRemotePartitionReader remotePartitionReader = new FstRemotePartitionReader(miruProvider.getReaderHttpClient(),
+            miruProvider.getReaderStrategyCache(),
+            false);
+        ExecutorService batchExecutor = config.getRemoteBatchWindowMillis() > 0
+            ? miruProvider.allocateThreadPool("trending-remote-batch", config.getRemoteBatchThreadPoolSize())
+            : null;
+        return Collections.singletonList(new TrendingRemotePartition(remotePartitionReader,
+            remotePartitionReader,
+            batchExecutor,
+            config.getRemoteBatchWindowMillis(),
+            config.getRemoteBatchMaxPartitions(),
+            config.getRemoteBatchAskTimeoutMillis()));
     }
 }
@@ -2,6 +2,7 @@ package com.jivesoftware.os.miru.reco.plugins.trending;
 
 import org.merlin.config.Config;
 import org.merlin.config.defaults.IntDefault;
+import org.merlin.config.defaults.LongDefault;
 
 /**
  *
@@ -10,4 +11,23 @@ public interface TrendingPluginConfig extends Config {
 
     @IntDefault(100)
     int getGatherDistinctsBatchSize();
+
+    /** Distincts are gathered in parallel container slices when greater than 1. */
+    @IntDefault(4)
+    int getGatherDistinctsThreadPoolSize();
+
+    /** Remote partitions of a request on the same host are batched into one call when greater than 0. */
+    @LongDefault(0)
+    long getRemoteBatchWindowMillis();
+
+    @IntDefault(64)
+    int getRemoteBatchMaxPartitions();
+
+    /** Batched remote calls are sent from their own pool so that no single asking solver thread owns the call. */
+    @IntDefault(8)
+    int getRemoteBatchThreadPoolSize();
+
+    /** Each ask gives up on its batch after this long and is treated as unavailable, when greater than 0. */
+    @LongDefault(30_000)
+    long getRemoteBatchAskTimeoutMillis();
 }
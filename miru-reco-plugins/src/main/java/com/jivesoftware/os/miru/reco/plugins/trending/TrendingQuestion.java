@@ -20,6 +20,7 @@ import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
+import com.jivesoftware.os.miru.plugin.solution.MiruClosedPartitionAnswerCache;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
@@ -47,6 +48,7 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
     private final MiruRequest<TrendingQuery> request;
     private final MiruTimeRange combinedTimeRange;
     private final MiruRemotePartition<TrendingQuery, AnalyticsAnswer, TrendingReport> remotePartition;
+    private final MiruClosedPartitionAnswerCache<AnalyticsAnswer> answerCache = new MiruClosedPartitionAnswerCache<>("trending", AnalyticsAnswer.class);
 
     public TrendingQuestion(Distincts distincts,
         Analytics analytics,
@@ -65,6 +67,12 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
     @Override
     public <BM extends IBM, IBM> MiruPartitionResponse<AnalyticsAnswer> askLocal(MiruRequestHandle<BM, IBM, ?> handle,
         Optional<TrendingReport> report) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        return answerCache.askLocal(handle.getRequestContext(), request, stackBuffer, () -> answer(handle, stackBuffer));
+    }
+
+    private <BM extends IBM, IBM> MiruPartitionResponse<AnalyticsAnswer> answer(MiruRequestHandle<BM, IBM, ?> handle,
+        StackBuffer stackBuffer) throws Exception {
 
         MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
         MiruRequestContext<BM, IBM, ? extends MiruSipCursor<?>> context = handle.getRequestContext();
@@ -74,7 +82,6 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
         int fieldId = schema.getFieldId(request.query.aggregateCountAroundField);
         MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldId);
         MiruFieldIndex<BM, IBM> primaryFieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
-        StackBuffer stackBuffer = new StackBuffer();
 
         MiruTermComposer termComposer = context.getTermComposer();
 
@@ -7,11 +7,14 @@ import com.jivesoftware.os.miru.api.MiruQueryServiceException;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionBatchReader;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionBatcher;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.mlogger.core.EndPointMetrics;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -20,11 +23,31 @@ public class TrendingRemotePartition implements MiruRemotePartition<TrendingQuer
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
     private static final EndPointMetrics endPointMetrics = new EndPointMetrics("process", LOG);
+    private static final EndPointMetrics batchEndPointMetrics = new EndPointMetrics("batch", LOG);
 
     private final MiruRemotePartitionReader remotePartitionReader;
+    private final MiruRemotePartitionBatcher<TrendingQuery, AnalyticsAnswer, TrendingReport> remotePartitionBatcher;
 
     public TrendingRemotePartition(MiruRemotePartitionReader remotePartitionReader) {
+        this(remotePartitionReader, null, null, 0, 0, 0);
+    }
+
+    /**
+     * Asks for the same request against the same host are batched into one call when the batch window is greater than 0. Batches are sent from
+     * the batch executor, and each ask gives up on its batch after the ask timeout.
+     */
+    public TrendingRemotePartition(MiruRemotePartitionReader remotePartitionReader,
+        MiruRemotePartitionBatchReader remotePartitionBatchReader,
+        ExecutorService batchExecutor,
+        long batchWindowMillis,
+        int batchMaxPartitions,
+        long batchAskTimeoutMillis) {
         this.remotePartitionReader = remotePartitionReader;
+        this.remotePartitionBatcher = remotePartitionBatchReader != null && batchWindowMillis > 0
+            ? new MiruRemotePartitionBatcher<>("trending", remotePartitionBatchReader,
+                TrendingConstants.TRENDING_PREFIX + TrendingConstants.BATCH_QUERY_ENDPOINT, batchEndPointMetrics,
+                batchExecutor, batchWindowMillis, batchMaxPartitions, batchAskTimeoutMillis)
+            : null;
     }
 
     private String getEndpoint(MiruPartitionId partitionId) {
@@ -36,6 +59,9 @@ public class TrendingRemotePartition implements MiruRemotePartition<TrendingQuer
         MiruPartitionId partitionId,
         MiruRequest<TrendingQuery> request,
         Optional<TrendingReport> report) throws MiruQueryServiceException {
+        if (remotePartitionBatcher != null) {
+            return remotePartitionBatcher.askRemote(host, partitionId, request, report);
+        }
         return remotePartitionReader.read("trending",
             host,
             getEndpoint(partitionId),
@@ -0,0 +1,84 @@
+package com.jivesoftware.os.miru.service.benchmark;
+
+import com.jivesoftware.os.miru.service.metric.MiruMetricKeys;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares building the solver and inverted index metric names per call, as the hot paths used to, against looking up the
+ * interned names in {@link MiruMetricKeys}. The interesting number is the allocation rate, so run with the GC profiler:
+ * {@code java -jar miru-service-benchmark/target/benchmarks.jar MiruMetricKeysBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MiruMetricKeysBenchmark {
+
+    @Param({ "aggregateCounts" })
+    public String requestName;
+
+    @Param({ "AggregateCountsCustomQuestion" })
+    public String queryKey;
+
+    @Param({ "field" })
+    public String indexName;
+
+    @Param({ "7" })
+    public int fieldId;
+
+    @Setup
+    public void setup() {
+        // populate the interned names so the measurement only sees steady-state lookups
+        MiruMetricKeys.solve(requestName, queryKey);
+        MiruMetricKeys.index(indexName, fieldId);
+    }
+
+    @Benchmark
+    public void solveConcatenated(Blackhole blackhole) {
+        String request = "solve>request>" + requestName + ">" + queryKey;
+        blackhole.consume(request + ">calls");
+        blackhole.consume(request + ">initial");
+        blackhole.consume(request + ">success");
+        blackhole.consume("solve>throughput>success>local>" + requestName + ">" + queryKey);
+    }
+
+    @Benchmark
+    public void solveInterned(Blackhole blackhole) {
+        MiruMetricKeys.SolveKeys keys = MiruMetricKeys.solve(requestName, queryKey);
+        blackhole.consume(keys.calls);
+        blackhole.consume(keys.initial);
+        blackhole.consume(keys.success);
+        blackhole.consume(keys.throughputSuccessLocal);
+    }
+
+    @Benchmark
+    public void indexConcatenated(Blackhole blackhole) {
+        blackhole.consume("count>getIndex>total");
+        blackhole.consume("count>getIndex>" + indexName + ">total");
+        blackhole.consume("count>getIndex>" + indexName + ">" + fieldId);
+        blackhole.consume("bytes>getIndex>" + indexName + ">" + fieldId);
+    }
+
+    @Benchmark
+    public void indexInterned(Blackhole blackhole) {
+        MiruMetricKeys.IndexOpKeys keys = MiruMetricKeys.index(indexName, fieldId).getIndex;
+        blackhole.consume(keys.countTotal);
+        blackhole.consume(keys.countName);
+        blackhole.consume(keys.countField);
+        blackhole.consume(keys.bytesField);
+    }
+}
@@ -0,0 +1,268 @@
+package com.jivesoftware.os.miru.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.MiruStats;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchemaProvider;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionDirector;
+import com.jivesoftware.os.miru.plugin.partition.OrderedPartitions;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerEvaluator;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerMerger;
+import com.jivesoftware.os.miru.plugin.solution.MiruResponse;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolvableFactory;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolution;
+import com.jivesoftware.os.miru.plugin.solution.Question;
+import com.jivesoftware.os.miru.service.partition.MiruHostedPartitionComparison;
+import com.jivesoftware.os.miru.service.solver.MiruSolved;
+import com.jivesoftware.os.miru.service.solver.MiruSolver;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class MiruServiceTest {
+
+    private static final int NUM_PARTITIONS = 5;
+    private static final int NUM_BUCKETS = 4;
+
+    private final MiruTenantId tenantId = new MiruTenantId("test".getBytes(Charsets.UTF_8));
+    private final MiruHost host = new MiruHost("logicalName");
+
+    private ExecutorService parallelExecutor;
+    private ExecutorService defaultExecutor;
+    private MiruPartitionDirector partitionDirector;
+    private MiruSolvableFactory<Object, long[], Object> solvableFactory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        parallelExecutor = Executors.newCachedThreadPool();
+        defaultExecutor = Executors.newCachedThreadPool();
+
+        List<OrderedPartitions<?, ?>> orderedPartitions = Lists.newArrayList();
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            orderedPartitions.add(new OrderedPartitions<>(tenantId, MiruPartitionId.of(i), Collections.emptyList()));
+        }
+        partitionDirector = mock(MiruPartitionDirector.class);
+        when(partitionDirector.allQueryablePartitionsInOrder(any(MiruTenantId.class), anyString(), anyString()))
+            .thenAnswer(invocation -> orderedPartitions);
+
+        solvableFactory = new MiruSolvableFactory<>("test", new MiruStats(), "testKey", mock(Question.class));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        parallelExecutor.shutdownNow();
+        defaultExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testMergeInCompletionOrder() throws Exception {
+        // each partition waits for the partition after it, so they complete in reverse partition order
+        CountDownLatch[] solvedLatches = new CountDownLatch[NUM_PARTITIONS + 1];
+        for (int i = 0; i < solvedLatches.length; i++) {
+            solvedLatches[i] = new CountDownLatch(i == NUM_PARTITIONS ? 0 : 1);
+        }
+        MiruSolver reverseSolver = new TestSolver(partitionId -> {
+            int id = partitionId.getId();
+            assertTrue(solvedLatches[id + 1].await(10, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            solvedLatches[id].countDown();
+        });
+        List<Integer> completionMergeOrder = Lists.newArrayList();
+        MiruResponse<long[]> outOfOrder = ask(reverseSolver, true, completionMergeOrder);
+
+        List<Integer> serialMergeOrder = Lists.newArrayList();
+        MiruResponse<long[]> inOrder = ask(new TestSolver(partitionId -> {
+        }), false, serialMergeOrder);
+
+        assertEquals(serialMergeOrder, Lists.newArrayList(0, 1, 2, 3, 4));
+        assertNotEquals(completionMergeOrder, serialMergeOrder);
+        assertEquals(completionMergeOrder.size(), NUM_PARTITIONS);
+
+        assertTrue(Arrays.equals(outOfOrder.answer, inOrder.answer));
+        assertTrue(Arrays.equals(inOrder.answer, expectedSumExcluding(-1)));
+        assertEquals(outOfOrder.solutions.size(), NUM_PARTITIONS);
+        assertTrue(outOfOrder.incompletePartitionIds.isEmpty());
+    }
+
+    @Test
+    public void testMergeInCompletionOrderBudgetElapsed() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        MiruSolver solver = new TestSolver(partitionId -> {
+            if (partitionId.getId() == 2) {
+                stuck.await();
+            }
+        });
+        try {
+            List<Integer> mergeOrder = Lists.newArrayList();
+            MiruResponse<long[]> response = ask(solver, true, mergeOrder, 500);
+
+            assertEquals(response.incompletePartitionIds, Collections.singletonList(2));
+            assertEquals(mergeOrder.size(), NUM_PARTITIONS - 1);
+            assertTrue(Arrays.equals(response.answer, expectedSumExcluding(2)));
+        } finally {
+            stuck.countDown();
+        }
+    }
+
+    private MiruResponse<long[]> ask(MiruSolver solver, boolean completionOrder, List<Integer> mergeOrder) throws Exception {
+        return ask(solver, completionOrder, mergeOrder, 10_000);
+    }
+
+    private MiruResponse<long[]> ask(MiruSolver solver, boolean completionOrder, List<Integer> mergeOrder, long budgetInMillis) throws Exception {
+        MiruSchemaProvider schemaProvider = mock(MiruSchemaProvider.class);
+        MiruService service = new MiruService(host,
+            partitionDirector,
+            new MiruHostedPartitionComparison(1_000, 95),
+            solver,
+            schemaProvider,
+            defaultExecutor,
+            parallelExecutor,
+            budgetInMillis);
+        return service.askAndMerge(tenantId,
+            solvableFactory,
+            new TestEvaluator(completionOrder),
+            new SumMerger(mergeOrder),
+            new long[NUM_BUCKETS],
+            defaultExecutor,
+            MiruSolutionLogLevel.NONE);
+    }
+
+    private static long[] answer(int partitionId) {
+        long[] waveform = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            waveform[i] = (partitionId + 1) * 10 + i;
+        }
+        // tag the answer with its partition so the merger can record the order
+        waveform[0] = partitionId;
+        return waveform;
+    }
+
+    private static long[] expectedSumExcluding(int excludedPartitionId) {
+        long[] sum = new long[NUM_BUCKETS];
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            if (p != excludedPartitionId) {
+                long[] waveform = answer(p);
+                for (int i = 0; i < NUM_BUCKETS; i++) {
+                    sum[i] += waveform[i];
+                }
+            }
+        }
+        return sum;
+    }
+
+    private interface SolveHook {
+
+        void solving(MiruPartitionId partitionId) throws Exception;
+    }
+
+    private class TestSolver implements MiruSolver {
+
+        private final SolveHook hook;
+
+        private TestSolver(SolveHook hook) {
+            this.hook = hook;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> MiruSolved<R> solve(String requestName,
+            String queryKey,
+            MiruTenantId tenantId,
+            MiruPartitionId partitionId,
+            Iterator<MiruSolvable<R>> solvables,
+            Optional<Long> suggestedTimeoutInMillis,
+            Executor executor,
+            MiruSolutionLog solutionLog) throws InterruptedException {
+            try {
+                hook.solving(partitionId);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            MiruSolution solution = new MiruSolution(new MiruPartitionCoord(tenantId, partitionId, host), 0, 0, Collections.emptyList(), null);
+            return new MiruSolved<>(solution, (R) answer(partitionId.getId()));
+        }
+    }
+
+    private static class TestEvaluator implements MiruAnswerEvaluator<long[]> {
+
+        private final boolean completionOrder;
+
+        private TestEvaluator(boolean completionOrder) {
+            this.completionOrder = completionOrder;
+        }
+
+        @Override
+        public boolean isDone(long[] result, MiruSolutionLog solutionLog) {
+            return false;
+        }
+
+        @Override
+        public boolean stopOnUnsolvablePartition() {
+            return false;
+        }
+
+        @Override
+        public boolean useParallelSolver() {
+            return false;
+        }
+
+        @Override
+        public boolean mergeInCompletionOrder() {
+            return completionOrder;
+        }
+    }
+
+    private static class SumMerger implements MiruAnswerMerger<long[]> {
+
+        private final List<Integer> mergeOrder;
+
+        private SumMerger(List<Integer> mergeOrder) {
+            this.mergeOrder = mergeOrder;
+        }
+
+        @Override
+        public long[] merge(Optional<long[]> last, long[] current, MiruSolutionLog solutionLog) {
+            mergeOrder.add((int) current[0]);
+            if (!last.isPresent()) {
+                return current.clone();
+            }
+            long[] merged = last.get().clone();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += current[i];
+            }
+            return merged;
+        }
+
+        @Override
+        public long[] done(Optional<long[]> last, long[] alternative, MiruSolutionLog solutionLog) {
+            return last.or(alternative);
+        }
+    }
+}
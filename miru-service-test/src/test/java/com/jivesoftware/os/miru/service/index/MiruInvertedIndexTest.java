@@ -11,6 +11,7 @@ import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 import com.jivesoftware.os.miru.service.IndexTestUtil;
+import com.jivesoftware.os.miru.service.index.lab.LabBitmapCache;
 import com.jivesoftware.os.miru.service.index.lab.LabInvertedIndex;
 import java.util.Arrays;
 import java.util.Collections;
@@ -309,13 +310,27 @@ public class MiruInvertedIndexTest {
         MiruInvertedIndex<RoaringBitmap, RoaringBitmap> atomizedIndex = buildInvertedIndex(true, bitmaps);
         atomizedIndex.set(stackBuffer, 1, 2, 3, 4);
 
+        MiruInvertedIndex<RoaringBitmap, RoaringBitmap> cachedMergedIndex = buildInvertedIndex(false, bitmaps, new LabBitmapCache<>(bitmaps, 1024 * 1024));
+        cachedMergedIndex.set(stackBuffer, 1, 2, 3, 4);
+
+        MiruInvertedIndex<RoaringBitmap, RoaringBitmap> cachedAtomizedIndex = buildInvertedIndex(true, bitmaps, new LabBitmapCache<>(bitmaps, 1024 * 1024));
+        cachedAtomizedIndex.set(stackBuffer, 1, 2, 3, 4);
+
         return new Object[][] {
             { mergedIndex, Arrays.asList(1, 2, 3, 4) },
-            { atomizedIndex, Arrays.asList(1, 2, 3, 4) }
+            { atomizedIndex, Arrays.asList(1, 2, 3, 4) },
+            { cachedMergedIndex, Arrays.asList(1, 2, 3, 4) },
+            { cachedAtomizedIndex, Arrays.asList(1, 2, 3, 4) }
         };
     }
 
     private <BM extends IBM, IBM> MiruInvertedIndex<BM, IBM> buildInvertedIndex(boolean atomized, MiruBitmaps<BM, IBM> bitmaps) throws Exception {
+        return buildInvertedIndex(atomized, bitmaps, null);
+    }
+
+    private <BM extends IBM, IBM> MiruInvertedIndex<BM, IBM> buildInvertedIndex(boolean atomized,
+        MiruBitmaps<BM, IBM> bitmaps,
+        LabBitmapCache<BM, IBM> bitmapCache) throws Exception {
         return new LabInvertedIndex<>(
             new OrderIdProviderImpl(new ConstantWriterIdProvider(1), new SnowflakeIdPacker(), new JiveEpochTimestampProvider()),
             bitmaps,
@@ -335,7 +350,8 @@ public class MiruInvertedIndexTest {
             IndexTestUtil.buildValueIndex("bitmap"),
             new byte[] { 0 },
             IndexTestUtil.buildValueIndex("term"),
-            new Object());
+            new Object(),
+            bitmapCache);
     }
 
     @Test(groups = "slow", enabled = false, description = "Concurrency test")
@@ -49,6 +49,23 @@ public class MiruTimeIndexTest {
         }
     }
 
+    @Test(dataProvider = "miruTimeIndexDataProviderWithData")
+    public void testClosestIds(MiruTimeIndex miruTimeIndex, int capacity) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        long[] timestamps = new long[capacity * 2 + 2];
+        timestamps[0] = -1;
+        for (int i = 0; i < capacity; i++) {
+            timestamps[1 + i * 2] = i * 10;
+            timestamps[2 + i * 2] = i * 10 + 1;
+        }
+        timestamps[timestamps.length - 1] = capacity * 10;
+
+        int[] ids = miruTimeIndex.getClosestIds(timestamps, stackBuffer);
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(ids[i], miruTimeIndex.getClosestId(timestamps[i], stackBuffer), "Should be equal at " + i);
+        }
+    }
+
     @Test(dataProvider = "miruTimeIndexDataProviderWithData")
     public void testExactIdWithPresentIds(MiruTimeIndex miruTimeIndex, int capacity) throws Exception {
         StackBuffer stackBuffer = new StackBuffer();
@@ -183,6 +200,34 @@ public class MiruTimeIndexTest {
         assertEquals(miruTimeIndex.largestInclusiveTimestampIndex(45L, stackBuffer), 5);
     }
 
+    @Test(dataProvider = "miruTimeIndexDataProviderWithoutData")
+    public void testRepairAndCloseKeepLookups(MiruContext<?, ?, ?> context) throws Exception {
+        MiruTimeIndex miruTimeIndex = context.timeIndex;
+        StackBuffer stackBuffer = new StackBuffer();
+
+        long[] timestamps = { 10L, 20L, 30L, 40L };
+        int[] ids = new int[timestamps.length];
+        long[] monotonics = new long[timestamps.length];
+        Arrays.fill(ids, -1);
+        Arrays.fill(monotonics, -1);
+        context.timeIdIndex.allocate(null, context.version, timestamps, ids, monotonics, -1, -1);
+        miruTimeIndex.nextId(stackBuffer, timestamps, ids, monotonics);
+        assertEquals(miruTimeIndex.getClosestId(25L, stackBuffer), 2);
+
+        // a repair hands back ids and monotonics which are already indexed
+        miruTimeIndex.nextId(stackBuffer, timestamps, ids, monotonics);
+        miruTimeIndex.nextId(stackBuffer, new long[] { timestamps[1] }, new int[] { ids[1] }, new long[] { monotonics[1] });
+        assertEquals(miruTimeIndex.getClosestId(25L, stackBuffer), 2);
+        assertEquals(miruTimeIndex.smallestExclusiveTimestampIndex(20L, stackBuffer), 2);
+        assertEquals(miruTimeIndex.largestInclusiveTimestampIndex(35L, stackBuffer), 2);
+
+        context.markClosed();
+        assertEquals(miruTimeIndex.getClosestId(25L, stackBuffer), 2);
+        assertEquals(miruTimeIndex.smallestExclusiveTimestampIndex(20L, stackBuffer), 2);
+        assertEquals(miruTimeIndex.largestInclusiveTimestampIndex(35L, stackBuffer), 2);
+        assertEquals(miruTimeIndex.lastId(), 3);
+    }
+
     /*
      SSD:
 
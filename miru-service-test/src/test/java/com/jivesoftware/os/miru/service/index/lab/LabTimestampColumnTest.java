@@ -0,0 +1,103 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LabTimestampColumnTest {
+
+    @Test
+    public void testCeilingMatchesBruteForce() throws Exception {
+        // enough entries for several blocks, with repeated timestamps and a gap wider than an int offset
+        int count = 1_000;
+        long[] timestamps = new long[count];
+        LabTimestampColumn column = new LabTimestampColumn();
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = (i / 3) * 10L + (i >= count / 2 ? 10L * Integer.MAX_VALUE : 0L);
+            assertTrue(column.append(timestamps[i], i));
+        }
+        column.publish();
+        assertEquals(column.size(), count);
+
+        for (int i = 0; i < count; i++) {
+            for (long timestamp : new long[] { timestamps[i] - 1, timestamps[i], timestamps[i] + 1 }) {
+                assertEquals(column.ceilingId(timestamp), bruteForce(timestamps, timestamp, false), "Ceiling of " + timestamp);
+                assertEquals(column.higherId(timestamp), bruteForce(timestamps, timestamp, true), "Higher of " + timestamp);
+            }
+        }
+    }
+
+    @Test
+    public void testPresentEntriesAreSkipped() throws Exception {
+        LabTimestampColumn column = new LabTimestampColumn();
+        for (int i = 0; i < 300; i++) {
+            assertTrue(column.append(i * 10L, i));
+        }
+        column.publish();
+
+        // a repair appends entries which are already present, in any order
+        assertTrue(column.append(2_990L, 299));
+        assertTrue(column.append(50L, 5));
+        assertTrue(column.append(0L, 0));
+        column.publish();
+        assertEquals(column.size(), 300);
+        assertEquals(column.ceilingId(51L), 6);
+
+        // an absent entry out of order is refused and leaves the column unchanged
+        assertFalse(column.append(55L, 300));
+        assertFalse(column.append(50L, 4));
+        column.publish();
+        assertEquals(column.size(), 300);
+        assertEquals(column.ceilingId(51L), 6);
+
+        // appending past the end continues as before
+        assertTrue(column.append(2_990L, 300));
+        assertTrue(column.append(3_000L, 301));
+        column.publish();
+        assertEquals(column.size(), 302);
+        assertEquals(column.higherId(2_990L), 301);
+    }
+
+    @Test
+    public void testTrimReleasesSlack() throws Exception {
+        LabTimestampColumn column = new LabTimestampColumn();
+        for (int i = 0; i < 200; i++) {
+            column.append(i * 10L, i);
+        }
+        column.publish();
+        assertTrue(column.capacity() > column.size());
+
+        column.trim();
+        assertEquals(column.capacity(), 200);
+        assertEquals(column.size(), 200);
+        assertEquals(column.ceilingId(1_001L), 101);
+        assertEquals(column.lastEntryId(), 199);
+
+        // a trimmed column still grows
+        assertTrue(column.append(2_000L, 200));
+        column.publish();
+        assertEquals(column.size(), 201);
+        assertEquals(column.lastEntryId(), 200);
+
+        LabTimestampColumn empty = new LabTimestampColumn();
+        empty.trim();
+        assertEquals(empty.capacity(), 0);
+        assertTrue(empty.append(10L, 0));
+        empty.publish();
+        assertEquals(empty.ceilingId(5L), 0);
+    }
+
+    private static int bruteForce(long[] timestamps, long timestamp, boolean exclusive) {
+        for (int i = 0; i < timestamps.length; i++) {
+            if (exclusive ? timestamps[i] > timestamp : timestamps[i] >= timestamp) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
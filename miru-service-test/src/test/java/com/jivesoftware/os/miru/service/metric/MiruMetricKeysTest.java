@@ -0,0 +1,48 @@
+package com.jivesoftware.os.miru.service.metric;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ *
+ */
+public class MiruMetricKeysTest {
+
+    @Test
+    public void testKeysAreInterned() throws Exception {
+        assertSame(MiruMetricKeys.solve("request", "query"), MiruMetricKeys.solve("request", "query"));
+        assertSame(MiruMetricKeys.query("query"), MiruMetricKeys.query(new String("query")));
+        assertSame(MiruMetricKeys.index("field", 3), MiruMetricKeys.index("field", 3));
+    }
+
+    @Test
+    public void testIndexKeysByFieldId() throws Exception {
+        // negative ids are used by the authz, inbox, unread and cache indexes
+        int[] fieldIds = { 0, -1, 5, -3, 1, -2, 64 };
+        MiruMetricKeys.IndexKeys[] keys = new MiruMetricKeys.IndexKeys[fieldIds.length];
+        for (int i = 0; i < fieldIds.length; i++) {
+            keys[i] = MiruMetricKeys.index("byFieldId", fieldIds[i]);
+            assertEquals(keys[i].set.countField, "count>set>byFieldId>" + fieldIds[i]);
+        }
+        for (int i = 0; i < fieldIds.length; i++) {
+            assertSame(MiruMetricKeys.index("byFieldId", fieldIds[i]), keys[i]);
+        }
+        assertEquals(MiruMetricKeys.index("otherName", 5).set.countField, "count>set>otherName>5");
+    }
+
+    @Test
+    public void testKeyNames() throws Exception {
+        MiruMetricKeys.SolveKeys solveKeys = MiruMetricKeys.solve("request", "query");
+        assertEquals(solveKeys.calls, "solve>request>request>query>calls");
+        assertEquals(solveKeys.throughputSuccessLocal, "solve>throughput>success>local>request>query");
+
+        assertEquals(MiruMetricKeys.query("query").askAndMerge, "askAndMerge>query>query");
+
+        MiruMetricKeys.IndexKeys indexKeys = MiruMetricKeys.index("field", 3);
+        assertEquals(indexKeys.getIndex.countName, "count>getIndex>field>total");
+        assertEquals(indexKeys.getIndex.countField, "count>getIndex>field>3");
+        assertEquals(indexKeys.lastId.bytesField, "bytes>lastId>field>3");
+    }
+}
@@ -80,6 +80,7 @@ import com.jivesoftware.os.miru.service.stream.MiruIndexCallbacks;
 import com.jivesoftware.os.miru.service.stream.MiruIndexLatest;
 import com.jivesoftware.os.miru.service.stream.MiruIndexPairedLatest;
 import com.jivesoftware.os.miru.service.stream.MiruIndexPrimaryFields;
+import com.jivesoftware.os.miru.service.stream.MiruIndexRemoval;
 import com.jivesoftware.os.miru.service.stream.MiruIndexValueBits;
 import com.jivesoftware.os.miru.service.stream.MiruIndexer;
 import com.jivesoftware.os.miru.service.stream.MiruRebuildDirector;
@@ -103,11 +104,16 @@ import com.jivesoftware.os.routing.bird.deployable.config.extractor.ConfigBinder
 import com.jivesoftware.os.routing.bird.health.api.HealthCheckRegistry;
 import com.jivesoftware.os.routing.bird.health.api.HealthChecker;
 import com.jivesoftware.os.routing.bird.health.api.HealthFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -210,7 +216,8 @@ public class MiruLocalHostedPartitionTest {
             new MiruIndexValueBits<>(),
             new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
             new MiruIndexLatest<>(),
-            new MiruIndexPairedLatest<>());
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
         timings = new MiruLocalHostedPartition.Timings(5_000, 5_000, 5_000, 30_000, 3_000, 30_000, 300_000, 60_000);
 
         MiruInterner<MiruIBA> ibaInterner = new MiruInterner<MiruIBA>(true) {
@@ -317,6 +324,7 @@ public class MiruLocalHostedPartitionTest {
             new RCVSSipIndexMarshaller(),
             resourceLocator,
             config.getPartitionAuthzCacheSize(),
+            config.getPartitionBitmapCacheMaxSizeInBytes(),
             new StripingLocksProvider<>(8),
             new StripingLocksProvider<>(8),
             new StripingLocksProvider<>(8),
@@ -330,7 +338,9 @@ public class MiruLocalHostedPartitionTest {
             true,
             true,
             false,
-            false);
+            false,
+            true,
+            0);
         sipTrackerFactory = new RCVSSipTrackerFactory();
 
         InMemoryRowColumnValueStoreInitializer inMemoryRowColumnValueStoreInitializer = new InMemoryRowColumnValueStoreInitializer();
@@ -703,8 +713,95 @@ public class MiruLocalHostedPartitionTest {
         }
     }
 
+    @Test(dataProvider = "useLabIndexes")
+    public void testExportImportSnapshot(boolean useLabIndexes) throws Exception {
+        init(useLabIndexes);
+
+        MiruLocalHostedPartition<RoaringBitmap, RoaringBitmap, RCVSCursor, RCVSSipCursor> donor = getRoaringLocalHostedPartition();
+
+        setActive(true);
+        waitForRef(bootstrapRunnable).run();
+        waitForRef(rebuildIndexRunnable).run();
+        waitForRef(sipMigrateIndexRunnable).run();
+
+        List<MiruPartitionedActivity> activities = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            activities.add(factory.activity(1, partitionId, i, new MiruActivity(tenantId,
+                1_000L + i,
+                0L,
+                false,
+                new String[0],
+                Collections.emptyMap(),
+                Collections.emptyMap())));
+        }
+        donor.index(activities.iterator());
+        assertTrue(donor.canExportSnapshot());
+
+        // the first write of the stream indexes into the donor, which would block forever if the export still held the write permits
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        AtomicBoolean indexedDuringExport = new AtomicBoolean(false);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertTrue(donor.exportSnapshot(new FilterOutputStream(snapshot) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!indexedDuringExport.get()) {
+                    Future<?> future = writer.submit(() -> {
+                        donor.index(Collections.singletonList(factory.activity(1, partitionId, 100, new MiruActivity(tenantId,
+                            1_100L,
+                            0L,
+                            false,
+                            new String[0],
+                            Collections.emptyMap(),
+                            Collections.emptyMap()))).iterator());
+                        return null;
+                    });
+                    try {
+                        future.get(10, TimeUnit.SECONDS);
+                        indexedDuringExport.set(true);
+                    } catch (Exception e) {
+                        throw new IOException("Donor could not index during export", e);
+                    }
+                }
+                out.write(b, off, len);
+            }
+        }));
+        writer.shutdownNow();
+        assertTrue(indexedDuringExport.get());
+        assertTrue(snapshot.size() > 0);
+
+        StackBuffer stackBuffer = new StackBuffer();
+        try (MiruRequestHandle<RoaringBitmap, RoaringBitmap, RCVSSipCursor> handle = donor.acquireQueryHandle()) {
+            assertEquals(handle.getRequestContext().getActivityIndex().lastId(stackBuffer), 100);
+        }
+
+        // a fresh host with empty storage bootstraps from the donor's bytes
+        init(useLabIndexes);
+        byte[] snapshotBytes = snapshot.toByteArray();
+        MiruLocalHostedPartition<RoaringBitmap, RoaringBitmap, RCVSCursor, RCVSSipCursor> receiver = getRoaringLocalHostedPartition(
+            (fetchCoord, consumer) -> {
+                consumer.consume(new MiruHost("donor"), new ByteArrayInputStream(snapshotBytes));
+                return true;
+            });
+
+        setActive(true);
+        waitForRef(bootstrapRunnable).run();
+        waitForRef(rebuildIndexRunnable).run();
+
+        assertEquals(receiver.getState(), MiruPartitionState.online);
+        assertEquals(receiver.getStorage(), MiruBackingStorage.disk);
+        try (MiruRequestHandle<RoaringBitmap, RoaringBitmap, RCVSSipCursor> handle = receiver.acquireQueryHandle()) {
+            // the snapshot was staged before the concurrent write, so it holds exactly the first batch
+            assertEquals(handle.getRequestContext().getActivityIndex().lastId(stackBuffer), 99);
+        }
+    }
+
     private MiruLocalHostedPartition<RoaringBitmap, RoaringBitmap, RCVSCursor, RCVSSipCursor> getRoaringLocalHostedPartition()
         throws Exception {
+        return getRoaringLocalHostedPartition(null);
+    }
+
+    private MiruLocalHostedPartition<RoaringBitmap, RoaringBitmap, RCVSCursor, RCVSSipCursor> getRoaringLocalHostedPartition(
+        MiruPartitionSnapshotFetcher snapshotFetcher) throws Exception {
         AtomicLong numberOfChitsRemaining = new AtomicLong(100_000);
         MiruMergeChits persistentMergeChits = new LargestFirstMergeChits("persistent", numberOfChitsRemaining);
         MiruMergeChits transientMergeChits = new FreeMergeChits("transient");
@@ -721,6 +818,7 @@ public class MiruLocalHostedPartitionTest {
             new NoOpRealtimeDelivery(miruStats),
             partitionEventHandler,
             rebuildDirector,
+            snapshotFetcher,
             scheduledBootstrapService,
             scheduledRebuildService,
             scheduledSipMigrateService,
@@ -735,6 +833,8 @@ public class MiruLocalHostedPartitionTest {
             true,
             true,
             100,
+            4,
+            1024 * 1024,
             100,
             persistentMergeChits,
             transientMergeChits,
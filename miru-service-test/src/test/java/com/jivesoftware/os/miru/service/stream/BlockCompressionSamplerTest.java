@@ -0,0 +1,91 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class BlockCompressionSamplerTest {
+
+    private final BlockCompressionSampler sampler = new BlockCompressionSampler(1_024);
+
+    private File root;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        root = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testCompressibleAndRandom() throws Exception {
+        File compressible = new File(root, "compressible");
+        byte[] repeated = new byte[10_000];
+        for (int i = 0; i < repeated.length; i++) {
+            repeated[i] = (byte) (i % 16);
+        }
+        write(new File(compressible, "a"), repeated);
+
+        File random = new File(root, "random");
+        byte[] noise = new byte[10_000];
+        new Random(1234).nextBytes(noise);
+        write(new File(random, "a"), noise);
+
+        BlockCompressionSampler.Sample compressibleSample = sampler.sample(Collections.singletonList(compressible), Long.MAX_VALUE);
+        assertEquals(compressibleSample.sampledBytes, 10_000);
+        assertEquals(compressibleSample.blocks, 10);
+        assertTrue(compressibleSample.compressedPercent() < 20, "Expected repeated bytes to compress: " + compressibleSample);
+
+        BlockCompressionSampler.Sample randomSample = sampler.sample(Collections.singletonList(random), Long.MAX_VALUE);
+        assertEquals(randomSample.sampledBytes, 10_000);
+        assertTrue(randomSample.compressedPercent() >= 100, "Expected random bytes not to compress: " + randomSample);
+        assertTrue(randomSample.decodeMicrosPerMebibyte() >= 0);
+    }
+
+    @Test
+    public void testSampleSpansDirsAndStopsAtLimit() throws Exception {
+        File first = new File(root, "env0");
+        File second = new File(root, "env1");
+        write(new File(first, "a"), new byte[1_500]);
+        write(new File(new File(first, "nested"), "b"), new byte[700]);
+        write(new File(second, "a"), new byte[3_000]);
+
+        BlockCompressionSampler.Sample all = sampler.sample(Arrays.asList(first, second), Long.MAX_VALUE);
+        assertEquals(all.sampledBytes, 5_200);
+        // blocks never span files
+        assertEquals(all.blocks, 2 + 1 + 3);
+
+        BlockCompressionSampler.Sample limited = sampler.sample(Arrays.asList(first, second), 2_500);
+        assertEquals(limited.sampledBytes, 2_500);
+        assertEquals(limited.blocks, 2 + 1 + 1);
+    }
+
+    @Test
+    public void testEmptyAndMissingDirs() throws Exception {
+        BlockCompressionSampler.Sample sample = sampler.sample(Arrays.asList(root, new File(root, "missing")), Long.MAX_VALUE);
+        assertEquals(sample.sampledBytes, 0);
+        assertEquals(sample.blocks, 0);
+        assertEquals(sample.compressedPercent(), 100);
+        assertEquals(sample.decodeMicrosPerMebibyte(), 0);
+    }
+
+    private static void write(File file, byte[] bytes) throws Exception {
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.writeByteArrayToFile(file, bytes);
+    }
+}
@@ -1,6 +1,7 @@
 package com.jivesoftware.os.miru.service.stream;
 
 import com.google.common.io.Files;
+import com.google.common.primitives.Bytes;
 import com.jivesoftware.os.filer.io.ByteArrayStripingLocksProvider;
 import com.jivesoftware.os.filer.io.FilerIO;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
@@ -14,6 +15,7 @@ import com.jivesoftware.os.lab.LabHeapPressure;
 import com.jivesoftware.os.lab.LabHeapPressure.FreeHeapStrategy;
 import com.jivesoftware.os.lab.guts.StripingBolBufferLocks;
 import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.CacheKeyBitmaps;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.LastIdCacheKeyValues;
 import com.jivesoftware.os.miru.plugin.context.LastIdKeyValueRawhide;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
@@ -24,8 +26,12 @@ import java.nio.charset.StandardCharsets;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
 /**
  *
  */
@@ -33,6 +39,74 @@ public class LabPluginCacheProviderNGTest {
 
     @Test
     public void testEverything() throws Exception {
+        int numCommits = 7;
+        int numDistincts = 1024;
+        Random r = new Random(); //new Random(21431231);
+        int updateScoresLength = 5;
+
+        LabPluginCacheProvider<RoaringBitmap, RoaringBitmap> provider = provider(true);
+        LastIdCacheKeyValues lastIdCache = provider.getLastIdKeyValues("testLastId", -1, false, 1024 * 1024 * 10L, "cuckoo", 2d);
+        byte[] cacheId = "strut-scores-m8".getBytes(StandardCharsets.UTF_8);
+
+        StackBuffer stackBuffer = new StackBuffer();
+        for (int j = 0; j < numCommits; j++) {
+            int lastId = j;
+            System.out.println("++++ " + j + " ++++");
+            lastIdCache.put(cacheId, true, false,
+                stream -> {
+                    byte[] payload = new byte[4 * updateScoresLength];
+                    int offset = 0;
+                    for (int k = 0; k < updateScoresLength; k++) {
+                        float score = r.nextFloat();
+                        byte[] scoreBytes = FilerIO.floatBytes(score);
+                        System.arraycopy(scoreBytes, 0, payload, offset, 4);
+                        offset += 4;
+                    }
+
+                    byte[] key = FilerIO.longBytes(r.nextInt(numDistincts));
+                    return stream.stream(key, payload, lastId);
+                },
+                stackBuffer);
+            System.out.println("---- " + j + " ----");
+        }
+    }
+
+    @DataProvider(name = "atomized")
+    public Object[][] atomized() {
+        return new Object[][] { { true }, { false } };
+    }
+
+    @Test(dataProvider = "atomized")
+    public void testRemoveBitmapRange(boolean atomized) throws Exception {
+        LabPluginCacheProvider<RoaringBitmap, RoaringBitmap> provider = provider(atomized);
+        CacheKeyBitmaps<RoaringBitmap, RoaringBitmap> cache = provider.getCacheKeyBitmaps("testBitmaps", -1, 1024 * 1024 * 10L, "cuckoo", 2d);
+        StackBuffer stackBuffer = new StackBuffer();
+
+        byte[][] cacheIds = new byte[3][];
+        for (int version = 0; version < cacheIds.length; version++) {
+            cacheIds[version] = Bytes.concat(FilerIO.intBytes(version), "filter".getBytes(StandardCharsets.UTF_8));
+            cache.or(cacheIds[version], RoaringBitmap.bitmapOf(1, 2, 70_000 + version), stackBuffer);
+            cache.setLastId(cacheIds[version], 70_000 + version);
+        }
+        // same leading version, but a different length
+        byte[] otherId = Bytes.concat(FilerIO.intBytes(0), "other".getBytes(StandardCharsets.UTF_8));
+        cache.or(otherId, RoaringBitmap.bitmapOf(3), stackBuffer);
+        cache.setLastId(otherId, 3);
+
+        cache.remove(cacheIds[0].length, FilerIO.intBytes(0), FilerIO.intBytes(2));
+
+        for (int version = 0; version < 2; version++) {
+            assertEquals(cache.getLastId(cacheIds[version]), -1);
+            RoaringBitmap removed = cache.get(cacheIds[version], stackBuffer);
+            assertTrue(removed == null || removed.isEmpty());
+        }
+        assertEquals(cache.getLastId(cacheIds[2]), 70_002);
+        assertEquals(cache.get(cacheIds[2], stackBuffer), RoaringBitmap.bitmapOf(1, 2, 70_002));
+        assertEquals(cache.getLastId(otherId), 3);
+        assertEquals(cache.get(otherId, stackBuffer), RoaringBitmap.bitmapOf(3));
+    }
+
+    private LabPluginCacheProvider<RoaringBitmap, RoaringBitmap> provider(boolean atomized) throws Exception {
         OrderIdProviderImpl orderIdProvider = new OrderIdProviderImpl(new ConstantWriterIdProvider(1), new SnowflakeIdPacker(),
             new JiveEpochTimestampProvider());
 
@@ -61,11 +135,6 @@ public class LabPluginCacheProviderNGTest {
         );
         LABEnvironment[] labEnvironments = { labEnvironment };
 
-        int numCommits = 7;
-        int numDistincts = 1024;
-        Random r = new Random(); //new Random(21431231);
-        int updateScoresLength = 5;
-
         for (int i = 0; i < labEnvironments.length; i++) {
             labEnvironments[i].register("lastIdKeyValue", new LastIdKeyValueRawhide());
             //labEnvironments[i].register("lastIdKeyValue", new FixedWidthRawhide(8, 4 * updateScoresLength));
@@ -78,7 +147,7 @@ public class LabPluginCacheProviderNGTest {
         }
 
         MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
-        LabPluginCacheProvider<RoaringBitmap, RoaringBitmap> provider = new LabPluginCacheProvider<>(orderIdProvider,
+        return new LabPluginCacheProvider<>(orderIdProvider,
             labEnvironments,
             stripedLocks,
             byteArrayStripingLocksProvider,
@@ -92,31 +161,7 @@ public class LabPluginCacheProviderNGTest {
                 public void reset() {
                 }
             },
-            true,
+            atomized,
             true);
-        LastIdCacheKeyValues lastIdCache = provider.getLastIdKeyValues("testLastId", -1, false, 1024 * 1024 * 10L, "cuckoo", 2d);
-        byte[] cacheId = "strut-scores-m8".getBytes(StandardCharsets.UTF_8);
-
-        StackBuffer stackBuffer = new StackBuffer();
-        for (int j = 0; j < numCommits; j++) {
-            int lastId = j;
-            System.out.println("++++ " + j + " ++++");
-            lastIdCache.put(cacheId, true, false,
-                stream -> {
-                    byte[] payload = new byte[4 * updateScoresLength];
-                    int offset = 0;
-                    for (int k = 0; k < updateScoresLength; k++) {
-                        float score = r.nextFloat();
-                        byte[] scoreBytes = FilerIO.floatBytes(score);
-                        System.arraycopy(scoreBytes, 0, payload, offset, 4);
-                        offset += 4;
-                    }
-
-                    byte[] key = FilerIO.longBytes(r.nextInt(numDistincts));
-                    return stream.stream(key, payload, lastId);
-                },
-                stackBuffer);
-            System.out.println("---- " + j + " ----");
-        }
     }
 }
@@ -0,0 +1,157 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.index.BloomIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
+import com.jivesoftware.os.miru.plugin.solution.MiruDeferredGather;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import java.util.Arrays;
+import java.util.List;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruDeferredGatherTest {
+
+    private static final int NUM_ACTIVITIES = 50;
+    // spreads the ids across several roaring containers, so the sorted gather order differs from the result order
+    private static final int ID_STRIDE = 7_919;
+
+    private final MiruTenantId tenantId = new MiruTenantId("deferredTenant".getBytes());
+    private final MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, MiruPartitionId.of(0), new MiruHost("logicalName"));
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final MiruSchema schema = new MiruSchema.Builder("deferred", 1)
+        .setFieldDefinitions(new MiruFieldDefinition[] {
+            new MiruFieldDefinition(0, "author", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+            new MiruFieldDefinition(1, "tags", MiruFieldDefinition.Type.multiTerm, MiruFieldDefinition.Prefix.NONE),
+            new MiruFieldDefinition(2, "secret", MiruFieldDefinition.Type.singleTermNonStored, MiruFieldDefinition.Prefix.NONE)
+        })
+        .build();
+
+    private MiruContext<RoaringBitmap, RoaringBitmap, ?> context;
+    private RoaringBitmap answer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer = new MiruIndexer<>(new MiruIndexAuthz<>(),
+            new MiruIndexPrimaryFields<>(),
+            new MiruIndexValueBits<>(),
+            new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
+            new MiruIndexLatest<>(),
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
+        context = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord, schema);
+
+        answer = new RoaringBitmap();
+        List<MiruActivityAndId<MiruActivity>> activities = Lists.newArrayList();
+        for (int i = 0; i < NUM_ACTIVITIES; i++) {
+            MiruActivity.Builder builder = new MiruActivity.Builder(tenantId, 1_000 + i, 0, false, null)
+                .putFieldValue("author", "u" + (i % 7))
+                .putFieldValue("secret", "s" + i);
+            // every fourth activity has no tags
+            if (i % 4 != 0) {
+                builder.putAllFieldValues("tags", Arrays.asList("t" + (i % 3), "t" + (i % 5 + 3)));
+            }
+            int id = i * ID_STRIDE;
+            activities.add(new MiruActivityAndId<>(builder.build(), id, 1_000 + i));
+            if (i % 3 != 0) {
+                answer.add(id);
+            }
+        }
+        miruIndexer.index(context, coord, activities, MoreExecutors.sameThreadExecutor());
+        assertTrue(bitmaps.keys(answer).length > 1);
+    }
+
+    @DataProvider(name = "limits")
+    public Object[][] limits() {
+        return new Object[][] {
+            { 0, true },
+            { 1, true },
+            { 10, true },
+            { 10, false },
+            { NUM_ACTIVITIES, true }
+        };
+    }
+
+    @Test(dataProvider = "limits")
+    public void testDeferredMatchesEager(int limit, boolean gatherTimeVersionRealtime) throws Exception {
+        MiruFieldDefinition[] gatherFieldDefinitions = schema.getFieldDefinitions();
+
+        // results in descending id order up to the limit, as a stream would select them
+        int[] answerIds = answer.toArray();
+        List<Integer> resultIds = Lists.newArrayList();
+        for (int i = answerIds.length - 1; i >= 0 && resultIds.size() < limit; i--) {
+            resultIds.add(answerIds[i]);
+        }
+
+        MiruDeferredGather deferredGather = new MiruDeferredGather("test", gatherFieldDefinitions, gatherTimeVersionRealtime);
+        int[] slots = new int[resultIds.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = deferredGather.add(resultIds.get(i));
+        }
+        // adding an id again keeps its slot
+        for (int i = 0; i < slots.length; i++) {
+            assertEquals(deferredGather.add(resultIds.get(i)), slots[i]);
+        }
+        assertEquals(deferredGather.size(), resultIds.size());
+        StackBuffer stackBuffer = new StackBuffer();
+        deferredGather.gather(context, stackBuffer);
+
+        MiruActivityIndex activityIndex = context.getActivityIndex();
+        for (int i = 0; i < slots.length; i++) {
+            int id = resultIds.get(i);
+            if (gatherTimeVersionRealtime) {
+                assertEquals(deferredGather.getTimeVersionRealtime(slots[i]), activityIndex.getTimeVersionRealtime("test", id, stackBuffer));
+            } else {
+                assertNull(deferredGather.getTimeVersionRealtime(slots[i]));
+            }
+
+            MiruValue[][] expected = new MiruValue[gatherFieldDefinitions.length][];
+            for (int j = 0; j < gatherFieldDefinitions.length; j++) {
+                MiruTermId[] termIds = activityIndex.get("test", id, gatherFieldDefinitions[j], stackBuffer);
+                if (termIds != null) {
+                    expected[j] = new MiruValue[termIds.length];
+                    for (int k = 0; k < termIds.length; k++) {
+                        expected[j][k] = new MiruValue(context.getTermComposer().decompose(schema, gatherFieldDefinitions[j], stackBuffer, termIds[k]));
+                    }
+                }
+            }
+            MiruValue[][] actual = deferredGather.getValues(slots[i]);
+            assertTrue(Arrays.deepEquals(actual, expected),
+                "id:" + id + " expected:" + Arrays.deepToString(expected) + " actual:" + Arrays.deepToString(actual));
+            // the eager lookups are not vacuous: every result has an author, and non-stored fields are never gathered
+            assertEquals(actual[0].length, 1);
+            assertNull(actual[2]);
+        }
+    }
+
+    @Test
+    public void testEmptyGather() throws Exception {
+        MiruDeferredGather deferredGather = new MiruDeferredGather("test", schema.getFieldDefinitions(), true);
+        deferredGather.gather(context, new StackBuffer());
+        assertEquals(deferredGather.size(), 0);
+        assertEquals(deferredGather.getSlot(0), -1);
+    }
+}
@@ -0,0 +1,207 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.field.MiruFieldName;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.index.BloomIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.solution.FieldAndTermId;
+import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.mutable.MutableInt;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruFilterTest {
+
+    private static final String OBJECT_ID = MiruFieldName.OBJECT_ID.getFieldName();
+    private static final String AUTHOR_ID = MiruFieldName.AUTHOR_ID.getFieldName();
+    private static final String CONTAINER_ID = MiruFieldName.CONTAINER_ID.getFieldName();
+
+    private final MiruTenantId tenantId = new MiruTenantId("filterTenant".getBytes());
+    private final MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, MiruPartitionId.of(0), new MiruHost("logicalName"));
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+
+    private MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer;
+    private MiruContext<RoaringBitmap, RoaringBitmap, ?> context;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        miruIndexer = new MiruIndexer<>(new MiruIndexAuthz<>(),
+            new MiruIndexPrimaryFields<>(),
+            new MiruIndexValueBits<>(),
+            new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
+            new MiruIndexLatest<>(),
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
+        context = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord);
+
+        index(0, 0, "a", "u1", "c1");
+        index(1, 0, "b", "u2", "c1");
+        index(2, 0, "c", "u2", "c2");
+    }
+
+    @Test
+    public void testEmptyAndStillCollectsSubFilterTerms() throws Exception {
+        // no activity has both objectId:a and authorId:u2, so the intersection is empty before the sub-filter is reached
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and,
+            false,
+            Arrays.asList(
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, OBJECT_ID, "a"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, AUTHOR_ID, "u2")),
+            Collections.singletonList(new MiruFilter(MiruFilterOperation.or,
+                false,
+                Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, CONTAINER_ID, "c1")),
+                null)));
+
+        Map<FieldAndTermId, MutableInt> termCollector = Maps.newHashMap();
+        RoaringBitmap collected = filter(filter, termCollector);
+        RoaringBitmap uncollected = filter(filter, null);
+
+        assertTrue(collected.isEmpty());
+        assertEquals(collected, uncollected);
+
+        assertCollected(termCollector, OBJECT_ID, "a");
+        assertCollected(termCollector, AUTHOR_ID, "u2");
+        assertCollected(termCollector, CONTAINER_ID, "c1");
+        assertEquals(termCollector.size(), 3);
+    }
+
+    @Test
+    public void testEmptyAndUnderOrStillCollectsTerms() throws Exception {
+        MiruFilter emptyAnd = new MiruFilter(MiruFilterOperation.and,
+            false,
+            Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, OBJECT_ID, "missing")),
+            Collections.singletonList(new MiruFilter(MiruFilterOperation.or,
+                false,
+                Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, CONTAINER_ID, "c2")),
+                null)));
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.or,
+            false,
+            Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, AUTHOR_ID, "u1")),
+            Collections.singletonList(emptyAnd));
+
+        Map<FieldAndTermId, MutableInt> termCollector = Maps.newHashMap();
+        RoaringBitmap collected = filter(filter, termCollector);
+
+        assertEquals(collected, RoaringBitmap.bitmapOf(0));
+        assertEquals(collected, filter(filter, null));
+        assertCollected(termCollector, AUTHOR_ID, "u1");
+        assertCollected(termCollector, CONTAINER_ID, "c2");
+    }
+
+    @Test
+    public void testRepairInvalidatesCachedFilter() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and,
+            false,
+            Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, AUTHOR_ID, "u1")),
+            null);
+
+        // the first call populates the cache, the second is answered from it
+        assertEquals(filter(filter, null), RoaringBitmap.bitmapOf(0));
+        assertEquals(filter(filter, null), RoaringBitmap.bitmapOf(0));
+
+        // repair an id which the cached result already covers
+        index(1, 1, "b", "u1", "c1");
+
+        RoaringBitmap cached = filter(filter, null);
+        assertEquals(cached, uncached(filter));
+        assertTrue(cached.contains(1));
+
+        // appending still extends the repaired result
+        index(3, 0, "d", "u1", "c2");
+        cached = filter(filter, null);
+        assertEquals(cached, uncached(filter));
+        assertTrue(cached.contains(3));
+    }
+
+    @Test
+    public void testRemoveIsMaskedFromCachedFilter() throws Exception {
+        MiruFilter filter = new MiruFilter(MiruFilterOperation.and,
+            true,
+            Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, AUTHOR_ID, "u2")),
+            null);
+
+        assertEquals(filter(filter, null), RoaringBitmap.bitmapOf(1, 2));
+
+        List<MiruActivityAndId<MiruActivity>> removables = Lists.newArrayList();
+        removables.add(new MiruActivityAndId<>(activity(2, 1, "c", "u2", "c2"), 2, 3));
+        miruIndexer.remove(context, coord, removables);
+
+        RoaringBitmap cached = filter(filter, null);
+        assertEquals(cached, RoaringBitmap.bitmapOf(1));
+        assertEquals(cached, uncached(filter));
+    }
+
+    private RoaringBitmap uncached(MiruFilter filter) throws Exception {
+        // collecting terms bypasses the filter cache
+        return filter(filter, Maps.newHashMap());
+    }
+
+    private RoaringBitmap filter(MiruFilter filter, Map<FieldAndTermId, MutableInt> termCollector) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        return aggregateUtil.filter("test",
+            bitmaps,
+            context,
+            filter,
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            termCollector,
+            context.getActivityIndex().lastId(stackBuffer),
+            -1,
+            -1,
+            stackBuffer);
+    }
+
+    private void assertCollected(Map<FieldAndTermId, MutableInt> termCollector, String fieldName, String value) throws Exception {
+        int fieldId = context.getSchema().getFieldId(fieldName);
+        MiruFieldDefinition fieldDefinition = context.getSchema().getFieldDefinition(fieldId);
+        MiruTermId termId = context.getTermComposer().compose(context.getSchema(), fieldDefinition, new StackBuffer(), value);
+        MutableInt count = termCollector.get(new FieldAndTermId(fieldId, termId));
+        assertNotNull(count, "Missing " + fieldName + ":" + value + " in " + termCollector);
+        assertEquals(count.intValue(), 1);
+    }
+
+    private void index(int id, long version, String objectId, String authorId, String containerId) throws Exception {
+        List<MiruActivityAndId<MiruActivity>> activities = Lists.newArrayList();
+        activities.add(new MiruActivityAndId<>(activity(id, version, objectId, authorId, containerId), id, id + 1));
+        miruIndexer.index(context, coord, activities, MoreExecutors.sameThreadExecutor());
+    }
+
+    private MiruActivity activity(int id, long version, String objectId, String authorId, String containerId) {
+        return new MiruActivity.Builder(tenantId, id + 1, version, false, null)
+            .putFieldValue(OBJECT_ID, objectId)
+            .putFieldValue(AUTHOR_ID, authorId)
+            .putFieldValue(CONTAINER_ID, containerId)
+            .build();
+    }
+}
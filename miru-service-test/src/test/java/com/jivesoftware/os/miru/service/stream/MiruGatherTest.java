@@ -0,0 +1,299 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.field.MiruFieldName;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.index.BloomIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruGatherTest {
+
+    private static final String AUTHOR_ID = MiruFieldName.AUTHOR_ID.getFieldName();
+    private static final int NUM_ACTIVITIES = 60;
+    // spreads the ids across several roaring containers, so the parallel gather has more than one slice
+    private static final int ID_STRIDE = 7_919;
+    private static final int NUM_AUTHORS = 7;
+
+    private final MiruTenantId tenantId = new MiruTenantId("gatherTenant".getBytes());
+    private final MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, MiruPartitionId.of(0), new MiruHost("logicalName"));
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+
+    private MiruContext<RoaringBitmap, RoaringBitmap, ?> context;
+    private ExecutorService executorService;
+    private RoaringBitmap answer;
+    private int authorFieldId;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer = newIndexer();
+        context = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord);
+        executorService = Executors.newFixedThreadPool(4);
+
+        answer = new RoaringBitmap();
+        List<MiruActivityAndId<MiruActivity>> activities = Lists.newArrayList();
+        for (int i = 0; i < NUM_ACTIVITIES; i++) {
+            int id = i * ID_STRIDE;
+            // authors repeat within and across containers, and the last author only appears in the final container
+            String author = "u" + (i < NUM_ACTIVITIES - 2 ? (i * 5) % (NUM_AUTHORS - 1) : NUM_AUTHORS - 1);
+            MiruActivity activity = new MiruActivity.Builder(tenantId, i + 1, 0, false, null)
+                .putFieldValue(AUTHOR_ID, author)
+                .build();
+            activities.add(new MiruActivityAndId<>(activity, id, i + 1));
+            answer.add(id);
+        }
+        miruIndexer.index(context, coord, activities, MoreExecutors.sameThreadExecutor());
+        authorFieldId = context.getSchema().getFieldId(AUTHOR_ID);
+        assertTrue(bitmaps.keys(answer).length > 1);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+    }
+
+    @DataProvider(name = "gatherOptions")
+    public Object[][] gatherOptions() {
+        return new Object[][] {
+            { false, false, false },
+            { true, false, false },
+            { false, true, false },
+            { true, true, false },
+            { false, true, true },
+            { true, true, true }
+        };
+    }
+
+    @Test(dataProvider = "gatherOptions")
+    public void testParallelGatherMatchesSerial(boolean descending, boolean includeCounts, boolean withCounter) throws Exception {
+        List<String> serial = Lists.newArrayList();
+        aggregateUtil.gather("test", bitmaps, context, bitmaps.copy(answer), authorFieldId, 7, descending, includeCounts, counter(withCounter),
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            (id, termId, count) -> serial.add(id + ":" + termId + ":" + count),
+            new StackBuffer());
+
+        List<String> parallel = Lists.newArrayList();
+        aggregateUtil.gatherParallel("test", bitmaps, context, bitmaps.copy(answer), authorFieldId, 7, descending, includeCounts, counter(withCounter),
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            executorService,
+            (id, termId, count) -> parallel.add(id + ":" + termId + ":" + count),
+            new StackBuffer());
+
+        assertEquals(serial.size(), NUM_AUTHORS);
+        assertEquals(parallel, serial);
+    }
+
+    @Test
+    public void testParallelGatherHonorsStreamLimit() throws Exception {
+        List<String> serial = Lists.newArrayList();
+        aggregateUtil.gather("test", bitmaps, context, bitmaps.copy(answer), authorFieldId, 7, true, false, Optional.absent(),
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            (id, termId, count) -> {
+                serial.add(id + ":" + termId);
+                return serial.size() < 3;
+            },
+            new StackBuffer());
+
+        List<String> parallel = Lists.newArrayList();
+        aggregateUtil.gatherParallel("test", bitmaps, context, bitmaps.copy(answer), authorFieldId, 7, true, false, Optional.absent(),
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            executorService,
+            (id, termId, count) -> {
+                parallel.add(id + ":" + termId);
+                return parallel.size() < 3;
+            },
+            new StackBuffer());
+
+        assertEquals(parallel.size(), 3);
+        assertEquals(parallel, serial);
+    }
+
+    @Test
+    public void testParallelGatherStreamsBeforeLaterSlices() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        // a single gather thread which holds every slice after the first until the stream has stopped
+        ExecutorService gatedExecutorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            private final AtomicInteger started = new AtomicInteger();
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                if (started.getAndIncrement() > 0) {
+                    Uninterruptibles.awaitUninterruptibly(stopped);
+                }
+            }
+        };
+
+        List<String> parallel = Lists.newArrayList();
+        MiruSolutionLog solutionLog = new MiruSolutionLog(MiruSolutionLogLevel.INFO);
+        try {
+            aggregateUtil.gatherParallel("test", bitmaps, context, bitmaps.copy(answer), authorFieldId, 7, true, false, Optional.absent(),
+                solutionLog,
+                gatedExecutorService,
+                (id, termId, count) -> {
+                    parallel.add(id + ":" + termId);
+                    stopped.countDown();
+                    return false;
+                },
+                new StackBuffer());
+        } finally {
+            stopped.countDown();
+            gatedExecutorService.shutdownNow();
+        }
+
+        assertEquals(parallel.size(), 1);
+        assertTrue(solutionLog.asList().toString().contains("streamed:1 "), solutionLog.asList().toString());
+    }
+
+    @DataProvider(name = "valueBitsOptions")
+    public Object[][] valueBitsOptions() {
+        return new Object[][] {
+            { false, false, false },
+            { true, false, false },
+            { false, true, false },
+            { true, true, false },
+            { false, false, true },
+            { true, true, true }
+        };
+    }
+
+    @Test(dataProvider = "valueBitsOptions")
+    @SuppressWarnings("deprecation")
+    public void testValueBitsGatherCounts(boolean descending, boolean withCounter, boolean olderActivities) throws Exception {
+        MiruSchema schema = new MiruSchema.Builder("valueBits", 1)
+            .setFieldDefinitions(new MiruFieldDefinition[] {
+                new MiruFieldDefinition(0, "rating", MiruFieldDefinition.Type.singleTermIndexValueBits, MiruFieldDefinition.Prefix.NONE),
+                new MiruFieldDefinition(1, "author", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE)
+            })
+            .build();
+        // older activities are indexed while the field is still a plain term, so they have no value bits
+        MiruSchema termSchema = new MiruSchema.Builder("valueBits", 1)
+            .setFieldDefinitions(new MiruFieldDefinition[] {
+                new MiruFieldDefinition(0, "rating", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+                new MiruFieldDefinition(1, "author", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE)
+            })
+            .build();
+        MiruContext<RoaringBitmap, RoaringBitmap, ?> valueBitsContext = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord,
+            olderActivities ? termSchema : schema);
+
+        int numActivities = 40;
+        int numOlder = olderActivities ? 15 : 0;
+        String[] ratings = new String[numActivities];
+        List<MiruActivityAndId<MiruActivity>> activities = Lists.newArrayList();
+        for (int i = 0; i < numActivities; i++) {
+            // values of different lengths, so the packed length bits differ too
+            ratings[i] = i % 7 == 0 ? "long" + (i % 3) : "r" + (i % 4);
+            MiruActivity activity = new MiruActivity.Builder(tenantId, i + 1, 0, false, null)
+                .putFieldValue("rating", ratings[i])
+                .putFieldValue("author", "u" + (i % 5))
+                .build();
+            activities.add(new MiruActivityAndId<>(activity, i, i + 1));
+            if (i + 1 == numOlder) {
+                newIndexer().index(valueBitsContext, coord, activities, MoreExecutors.sameThreadExecutor());
+                activities = Lists.newArrayList();
+                valueBitsContext.schema.set(schema);
+            }
+        }
+        newIndexer().index(valueBitsContext, coord, activities, MoreExecutors.sameThreadExecutor());
+
+        RoaringBitmap valueBitsAnswer = new RoaringBitmap();
+        RoaringBitmap counter = new RoaringBitmap();
+        for (int i = 0; i < numActivities; i++) {
+            if (i % 3 != 0) {
+                valueBitsAnswer.add(i);
+            }
+            if (i % 2 == 0) {
+                // includes ids outside the answer, which still count toward the answer's values
+                counter.add(i);
+            }
+        }
+
+        // brute force, keyed by term in the order the answer first reaches each value
+        Map<String, long[]> expected = Maps.newLinkedHashMap();
+        for (int n = 0; n < numActivities; n++) {
+            int i = descending ? numActivities - 1 - n : n;
+            if (valueBitsAnswer.contains(i) && !expected.containsKey(ratings[i])) {
+                long count = 0;
+                for (int j = 0; j < numActivities; j++) {
+                    if (ratings[j].equals(ratings[i]) && (withCounter ? counter.contains(j) : valueBitsAnswer.contains(j))) {
+                        count++;
+                    }
+                }
+                expected.put(ratings[i], new long[] { i, count });
+            }
+        }
+        List<String> expectedGathered = Lists.newArrayList();
+        for (Map.Entry<String, long[]> entry : expected.entrySet()) {
+            MiruTermId termId = valueBitsContext.getTermComposer().compose(schema, schema.getFieldDefinition(0), new StackBuffer(), entry.getKey());
+            expectedGathered.add(entry.getValue()[0] + ":" + termId + ":" + entry.getValue()[1]);
+        }
+
+        List<String> gathered = Lists.newArrayList();
+        aggregateUtil.gather("test", bitmaps, valueBitsContext, valueBitsAnswer, 0, 7, descending, true,
+            withCounter ? Optional.of(counter) : Optional.absent(),
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            (id, termId, count) -> gathered.add(id + ":" + termId + ":" + count),
+            new StackBuffer());
+
+        assertEquals(gathered, expectedGathered);
+    }
+
+    private MiruIndexer<RoaringBitmap, RoaringBitmap> newIndexer() {
+        return new MiruIndexer<>(new MiruIndexAuthz<>(),
+            new MiruIndexPrimaryFields<>(),
+            new MiruIndexValueBits<>(),
+            new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
+            new MiruIndexLatest<>(),
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
+    }
+
+    private Optional<RoaringBitmap> counter(boolean withCounter) {
+        if (!withCounter) {
+            return Optional.absent();
+        }
+        // every other activity, so each slice counts a subset of its answer
+        RoaringBitmap counter = new RoaringBitmap();
+        for (int i = 0; i < NUM_ACTIVITIES; i += 2) {
+            counter.add(i * ID_STRIDE);
+        }
+        return Optional.of(counter);
+    }
+}
@@ -29,6 +29,8 @@ import org.roaringbitmap.RoaringBitmap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -142,6 +144,59 @@ public class MiruIndexerTest {
         verifyAuthzValues(context.getAuthzIndex(), context.getActivityIndex().getAuthz("test", nextId, stackBuffer), nextId, stackBuffer);
     }
 
+    @Test(dataProvider = "miruIndexContextDataProvider")
+    public void testRemoveData(MiruPartitionCoord coord,
+        MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
+        MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer,
+        List<MiruActivityAndId<MiruActivity>> activityList)
+        throws Exception {
+
+        StackBuffer stackBuffer = new StackBuffer();
+        MiruTenantId tenantId = coord.tenantId;
+
+        List<MiruActivityAndId<MiruActivity>> removables = Lists.newArrayList();
+        for (MiruActivityAndId<MiruActivity> activityAndId : activityList) {
+            MiruActivity activity = activityAndId.activity;
+            removables.add(new MiruActivityAndId<>(
+                new MiruActivity.Builder(tenantId, activity.time, activity.version + 1, false, activity.authz).build(),
+                activityAndId.id,
+                activityAndId.monoTimestamp));
+        }
+        miruIndexer.remove(context, coord, removables);
+
+        BitmapAndLastId<RoaringBitmap> container = new BitmapAndLastId<>();
+        context.getRemovalIndex().getIndex(container, stackBuffer);
+        assertTrue(container.isSet());
+        for (MiruActivityAndId<MiruActivity> activityAndId : activityList) {
+            assertTrue(container.getBitmap().contains(activityAndId.id));
+        }
+
+        // a newer repair unhides the activity
+        MiruActivityAndId<MiruActivity> repaired = activityList.get(0);
+        miruIndexer.index(context,
+            coord,
+            Lists.newArrayList(Arrays.asList(new MiruActivityAndId<>(
+                new MiruActivity.Builder(tenantId, repaired.activity.time, repaired.activity.version + 2, false, repaired.activity.authz).build(),
+                repaired.id,
+                repaired.monoTimestamp))),
+            MoreExecutors.sameThreadExecutor());
+
+        container.clear();
+        context.getRemovalIndex().getIndex(container, stackBuffer);
+        assertFalse(container.getBitmap().contains(repaired.id));
+        assertTrue(container.getBitmap().contains(activityList.get(1).id));
+    }
+
+    @Test
+    public void testSliceCount() throws Exception {
+        assertEquals(MiruIndexer.sliceCount(1, 30, 8), 1);
+        assertEquals(MiruIndexer.sliceCount(10, 30, 8), 1);
+        assertEquals(MiruIndexer.sliceCount(100, 30, 8), 3);
+        assertEquals(MiruIndexer.sliceCount(10_000, 30, 8), 16);
+        assertEquals(MiruIndexer.sliceCount(10_000, 30, 1), 2);
+        assertEquals(MiruIndexer.sliceCount(10_000, 0, 8), 10);
+    }
+
     private void verifyFieldValues(MiruTenantId tenantId,
         MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
         int activityId,
@@ -189,7 +244,8 @@ public class MiruIndexerTest {
             new MiruIndexValueBits<>(),
             new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
             new MiruIndexLatest<>(),
-            new MiruIndexPairedLatest<>());
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
 
         return ArrayUtils.addAll(buildIndexContextDataProvider(tenantId, coord, bitmaps, miruIndexer, false),
             buildIndexContextDataProvider(tenantId, coord, bitmaps, miruIndexer, true));
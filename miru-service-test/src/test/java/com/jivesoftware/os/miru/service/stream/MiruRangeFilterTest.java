@@ -0,0 +1,354 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.index.BloomIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruRangeFilterTest {
+
+    private static final String RATING = "rating";
+    private static final String AUTHOR = "author";
+    private static final int NUM_ACTIVITIES = 300;
+    // includes a character which encodes to bytes above 0x7f, so the comparison has to be unsigned
+    private static final String ALPHABET = "09AZaz~\u00e9";
+
+    private final MiruTenantId tenantId = new MiruTenantId("rangeTenant".getBytes());
+    private final MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, MiruPartitionId.of(0), new MiruHost("logicalName"));
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+
+    private MiruSchema schema;
+    private MiruContext<RoaringBitmap, RoaringBitmap, ?> context;
+    private String[] ratings;
+    private String[] authors;
+    private List<String> probes;
+
+    @BeforeMethod
+    @SuppressWarnings("deprecation")
+    public void setUp() throws Exception {
+        schema = new MiruSchema.Builder("range", 1)
+            .setFieldDefinitions(new MiruFieldDefinition[] {
+                new MiruFieldDefinition(0, RATING, MiruFieldDefinition.Type.singleTermIndexValueBits, MiruFieldDefinition.Prefix.NONE),
+                new MiruFieldDefinition(1, AUTHOR, MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE)
+            })
+            .build();
+        context = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord, schema);
+
+        Random random = new Random(1234);
+        ratings = new String[NUM_ACTIVITIES];
+        authors = new String[NUM_ACTIVITIES];
+        for (int i = 0; i < NUM_ACTIVITIES; i++) {
+            authors[i] = "u" + (i % 3);
+            // some activities have no rating, and must never match a range
+            if (i % 11 != 0) {
+                ratings[i] = randomValue(random, 1 + random.nextInt(4));
+            }
+        }
+        index(0, NUM_ACTIVITIES, 0);
+
+        // every indexed value, plus values between, below and beyond them in both length and bytes
+        Set<String> distinct = Sets.newHashSet();
+        for (String rating : ratings) {
+            if (rating != null) {
+                distinct.add(rating);
+            }
+        }
+        probes = Lists.newArrayList(distinct);
+        for (int i = 0; i < 40; i++) {
+            probes.add(randomValue(random, 1 + random.nextInt(5)));
+        }
+        probes.add("\u0000");
+        probes.add("\u00e9\u00e9\u00e9\u00e9\u00e9");
+    }
+
+    @Test
+    public void testGreaterOrEqual() throws Exception {
+        for (String lower : probes) {
+            assertRange(lower, null);
+        }
+    }
+
+    @Test
+    public void testLessOrEqual() throws Exception {
+        for (String upper : probes) {
+            assertRange(null, upper);
+        }
+    }
+
+    @Test
+    public void testBetween() throws Exception {
+        Random random = new Random(5678);
+        for (int i = 0; i < 200; i++) {
+            assertRange(probes.get(random.nextInt(probes.size())), probes.get(random.nextInt(probes.size())));
+        }
+    }
+
+    @Test
+    public void testUnboundedMatchesEveryValue() throws Exception {
+        RoaringBitmap expected = bruteForce(null, null);
+        assertEquals(expected.getCardinality(), NUM_ACTIVITIES - (NUM_ACTIVITIES + 10) / 11);
+        assertEquals(filter(range(null, null)), expected);
+    }
+
+    @Test
+    public void testBoundsAtMinAndMax() throws Exception {
+        String min = null;
+        String max = null;
+        for (String rating : ratings) {
+            if (rating != null) {
+                if (min == null || compare(bytes(rating), bytes(min)) < 0) {
+                    min = rating;
+                }
+                if (max == null || compare(bytes(rating), bytes(max)) > 0) {
+                    max = rating;
+                }
+            }
+        }
+
+        assertEquals(filter(range(min, null)), bruteForce(null, null));
+        assertEquals(filter(range(null, max)), bruteForce(null, null));
+        assertEquals(filter(range(min, max)), bruteForce(null, null));
+        assertEquals(filter(range(min, min)), bruteForce(min, min));
+        assertEquals(filter(range(max, max)), bruteForce(max, max));
+        assertTrue(filter(range(max, max)).getCardinality() > 0);
+
+        // just past either end
+        String pastMax = max + "~";
+        assertTrue(filter(range(pastMax, null)).isEmpty());
+        assertRange(null, pastMax);
+    }
+
+    @Test
+    public void testEmptyRanges() throws Exception {
+        for (String probe : probes) {
+            for (String other : probes) {
+                if (compare(bytes(probe), bytes(other)) > 0) {
+                    assertTrue(filter(range(probe, other)).isEmpty(), "Expected nothing in [" + probe + ", " + other + "]");
+                    break;
+                }
+            }
+        }
+        // longer than any indexed value
+        assertTrue(filter(range("~~~~~", null)).isEmpty());
+    }
+
+    @Test
+    public void testCachedRangesKeepTheirBounds() throws Exception {
+        assertTrue(context.getCacheProvider() != null);
+        String x = ratings[1];
+        RoaringBitmap atLeast = bruteForce(x, null);
+        RoaringBitmap atMost = bruteForce(null, x);
+        assertTrue(!atLeast.equals(atMost));
+
+        // each is asked twice, so the second answer comes from the filter cache
+        for (int i = 0; i < 2; i++) {
+            assertEquals(filter(range(x, null)), atLeast, "Mismatch for [" + x + ", null] on pass " + i);
+            assertEquals(filter(range(null, x)), atMost, "Mismatch for [null, " + x + "] on pass " + i);
+        }
+
+        String y = ratings[2];
+        for (int i = 0; i < 2; i++) {
+            assertRange(x, y);
+            assertRange(y, x);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOlderActivitiesUseTerms() throws Exception {
+        // the first activities are indexed while the field is still a plain term, so they have no value bits
+        MiruSchema valueBitsSchema = schema;
+        schema = new MiruSchema.Builder("range", 1)
+            .setFieldDefinitions(new MiruFieldDefinition[] {
+                new MiruFieldDefinition(0, RATING, MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+                new MiruFieldDefinition(1, AUTHOR, MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE)
+            })
+            .build();
+        context = IndexTestUtil.buildInMemoryContext(4, true, true, bitmaps, coord, schema);
+        index(0, NUM_ACTIVITIES / 2, 0);
+        schema = valueBitsSchema;
+        context.schema.set(schema);
+        index(NUM_ACTIVITIES / 2, NUM_ACTIVITIES, 0);
+
+        assertEquals(filter(range(null, null)), bruteForce(null, null));
+        for (String probe : probes) {
+            assertRange(probe, null);
+            assertRange(null, probe);
+        }
+    }
+
+    @Test
+    public void testRepairReplacesValues() throws Exception {
+        Random random = new Random(3456);
+        for (int i = 1; i < 60; i++) {
+            if (i % 3 == 0) {
+                // dropping the field has to clear every bit of the old value
+                ratings[i] = null;
+            } else if (ratings[i] != null && ratings[i].length() > 1) {
+                // a shorter value clears the bits of the longer one
+                ratings[i] = ratings[i].substring(1);
+            } else {
+                ratings[i] = randomValue(random, 1 + random.nextInt(4));
+            }
+        }
+        index(1, 60, 1);
+
+        assertEquals(filter(range(null, null)), bruteForce(null, null));
+        for (String probe : probes) {
+            assertRange(probe, null);
+            assertRange(null, probe);
+        }
+    }
+
+    @Test
+    public void testRangeWithinAnd() throws Exception {
+        Random random = new Random(9012);
+        for (int i = 0; i < 50; i++) {
+            String lower = probes.get(random.nextInt(probes.size()));
+            String upper = probes.get(random.nextInt(probes.size()));
+            MiruFilter filter = new MiruFilter(MiruFilterOperation.and,
+                false,
+                Arrays.asList(
+                    MiruFieldFilter.ofTerms(MiruFieldType.primary, AUTHOR, "u1"),
+                    MiruFieldFilter.ofRange(RATING, lower != null ? new MiruValue(lower) : null, upper != null ? new MiruValue(upper) : null)),
+                null);
+
+            RoaringBitmap expected = bruteForce(lower, upper);
+            for (int id = 0; id < NUM_ACTIVITIES; id++) {
+                if (!authors[id].equals("u1")) {
+                    expected.remove(id);
+                }
+            }
+            assertEquals(filter(filter), expected, "Mismatch for u1 and [" + lower + ", " + upper + "]");
+        }
+    }
+
+    private void assertRange(String lower, String upper) throws Exception {
+        assertEquals(filter(range(lower, upper)), bruteForce(lower, upper), "Mismatch for [" + lower + ", " + upper + "]");
+    }
+
+    private RoaringBitmap bruteForce(String lower, String upper) throws Exception {
+        byte[] lowerBytes = lower != null ? bytes(lower) : null;
+        byte[] upperBytes = upper != null ? bytes(upper) : null;
+        RoaringBitmap expected = new RoaringBitmap();
+        for (int id = 0; id < NUM_ACTIVITIES; id++) {
+            if (ratings[id] == null) {
+                continue;
+            }
+            byte[] value = bytes(ratings[id]);
+            if ((lowerBytes == null || compare(value, lowerBytes) >= 0) && (upperBytes == null || compare(value, upperBytes) <= 0)) {
+                expected.add(id);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Orders values the way their packed value bits do, by length and then as unsigned bytes.
+     */
+    private static int compare(byte[] a, byte[] b) {
+        if (a.length != b.length) {
+            return Integer.compare(a.length, b.length);
+        }
+        for (int i = 0; i < a.length; i++) {
+            int c = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private byte[] bytes(String value) throws Exception {
+        return context.getTermComposer().compose(schema, schema.getFieldDefinition(0), new StackBuffer(), value).getBytes();
+    }
+
+    private MiruFilter range(String lower, String upper) {
+        return new MiruFilter(MiruFilterOperation.and,
+            false,
+            Collections.singletonList(MiruFieldFilter.ofRange(RATING,
+                lower != null ? new MiruValue(lower) : null,
+                upper != null ? new MiruValue(upper) : null)),
+            null);
+    }
+
+    private RoaringBitmap filter(MiruFilter filter) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        return aggregateUtil.filter("test",
+            bitmaps,
+            context,
+            filter,
+            new MiruSolutionLog(MiruSolutionLogLevel.NONE),
+            null,
+            context.getActivityIndex().lastId(stackBuffer),
+            -1,
+            -1,
+            stackBuffer);
+    }
+
+    private void index(int from, int to, long version) throws Exception {
+        List<MiruActivityAndId<MiruActivity>> activities = Lists.newArrayList();
+        for (int i = from; i < to; i++) {
+            MiruActivity.Builder builder = new MiruActivity.Builder(tenantId, i + 1, version, false, null)
+                .putFieldValue(AUTHOR, authors[i]);
+            if (ratings[i] != null) {
+                builder.putFieldValue(RATING, ratings[i]);
+            }
+            activities.add(new MiruActivityAndId<>(builder.build(), i, i + 1));
+        }
+        newIndexer().index(context, coord, activities, MoreExecutors.sameThreadExecutor());
+    }
+
+    private static String randomValue(Random random, int length) {
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return value.toString();
+    }
+
+    private MiruIndexer<RoaringBitmap, RoaringBitmap> newIndexer() {
+        return new MiruIndexer<>(new MiruIndexAuthz<>(),
+            new MiruIndexPrimaryFields<>(),
+            new MiruIndexValueBits<>(),
+            new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
+            new MiruIndexLatest<>(),
+            new MiruIndexPairedLatest<>(),
+            new MiruIndexRemoval<>(bitmaps));
+    }
+}
@@ -16,6 +16,7 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
 import com.jivesoftware.os.miru.service.solver.MiruLowestLatencySolver;
 import com.jivesoftware.os.miru.service.solver.MiruSolved;
+import com.jivesoftware.os.miru.service.solver.MiruSolverHedging;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -24,7 +25,10 @@ import java.util.concurrent.Executors;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  *
@@ -40,7 +44,7 @@ public class MiruLowestLatencySolverTest {
         long failAfterNMillis = 3_000;
 
         MiruLowestLatencySolver solver = new MiruLowestLatencySolver(initialSolvers, maxNumberOfSolvers,
-            addAnotherSolverAfterNMillis, failAfterNMillis);
+            addAnotherSolverAfterNMillis, failAfterNMillis, new MiruSolverHedging(100, 95, 1_000, 10_000));
 
         MiruTenantId tenantId = new MiruTenantId("test".getBytes());
         MiruPartitionId partitionId = MiruPartitionId.of(1);
@@ -72,4 +76,90 @@ public class MiruLowestLatencySolverTest {
         assertNotNull(solved.solution, "The solution was null");
         assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_" + 10_000);
     }
+
+    @Test
+    public void testHedgeBudget() throws Exception {
+        MiruSolverHedging hedging = new MiruSolverHedging(100, 95, 5, 10_000);
+        assertFalse(hedging.tryHedge(), "No primaries, so no hedge budget");
+        for (int i = 0; i < 20; i++) {
+            hedging.primary();
+        }
+        assertTrue(hedging.tryHedge());
+        assertFalse(hedging.tryHedge(), "Hedges should be capped at 5% of primaries");
+
+        MiruHost host = new MiruHost("logicalName_10000");
+        assertEquals(hedging.hedgeAfterMillis(host, "a", "b", 100), 100);
+        for (int i = 1; i <= 100; i++) {
+            hedging.recordLatency(host, "a", "b", i);
+        }
+        assertEquals(hedging.hedgeAfterMillis(host, "a", "b", 100), 95);
+    }
+
+    @Test
+    public void testRecordsLatencyOfLosersAndTimeouts() throws Exception {
+        Executor executor = Executors.newFixedThreadPool(4);
+        MiruSolverHedging hedging = new MiruSolverHedging(100, 95, 1_000, 10_000);
+        MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+        MiruPartitionId partitionId = MiruPartitionId.of(1);
+        MiruHost fastHost = new MiruHost("logicalName_fast");
+        MiruHost slowHost = new MiruHost("logicalName_slow");
+        long fallback = 12_345;
+
+        MiruLowestLatencySolver solver = new MiruLowestLatencySolver(2, 2, 5_000, 5_000, hedging);
+        List<MiruSolvable<Integer>> solvables = Lists.newArrayList(
+            sleepingSolvable(tenantId, partitionId, fastHost, 200, 1),
+            sleepingSolvable(tenantId, partitionId, slowHost, 10_000, 2));
+        MiruSolved<Integer> solved = solver.solve("a", "b", tenantId, partitionId, solvables.iterator(), Optional.<Long>absent(), executor,
+            new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertEquals((int) solved.answer, 1);
+
+        // the winner reports its latency, and the cancelled loser has no history to floor its censored sample at
+        assertTrue(hedging.hedgeAfterMillis(fastHost, "a", "b", fallback) >= 200);
+        assertEquals(hedging.hedgeAfterMillis(slowHost, "a", "b", fallback), fallback);
+
+        // a solver that is still running when the solve times out is floored at its host's percentile
+        MiruHost timeoutHost = new MiruHost("logicalName_timeout");
+        for (int i = 0; i < 10; i++) {
+            hedging.recordLatency(timeoutHost, "a", "b", 100);
+        }
+        solver = new MiruLowestLatencySolver(1, 1, 5_000, 300, hedging);
+        solved = solver.solve("a", "b", tenantId, partitionId,
+            Collections.singletonList(sleepingSolvable(tenantId, partitionId, timeoutHost, 10_000, 3)).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertNull(solved);
+        long timeoutSample = hedging.hedgeAfterMillis(timeoutHost, "a", "b", fallback);
+        assertTrue(timeoutSample > 100 && timeoutSample < fallback, "Expected a censored sample for the timeout but got " + timeoutSample);
+    }
+
+    @Test
+    public void testCensoredLatencyNeverLowersPercentile() throws Exception {
+        MiruSolverHedging hedging = new MiruSolverHedging(100, 95, 1_000, 10_000);
+        MiruHost host = new MiruHost("logicalName_censored");
+        hedging.recordCensoredLatency(host, "a", "b", 10);
+        assertEquals(hedging.hedgeAfterMillis(host, "a", "b", 100), 100, "Censored samples without history should be dropped");
+
+        for (int i = 1; i <= 100; i++) {
+            hedging.recordLatency(host, "a", "b", i);
+        }
+        for (int i = 0; i < 50; i++) {
+            hedging.recordCensoredLatency(host, "a", "b", 10);
+        }
+        assertEquals(hedging.hedgeAfterMillis(host, "a", "b", 100), 95);
+
+        for (int i = 0; i < 100; i++) {
+            hedging.recordCensoredLatency(host, "a", "b", 500);
+        }
+        assertEquals(hedging.hedgeAfterMillis(host, "a", "b", 100), 500);
+    }
+
+    private MiruSolvable<Integer> sleepingSolvable(MiruTenantId tenantId, MiruPartitionId partitionId, MiruHost host, long sleepMillis, int answer) {
+        return new MiruSolvable<>(
+            new MiruPartitionCoord(tenantId, partitionId, host),
+            () -> {
+                Thread.sleep(sleepMillis);
+                return new MiruPartitionResponse<>(answer, null);
+            },
+            true,
+            null);
+    }
 }
@@ -83,7 +83,10 @@ public class IndexTestUtil {
         .setFieldDefinitions(DefaultMiruSchemaDefinition.FIELDS)
         .build();
 
-    private static MiruContextFactory<RCVSSipCursor> factory(int numberOfChunkStores, boolean useLabIndexes, boolean hasRealtime) throws Exception {
+    private static MiruContextFactory<RCVSSipCursor> factory(int numberOfChunkStores,
+        boolean useLabIndexes,
+        boolean hasRealtime,
+        MiruSchema schema) throws Exception {
 
         StripingLocksProvider<MiruTermId> fieldIndexStripingLocksProvider = new StripingLocksProvider<>(1024);
         StripingLocksProvider<MiruStreamId> streamStripingLocksProvider = new StripingLocksProvider<>(1024);
@@ -198,6 +201,7 @@ public class IndexTestUtil {
             new RCVSSipIndexMarshaller(),
             new MiruTempDirectoryResourceLocator(),
             1024,
+            1024 * 1024,
             fieldIndexStripingLocksProvider,
             streamStripingLocksProvider,
             authzStripingLocksProvider,
@@ -211,7 +215,9 @@ public class IndexTestUtil {
             useLabIndexes,
             hasRealtime,
             false,
-            false);
+            false,
+            true,
+            0);
     }
 
     public static <BM extends IBM, IBM> MiruContext<BM, IBM, RCVSSipCursor> buildInMemoryContext(int numberOfChunkStores,
@@ -219,8 +225,16 @@ public class IndexTestUtil {
         boolean hasRealtime,
         MiruBitmaps<BM, IBM> bitmaps,
         MiruPartitionCoord coord) throws Exception {
-        return factory(numberOfChunkStores, useLabIndexes, hasRealtime).allocate(bitmaps, schema, coord, MiruBackingStorage.memory, null);
+        return buildInMemoryContext(numberOfChunkStores, useLabIndexes, hasRealtime, bitmaps, coord, schema);
+    }
 
+    public static <BM extends IBM, IBM> MiruContext<BM, IBM, RCVSSipCursor> buildInMemoryContext(int numberOfChunkStores,
+        boolean useLabIndexes,
+        boolean hasRealtime,
+        MiruBitmaps<BM, IBM> bitmaps,
+        MiruPartitionCoord coord,
+        MiruSchema schema) throws Exception {
+        return factory(numberOfChunkStores, useLabIndexes, hasRealtime, schema).allocate(bitmaps, schema, coord, MiruBackingStorage.memory, null);
     }
 
     public static <BM extends IBM, IBM> MiruContext<BM, IBM, RCVSSipCursor> buildOnDiskContext(int numberOfChunkStores,
@@ -228,7 +242,7 @@ public class IndexTestUtil {
         boolean hasRealtime,
         MiruBitmaps<BM, IBM> bitmaps,
         MiruPartitionCoord coord) throws Exception {
-        return factory(numberOfChunkStores, useLabIndexes, hasRealtime).allocate(bitmaps, schema, coord, MiruBackingStorage.disk, null);
+        return factory(numberOfChunkStores, useLabIndexes, hasRealtime, schema).allocate(bitmaps, schema, coord, MiruBackingStorage.disk, null);
 
     }
 
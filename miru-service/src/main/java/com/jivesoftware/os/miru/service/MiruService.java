@@ -5,6 +5,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.jivesoftware.os.filer.io.FilerIO;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.MiruHost;
@@ -39,17 +40,23 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvableFactory;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import com.jivesoftware.os.miru.service.metric.MiruMetricKeys;
 import com.jivesoftware.os.miru.service.partition.MiruHostedPartitionComparison;
 import com.jivesoftware.os.miru.service.solver.MiruSolved;
 import com.jivesoftware.os.miru.service.solver.MiruSolver;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author jonathan
@@ -65,6 +72,7 @@ public class MiruService implements Miru {
     private final MiruSchemaProvider schemaProvider;
     private final Executor defaultExecutor;
     private final ExecutorService parallelExecutor;
+    private final long completionOrderMergeBudgetInMillis;
     private final MiruBitmapsDebug bitmapsDebug = new MiruBitmapsDebug();
 
     public MiruService(MiruHost localhost,
@@ -73,7 +81,8 @@ public class MiruService implements Miru {
         MiruSolver solver,
         MiruSchemaProvider schemaProvider,
         Executor defaultExecutor,
-        ExecutorService parallelExecutor) {
+        ExecutorService parallelExecutor,
+        long completionOrderMergeBudgetInMillis) {
 
         this.localhost = localhost;
         this.partitionDirector = partitionDirector;
@@ -82,6 +91,7 @@ public class MiruService implements Miru {
         this.schemaProvider = schemaProvider;
         this.defaultExecutor = defaultExecutor;
         this.parallelExecutor = parallelExecutor;
+        this.completionOrderMergeBudgetInMillis = completionOrderMergeBudgetInMillis;
     }
 
     public void writeToIndex(List<MiruPartitionedActivity> partitionedActivities) throws Exception {
@@ -130,6 +140,8 @@ public class MiruService implements Miru {
 
             Optional<A> lastAnswer = Optional.absent();
 
+            boolean completionOrder = evaluator.mergeInCompletionOrder();
+            BlockingQueue<ExpectedSolution<A>> completed = completionOrder ? new LinkedBlockingQueue<>() : null;
             List<ExpectedSolution<A>> expectedSolutions = Lists.newArrayList();
             for (OrderedPartitions<?, ?> orderedPartitions : partitionReplicas) {
                 Optional<Long> suggestedTimeoutInMillis = partitionComparison.suggestTimeout(orderedPartitions.tenantId, orderedPartitions.partitionId,
@@ -137,42 +149,35 @@ public class MiruService implements Miru {
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Solving partition:{} for tenant:{} with timeout:{}",
                     orderedPartitions.partitionId.getId(), orderedPartitions.tenantId, suggestedTimeoutInMillis.or(-1L));
 
-                if (evaluator.useParallelSolver()) {
-                    expectedSolutions.add(new ParallelExpectedSolution<>(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog));
+                if (completionOrder || evaluator.useParallelSolver()) {
+                    expectedSolutions.add(new ParallelExpectedSolution<>(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog,
+                        completed));
                 } else {
                     expectedSolutions.add(new SerialExpectedSolution<>(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog));
                 }
             }
 
-            boolean done = false;
-            for (ExpectedSolution<A> expectedSolution : expectedSolutions) {
-                if (done) {
-                    expectedSolution.cancel();
-                } else {
-                    MiruSolved<A> solved = expectedSolution.get(lastAnswer);
-                    if (solved == null) {
-                        solutionLog.log(MiruSolutionLogLevel.WARN, "No solution for partition:{}", expectedSolution.getPartitionId());
-                        solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING result set is incomplete! elapse:{}",
-                            (System.currentTimeMillis() - expectedSolution.getStart()));
-                        incompletePartitionIds.add(expectedSolution.getPartitionId().getId());
-                        if (evaluator.stopOnUnsolvablePartition()) {
-                            solutionLog.log(MiruSolutionLogLevel.ERROR, "ERROR result set is unsolvable");
-                            done = true;
-                        }
+            if (completionOrder) {
+                lastAnswer = mergeInCompletionOrder(expectedSolutions, completed, evaluator, merger, solutions, incompletePartitionIds, solutionLog);
+            } else {
+                boolean done = false;
+                for (ExpectedSolution<A> expectedSolution : expectedSolutions) {
+                    if (done) {
+                        expectedSolution.cancel();
                     } else {
-                        solutionLog.log(MiruSolutionLogLevel.INFO, "Solved partition:{}. elapse:{} millis",
-                            expectedSolution.getPartitionId(), (System.currentTimeMillis() - expectedSolution.getStart()));
-                        solutions.add(solved.solution);
-
-                        A currentAnswer = solved.answer;
-                        solutionLog.log(MiruSolutionLogLevel.INFO, "Merging solution set from partition:{}", expectedSolution.getPartitionId());
-                        long start = System.currentTimeMillis();
-                        A merged = merger.merge(lastAnswer, currentAnswer, solutionLog);
-                        solutionLog.log(MiruSolutionLogLevel.INFO, "Merged. elapse:{} millis", (System.currentTimeMillis() - start));
-
-                        lastAnswer = Optional.of(merged);
-                        if (evaluator.isDone(merged, solutionLog)) {
-                            done = true;
+                        MiruSolved<A> solved = expectedSolution.get(lastAnswer);
+                        if (solved == null) {
+                            logUnsolved(expectedSolution, incompletePartitionIds, solutionLog);
+                            if (evaluator.stopOnUnsolvablePartition()) {
+                                solutionLog.log(MiruSolutionLogLevel.ERROR, "ERROR result set is unsolvable");
+                                done = true;
+                            }
+                        } else {
+                            A merged = mergeSolved(expectedSolution, solved, lastAnswer, merger, solutions, solutionLog);
+                            lastAnswer = Optional.of(merged);
+                            if (evaluator.isDone(merged, solutionLog)) {
+                                done = true;
+                            }
                         }
                     }
                 }
@@ -187,12 +192,87 @@ public class MiruService implements Miru {
 
         LOG.inc("askAndMerge");
         LOG.inc("askAndMerge", tenantId.toString());
-        LOG.inc("askAndMerge>query>" + solvableFactory.getQueryKey());
-        LOG.inc("askAndMerge>query>" + solvableFactory.getQueryKey(), tenantId.toString());
+        LOG.inc(MiruMetricKeys.query(solvableFactory.getQueryKey()).askAndMerge);
+        LOG.inc(MiruMetricKeys.query(solvableFactory.getQueryKey()).askAndMerge, tenantId.toString());
 
         return new MiruResponse<>(answer, solutions, totalElapsed, false, incompletePartitionIds, solutionLog.asList());
     }
 
+    /**
+     * Merges answers as their partitions complete, so a slow partition no longer holds up merging the ones that have already finished.
+     * Since answers arrive out of partition order, the evaluator is not consulted for early completion. Partitions still outstanding once
+     * the merge budget elapses are cancelled and reported as incomplete.
+     */
+    private <A> Optional<A> mergeInCompletionOrder(List<ExpectedSolution<A>> expectedSolutions,
+        BlockingQueue<ExpectedSolution<A>> completed,
+        MiruAnswerEvaluator<A> evaluator,
+        MiruAnswerMerger<A> merger,
+        List<MiruSolution> solutions,
+        List<Integer> incompletePartitionIds,
+        MiruSolutionLog solutionLog) throws Exception {
+
+        Optional<A> lastAnswer = Optional.absent();
+        Set<ExpectedSolution<A>> outstanding = Sets.newIdentityHashSet();
+        outstanding.addAll(expectedSolutions);
+        long deadline = System.currentTimeMillis() + completionOrderMergeBudgetInMillis;
+        while (!outstanding.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            ExpectedSolution<A> expectedSolution = remaining > 0 ? completed.poll(remaining, TimeUnit.MILLISECONDS) : null;
+            if (expectedSolution == null) {
+                solutionLog.log(MiruSolutionLogLevel.WARN, "Merge budget of {} millis elapsed with {} partitions outstanding",
+                    completionOrderMergeBudgetInMillis, outstanding.size());
+                LOG.inc("askAndMerge>completionOrder>budgetElapsed");
+                break;
+            }
+            outstanding.remove(expectedSolution);
+
+            MiruSolved<A> solved = expectedSolution.get(lastAnswer);
+            if (solved == null) {
+                logUnsolved(expectedSolution, incompletePartitionIds, solutionLog);
+                if (evaluator.stopOnUnsolvablePartition()) {
+                    solutionLog.log(MiruSolutionLogLevel.ERROR, "ERROR result set is unsolvable");
+                    break;
+                }
+            } else {
+                lastAnswer = Optional.of(mergeSolved(expectedSolution, solved, lastAnswer, merger, solutions, solutionLog));
+            }
+        }
+
+        for (ExpectedSolution<A> expectedSolution : expectedSolutions) {
+            if (outstanding.contains(expectedSolution)) {
+                expectedSolution.cancel();
+                incompletePartitionIds.add(expectedSolution.getPartitionId().getId());
+            }
+        }
+        return lastAnswer;
+    }
+
+    private <A> void logUnsolved(ExpectedSolution<A> expectedSolution, List<Integer> incompletePartitionIds, MiruSolutionLog solutionLog) {
+        solutionLog.log(MiruSolutionLogLevel.WARN, "No solution for partition:{}", expectedSolution.getPartitionId());
+        solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING result set is incomplete! elapse:{}",
+            (System.currentTimeMillis() - expectedSolution.getStart()));
+        incompletePartitionIds.add(expectedSolution.getPartitionId().getId());
+    }
+
+    private <A> A mergeSolved(ExpectedSolution<A> expectedSolution,
+        MiruSolved<A> solved,
+        Optional<A> lastAnswer,
+        MiruAnswerMerger<A> merger,
+        List<MiruSolution> solutions,
+        MiruSolutionLog solutionLog) {
+
+        solutionLog.log(MiruSolutionLogLevel.INFO, "Solved partition:{}. elapse:{} millis",
+            expectedSolution.getPartitionId(), (System.currentTimeMillis() - expectedSolution.getStart()));
+        solutions.add(solved.solution);
+
+        A currentAnswer = solved.answer;
+        solutionLog.log(MiruSolutionLogLevel.INFO, "Merging solution set from partition:{}", expectedSolution.getPartitionId());
+        long start = System.currentTimeMillis();
+        A merged = merger.merge(lastAnswer, currentAnswer, solutionLog);
+        solutionLog.log(MiruSolutionLogLevel.INFO, "Merged. elapse:{} millis", (System.currentTimeMillis() - start));
+        return merged;
+    }
+
     @Override
     public <Q, A, P> MiruResponse<A> askAndMergePartition(
         MiruTenantId tenantId,
@@ -279,8 +359,8 @@ public class MiruService implements Miru {
 
             LOG.inc("askImmediate");
             LOG.inc("askImmediate", tenantId.toString());
-            LOG.inc("askImmediate>query>" + factory.getQueryKey());
-            LOG.inc("askImmediate>query>" + factory.getQueryKey(), tenantId.toString());
+            LOG.inc(MiruMetricKeys.query(factory.getQueryKey()).askImmediate);
+            LOG.inc(MiruMetricKeys.query(factory.getQueryKey()).askImmediate, tenantId.toString());
 
             return answer;
         } else {
@@ -347,6 +427,14 @@ public class MiruService implements Miru {
         return partitionDirector.compact(tenantId, partitionId);
     }
 
+    public boolean canExportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId) throws Exception {
+        return partitionDirector.canExportSnapshot(tenantId, partitionId);
+    }
+
+    public boolean exportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId, OutputStream outputStream) throws Exception {
+        return partitionDirector.exportSnapshot(tenantId, partitionId, outputStream);
+    }
+
     public boolean rebuildTimeRange(MiruTimeRange miruTimeRange, boolean hotDeploy, boolean chunkStores, boolean labIndex) throws Exception {
         return partitionDirector.rebuildTimeRange(miruTimeRange, hotDeploy, chunkStores, labIndex);
     }
@@ -405,7 +493,8 @@ public class MiruService implements Miru {
             MiruSolvableFactory<Q, A, P> solvableFactory,
             Optional<Long> suggestedTimeoutInMillis,
             Executor executor,
-            MiruSolutionLog solutionLog) {
+            MiruSolutionLog solutionLog,
+            BlockingQueue<ExpectedSolution<A>> completed) {
 
             Iterable<MiruSolvable<A>> solvables = Iterables.transform(orderedPartitions.partitions, replica -> {
                 if (replica.isLocal()) {
@@ -418,19 +507,25 @@ public class MiruService implements Miru {
             this.start = System.currentTimeMillis();
             this.future = parallelExecutor.submit(() -> {
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution began execution in {} ms", System.currentTimeMillis() - start);
-                MiruSolved<A> solved = solver.solve(solvableFactory.getRequestName(),
-                    solvableFactory.getQueryKey(),
-                    orderedPartitions.tenantId,
-                    orderedPartitions.partitionId,
-                    solvables.iterator(),
-                    suggestedTimeoutInMillis,
-                    executor,
-                    solutionLog);
-
-                long elapsed = System.currentTimeMillis() - start;
-                LOG.inc("parallel>elapsed>pow>" + FilerIO.chunkPower(elapsed, 0));
-                solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution finished execution in {} ms", elapsed);
-                return solved;
+                try {
+                    MiruSolved<A> solved = solver.solve(solvableFactory.getRequestName(),
+                        solvableFactory.getQueryKey(),
+                        orderedPartitions.tenantId,
+                        orderedPartitions.partitionId,
+                        solvables.iterator(),
+                        suggestedTimeoutInMillis,
+                        executor,
+                        solutionLog);
+
+                    long elapsed = System.currentTimeMillis() - start;
+                    LOG.inc("parallel>elapsed>pow>" + FilerIO.chunkPower(elapsed, 0));
+                    solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution finished execution in {} ms", elapsed);
+                    return solved;
+                } finally {
+                    if (completed != null) {
+                        completed.add(this);
+                    }
+                }
             });
         }
 
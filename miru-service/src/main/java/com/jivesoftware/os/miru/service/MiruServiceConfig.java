@@ -55,6 +55,15 @@ public interface MiruServiceConfig extends Config {
     @IntDefault(10_000)
     int getPartitionRebuildBatchSize();
 
+    @IntDefault(4)
+    int getPartitionRebuildPrefetchBatches();
+
+    @LongDefault(256 * 1_024 * 1_024)
+    long getPartitionRebuildPrefetchMaxBytes();
+
+    @BooleanDefault(false)
+    boolean getPartitionBootstrapFromPeerEnabled();
+
     @IntDefault(10_000)
     int getPartitionSipBatchSize();
 
@@ -98,6 +107,9 @@ public interface MiruServiceConfig extends Config {
     @IntDefault(10_000)
     int getPartitionAuthzCacheSize();
 
+    @LongDefault(0)
+    long getPartitionBitmapCacheMaxSizeInBytes();
+
     @BooleanDefault(true)
     boolean getPartitionDeleteChunkStoreOnClose();
 
@@ -125,6 +137,18 @@ public interface MiruServiceConfig extends Config {
     @IntDefault(95)
     int getLongTailSolverPercentile();
 
+    @IntDefault(100)
+    int getSolverHedgeWindowSize();
+
+    @IntDefault(95)
+    int getSolverHedgePercentile();
+
+    @IntDefault(5)
+    int getSolverHedgeMaxPercentOfRequests();
+
+    @LongDefault(10_000)
+    long getSolverHedgeBudgetWindow();
+
     @StringDefault("")
     String getReadStreamIdsPropName();
 
@@ -143,6 +167,9 @@ public interface MiruServiceConfig extends Config {
     @IntDefault(8)
     int getParallelSolversExecutorThreads();
 
+    @LongDefault(10_000)
+    long getCompletionOrderMergeBudgetInMillis();
+
     @IntDefault(24)
     int getRebuilderThreads();
 
@@ -266,6 +293,12 @@ public interface MiruServiceConfig extends Config {
     @BooleanDefault(false)
     boolean getTimeIndexVerboseLogging();
 
+    @BooleanDefault(true)
+    boolean getTimeIndexColumnEnabled();
+
+    @LongDefault(0)
+    long getPartitionClosedIndexCompressionSampleBytes();
+
     @StringDefault("")
     String getRealtimeDeliveryService();
 
@@ -58,6 +58,7 @@ import com.jivesoftware.os.miru.service.partition.MiruLocalPartitionFactory;
 import com.jivesoftware.os.miru.service.partition.MiruMergeChits;
 import com.jivesoftware.os.miru.service.partition.MiruPartitionAccessor.IndexStrategy;
 import com.jivesoftware.os.miru.service.partition.MiruPartitionHeartbeatHandler;
+import com.jivesoftware.os.miru.service.partition.MiruPartitionSnapshotFetcher;
 import com.jivesoftware.os.miru.service.partition.MiruRemoteQueryablePartitionFactory;
 import com.jivesoftware.os.miru.service.partition.MiruSipTrackerFactory;
 import com.jivesoftware.os.miru.service.partition.MiruTenantTopologyFactory;
@@ -65,6 +66,7 @@ import com.jivesoftware.os.miru.service.partition.PartitionErrorTracker;
 import com.jivesoftware.os.miru.service.partition.cluster.MiruClusterExpectedTenants;
 import com.jivesoftware.os.miru.service.solver.MiruLowestLatencySolver;
 import com.jivesoftware.os.miru.service.solver.MiruSolver;
+import com.jivesoftware.os.miru.service.solver.MiruSolverHedging;
 import com.jivesoftware.os.miru.service.stream.MiruContextFactory;
 import com.jivesoftware.os.miru.service.stream.MiruIndexCallbacks;
 import com.jivesoftware.os.miru.service.stream.MiruRebuildDirector;
@@ -109,6 +111,7 @@ public class MiruServiceInitializer {
         MiruSchemaProvider schemaProvider,
         MiruWALClient<C, S> walClient,
         MiruRealtimeDelivery realtimeDelivery,
+        MiruPartitionSnapshotFetcher snapshotFetcher,
         MiruSipTrackerFactory<S> sipTrackerFactory,
         MiruSipIndexMarshaller<S> sipIndexMarshaller,
         MiruResourceLocator resourceLocator,
@@ -292,6 +295,7 @@ public class MiruServiceInitializer {
             sipIndexMarshaller,
             resourceLocator,
             config.getPartitionAuthzCacheSize(),
+            config.getPartitionBitmapCacheMaxSizeInBytes(),
             fieldIndexStripingLocksProvider,
             streamStripingLocksProvider,
             authzStripingLocksProvider,
@@ -305,7 +309,9 @@ public class MiruServiceInitializer {
             config.getUseLabIndexes(),
             config.getRealtimeDelivery(),
             config.getFsyncOnCommit(),
-            config.getTimeIndexVerboseLogging());
+            config.getTimeIndexVerboseLogging(),
+            config.getTimeIndexColumnEnabled(),
+            config.getPartitionClosedIndexCompressionSampleBytes());
 
         MiruPartitionHeartbeatHandler heartbeatHandler = new MiruPartitionHeartbeatHandler(clusterClient, atleastOneThumpThump);
         MiruRebuildDirector rebuildDirector = new MiruRebuildDirector(config.getMaxRebuildActivityCount());
@@ -339,6 +345,7 @@ public class MiruServiceInitializer {
             realtimeDelivery,
             heartbeatHandler,
             rebuildDirector,
+            snapshotFetcher,
             scheduledBootstrapExecutor,
             scheduledRebuildExecutor,
             scheduledSipMigrateExecutor,
@@ -373,7 +380,11 @@ public class MiruServiceInitializer {
         MiruSolver solver = new MiruLowestLatencySolver(config.getDefaultInitialSolvers(),
             config.getDefaultMaxNumberOfSolvers(),
             config.getDefaultAddAnotherSolverAfterNMillis(),
-            config.getDefaultFailAfterNMillis());
+            config.getDefaultFailAfterNMillis(),
+            new MiruSolverHedging(config.getSolverHedgeWindowSize(),
+                config.getSolverHedgePercentile(),
+                config.getSolverHedgeMaxPercentOfRequests(),
+                config.getSolverHedgeBudgetWindow()));
 
         final MiruService miruService = new MiruService(
             miruHost,
@@ -382,7 +393,8 @@ public class MiruServiceInitializer {
             solver,
             schemaProvider,
             solverExecutor,
-            parallelExecutor);
+            parallelExecutor,
+            config.getCompletionOrderMergeBudgetInMillis());
 
         return new MiruLifecyle<MiruService>() {
 
@@ -18,6 +18,7 @@ import com.jivesoftware.os.miru.service.MiruService;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.routing.bird.shared.ResponseHelper;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import javax.inject.Singleton;
@@ -30,9 +31,11 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import static com.jivesoftware.os.miru.api.MiruReader.INSPECT_ENDPOINT;
 import static com.jivesoftware.os.miru.api.MiruReader.QUERY_SERVICE_ENDPOINT_PREFIX;
+import static com.jivesoftware.os.miru.api.MiruReader.SNAPSHOT_ENDPOINT;
 import static com.jivesoftware.os.miru.api.MiruReader.TIMESTAMPS_ENDPOINT;
 import static com.jivesoftware.os.miru.api.MiruReader.WARM_ALL_ENDPOINT;
 import static com.jivesoftware.os.miru.api.MiruReader.WARM_ENDPOINT;
@@ -150,6 +153,36 @@ public class MiruReaderEndpoints {
         }
     }
 
+    @POST
+    @Path(SNAPSHOT_ENDPOINT + "/{tenantId}/{partitionId}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response snapshot(@PathParam("tenantId") String tenantIdString,
+        @PathParam("partitionId") int partitionIdInt) {
+        try {
+            MiruTenantId tenantId = new MiruTenantId(tenantIdString.getBytes(Charsets.UTF_8));
+            MiruPartitionId partitionId = MiruPartitionId.of(partitionIdInt);
+            if (!miruService.canExportSnapshot(tenantId, partitionId)) {
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+            }
+            return Response.ok((StreamingOutput) output -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    if (!miruService.exportSnapshot(tenantId, partitionId, output)) {
+                        throw new IOException("Partition is no longer eligible for snapshot");
+                    }
+                    stats.egressed(SNAPSHOT_ENDPOINT + "/" + tenantIdString + "/" + partitionIdInt, 1, System.currentTimeMillis() - start);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Failed to export snapshot", e);
+                }
+            }).build();
+        } catch (Exception e) {
+            log.error("Failed to snapshot tenant {} partition {}", new Object[] { tenantIdString, partitionIdInt }, e);
+            return Response.serverError().build();
+        }
+    }
+
     @GET
     @Path("/resetUnread/{tenantId}/{partitionId}/{streamId}")
     @Produces(MediaType.TEXT_PLAIN)
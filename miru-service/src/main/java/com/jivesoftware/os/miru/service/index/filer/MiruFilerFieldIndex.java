@@ -250,6 +250,11 @@ public class MiruFilerFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<
         return getCardinality(fieldDefinition, termId, -1, stackBuffer);
     }
 
+    @Override
+    public long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+        return -1;
+    }
+
     private void mergeCardinalities(MiruFieldDefinition fieldDefinition,
         MiruTermId termId,
         int[] ids,
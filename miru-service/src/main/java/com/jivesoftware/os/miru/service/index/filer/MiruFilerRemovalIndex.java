@@ -1,7 +1,9 @@
 package com.jivesoftware.os.miru.service.index.filer;
 
 import com.jivesoftware.os.filer.io.api.KeyedFilerStore;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.MiruRemovalIndex;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 
@@ -15,4 +17,10 @@ public class MiruFilerRemovalIndex<BM extends IBM, IBM> extends MiruFilerInverte
 
         super(bitmaps, trackError, "removal", -4, keyBytes, keyedFilerStore, mutationLock);
     }
+
+    @Override
+    public void getIndexForIds(BitmapAndLastId<BM> container, int[] ids, StackBuffer stackBuffer) throws Exception {
+        // filer indexes are stored whole
+        getIndex(container, stackBuffer);
+    }
 }
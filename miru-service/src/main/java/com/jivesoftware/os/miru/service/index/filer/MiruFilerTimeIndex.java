@@ -234,6 +234,15 @@ public class MiruFilerTimeIndex implements MiruTimeIndex {
         return i;
     }
 
+    @Override
+    public int[] getClosestIds(long[] timestamps, StackBuffer stackBuffer) throws IOException, InterruptedException {
+        int[] ids = new int[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            ids[i] = getClosestId(timestamps[i], stackBuffer);
+        }
+        return ids;
+    }
+
     private int readClosestId(Object lock, Filer filer, long timestamp, StackBuffer stackBuffer) throws IOException {
         long fp = HEADER_SIZE_IN_BYTES;
         if (id.get() < 0) {
@@ -363,6 +372,10 @@ public class MiruFilerTimeIndex implements MiruTimeIndex {
         }
     }
 
+    @Override
+    public void markClosed() {
+    }
+
     @Override
     public void close() {
     }
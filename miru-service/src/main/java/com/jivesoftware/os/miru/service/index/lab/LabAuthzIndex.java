@@ -26,6 +26,7 @@ public class LabAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<BM, IB
     private final ValueIndex<byte[]>[] keyedStores;
     private final MiruAuthzCache<BM, IBM> cache;
     private final StripingLocksProvider<String> stripingLocksProvider;
+    private final LabBitmapCache<BM, IBM> bitmapCache;
 
     public LabAuthzIndex(OrderIdProvider idProvider,
         MiruBitmaps<BM, IBM> bitmaps,
@@ -34,7 +35,8 @@ public class LabAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<BM, IB
         boolean atomized,
         ValueIndex<byte[]>[] keyedStores,
         MiruAuthzCache<BM, IBM> cache,
-        StripingLocksProvider<String> stripingLocksProvider)
+        StripingLocksProvider<String> stripingLocksProvider,
+        LabBitmapCache<BM, IBM> bitmapCache)
         throws Exception {
 
         this.idProvider = idProvider;
@@ -45,6 +47,7 @@ public class LabAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<BM, IB
         this.keyedStores = keyedStores;
         this.cache = cache;
         this.stripingLocksProvider = stripingLocksProvider;
+        this.bitmapCache = bitmapCache;
     }
 
     private ValueIndex<byte[]> getStore(String authz) {
@@ -63,7 +66,8 @@ public class LabAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<BM, IB
             getStore(authz),
             null,
             null,
-            stripingLocksProvider.lock(authz, 0));
+            stripingLocksProvider.lock(authz, 0),
+            bitmapCache);
     }
 
     private byte[] bitmapIndexKey(byte[] authzBytes) {
@@ -0,0 +1,62 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-partition cache of decoded bitmaps keyed by their LAB bitmap key, bounded by the estimated size of the cached bitmaps in bytes.
+ * Cached bitmaps are never handed out directly; readers always receive a copy so that in-place operations cannot corrupt the cache.
+ */
+public class LabBitmapCache<BM extends IBM, IBM> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final MiruBitmaps<BM, IBM> bitmaps;
+    private final Cache<ByteBuffer, BitmapAndLastId<BM>> cache;
+
+    public LabBitmapCache(MiruBitmaps<BM, IBM> bitmaps, long maxSizeInBytes) {
+        this.bitmaps = bitmaps;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeInBytes)
+            .<ByteBuffer, BitmapAndLastId<BM>>weigher((key, value) -> {
+                long weight = key.capacity() + LabInvertedIndex.LAST_ID_LENGTH + bitmaps.sizeInBytes(value.getBitmap());
+                return (int) Math.min(weight, Integer.MAX_VALUE);
+            })
+            .<ByteBuffer, BitmapAndLastId<BM>>removalListener(notification -> {
+                if (notification.wasEvicted()) {
+                    LOG.inc("bitmapCache>evicted");
+                }
+            })
+            .build();
+    }
+
+    public boolean get(byte[] key, BitmapAndLastId<BM> container) {
+        BitmapAndLastId<BM> got = cache.getIfPresent(ByteBuffer.wrap(key));
+        if (got != null) {
+            container.set(bitmaps.copy(got.getBitmap()), got.getLastId());
+            LOG.inc("bitmapCache>hit");
+            return true;
+        }
+        LOG.inc("bitmapCache>miss");
+        return false;
+    }
+
+    public void put(byte[] key, BitmapAndLastId<BM> container) {
+        if (container.isSet()) {
+            cache.put(ByteBuffer.wrap(key), new BitmapAndLastId<BM>().set(bitmaps.copy(container.getBitmap()), container.getLastId()));
+        }
+    }
+
+    public void invalidate(byte[] key) {
+        cache.invalidate(ByteBuffer.wrap(key));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -36,6 +36,9 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    // the global cardinality for a term is keyed by id -1, and the max cardinality for any one id by id -2
+    private static final int MAX_CARDINALITY_ID = -2;
+
     private final OrderIdProvider idProvider;
     private final MiruBitmaps<BM, IBM> bitmaps;
     private final TrackError trackError;
@@ -50,6 +53,7 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
     // We could lock on both field + termId for improved hash/striping, but we favor just termId to reduce object creation
     private final StripingLocksProvider<MiruTermId> stripingLocksProvider;
     private final MiruInterner<MiruTermId> termInterner;
+    private final LabBitmapCache<BM, IBM> bitmapCache;
 
     public LabFieldIndex(OrderIdProvider idProvider,
         MiruBitmaps<BM, IBM> bitmaps,
@@ -62,7 +66,8 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
         byte[] cardinalityPrefix,
         ValueIndex<byte[]>[] cardinalities,
         StripingLocksProvider<MiruTermId> stripingLocksProvider,
-        MiruInterner<MiruTermId> termInterner) throws Exception {
+        MiruInterner<MiruTermId> termInterner,
+        LabBitmapCache<BM, IBM> bitmapCache) throws Exception {
 
         this.idProvider = idProvider;
         this.bitmaps = bitmaps;
@@ -77,6 +82,7 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
         this.cardinalities = cardinalities;
         this.stripingLocksProvider = stripingLocksProvider;
         this.termInterner = termInterner;
+        this.bitmapCache = bitmapCache;
     }
 
     private ValueIndex<byte[]> getBitmapIndex(int fieldId) {
@@ -201,7 +207,8 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
             getBitmapIndex(fieldId),
             termIndexKey(fieldIdBytes, termId.getBytes()),
             getTermIndex(fieldId),
-            stripingLocksProvider.lock(termId, 0));
+            stripingLocksProvider.lock(termId, 0),
+            bitmapCache);
     }
 
     @Override
@@ -475,6 +482,25 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
         return getCardinality(fieldDefinition, termId, -1, stackBuffer);
     }
 
+    @Override
+    public long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+        if (fieldDefinition.type.hasFeature(Feature.cardinality)) {
+            int fieldId = fieldDefinition.fieldId;
+            byte[] fieldIdBytes = FilerIO.intBytes(fieldId);
+            long[] max = { -1 };
+            byte[] cardinalityIndexKey = cardinalityIndexKey(fieldIdBytes, MAX_CARDINALITY_ID, termId.getBytes());
+            getCardinalityIndex(fieldId).get((streamKeys) -> streamKeys.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length),
+                (index, key, timestamp, tombstoned, version, payload) -> {
+                    if (payload != null && !tombstoned) {
+                        max[0] = payload.getLong(0);
+                    }
+                    return false;
+                }, true);
+            return max[0];
+        }
+        return -1;
+    }
+
     private void mergeCardinalities(MiruFieldDefinition fieldDefinition, MiruTermId termId, int[] ids, long[] counts) throws Exception {
         if (fieldDefinition.type.hasFeature(Feature.cardinality) && counts != null) {
             int fieldId = fieldDefinition.fieldId;
@@ -508,18 +534,35 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
             }
 
             long[] globalCount = { 0 };
+            // -1 until a max is found, so terms indexed before max tracking keep an unknown bound rather than a partial one
+            long[] maxCount = { -1 };
+            boolean[] existing = { false };
             byte[] cardinalityIndexKey = cardinalityIndexKey(fieldBytes, -1, termId.getBytes());
+            byte[] maxCardinalityIndexKey = cardinalityIndexKey(fieldBytes, MAX_CARDINALITY_ID, termId.getBytes());
             cardinalityIndex.get(
-                (keyStream) -> keyStream.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length),
+                (keyStream) -> keyStream.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length)
+                    && keyStream.key(1, maxCardinalityIndexKey, 0, maxCardinalityIndexKey.length),
                 (index, key, timestamp, tombstoned, version, payload) -> {
                     if (payload != null && !tombstoned) {
-                        globalCount[0] = payload.getLong(0);
+                        if (index == 0) {
+                            globalCount[0] = payload.getLong(0);
+                            existing[0] = true;
+                        } else {
+                            maxCount[0] = payload.getLong(0);
+                        }
                     }
-                    return false;
+                    return true;
                 },
                 true);
             globalCount[0] += delta;
 
+            long batchMax = 0;
+            for (long count : counts) {
+                batchMax = Math.max(batchMax, count);
+            }
+            boolean appendMax = !existing[0] || maxCount[0] != -1 && batchMax > maxCount[0];
+            long max = Math.max(batchMax, maxCount[0]);
+
             long timestamp = System.currentTimeMillis();
             long version = idProvider.nextId();
             cardinalityIndex.append(
@@ -532,7 +575,12 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
                     }
 
                     byte[] globalKey = cardinalityIndexKey(fieldBytes, -1, termId.getBytes());
-                    valueStream.stream(-1, globalKey, timestamp, false, version, UIO.longBytes(globalCount[0]));
+                    if (!valueStream.stream(-1, globalKey, timestamp, false, version, UIO.longBytes(globalCount[0]))) {
+                        return false;
+                    }
+                    if (appendMax) {
+                        valueStream.stream(-1, maxCardinalityIndexKey, timestamp, false, version, UIO.longBytes(max));
+                    }
                     return true;
                 },
                 true,
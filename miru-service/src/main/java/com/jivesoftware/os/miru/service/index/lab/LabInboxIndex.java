@@ -63,7 +63,8 @@ public class LabInboxIndex<BM extends IBM, IBM> implements MiruInboxIndex<BM, IB
             getStore(streamId),
             null,
             null,
-            stripingLocksProvider.lock(streamId, 0));
+            stripingLocksProvider.lock(streamId, 0),
+            null);
     }
 
     private byte[] bitmapIndexKey(byte[] streamIdBytes) {
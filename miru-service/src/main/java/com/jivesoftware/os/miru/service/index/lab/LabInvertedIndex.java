@@ -15,6 +15,7 @@ import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.IndexTx;
 import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
+import com.jivesoftware.os.miru.service.metric.MiruMetricKeys;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import gnu.trove.set.TIntSet;
@@ -45,6 +46,8 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
     private final byte[] termKeyBytes;
     private final ValueIndex<byte[]> termIndex;
     private final Object mutationLock;
+    private final LabBitmapCache<BM, IBM> bitmapCache;
+    private final MiruMetricKeys.IndexKeys metricKeys;
     private volatile int lastId = Integer.MIN_VALUE;
 
     public LabInvertedIndex(OrderIdProvider idProvider,
@@ -57,7 +60,8 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         ValueIndex<byte[]> bitmapIndex,
         byte[] termKeyBytes,
         ValueIndex<byte[]> termIndex,
-        Object mutationLock) {
+        Object mutationLock,
+        LabBitmapCache<BM, IBM> bitmapCache) {
 
         this.idProvider = idProvider;
         this.bitmaps = bitmaps;
@@ -70,18 +74,55 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         this.termKeyBytes = termKeyBytes;
         this.termIndex = termIndex;
         this.mutationLock = mutationLock;
+        this.bitmapCache = bitmapCache;
+        this.metricKeys = MiruMetricKeys.index(name, fieldId);
     }
 
     @Override
     public void getIndex(BitmapAndLastId<BM> container, StackBuffer stackBuffer) throws Exception {
+        if (bitmapCache != null && bitmapCache.get(bitmapKeyBytes, container)) {
+            if (lastId == Integer.MIN_VALUE) {
+                lastId = container.getLastId();
+            }
+            LOG.inc("count>getIndex>cached");
+            return;
+        }
+
         MutableLong bytes = new MutableLong();
-        getIndexInternal(null, container, bytes);
-        LOG.inc("count>getIndex>total");
-        LOG.inc("count>getIndex>" + name + ">total");
-        LOG.inc("count>getIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>getIndex>total", bytes.longValue());
-        LOG.inc("bytes>getIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>getIndex>" + name + ">" + fieldId, bytes.longValue());
+        if (bitmapCache != null) {
+            // populate under the mutation lock so a concurrent write cannot be shadowed by a stale read
+            synchronized (mutationLock) {
+                getIndexInternal(null, container, bytes);
+                bitmapCache.put(bitmapKeyBytes, container);
+            }
+        } else {
+            getIndexInternal(null, container, bytes);
+        }
+        LOG.inc(metricKeys.getIndex.countTotal);
+        LOG.inc(metricKeys.getIndex.countName);
+        LOG.inc(metricKeys.getIndex.countField);
+        LOG.inc(metricKeys.getIndex.bytesTotal, bytes.longValue());
+        LOG.inc(metricKeys.getIndex.bytesName, bytes.longValue());
+        LOG.inc(metricKeys.getIndex.bytesField, bytes.longValue());
+    }
+
+    /**
+     * Reads only the atoms holding the given ids, or the whole bitmap when the index is not atomized or is already cached.
+     */
+    protected void getIndexForKeys(BitmapAndLastId<BM> container, int[] ids, StackBuffer stackBuffer) throws Exception {
+        if (!atomized || (bitmapCache != null && bitmapCache.get(bitmapKeyBytes, container))) {
+            getIndex(container, stackBuffer);
+            return;
+        }
+
+        MutableLong bytes = new MutableLong();
+        getIndexInternal(keysFromIds(ids), container, bytes);
+        LOG.inc(metricKeys.getIndex.countTotal);
+        LOG.inc(metricKeys.getIndex.countName);
+        LOG.inc(metricKeys.getIndex.countField);
+        LOG.inc(metricKeys.getIndex.bytesTotal, bytes.longValue());
+        LOG.inc(metricKeys.getIndex.bytesName, bytes.longValue());
+        LOG.inc(metricKeys.getIndex.bytesField, bytes.longValue());
     }
 
     private void getIndexInternal(int[] keys, BitmapAndLastId<BM> container, MutableLong bytes) throws Exception {
@@ -149,14 +190,18 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                 }, true);
         }
 
+        // a read of some atoms says nothing about the last id of the whole bitmap
+        boolean whole = keys == null || !atomized;
         if (container.isSet()) {
             LOG.inc("get>hit");
-            if (lastId == Integer.MIN_VALUE) {
+            if (whole && lastId == Integer.MIN_VALUE) {
                 lastId = container.getLastId();
             }
         } else {
             LOG.inc("get>miss");
-            lastId = -1;
+            if (whole) {
+                lastId = -1;
+            }
         }
     }
 
@@ -218,12 +263,12 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
             result = resultHolder[0];
         }
 
-        LOG.inc("count>txIndex>total");
-        LOG.inc("count>txIndex>" + name + ">total");
-        LOG.inc("count>txIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>txIndex>total", bytes.longValue());
-        LOG.inc("bytes>txIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>txIndex>" + name + ">" + fieldId, bytes.longValue());
+        LOG.inc(metricKeys.txIndex.countTotal);
+        LOG.inc(metricKeys.txIndex.countName);
+        LOG.inc(metricKeys.txIndex.countField);
+        LOG.inc(metricKeys.txIndex.bytesTotal, bytes.longValue());
+        LOG.inc(metricKeys.txIndex.bytesName, bytes.longValue());
+        LOG.inc(metricKeys.txIndex.bytesField, bytes.longValue());
         return result;
     }
 
@@ -296,12 +341,12 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         BitmapAndLastId<BM> index = new BitmapAndLastId<>();
         getIndexInternal(keys, index, bytes);
         BM bitmap = index.isSet() ? index.getBitmap() : bitmaps.create();
-        LOG.inc("count>getOrCreateIndex>total");
-        LOG.inc("count>getOrCreateIndex>" + name + ">total");
-        LOG.inc("count>getOrCreateIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>getOrCreateIndex>total", bytes.longValue());
-        LOG.inc("bytes>getOrCreateIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>getOrCreateIndex>" + name + ">" + fieldId, bytes.longValue());
+        LOG.inc(metricKeys.getOrCreateIndex.countTotal);
+        LOG.inc(metricKeys.getOrCreateIndex.countName);
+        LOG.inc(metricKeys.getOrCreateIndex.countField);
+        LOG.inc(metricKeys.getOrCreateIndex.bytesTotal, bytes.longValue());
+        LOG.inc(metricKeys.getOrCreateIndex.bytesName, bytes.longValue());
+        LOG.inc(metricKeys.getOrCreateIndex.bytesField, bytes.longValue());
         return bitmap;
     }
 
@@ -378,6 +423,9 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
             new BolBuffer(),
             new BolBuffer());
 
+        if (bitmapCache != null) {
+            bitmapCache.invalidate(bitmapKeyBytes);
+        }
         lastId = bitmaps.lastSetBit(index);
 
         int bytesWritten = 0;
@@ -386,12 +434,12 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                 bytesWritten += bytes[i].length;
             }
         }
-        LOG.inc("count>set>total");
-        LOG.inc("count>set>" + name + ">total");
-        LOG.inc("count>set>" + name + ">" + fieldId);
-        LOG.inc("bytes>set>total", bytesWritten);
-        LOG.inc("bytes>set>" + name + ">total", bytesWritten);
-        LOG.inc("bytes>set>" + name + ">" + fieldId, bytesWritten);
+        LOG.inc(metricKeys.set.countTotal);
+        LOG.inc(metricKeys.set.countName);
+        LOG.inc(metricKeys.set.countField);
+        LOG.inc(metricKeys.set.bytesTotal, bytesWritten);
+        LOG.inc(metricKeys.set.bytesName, bytesWritten);
+        LOG.inc(metricKeys.set.bytesField, bytesWritten);
         if (atomized) {
             LOG.inc("atomized>set>calls");
             LOG.inc("atomized>set>atoms", keys == null ? 0 : keys.length);
@@ -487,12 +535,12 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                 }
                 lastId = id[0];
             }
-            LOG.inc("count>lastId>total");
-            LOG.inc("count>lastId>" + name + ">total");
-            LOG.inc("count>lastId>" + name + ">" + fieldId);
-            LOG.inc("bytes>lastId>total", bytes.longValue());
-            LOG.inc("bytes>lastId>" + name + ">total", bytes.longValue());
-            LOG.inc("bytes>lastId>" + name + ">" + fieldId, bytes.longValue());
+            LOG.inc(metricKeys.lastId.countTotal);
+            LOG.inc(metricKeys.lastId.countName);
+            LOG.inc(metricKeys.lastId.countField);
+            LOG.inc(metricKeys.lastId.bytesTotal, bytes.longValue());
+            LOG.inc(metricKeys.lastId.bytesName, bytes.longValue());
+            LOG.inc(metricKeys.lastId.bytesField, bytes.longValue());
         }
         return lastId;
     }
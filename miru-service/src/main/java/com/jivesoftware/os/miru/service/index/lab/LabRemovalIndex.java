@@ -1,8 +1,10 @@
 package com.jivesoftware.os.miru.service.index.lab;
 
+import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.jive.utils.ordered.id.OrderIdProvider;
 import com.jivesoftware.os.lab.api.ValueIndex;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.MiruRemovalIndex;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 
@@ -14,7 +16,8 @@ public class LabRemovalIndex<BM extends IBM, IBM> extends LabInvertedIndex<BM, I
         boolean atomized,
         ValueIndex<byte[]> valueIndex,
         byte[] keyBytes,
-        Object mutationLock) {
+        Object mutationLock,
+        LabBitmapCache<BM, IBM> bitmapCache) {
 
         super(idProvider,
             bitmaps,
@@ -26,6 +29,12 @@ public class LabRemovalIndex<BM extends IBM, IBM> extends LabInvertedIndex<BM, I
             valueIndex,
             null,
             null,
-            mutationLock);
+            mutationLock,
+            bitmapCache);
+    }
+
+    @Override
+    public void getIndexForIds(BitmapAndLastId<BM> container, int[] ids, StackBuffer stackBuffer) throws Exception {
+        getIndexForKeys(container, ids, stackBuffer);
     }
 }
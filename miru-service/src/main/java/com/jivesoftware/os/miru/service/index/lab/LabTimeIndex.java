@@ -40,6 +40,11 @@ public class LabTimeIndex implements MiruTimeIndex {
     private final ValueIndex<byte[]> monotonicTimestampIndex;
     private final ValueIndex<byte[]> rawTimestampToIndex;
     private final boolean verboseLogging;
+    private final boolean columnEnabled;
+
+    private final Object columnLock = new Object();
+    private volatile LabTimestampColumn column;
+    private volatile boolean closed;
 
     public LabTimeIndex(MiruPartitionCoord coord,
         OrderIdProvider idProvider,
@@ -47,7 +52,8 @@ public class LabTimeIndex implements MiruTimeIndex {
         byte[] metaKey,
         ValueIndex<byte[]> monotonicTimestampIndex,
         ValueIndex<byte[]> rawTimestampToIndex,
-        boolean verboseLogging) throws Exception {
+        boolean verboseLogging,
+        boolean columnEnabled) throws Exception {
 
         this.coord = coord;
         this.idProvider = idProvider;
@@ -56,6 +62,7 @@ public class LabTimeIndex implements MiruTimeIndex {
         this.monotonicTimestampIndex = monotonicTimestampIndex;
         this.rawTimestampToIndex = rawTimestampToIndex;
         this.verboseLogging = verboseLogging;
+        this.columnEnabled = columnEnabled;
 
         init();
     }
@@ -160,16 +167,34 @@ public class LabTimeIndex implements MiruTimeIndex {
         BolBuffer keyBuffer = new BolBuffer();
         long currentTime = System.currentTimeMillis();
         long version = idProvider.nextId();
-        monotonicTimestampIndex.append(stream -> {
-            for (int i = 0; i < ids.length; i++) {
-                if (ids[i] != -1 && monotonics[i] != -1) {
-                    if (!stream.stream(-1, Bytes.concat(UIO.longBytes(monotonics[i]), FilerIO.intBytes(ids[i])), currentTime, false, version, null)) {
-                        return false;
+        synchronized (columnLock) {
+            monotonicTimestampIndex.append(stream -> {
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] != -1 && monotonics[i] != -1) {
+                        if (!stream.stream(-1, Bytes.concat(UIO.longBytes(monotonics[i]), FilerIO.intBytes(ids[i])), currentTime, false, version, null)) {
+                            return false;
+                        }
                     }
                 }
+                return true;
+            }, true, entryBuffer, keyBuffer);
+
+            LabTimestampColumn loaded = column;
+            if (loaded != null) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] != -1 && monotonics[i] != -1 && !loaded.append(monotonics[i], ids[i])) {
+                        // a new entry out of order with what is already loaded, so rebuild from the index on next use
+                        column = null;
+                        loaded = null;
+                        LOG.inc("column>invalidate");
+                        break;
+                    }
+                }
+                if (loaded != null) {
+                    loaded.publish();
+                }
             }
-            return true;
-        }, true, entryBuffer, keyBuffer);
+        }
 
         rawTimestampToIndex.append(stream -> {
             for (int i = 0; i < ids.length; i++) {
@@ -197,6 +222,14 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId() + 1;
         }
 
+        if (!columnEnabled) {
+            return scanClosestId(timestamp);
+        }
+        int id = column().ceilingId(timestamp);
+        return id == -1 ? lastId() + 1 : id;
+    }
+
+    private int scanClosestId(long timestamp) throws Exception {
         int[] id = { 0 };
         monotonicTimestampIndex.rangeScan(UIO.longBytes(timestamp), null, (index, key, payloadTimestamp, tombstoned, version, payload) -> {
             if (key != null) {
@@ -207,6 +240,79 @@ public class LabTimeIndex implements MiruTimeIndex {
         return id[0];
     }
 
+    @Override
+    public int[] getClosestIds(long[] timestamps, StackBuffer stackBuffer) throws Exception {
+        int lastId = lastId();
+        int[] ids = new int[timestamps.length];
+        boolean seek = false;
+        for (int i = 0; i < timestamps.length; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp <= smallestTimestamp) {
+                ids[i] = 0;
+            } else if (timestamp == largestTimestamp) {
+                ids[i] = lastId;
+            } else if (timestamp > largestTimestamp) {
+                ids[i] = lastId + 1;
+            } else {
+                seek = true;
+            }
+        }
+
+        if (seek && !columnEnabled) {
+            for (int i = 0; i < timestamps.length; i++) {
+                long timestamp = timestamps[i];
+                if (timestamp > smallestTimestamp && timestamp < largestTimestamp) {
+                    ids[i] = scanClosestId(timestamp);
+                }
+            }
+        } else if (seek) {
+            int[] ceilingIds = column().ceilingIds(timestamps);
+            for (int i = 0; i < timestamps.length; i++) {
+                long timestamp = timestamps[i];
+                if (timestamp > smallestTimestamp && timestamp < largestTimestamp) {
+                    ids[i] = ceilingIds[i] == -1 ? lastId + 1 : ceilingIds[i];
+                }
+            }
+        }
+        return ids;
+    }
+
+    private LabTimestampColumn column() throws Exception {
+        LabTimestampColumn got = column;
+        if (got == null) {
+            synchronized (columnLock) {
+                got = column;
+                if (got == null) {
+                    got = loadColumn();
+                    column = got;
+                }
+            }
+        }
+        return got;
+    }
+
+    private LabTimestampColumn loadColumn() throws Exception {
+        long start = System.currentTimeMillis();
+        LabTimestampColumn loaded = new LabTimestampColumn();
+        monotonicTimestampIndex.rowScan((index, key, payloadTimestamp, tombstoned, version, payload) -> {
+            if (key != null && !tombstoned) {
+                loaded.append(key.getLong(0), key.getInt(8));
+            }
+            return true;
+        }, true);
+        if (closed) {
+            loaded.trim();
+        } else {
+            loaded.publish();
+        }
+
+        LOG.inc("column>load");
+        if (verboseLogging) {
+            LOG.info("Loaded timestamp column for coord:{} size:{} in {} ms", coord, loaded.size(), System.currentTimeMillis() - start);
+        }
+        return loaded;
+    }
+
     private final KeyValueTransaction<Integer, Integer> exactIdTransaction = KeyValueContext::get;
 
     @Override
@@ -270,27 +376,35 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId + 1;
         }
 
-        int[] id = { 0 };
-        monotonicTimestampIndex.rangeScan(
-            UIO.longBytes(timestamp),
-            null,
-            (index, key, payloadTimestamp, tombstoned, version, payload) -> {
-                if (key != null) {
-                    if (key.getLong(0) <= timestamp) {
-                        id[0] = key.getInt(8) + 1;
-                        return true;
-                    } else {
-                        id[0] = key.getInt(8);
+        int id;
+        if (columnEnabled) {
+            LabTimestampColumn column = column();
+            int higherId = column.higherId(timestamp);
+            id = higherId == -1 ? column.lastEntryId() + 1 : higherId;
+        } else {
+            int[] scanned = { 0 };
+            monotonicTimestampIndex.rangeScan(
+                UIO.longBytes(timestamp),
+                null,
+                (index, key, payloadTimestamp, tombstoned, version, payload) -> {
+                    if (key != null) {
+                        if (key.getLong(0) <= timestamp) {
+                            scanned[0] = key.getInt(8) + 1;
+                            return true;
+                        } else {
+                            scanned[0] = key.getInt(8);
+                        }
                     }
-                }
-                return false;
-            },
-            true
-        );
-        if (id[0] > lastId) {
+                    return false;
+                },
+                true
+            );
+            id = scanned[0];
+        }
+        if (id > lastId) {
             return lastId + 1;
         }
-        return id[0];
+        return id;
     }
 
     @Override
@@ -304,31 +418,52 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId;
         }
 
-        int[] id = { -1 };
-        monotonicTimestampIndex.rangeScan(
-            UIO.longBytes(timestamp),
-            null,
-            (index, key, payloadTimestamp, tombstoned, version, payload) -> {
-                if (key != null) {
-                    if (key.getLong(0) <= timestamp) {
-                        id[0] = key.getInt(8);
-                        return true;
-                    } else {
-                        id[0] = key.getInt(8) - 1;
+        int id;
+        if (columnEnabled) {
+            LabTimestampColumn column = column();
+            int higherId = column.higherId(timestamp);
+            id = higherId == -1 ? column.lastEntryId() : higherId - 1;
+        } else {
+            int[] scanned = { -1 };
+            monotonicTimestampIndex.rangeScan(
+                UIO.longBytes(timestamp),
+                null,
+                (index, key, payloadTimestamp, tombstoned, version, payload) -> {
+                    if (key != null) {
+                        if (key.getLong(0) <= timestamp) {
+                            scanned[0] = key.getInt(8);
+                            return true;
+                        } else {
+                            scanned[0] = key.getInt(8) - 1;
+                        }
                     }
-                }
-                return false;
-            },
-            true
-        );
-        if (id[0] > lastId) {
+                    return false;
+                },
+                true
+            );
+            id = scanned[0];
+        }
+        if (id > lastId) {
             return lastId;
         }
-        return id[0];
+        return id;
+    }
+
+    @Override
+    public void markClosed() {
+        synchronized (columnLock) {
+            closed = true;
+            LabTimestampColumn loaded = column;
+            if (loaded != null) {
+                loaded.trim();
+                LOG.inc("column>trim");
+            }
+        }
     }
 
     @Override
     public void close() {
+        column = null;
     }
 
     @Override
@@ -0,0 +1,237 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import java.util.Arrays;
+
+/**
+ * Compact in-memory copy of the monotonic timestamp index, held as blocks of int offsets from each block's anchor timestamp
+ * alongside the id of each entry. Entries are in ascending timestamp order, so lookups are a binary search over the block
+ * anchors followed by a binary search within one block.
+ * <p>
+ * The column has a single writer, which appends and then publishes, and any number of readers, which only ever see what
+ * has been published.
+ */
+class LabTimestampColumn {
+
+    private static final int BLOCK_SIZE = 128;
+
+    private long[] anchors = new long[16];
+    private int[] blockStarts = new int[16];
+    private int[] offsets = new int[BLOCK_SIZE];
+    private int[] ids = new int[BLOCK_SIZE];
+    private int blockCount;
+    private int count;
+
+    private volatile Snapshot snapshot = new Snapshot(anchors, blockStarts, offsets, ids, 0, 0);
+
+    /**
+     * Appends an entry without publishing it. Entries must be appended in ascending order of timestamp and then id, which is
+     * the order of the monotonic timestamp index. An entry which is already in the column, as when an activity is repaired,
+     * is skipped.
+     *
+     * @return false if the entry precedes the last appended entry and is not already present, in which case the column is
+     * left unchanged
+     */
+    boolean append(long timestamp, int id) {
+        if (count > 0) {
+            int lastBlock = blockCount - 1;
+            long delta = timestamp - anchors[lastBlock];
+            int lastOffset = offsets[count - 1];
+            if (delta < lastOffset || delta == lastOffset && id <= ids[count - 1]) {
+                return new Snapshot(anchors, blockStarts, offsets, ids, blockCount, count).contains(timestamp, id);
+            }
+            if (count - blockStarts[lastBlock] >= BLOCK_SIZE || delta > Integer.MAX_VALUE) {
+                newBlock(timestamp);
+            }
+        } else {
+            newBlock(timestamp);
+        }
+
+        if (count == offsets.length) {
+            int capacity = Math.max(BLOCK_SIZE, count + (count >> 1));
+            offsets = Arrays.copyOf(offsets, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        offsets[count] = (int) (timestamp - anchors[blockCount - 1]);
+        ids[count] = id;
+        count++;
+        return true;
+    }
+
+    private void newBlock(long anchor) {
+        if (blockCount == anchors.length) {
+            int capacity = Math.max(16, blockCount + (blockCount >> 1));
+            anchors = Arrays.copyOf(anchors, capacity);
+            blockStarts = Arrays.copyOf(blockStarts, capacity);
+        }
+        anchors[blockCount] = anchor;
+        blockStarts[blockCount] = count;
+        blockCount++;
+    }
+
+    /**
+     * Makes every appended entry visible to readers.
+     */
+    void publish() {
+        snapshot = new Snapshot(anchors, blockStarts, offsets, ids, blockCount, count);
+    }
+
+    /**
+     * Releases the growth slack in each array and publishes, for a column which is no longer expected to grow. A later append
+     * simply grows the arrays again.
+     */
+    void trim() {
+        if (anchors.length > blockCount) {
+            anchors = Arrays.copyOf(anchors, blockCount);
+            blockStarts = Arrays.copyOf(blockStarts, blockCount);
+        }
+        if (offsets.length > count) {
+            offsets = Arrays.copyOf(offsets, count);
+            ids = Arrays.copyOf(ids, count);
+        }
+        publish();
+    }
+
+    /**
+     * @return the total length of the column's arrays, including any growth slack
+     */
+    int capacity() {
+        return offsets.length;
+    }
+
+    int size() {
+        return snapshot.count;
+    }
+
+    /**
+     * @return the id of the first entry whose timestamp is greater than or equal to the given timestamp, or -1 if there is none
+     */
+    int ceilingId(long timestamp) {
+        Snapshot s = snapshot;
+        int index = s.search(timestamp, false, 0);
+        return index < s.count ? s.ids[index] : -1;
+    }
+
+    /**
+     * @return the id of the first entry whose timestamp is greater than the given timestamp, or -1 if there is none
+     */
+    int higherId(long timestamp) {
+        Snapshot s = snapshot;
+        int index = s.search(timestamp, true, 0);
+        return index < s.count ? s.ids[index] : -1;
+    }
+
+    /**
+     * @return the id of the last entry, or -1 if the column is empty
+     */
+    int lastEntryId() {
+        Snapshot s = snapshot;
+        return s.count > 0 ? s.ids[s.count - 1] : -1;
+    }
+
+    /**
+     * Resolves ascending timestamps in a single forward pass, where each search starts from the block of the previous result.
+     *
+     * @return the id of the first entry whose timestamp is greater than or equal to each timestamp, or -1 where there is none
+     */
+    int[] ceilingIds(long[] timestamps) {
+        Snapshot s = snapshot;
+        int[] result = new int[timestamps.length];
+        int fromBlock = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            int index = s.search(timestamps[i], false, fromBlock);
+            if (index < s.count) {
+                result[i] = s.ids[index];
+                fromBlock = s.blockOf(index);
+            } else {
+                result[i] = -1;
+                fromBlock = Math.max(0, s.blockCount - 1);
+            }
+        }
+        return result;
+    }
+
+    private static class Snapshot {
+
+        private final long[] anchors;
+        private final int[] blockStarts;
+        private final int[] offsets;
+        private final int[] ids;
+        private final int blockCount;
+        private final int count;
+
+        private Snapshot(long[] anchors, int[] blockStarts, int[] offsets, int[] ids, int blockCount, int count) {
+            this.anchors = anchors;
+            this.blockStarts = blockStarts;
+            this.offsets = offsets;
+            this.ids = ids;
+            this.blockCount = blockCount;
+            this.count = count;
+        }
+
+        /**
+         * @return the index of the first entry whose timestamp is greater than (or, if not exclusive, equal to) the timestamp,
+         * or the count if there is none, given that no such entry precedes the start of the from block
+         */
+        private int search(long timestamp, boolean exclusive, int fromBlock) {
+            // the first block whose anchor is past the timestamp, so that any match lies in the block before it or at its start
+            int lo = fromBlock;
+            int hi = blockCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (exclusive ? anchors[mid] <= timestamp : anchors[mid] < timestamp) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int block = lo - 1;
+            if (block < fromBlock) {
+                return lo < blockCount ? blockStarts[lo] : count;
+            }
+
+            int blockEnd = block + 1 < blockCount ? blockStarts[block + 1] : count;
+            long delta = timestamp - anchors[block];
+            if (delta > Integer.MAX_VALUE) {
+                return blockEnd;
+            }
+            int target = (int) delta;
+            lo = blockStarts[block];
+            hi = blockEnd;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (exclusive ? offsets[mid] <= target : offsets[mid] < target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private boolean contains(long timestamp, int id) {
+            for (int index = search(timestamp, false, 0); index < count; index++) {
+                if (anchors[blockOf(index)] + offsets[index] != timestamp) {
+                    return false;
+                }
+                if (ids[index] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int blockOf(int index) {
+            int lo = 0;
+            int hi = blockCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (blockStarts[mid] <= index) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+    }
+}
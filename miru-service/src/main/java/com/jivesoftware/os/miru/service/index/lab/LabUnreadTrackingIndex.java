@@ -78,7 +78,8 @@ public class LabUnreadTrackingIndex<BM extends IBM, IBM> implements MiruUnreadTr
             getStore(streamId),
             null,
             null,
-            stripingLocksProvider.lock(streamId, 0));
+            stripingLocksProvider.lock(streamId, 0),
+            null);
     }
 
     private byte[] storeKey(byte[] prefix, byte[] streamIdBytes) {
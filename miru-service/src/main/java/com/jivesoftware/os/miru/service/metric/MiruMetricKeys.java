@@ -0,0 +1,179 @@
+package com.jivesoftware.os.miru.service.metric;
+
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned metric names for the query and index hot paths. Names are built once per request name, query key or index field
+ * and reused thereafter, so steady-state callers do not allocate metric name strings.
+ */
+public class MiruMetricKeys {
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, SolveKeys>> SOLVE_KEYS = Maps.newConcurrentMap();
+    private static final ConcurrentMap<String, QueryKeys> QUERY_KEYS = Maps.newConcurrentMap();
+    private static final ConcurrentMap<String, FieldIndexKeys> INDEX_KEYS = Maps.newConcurrentMap();
+
+    private MiruMetricKeys() {
+    }
+
+    // lookups check with get() first since computeIfAbsent locks the bin even when the key is present
+
+    public static SolveKeys solve(String requestName, String queryKey) {
+        ConcurrentMap<String, SolveKeys> requestKeys = SOLVE_KEYS.get(requestName);
+        if (requestKeys == null) {
+            requestKeys = SOLVE_KEYS.computeIfAbsent(requestName, key -> Maps.newConcurrentMap());
+        }
+        SolveKeys keys = requestKeys.get(queryKey);
+        if (keys == null) {
+            keys = requestKeys.computeIfAbsent(queryKey, key -> new SolveKeys(requestName, queryKey));
+        }
+        return keys;
+    }
+
+    public static QueryKeys query(String queryKey) {
+        QueryKeys keys = QUERY_KEYS.get(queryKey);
+        if (keys == null) {
+            keys = QUERY_KEYS.computeIfAbsent(queryKey, QueryKeys::new);
+        }
+        return keys;
+    }
+
+    public static IndexKeys index(String name, int fieldId) {
+        FieldIndexKeys nameKeys = INDEX_KEYS.get(name);
+        if (nameKeys == null) {
+            nameKeys = INDEX_KEYS.computeIfAbsent(name, FieldIndexKeys::new);
+        }
+        return nameKeys.get(fieldId);
+    }
+
+    /**
+     * Index keys for one name, held in an array indexed by field id so lookups neither box the id nor hash it.
+     */
+    private static class FieldIndexKeys {
+
+        private final String name;
+        private volatile IndexKeys[] keys = new IndexKeys[0];
+
+        private FieldIndexKeys(String name) {
+            this.name = name;
+        }
+
+        private IndexKeys get(int fieldId) {
+            int slot = slot(fieldId);
+            IndexKeys[] current = keys;
+            if (slot < current.length && current[slot] != null) {
+                return current[slot];
+            }
+            return create(fieldId, slot);
+        }
+
+        // copy on write, since fields are few and fixed by the schema
+        private synchronized IndexKeys create(int fieldId, int slot) {
+            IndexKeys[] current = keys;
+            if (slot < current.length && current[slot] != null) {
+                return current[slot];
+            }
+            IndexKeys[] grown = Arrays.copyOf(current, Math.max(current.length, slot + 1));
+            grown[slot] = new IndexKeys(name, fieldId);
+            keys = grown;
+            return grown[slot];
+        }
+
+        // zigzag, so the negative ids of the authz, inbox, unread and cache indexes interleave with the schema fields
+        private static int slot(int fieldId) {
+            return (fieldId << 1) ^ (fieldId >> 31);
+        }
+    }
+
+    public static class SolveKeys {
+
+        public final String timeout;
+        public final String calls;
+        public final String empty;
+        public final String initial;
+        public final String outOfTime;
+        public final String success;
+        public final String solvableFailed;
+        public final String solvableInterrupted;
+        public final String solvableError;
+        public final String moreSolvers;
+        public final String added;
+        public final String allFailed;
+        public final String hedgeWin;
+        public final String hedgeLoss;
+        public final String throughputSuccessLocal;
+        public final String throughputSuccessRemote;
+        public final String throughputFailure;
+        public final String throughputAbandoned;
+
+        private SolveKeys(String requestName, String queryKey) {
+            String request = "solve>request>" + requestName + ">" + queryKey;
+            this.timeout = request + ">timeout";
+            this.calls = request + ">calls";
+            this.empty = request + ">empty";
+            this.initial = request + ">initial";
+            this.outOfTime = request + ">outOfTime";
+            this.success = request + ">success";
+            this.solvableFailed = request + ">solvableFailed";
+            this.solvableInterrupted = request + ">solvableInterrupted";
+            this.solvableError = request + ">solvableError>";
+            this.moreSolvers = request + ">moreSolvers";
+            this.added = request + ">added";
+            this.allFailed = request + ">allFailed";
+            this.hedgeWin = request + ">hedge>win";
+            this.hedgeLoss = request + ">hedge>loss";
+            this.throughputSuccessLocal = "solve>throughput>success>local>" + requestName + ">" + queryKey;
+            this.throughputSuccessRemote = "solve>throughput>success>remote>" + requestName + ">" + queryKey;
+            this.throughputFailure = "solve>throughput>failure>" + requestName + ">" + queryKey;
+            this.throughputAbandoned = "solve>throughput>abandoned>" + requestName + ">" + queryKey;
+        }
+    }
+
+    public static class QueryKeys {
+
+        public final String askAndMerge;
+        public final String askImmediate;
+
+        private QueryKeys(String queryKey) {
+            this.askAndMerge = "askAndMerge>query>" + queryKey;
+            this.askImmediate = "askImmediate>query>" + queryKey;
+        }
+    }
+
+    public static class IndexKeys {
+
+        public final IndexOpKeys getIndex;
+        public final IndexOpKeys txIndex;
+        public final IndexOpKeys getOrCreateIndex;
+        public final IndexOpKeys set;
+        public final IndexOpKeys lastId;
+
+        private IndexKeys(String name, int fieldId) {
+            this.getIndex = new IndexOpKeys("getIndex", name, fieldId);
+            this.txIndex = new IndexOpKeys("txIndex", name, fieldId);
+            this.getOrCreateIndex = new IndexOpKeys("getOrCreateIndex", name, fieldId);
+            this.set = new IndexOpKeys("set", name, fieldId);
+            this.lastId = new IndexOpKeys("lastId", name, fieldId);
+        }
+    }
+
+    public static class IndexOpKeys {
+
+        public final String countTotal;
+        public final String countName;
+        public final String countField;
+        public final String bytesTotal;
+        public final String bytesName;
+        public final String bytesField;
+
+        private IndexOpKeys(String op, String name, int fieldId) {
+            this.countTotal = "count>" + op + ">total";
+            this.countName = "count>" + op + ">" + name + ">total";
+            this.countField = "count>" + op + ">" + name + ">" + fieldId;
+            this.bytesTotal = "bytes>" + op + ">total";
+            this.bytesName = "bytes>" + op + ">" + name + ">total";
+            this.bytesField = "bytes>" + op + ">" + name + ">" + fieldId;
+        }
+    }
+}
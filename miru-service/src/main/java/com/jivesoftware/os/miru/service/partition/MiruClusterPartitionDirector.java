@@ -17,6 +17,7 @@ import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.miru.service.partition.cluster.MiruTenantTopology;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.OutputStream;
 import java.util.List;
 
 /** @author jonathan */
@@ -125,6 +126,16 @@ public class MiruClusterPartitionDirector implements MiruPartitionDirector {
         return expectedTenants.compact(new MiruPartitionCoord(tenantId, partitionId, host));
     }
 
+    @Override
+    public boolean canExportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId) throws Exception {
+        return expectedTenants.canExportSnapshot(new MiruPartitionCoord(tenantId, partitionId, host));
+    }
+
+    @Override
+    public boolean exportSnapshot(MiruTenantId tenantId, MiruPartitionId partitionId, OutputStream outputStream) throws Exception {
+        return expectedTenants.exportSnapshot(new MiruPartitionCoord(tenantId, partitionId, host), outputStream);
+    }
+
     @Override
     public boolean rebuildTimeRange(MiruTimeRange miruTimeRange, boolean hotDeploy, boolean chunkStores, boolean labIndex) throws Exception {
         return expectedTenants.rebuildTimeRange(miruTimeRange, hotDeploy, chunkStores, labIndex);
@@ -8,6 +8,7 @@ import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.plugin.partition.OrderedPartitions;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.miru.service.partition.cluster.MiruTenantTopology;
+import java.io.OutputStream;
 
 /**
  * To expect a tenant is to consider it active, meaning its partitions are eligible to wake and serve activity.
@@ -24,6 +25,10 @@ public interface MiruExpectedTenants {
 
     boolean compact(MiruPartitionCoord coord) throws Exception;
 
+    boolean canExportSnapshot(MiruPartitionCoord coord) throws Exception;
+
+    boolean exportSnapshot(MiruPartitionCoord coord, OutputStream outputStream) throws Exception;
+
     boolean rebuildTimeRange(MiruTimeRange miruTimeRange, boolean hotDeploy, boolean chunkStores, boolean labIndex) throws Exception;
 
     void thumpthump() throws Exception;
@@ -10,6 +10,7 @@ import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.MiruPartitionCoordInfo;
 import com.jivesoftware.os.miru.api.MiruPartitionState;
 import com.jivesoftware.os.miru.api.MiruStats;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
@@ -40,23 +41,27 @@ import com.jivesoftware.os.miru.service.stream.MiruIndexer;
 import com.jivesoftware.os.miru.service.stream.MiruRebuildDirector;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
 import com.jivesoftware.os.routing.bird.health.api.HealthCounter;
 import com.jivesoftware.os.routing.bird.health.api.HealthFactory;
 import com.jivesoftware.os.routing.bird.health.api.MinMaxHealthCheckConfig;
 import com.jivesoftware.os.routing.bird.health.api.MinMaxHealthChecker;
 import com.jivesoftware.os.routing.bird.shared.BoundedExecutor;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang.mutable.MutableLong;
 import org.merlin.config.defaults.LongDefault;
 import org.merlin.config.defaults.StringDefault;
 
@@ -68,6 +73,12 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    // rough heap costs used to size decoded rebuild batches against the prefetch budget
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+    private static final long MAP_ENTRY_OVERHEAD_BYTES = 64;
+    private static final long STRING_OVERHEAD_BYTES = 56;
+    private static final long REFERENCE_BYTES = 8;
+
     private final MiruStats miruStats;
     private final MiruBitmaps<BM, IBM> bitmaps;
     private final TrackError trackError;
@@ -79,6 +90,7 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
     private final MiruRealtimeDelivery realtimeDelivery;
     private final MiruPartitionHeartbeatHandler heartbeatHandler;
     private final MiruRebuildDirector rebuildDirector;
+    private final MiruPartitionSnapshotFetcher snapshotFetcher;
     private final AtomicBoolean removed = new AtomicBoolean(false);
 
     private final Collection<ScheduledFuture<?>> futures;
@@ -95,6 +107,8 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
     private final boolean partitionAllowNonLatestSchemaInteractions;
     private final boolean partitionCompactOnClosedWriters;
     private final int partitionRebuildBatchSize;
+    private final int partitionRebuildPrefetchBatches;
+    private final long partitionRebuildPrefetchMaxBytes;
     private final int partitionSipBatchSize;
     private final MiruMergeChits persistentMergeChits;
     private final MiruMergeChits transientMergeChits;
@@ -138,6 +152,7 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         MiruRealtimeDelivery realtimeDelivery,
         MiruPartitionHeartbeatHandler heartbeatHandler,
         MiruRebuildDirector rebuildDirector,
+        MiruPartitionSnapshotFetcher snapshotFetcher,
         ScheduledExecutorService scheduledBootstrapExecutor,
         ScheduledExecutorService scheduledRebuildExecutor,
         ScheduledExecutorService scheduledSipExecutor,
@@ -152,6 +167,8 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         boolean partitionAllowNonLatestSchemaInteractions,
         boolean partitionCompactOnClosedWriters,
         int partitionRebuildBatchSize,
+        int partitionRebuildPrefetchBatches,
+        long partitionRebuildPrefetchMaxBytes,
         int partitionSipBatchSize,
         MiruMergeChits persistentMergeChits,
         MiruMergeChits transientMergeChits,
@@ -169,6 +186,7 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         this.realtimeDelivery = realtimeDelivery;
         this.heartbeatHandler = heartbeatHandler;
         this.rebuildDirector = rebuildDirector;
+        this.snapshotFetcher = snapshotFetcher;
         this.scheduledRebuildExecutor = scheduledRebuildExecutor;
         this.scheduledSipExecutor = scheduledSipExecutor;
         this.rebuildWALExecutors = rebuildWALExecutors;
@@ -182,6 +200,8 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         this.partitionAllowNonLatestSchemaInteractions = partitionAllowNonLatestSchemaInteractions;
         this.partitionCompactOnClosedWriters = partitionCompactOnClosedWriters;
         this.partitionRebuildBatchSize = partitionRebuildBatchSize;
+        this.partitionRebuildPrefetchBatches = partitionRebuildPrefetchBatches;
+        this.partitionRebuildPrefetchMaxBytes = partitionRebuildPrefetchMaxBytes;
         this.partitionSipBatchSize = partitionSipBatchSize;
         this.persistentMergeChits = persistentMergeChits;
         this.transientMergeChits = transientMergeChits;
@@ -568,6 +588,65 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         }
     }
 
+    /**
+     * Compacts a closed partition and, once its compactions complete, records the footprint of its final indexes. Metrics are
+     * best effort, so a failure such as a file removed by a concurrent merge is only logged and never affects the compaction.
+     */
+    private void compactClosed(MiruContext<BM, IBM, S> context) {
+        try {
+            context.compactable.compact(persistentMergeExecutor, true);
+        } catch (Exception e) {
+            LOG.error("Failed to compact closed partition for {}", new Object[] { coord }, e);
+            return;
+        }
+        try {
+            contextFactory.recordClosedIndexMetrics(coord, context.storage);
+        } catch (Exception e) {
+            LOG.warn("Failed to record closed index metrics for {}", new Object[] { coord }, e);
+        }
+    }
+
+    public boolean canExportSnapshot() {
+        return accessorRef.get().canExportSnapshot();
+    }
+
+    public boolean exportSnapshot(OutputStream outputStream) throws Exception {
+        return accessorRef.get().exportSnapshot(contextFactory, persistentMergeExecutor, outputStream);
+    }
+
+    private boolean bootstrapFromPeer(MiruPartitionAccessor<BM, IBM, C, S> accessor) {
+        if (snapshotFetcher == null || accessor.hasPersistentStorage(checkPersistent)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            boolean fetched = snapshotFetcher.fetch(coord, (host, inputStream) -> {
+                LOG.info("Importing snapshot for {} from {}", coord, host);
+                contextFactory.importSnapshot(coord, inputStream);
+            });
+            if (!fetched) {
+                LOG.inc("bootstrap>peer>unavailable");
+                return false;
+            }
+            accessor.hasPersistentStorage.set(null);
+            MiruPartitionAccessor<BM, IBM, C, S> opened = open(accessor, MiruPartitionState.online, null);
+            if (opened == null || opened.state != MiruPartitionState.online || !opened.persistentContext.isPresent()) {
+                LOG.warn("Failed to open imported snapshot for {}", coord);
+                LOG.inc("bootstrap>peer>failed");
+                return false;
+            }
+            LOG.info("Bootstrapped {} from peer snapshot in {} ms", coord, System.currentTimeMillis() - start);
+            LOG.inc("bootstrap>peer>success");
+            trackError.reset();
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Failed to bootstrap {} from a peer, falling back to rebuild", new Object[] { coord }, e);
+            LOG.inc("bootstrap>peer>failed");
+            accessor.hasPersistentStorage.set(null);
+            return false;
+        }
+    }
+
     @Override
     public boolean rebuild() throws Exception {
         MiruPartitionAccessor<BM, IBM, C, S> accessor = accessorRef.get();
@@ -801,7 +880,9 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                     }
                     if (token.isPresent()) {
                         try {
-                            if (state.isRebuildable()) {
+                            if (state == MiruPartitionState.bootstrap && bootstrapFromPeer(accessor)) {
+                                accessor = null;
+                            } else if (state.isRebuildable()) {
                                 MiruPartitionState desiredState = state.transitionToRebuildingState();
                                 accessor = open(accessor, desiredState, token.get());
                                 if (accessor.state != desiredState) {
@@ -875,30 +956,42 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         }
 
         private boolean rebuild(final MiruPartitionAccessor<BM, IBM, C, S> accessor, StackBuffer stackBuffer) throws Exception {
-            final ArrayBlockingQueue<MiruWALClient.StreamBatch<MiruWALEntry, C>> queue = new ArrayBlockingQueue<>(1);
+            final LinkedBlockingQueue<PrefetchedBatch<C>> queue = new LinkedBlockingQueue<>(Math.max(partitionRebuildPrefetchBatches, 1));
+            final AtomicLong queuedBytes = new AtomicLong();
             final AtomicReference<C> cursor = new AtomicReference<>(accessor.getRebuildCursor());
             final AtomicBoolean rebuilding = new AtomicBoolean(true);
             final AtomicBoolean endOfWAL = new AtomicBoolean(false);
+            final long rebuildStart = System.currentTimeMillis();
 
             LOG.debug("Starting rebuild at {} for {}", cursor.get(), coord);
 
             rebuildWALExecutors.submit(() -> {
                 try {
-
+                    long totalFetched = 0;
+                    MutableLong bytesCount = new MutableLong();
                     MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch = walClient.getActivity(coord.tenantId,
                         coord.partitionId,
                         cursor.get(),
                         partitionRebuildBatchSize,
                         -1L,
-                        null);
+                        bytesCount);
 
                     while (rebuilding.get() && accessorRef.get() == accessor && streamBatch != null) {
-                        tryQueuePut(rebuilding, queue, streamBatch);
+                        int count = streamBatch.activities.size();
+                        totalFetched += count;
+                        LOG.inc("rebuild>fetched>count", count);
+                        LOG.inc("rebuild>fetched>bytes", bytesCount.longValue());
+                        LOG.inc("rebuild>fetched>partition>" + coord.partitionId, count, coord.tenantId.toString());
+                        LOG.set(ValueType.COUNT, "rebuild>fetched>partition>" + coord.partitionId + ">perSecond",
+                            ratePerSecond(totalFetched, rebuildStart), coord.tenantId.toString());
+
+                        tryQueuePut(rebuilding, queue, queuedBytes, new PrefetchedBatch<>(streamBatch, estimateHeapBytes(streamBatch)));
                         if (streamBatch.activities.isEmpty()) {
                             break;
                         }
+                        bytesCount = new MutableLong();
                         streamBatch = (streamBatch.cursor != null)
-                            ? walClient.getActivity(coord.tenantId, coord.partitionId, streamBatch.cursor, partitionRebuildBatchSize, -1L, null)
+                            ? walClient.getActivity(coord.tenantId, coord.partitionId, streamBatch.cursor, partitionRebuildBatchSize, -1L, bytesCount)
                             : null;
                     }
 
@@ -923,8 +1016,16 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                     List<MiruPartitionedActivity> partitionedActivities = null;
                     C nextCursor = null;
                     while ((rebuilding.get() || !queue.isEmpty()) && streamBatch == null) {
-                        streamBatch = queue.poll(1, TimeUnit.SECONDS);
+                        PrefetchedBatch<C> prefetched = queue.poll(1, TimeUnit.SECONDS);
+                        if (prefetched != null) {
+                            streamBatch = prefetched.streamBatch;
+                            synchronized (queuedBytes) {
+                                queuedBytes.addAndGet(-prefetched.bytes);
+                                queuedBytes.notifyAll();
+                            }
+                        }
                     }
+                    LOG.set(ValueType.COUNT, "rebuild>prefetch>queued", queue.size());
 
                     if (streamBatch != null && streamBatch.cursor != null) {
                         partitionedActivities = new ArrayList<>(streamBatch.activities.size());
@@ -966,6 +1067,8 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                     LOG.inc("rebuild>count>power>" + FilerIO.chunkPower(count, 0), 1);
                     LOG.inc("rebuild", count, coord.tenantId.toString());
                     LOG.inc("rebuild>partition>" + coord.partitionId, count, coord.tenantId.toString());
+                    LOG.set(ValueType.COUNT, "rebuild>indexed>partition>" + coord.partitionId + ">perSecond",
+                        ratePerSecond(totalIndexed, rebuildStart), coord.tenantId.toString());
                 }
             } catch (Exception e) {
                 LOG.error("Failure during rebuild index for {}", new Object[] { coord }, e);
@@ -998,16 +1101,87 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
             return endOfWAL.get() && accessorRef.get() == accessor;
         }
 
+        /**
+         * Waits for room in the prefetch queue. A batch is only admitted when its bytes fit under the prefetch budget, unless the queue
+         * is empty, so that a single oversized batch can never stall the rebuild.
+         */
         private boolean tryQueuePut(AtomicBoolean rebuilding,
-            ArrayBlockingQueue<MiruWALClient.StreamBatch<MiruWALEntry, C>> queue,
-            MiruWALClient.StreamBatch<MiruWALEntry, C> batch)
+            LinkedBlockingQueue<PrefetchedBatch<C>> queue,
+            AtomicLong queuedBytes,
+            PrefetchedBatch<C> batch)
             throws InterruptedException {
             boolean success = false;
             while (rebuilding.get() && !success) {
+                synchronized (queuedBytes) {
+                    if (!queue.isEmpty() && queuedBytes.get() + batch.bytes > partitionRebuildPrefetchMaxBytes) {
+                        LOG.inc("rebuild>prefetch>full");
+                        queuedBytes.wait(1_000);
+                        continue;
+                    }
+                    queuedBytes.addAndGet(batch.bytes);
+                }
                 success = queue.offer(batch, 1, TimeUnit.SECONDS);
+                if (!success) {
+                    synchronized (queuedBytes) {
+                        queuedBytes.addAndGet(-batch.bytes);
+                    }
+                }
             }
             return success;
         }
+
+        /**
+         * Estimates the heap held by a decoded batch. The bytes read off the wire are compressed and can understate this many times over.
+         */
+        private long estimateHeapBytes(MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch) {
+            long bytes = 0;
+            for (MiruWALEntry entry : streamBatch.activities) {
+                bytes += ENTRY_OVERHEAD_BYTES;
+                MiruActivity activity = entry.activity.activity.orNull();
+                if (activity != null) {
+                    if (activity.authz != null) {
+                        for (String authz : activity.authz) {
+                            bytes += estimateHeapBytes(authz);
+                        }
+                    }
+                    bytes += estimateHeapBytes(activity.fieldsValues) + estimateHeapBytes(activity.propsValues);
+                }
+            }
+            return bytes;
+        }
+
+        private long estimateHeapBytes(Map<String, List<String>> values) {
+            long bytes = 0;
+            if (values != null) {
+                for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+                    bytes += MAP_ENTRY_OVERHEAD_BYTES + estimateHeapBytes(entry.getKey());
+                    for (String value : entry.getValue()) {
+                        bytes += REFERENCE_BYTES + estimateHeapBytes(value);
+                    }
+                }
+            }
+            return bytes;
+        }
+
+        private long estimateHeapBytes(String value) {
+            return value == null ? 0 : STRING_OVERHEAD_BYTES + 2L * value.length();
+        }
+
+        private long ratePerSecond(long count, long startTimestamp) {
+            long elapsed = Math.max(System.currentTimeMillis() - startTimestamp, 1);
+            return count * 1_000 / elapsed;
+        }
+    }
+
+    private static class PrefetchedBatch<C> {
+
+        private final MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch;
+        private final long bytes;
+
+        private PrefetchedBatch(MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch, long bytes) {
+            this.streamBatch = streamBatch;
+            this.bytes = bytes;
+        }
     }
 
     protected class SipMigrateIndexRunnable implements Runnable {
@@ -1097,7 +1271,7 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                                     }
                                     if (partitionCompactOnClosedWriters && compact && accessor.updateCompactEndOfWAL(false, true)) {
                                         LOG.info("Compacting closed partition for coord:{}", coord);
-                                        persistentContext.compactable.compact(persistentMergeExecutor, false);
+                                        persistentMergeExecutor.submit(() -> compactClosed(persistentContext));
                                     }
                                 }
                             }
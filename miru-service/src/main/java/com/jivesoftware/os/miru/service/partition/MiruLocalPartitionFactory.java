@@ -17,6 +17,7 @@ import com.jivesoftware.os.miru.service.stream.MiruIndexCallbacks;
 import com.jivesoftware.os.miru.service.stream.MiruIndexLatest;
 import com.jivesoftware.os.miru.service.stream.MiruIndexPairedLatest;
 import com.jivesoftware.os.miru.service.stream.MiruIndexPrimaryFields;
+import com.jivesoftware.os.miru.service.stream.MiruIndexRemoval;
 import com.jivesoftware.os.miru.service.stream.MiruIndexValueBits;
 import com.jivesoftware.os.miru.service.stream.MiruIndexer;
 import com.jivesoftware.os.miru.service.stream.MiruRebuildDirector;
@@ -36,6 +37,7 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
     private final MiruRealtimeDelivery realtimeDelivery;
     private final MiruPartitionHeartbeatHandler partitionEventHandler;
     private final MiruRebuildDirector rebuildDirector;
+    private final MiruPartitionSnapshotFetcher snapshotFetcher;
     private final ScheduledExecutorService scheduledBoostrapExecutor;
     private final ScheduledExecutorService scheduledRebuildExecutor;
     private final ScheduledExecutorService scheduledSipMigrateExecutor;
@@ -58,6 +60,7 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
         MiruRealtimeDelivery realtimeDelivery,
         MiruPartitionHeartbeatHandler partitionEventHandler,
         MiruRebuildDirector rebuildDirector,
+        MiruPartitionSnapshotFetcher snapshotFetcher,
         ScheduledExecutorService scheduledBoostrapExecutor,
         ScheduledExecutorService scheduledRebuildExecutor,
         ScheduledExecutorService scheduledSipMigrateExecutor,
@@ -80,6 +83,7 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
         this.realtimeDelivery = realtimeDelivery;
         this.partitionEventHandler = partitionEventHandler;
         this.rebuildDirector = rebuildDirector;
+        this.snapshotFetcher = snapshotFetcher;
         this.scheduledBoostrapExecutor = scheduledBoostrapExecutor;
         this.scheduledRebuildExecutor = scheduledRebuildExecutor;
         this.scheduledSipMigrateExecutor = scheduledSipMigrateExecutor;
@@ -110,6 +114,7 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
             realtimeDelivery,
             partitionEventHandler,
             rebuildDirector,
+            snapshotFetcher,
             scheduledBoostrapExecutor,
             scheduledRebuildExecutor,
             scheduledSipMigrateExecutor,
@@ -126,10 +131,13 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
                 new MiruIndexValueBits<>(),
                 new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
                 new MiruIndexLatest<>(),
-                new MiruIndexPairedLatest<>()),
+                new MiruIndexPairedLatest<>(),
+                new MiruIndexRemoval<>(bitmaps)),
             config.getPartitionAllowNonLatestSchemaInteractions(),
             config.getPartitionCompactOnClosedWriters(),
             config.getPartitionRebuildBatchSize(),
+            config.getPartitionRebuildPrefetchBatches(),
+            config.getPartitionRebuildPrefetchMaxBytes(),
             config.getPartitionSipBatchSize(),
             persistentMergeChits,
             transientMergeChits,
@@ -26,6 +26,7 @@ import com.jivesoftware.os.miru.plugin.solution.MiruRequestHandle;
 import com.jivesoftware.os.miru.service.stream.MiruContext;
 import com.jivesoftware.os.miru.service.stream.MiruContextFactory;
 import com.jivesoftware.os.miru.service.stream.MiruIndexer;
+import com.jivesoftware.os.miru.service.stream.MiruPartitionSnapshot;
 import com.jivesoftware.os.miru.service.stream.MiruRebuildDirector;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
@@ -33,6 +34,7 @@ import com.jivesoftware.os.mlogger.core.ValueType;
 import gnu.trove.map.TLongIntMap;
 import gnu.trove.map.hash.TLongIntHashMap;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -390,6 +392,45 @@ public class MiruPartitionAccessor<BM extends IBM, IBM, C extends MiruCursor<C,
         mergeChits.refundAll(coord);
     }
 
+    boolean canExportSnapshot() {
+        return !closed.get()
+            && state == MiruPartitionState.online
+            && !transientContext.isPresent()
+            && persistentContext.isPresent()
+            && persistentContext.get().storage == MiruBackingStorage.disk
+            && persistentContext.get().hasLabIndex();
+    }
+
+    boolean exportSnapshot(MiruContextFactory<S> contextFactory, ExecutorService mergeExecutor, OutputStream outputStream) throws Exception {
+        if (!canExportSnapshot()) {
+            return false;
+        }
+
+        // block all writers only while the committed files (including the sip cursor) are staged, so they describe a single consistent point
+        MiruPartitionSnapshot snapshot;
+        writeSemaphore.acquire(PERMITS);
+        try {
+            if (closed.get()) {
+                return false;
+            }
+            MiruContext<BM, IBM, S> context = persistentContext.get();
+            synchronized (context.writeLock) {
+                context.commitable.commit();
+                context.compactable.compact(mergeExecutor, true);
+            }
+            snapshot = contextFactory.stageSnapshot(coord, context);
+        } finally {
+            writeSemaphore.release(PERMITS);
+        }
+
+        try (MiruPartitionSnapshot staged = snapshot) {
+            long start = System.currentTimeMillis();
+            contextFactory.exportSnapshot(staged, outputStream);
+            LOG.info("Exported snapshot for {} in {} ms", coord, System.currentTimeMillis() - start);
+            return true;
+        }
+    }
+
     public enum IndexStrategy {
 
         ingress, rebuild, sip;
@@ -630,6 +671,7 @@ public class MiruPartitionAccessor<BM extends IBM, IBM, C extends MiruCursor<C,
         }
 
         List<MiruActivityAndId<MiruActivity>> indexables = Lists.newArrayListWithCapacity(partitionedActivities.size());
+        List<MiruActivityAndId<MiruActivity>> removables = Lists.newArrayList();
 
         if ((indexHits || removeHits) && hits > 0) {
             timeIndex.nextId(stackBuffer, hitTimestamps, hitIds, hitMonotonics);
@@ -638,7 +680,7 @@ public class MiruPartitionAccessor<BM extends IBM, IBM, C extends MiruCursor<C,
                 if (indexHits) {
                     indexables.add(new MiruActivityAndId<>(hitActivities[i], hitIds[i], hitMonotonics[i]));
                 } else {
-                    indexer.remove(got, hitActivities[i], hitIds[i]);
+                    removables.add(new MiruActivityAndId<>(hitActivities[i], hitIds[i], hitMonotonics[i]));
                 }
             }
         }
@@ -653,13 +695,16 @@ public class MiruPartitionAccessor<BM extends IBM, IBM, C extends MiruCursor<C,
                 if (indexMisses) {
                     indexables.add(new MiruActivityAndId<>(missActivities[i], missIds[i], missMonotonics[i]));
                 } else {
-                    indexer.remove(got, missActivities[i], missIds[i]);
+                    removables.add(new MiruActivityAndId<>(missActivities[i], missIds[i], missMonotonics[i]));
                 }
             }
         }
 
         // free for GC before we begin indexing
         partitionedActivities.clear();
+        if (!removables.isEmpty()) {
+            indexer.remove(got, coord, removables);
+        }
         if (!indexables.isEmpty()) {
             activityCount = indexables.size(); // indexer consumes, so count first
             Collections.sort(indexables);
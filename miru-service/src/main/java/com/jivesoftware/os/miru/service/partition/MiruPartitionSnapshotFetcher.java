@@ -0,0 +1,21 @@
+package com.jivesoftware.os.miru.service.partition;
+
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import java.io.InputStream;
+
+/**
+ * Locates an online peer replica for a partition and streams its persistent snapshot to the consumer.
+ */
+public interface MiruPartitionSnapshotFetcher {
+
+    /**
+     * @return true if a peer snapshot was fully consumed, false if no peer was able to provide one
+     */
+    boolean fetch(MiruPartitionCoord coord, SnapshotConsumer consumer) throws Exception;
+
+    interface SnapshotConsumer {
+
+        void consume(MiruHost host, InputStream inputStream) throws Exception;
+    }
+}
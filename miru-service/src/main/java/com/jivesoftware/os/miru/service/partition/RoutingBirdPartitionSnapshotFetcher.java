@@ -0,0 +1,93 @@
+package com.jivesoftware.os.miru.service.partition;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.MiruBackingStorage;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruHostSelectiveStrategy;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.MiruPartitionState;
+import com.jivesoftware.os.miru.api.topology.MiruClusterClient;
+import com.jivesoftware.os.miru.api.topology.MiruTopologyPartition;
+import com.jivesoftware.os.miru.api.topology.MiruTopologyResponse;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.routing.bird.http.client.HttpStreamResponse;
+import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
+import com.jivesoftware.os.routing.bird.shared.ClientCall.ClientResponse;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.jivesoftware.os.miru.api.MiruReader.QUERY_SERVICE_ENDPOINT_PREFIX;
+import static com.jivesoftware.os.miru.api.MiruReader.SNAPSHOT_ENDPOINT;
+
+/**
+ * Fetches partition snapshots from online disk-backed replicas on other readers, trying each peer in turn until one succeeds.
+ */
+public class RoutingBirdPartitionSnapshotFetcher implements MiruPartitionSnapshotFetcher {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final MiruClusterClient clusterClient;
+    private final TenantAwareHttpClient<String> readerClient;
+    private final Map<MiruHost, MiruHostSelectiveStrategy> strategyPerHost;
+
+    public RoutingBirdPartitionSnapshotFetcher(MiruClusterClient clusterClient,
+        TenantAwareHttpClient<String> readerClient,
+        Map<MiruHost, MiruHostSelectiveStrategy> strategyPerHost) {
+        this.clusterClient = clusterClient;
+        this.readerClient = readerClient;
+        this.strategyPerHost = strategyPerHost;
+    }
+
+    @Override
+    public boolean fetch(MiruPartitionCoord coord, SnapshotConsumer consumer) throws Exception {
+        MiruTopologyResponse topologyResponse = clusterClient.routingTopology(coord.tenantId);
+        List<MiruHost> peers = Lists.newArrayList();
+        if (topologyResponse != null && topologyResponse.topology != null) {
+            for (MiruTopologyPartition partition : topologyResponse.topology) {
+                if (partition.partitionId == coord.partitionId.getId()
+                    && !partition.host.equals(coord.host)
+                    && partition.state == MiruPartitionState.online
+                    && partition.storage == MiruBackingStorage.disk) {
+                    peers.add(partition.host);
+                }
+            }
+        }
+        // spread bootstrap load across the available replicas
+        Collections.shuffle(peers);
+
+        String endpoint = QUERY_SERVICE_ENDPOINT_PREFIX + SNAPSHOT_ENDPOINT + "/" + coord.tenantId + "/" + coord.partitionId.getId();
+        for (MiruHost peer : peers) {
+            try {
+                MiruHostSelectiveStrategy strategy = strategyPerHost.computeIfAbsent(peer,
+                    miruHost -> new MiruHostSelectiveStrategy(new MiruHost[] { miruHost }));
+                boolean consumed = readerClient.call("", strategy, "snapshot", client -> {
+                    HttpStreamResponse response = client.streamingPost(endpoint, "", null);
+                    try {
+                        if (response.getStatusCode() != 200) {
+                            LOG.info("Peer {} declined snapshot for {} with status {}", peer, coord, response.getStatusCode());
+                            return new ClientResponse<>(false, true);
+                        }
+                        consumer.consume(peer, response.getInputStream());
+                        return new ClientResponse<>(true, true);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to consume snapshot for " + coord + " from " + peer, e);
+                    } finally {
+                        response.close();
+                    }
+                });
+                if (consumed) {
+                    LOG.inc("snapshot>fetch>success");
+                    return true;
+                }
+            } catch (Exception e) {
+                LOG.warn("Failed to fetch snapshot for {} from {}", new Object[] { coord, peer }, e);
+                LOG.inc("snapshot>fetch>failure");
+            }
+        }
+        return false;
+    }
+}
@@ -40,6 +40,7 @@ import com.jivesoftware.os.miru.service.partition.MiruTenantRoutingTopology.Part
 import com.jivesoftware.os.miru.service.partition.MiruTenantTopologyFactory;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -265,6 +266,22 @@ public class MiruClusterExpectedTenants implements MiruExpectedTenants {
         return true;
     }
 
+    @Override
+    public boolean canExportSnapshot(MiruPartitionCoord coord) throws Exception {
+        MiruTenantTopology<?, ?> topology = localTopologies.get(coord.tenantId);
+        return topology != null && topology.canExportSnapshot(coord.partitionId);
+    }
+
+    @Override
+    public boolean exportSnapshot(MiruPartitionCoord coord, OutputStream outputStream) throws Exception {
+        MiruTenantTopology<?, ?> topology = localTopologies.get(coord.tenantId);
+        if (topology == null) {
+            LOG.warn("Attempted to export snapshot for unknown tenant {}", coord.tenantId);
+            return false;
+        }
+        return topology.exportSnapshot(coord.partitionId, outputStream);
+    }
+
     @Override
     public boolean rebuildTimeRange(MiruTimeRange miruTimeRange, boolean hotDeploy, boolean chunkStores, boolean labIndex) throws Exception {
         for (Map.Entry<MiruTenantId, MiruTenantTopology<?, ?>> entry : localTopologies.entrySet()) {
@@ -16,6 +16,7 @@ import com.jivesoftware.os.miru.service.partition.MiruLocalHostedPartition;
 import com.jivesoftware.os.miru.service.partition.MiruLocalPartitionFactory;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -97,6 +98,16 @@ public class MiruTenantTopology<BM extends IBM, IBM> {
         }
     }
 
+    public boolean canExportSnapshot(MiruPartitionId partitionId) {
+        MiruLocalHostedPartition<BM, IBM, ?, ?> hostedPartition = topology.get(partitionId);
+        return hostedPartition != null && hostedPartition.canExportSnapshot();
+    }
+
+    public boolean exportSnapshot(MiruPartitionId partitionId, OutputStream outputStream) throws Exception {
+        MiruLocalHostedPartition<BM, IBM, ?, ?> hostedPartition = topology.get(partitionId);
+        return hostedPartition != null && hostedPartition.exportSnapshot(outputStream);
+    }
+
     public boolean rebuild(MiruPartitionId partitionId) throws Exception {
         Optional<MiruLocalHostedPartition<BM, IBM, ?, ?>> partition = getPartition(partitionId);
         return partition.isPresent() && partition.get().rebuild();
@@ -9,6 +9,7 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolution;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
+import com.jivesoftware.os.miru.service.metric.MiruMetricKeys;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.mlogger.core.ValueType;
@@ -35,16 +36,19 @@ public class MiruLowestLatencySolver implements MiruSolver {
     private final int maxNumberOfSolvers;
     private final long defaultAddAnotherSolverAfterNMillis;
     private final long failAfterNMillis;
+    private final MiruSolverHedging hedging;
 
     public MiruLowestLatencySolver(
         int initialSolvers,
         int maxNumberOfSolvers,
         long defaultAddAnotherSolverAfterNMillis,
-        long failAfterNMillis) {
+        long failAfterNMillis,
+        MiruSolverHedging hedging) {
         this.initialSolvers = initialSolvers;
         this.maxNumberOfSolvers = maxNumberOfSolvers;
         this.defaultAddAnotherSolverAfterNMillis = defaultAddAnotherSolverAfterNMillis;
         this.failAfterNMillis = failAfterNMillis;
+        this.hedging = hedging;
     }
 
     @Override
@@ -58,8 +62,9 @@ public class MiruLowestLatencySolver implements MiruSolver {
         MiruSolutionLog solutionLog)
         throws InterruptedException {
 
+        MiruMetricKeys.SolveKeys metricKeys = MiruMetricKeys.solve(requestName, queryKey);
         long failAfterTime = System.currentTimeMillis() + failAfterNMillis;
-        long addAnotherSolverAfterNMillis = suggestedTimeoutInMillis.or(defaultAddAnotherSolverAfterNMillis);
+        long fallbackAddAnotherSolverAfterNMillis = suggestedTimeoutInMillis.or(defaultAddAnotherSolverAfterNMillis);
 
         CompletionService<MiruPartitionResponse<R>> completionService = new ExecutorCompletionService<>(executor);
         int solversAdded = 0;
@@ -69,14 +74,17 @@ public class MiruLowestLatencySolver implements MiruSolver {
         List<SolvableFuture<R>> futures = new ArrayList<>(initialSolvers);
         List<MiruPartitionCoord> triedPartitions = new ArrayList<>(initialSolvers);
         MiruSolved<R> solved = null;
+        MiruSolvable<R> lastSolvable = null;
+        boolean hedged = false;
+        boolean hedgeDenied = false;
         try {
-            log.set(ValueType.COUNT, "solve>request>" + requestName + ">" + queryKey + ">timeout", suggestedTimeoutInMillis.or(-1L));
+            log.set(ValueType.COUNT, metricKeys.timeout, suggestedTimeoutInMillis.or(-1L));
             log.inc("solve>calls");
-            log.inc("solve>request>" + requestName + ">" + queryKey + ">calls");
+            log.inc(metricKeys.calls);
 
             if (!solvables.hasNext()) {
                 log.inc("solve>empty");
-                log.inc("solve>request>" + requestName + ">" + queryKey + ">empty");
+                log.inc(metricKeys.empty);
                 solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: No solvables available tenant={} partition={}", tenantId, partitionId);
                 return null;
             }
@@ -85,25 +93,34 @@ public class MiruLowestLatencySolver implements MiruSolver {
                 MiruSolvable<R> solvable = solvables.next();
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Initial solver index={} coord={}", solversAdded, solvable.getCoord());
                 triedPartitions.add(solvable.getCoord());
-                futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis()));
+                futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis(), false));
+                hedging.primary();
+                lastSolvable = solvable;
                 log.inc("solve>initial");
-                log.inc("solve>request>" + requestName + ">" + queryKey + ">initial");
+                log.inc(metricKeys.initial);
                 solversAdded++;
             }
             while (solversFailed < maxNumberOfSolvers && System.currentTimeMillis() < failAfterTime) {
                 boolean mayAddSolver = (solversAdded < maxNumberOfSolvers && solvables.hasNext());
                 long timeout = Math.max(failAfterTime - System.currentTimeMillis(), 0);
                 if (timeout == 0) {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">outOfTime");
+                    log.inc(metricKeys.outOfTime);
                     solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: Ran out of time. Took more than {} millis to compute a solution.", failAfterTime);
                     break; // out of time
                 }
-                if (mayAddSolver) {
+                if (mayAddSolver && !hedgeDenied) {
+                    // hedge against the tail of the most recently added replica
+                    long addAnotherSolverAfterNMillis = hedging.hedgeAfterMillis(lastSolvable.getCoord().host, requestName, queryKey,
+                        fallbackAddAnotherSolverAfterNMillis);
                     timeout = Math.min(timeout, addAnotherSolverAfterNMillis);
                 }
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Polling completion service for {} millis", timeout);
                 Future<MiruPartitionResponse<R>> future = completionService.poll(timeout, TimeUnit.MILLISECONDS);
                 if (future != null) {
+                    SolvableFuture<R> completed = find(futures, future);
+                    if (completed != null) {
+                        recordLatency(completed, requestName, queryKey, false);
+                    }
                     try {
                         MiruPartitionResponse<R> response = future.get();
                         if (response != null) {
@@ -114,6 +131,9 @@ public class MiruLowestLatencySolver implements MiruSolver {
                                     solutionLog.log(MiruSolutionLogLevel.INFO, "Got a solution coord={}.", coord);
                                     long usedResultElapsed = System.currentTimeMillis() - f.startTime;
                                     long totalElapsed = System.currentTimeMillis() - startTime;
+                                    if (hedged) {
+                                        hedging.hedgeOutcome(f.hedge, metricKeys);
+                                    }
                                     solved = new MiruSolved<>(
                                         new MiruSolution(coord,
                                             usedResultElapsed,
@@ -122,10 +142,14 @@ public class MiruLowestLatencySolver implements MiruSolver {
                                             response.log),
                                         response.answer);
                                     log.inc("solve>success");
-                                    log.inc("solve>request>" + requestName + ">" + queryKey + ">success");
-                                    String locality = f.solvable.isLocal() ? "local" : "remote";
-                                    log.incBucket("solve>throughput>success>" + locality, 1_000L, 100);
-                                    log.incBucket("solve>throughput>success>" + locality + ">" + requestName + ">" + queryKey, 1_000L, 100);
+                                    log.inc(metricKeys.success);
+                                    if (f.solvable.isLocal()) {
+                                        log.incBucket("solve>throughput>success>local", 1_000L, 100);
+                                        log.incBucket(metricKeys.throughputSuccessLocal, 1_000L, 100);
+                                    } else {
+                                        log.incBucket("solve>throughput>success>remote", 1_000L, 100);
+                                        log.incBucket(metricKeys.throughputSuccessRemote, 1_000L, 100);
+                                    }
                                     MiruSolutionLog solvableSolutionLog = f.solvable.getSolutionLog();
                                     if (solvableSolutionLog != null) {
                                         for (String l : solvableSolutionLog.asList()) {
@@ -147,7 +171,7 @@ public class MiruLowestLatencySolver implements MiruSolver {
                             }
                             break;
                         } else {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableFailed");
+                            log.inc(metricKeys.solvableFailed);
                             solversFailed++;
                         }
                     } catch (ExecutionException e) {
@@ -163,31 +187,48 @@ public class MiruLowestLatencySolver implements MiruSolver {
                             cause = cause.getCause();
                         }
                         if (interrupted) {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableInterrupted");
+                            log.inc(metricKeys.solvableInterrupted);
                         } else {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableError>" + e.getCause().getClass().getSimpleName());
+                            log.inc(metricKeys.solvableError + e.getCause().getClass().getSimpleName());
                         }
 
                         log.debug("Solver failed to execute", e.getCause());
                         log.incBucket("solve>throughput>failure", 1_000L, 100);
-                        log.incBucket("solve>throughput>failure>" + requestName + ">" + queryKey, 1_000L, 100);
+                        log.incBucket(metricKeys.throughputFailure, 1_000L, 100);
                         solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: Solver failed to execute. cause: {}", e.getMessage());
                         solversFailed++;
                     }
-                } else {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">moreSolvers");
+                }
+                boolean hedge = false;
+                if (future == null) {
+                    log.inc(metricKeys.moreSolvers);
                     solutionLog.log(MiruSolutionLogLevel.WARN, "No solution completed within {} millis. Will add addition solver if possible.", timeout);
+                    if (mayAddSolver) {
+                        if (!hedgeDenied && hedging.tryHedge()) {
+                            hedge = true;
+                        } else {
+                            solutionLog.log(MiruSolutionLogLevel.INFO, "Hedge budget exhausted, waiting on existing solvers.");
+                            hedgeDenied = true;
+                            mayAddSolver = false;
+                        }
+                    }
                 }
                 if (mayAddSolver) {
                     MiruSolvable<R> solvable = solvables.next();
-                    solutionLog.log(MiruSolutionLogLevel.INFO, "Added a solver coord={}", solvable.getCoord());
+                    solutionLog.log(MiruSolutionLogLevel.INFO, "Added a solver coord={} hedge={}", solvable.getCoord(), hedge);
                     log.inc("solve>added");
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">added");
+                    log.inc(metricKeys.added);
                     triedPartitions.add(solvable.getCoord());
-                    futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis()));
+                    futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis(), hedge));
+                    if (hedge) {
+                        hedged = true;
+                    } else {
+                        hedging.primary();
+                    }
+                    lastSolvable = solvable;
                     solversAdded++;
                 } else if (solversFailed == solversAdded) {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">allFailed");
+                    log.inc(metricKeys.allFailed);
                     solutionLog.log(MiruSolutionLogLevel.ERROR, "All solvers failed to execute.");
                     break;
                 }
@@ -195,25 +236,51 @@ public class MiruLowestLatencySolver implements MiruSolver {
         } finally {
             for (SolvableFuture<R> f : futures) {
                 f.future.cancel(true);
+                // losers and timeouts never report a latency, so record how long they ran as a lower bound
+                recordLatency(f, requestName, queryKey, true);
             }
             int abandoned = solversAdded - solversSuccess - solversFailed;
             log.incBucket("solve>throughput>abandoned", 1_000L, 100, abandoned);
-            log.incBucket("solve>throughput>abandoned>" + requestName + ">" + queryKey, 1_000L, 100, abandoned);
+            log.incBucket(metricKeys.throughputAbandoned, 1_000L, 100, abandoned);
         }
 
         return solved;
     }
 
+    private <R> SolvableFuture<R> find(List<SolvableFuture<R>> futures, Future<MiruPartitionResponse<R>> future) {
+        for (SolvableFuture<R> f : futures) {
+            if (f.future == future) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private <R> void recordLatency(SolvableFuture<R> f, String requestName, String queryKey, boolean censored) {
+        if (!f.latencyRecorded) {
+            f.latencyRecorded = true;
+            long elapsed = System.currentTimeMillis() - f.startTime;
+            if (censored) {
+                hedging.recordCensoredLatency(f.solvable.getCoord().host, requestName, queryKey, elapsed);
+            } else {
+                hedging.recordLatency(f.solvable.getCoord().host, requestName, queryKey, elapsed);
+            }
+        }
+    }
+
     private static class SolvableFuture<R> {
 
         private final MiruSolvable<R> solvable;
         private final Future<MiruPartitionResponse<R>> future;
         private final long startTime;
+        private final boolean hedge;
+        private boolean latencyRecorded;
 
-        private SolvableFuture(MiruSolvable<R> solvable, Future<MiruPartitionResponse<R>> future, long startTime) {
+        private SolvableFuture(MiruSolvable<R> solvable, Future<MiruPartitionResponse<R>> future, long startTime, boolean hedge) {
             this.solvable = solvable;
             this.future = future;
             this.startTime = startTime;
+            this.hedge = hedge;
         }
     }
 }
@@ -0,0 +1,155 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.service.metric.MiruMetricKeys;
+import com.jivesoftware.os.miru.service.partition.RunningPercentile;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides when and whether {@link MiruLowestLatencySolver} may hedge a request by adding another solver.
+ * <p>
+ * The hedge delay is taken from a running percentile of the latencies observed for the chosen replica's host and query key,
+ * and the number of hedges is capped at a percentage of the primary requests issued within the recent budget window.
+ */
+public class MiruSolverHedging {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final ConcurrentMap<HostAndQuery, RunningPercentile> hostPercentile = Maps.newConcurrentMap();
+
+    private final int windowSize;
+    private final int percentile;
+    private final int maxHedgePercent;
+    private final long budgetWindow;
+
+    private final Object budgetLock = new Object();
+    private long primaries;
+    private long hedges;
+
+    public MiruSolverHedging(int windowSize, int percentile, int maxHedgePercent, long budgetWindow) {
+        this.windowSize = windowSize;
+        this.percentile = percentile;
+        this.maxHedgePercent = maxHedgePercent;
+        this.budgetWindow = budgetWindow;
+    }
+
+    /**
+     * @return the number of millis to wait on the given host before hedging, or the fallback if the host has no latency history
+     */
+    public long hedgeAfterMillis(MiruHost host, String requestName, String queryKey, long fallbackMillis) {
+        RunningPercentile runningPercentile = hostPercentile.get(new HostAndQuery(host, requestName, queryKey));
+        if (runningPercentile != null) {
+            long suggestion = runningPercentile.get();
+            if (suggestion > 0) {
+                return suggestion;
+            }
+        }
+        return fallbackMillis;
+    }
+
+    public void recordLatency(MiruHost host, String requestName, String queryKey, long latencyInMillis) {
+        HostAndQuery key = new HostAndQuery(host, requestName, queryKey);
+        RunningPercentile runningPercentile = hostPercentile.get(key);
+        if (runningPercentile == null) {
+            hostPercentile.putIfAbsent(key, new RunningPercentile(windowSize, percentile));
+            runningPercentile = hostPercentile.get(key);
+        }
+        runningPercentile.add(latencyInMillis);
+    }
+
+    /**
+     * Records the time a solver ran before it was cancelled or timed out. Its true latency is only known to be at least this long,
+     * so it is recorded as no less than the current percentile, and a censored sample can only hold or raise the hedge delay.
+     * Without any history there is no percentile to floor it at, and the sample is dropped.
+     */
+    public void recordCensoredLatency(MiruHost host, String requestName, String queryKey, long elapsedInMillis) {
+        RunningPercentile runningPercentile = hostPercentile.get(new HostAndQuery(host, requestName, queryKey));
+        long current = runningPercentile != null ? runningPercentile.get() : -1;
+        if (current <= 0) {
+            LOG.inc("solve>latency>censored>dropped");
+            return;
+        }
+        LOG.inc("solve>latency>censored");
+        runningPercentile.add(Math.max(elapsedInMillis, current));
+    }
+
+    public void primary() {
+        synchronized (budgetLock) {
+            primaries++;
+            if (primaries > budgetWindow) {
+                // decay both counts so the budget tracks recent traffic rather than all time
+                primaries /= 2;
+                hedges /= 2;
+            }
+        }
+    }
+
+    /**
+     * @return true if a hedge may be issued without exceeding the hedge budget, in which case the hedge is counted against it
+     */
+    public boolean tryHedge() {
+        synchronized (budgetLock) {
+            if ((hedges + 1) * 100 <= primaries * maxHedgePercent) {
+                hedges++;
+                LOG.inc("solve>hedge>issued");
+                return true;
+            }
+        }
+        LOG.inc("solve>hedge>denied");
+        return false;
+    }
+
+    public void hedgeOutcome(boolean won, MiruMetricKeys.SolveKeys metricKeys) {
+        if (won) {
+            LOG.inc("solve>hedge>win");
+            LOG.inc(metricKeys.hedgeWin);
+        } else {
+            LOG.inc("solve>hedge>loss");
+            LOG.inc(metricKeys.hedgeLoss);
+        }
+    }
+
+    private static class HostAndQuery {
+
+        private final MiruHost host;
+        private final String requestName;
+        private final String queryKey;
+
+        private HostAndQuery(MiruHost host, String requestName, String queryKey) {
+            this.host = host;
+            this.requestName = requestName;
+            this.queryKey = queryKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            HostAndQuery that = (HostAndQuery) o;
+
+            if (host != null ? !host.equals(that.host) : that.host != null) {
+                return false;
+            }
+            if (requestName != null ? !requestName.equals(that.requestName) : that.requestName != null) {
+                return false;
+            }
+            return !(queryKey != null ? !queryKey.equals(that.queryKey) : that.queryKey != null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = host != null ? host.hashCode() : 0;
+            result = 31 * result + (requestName != null ? requestName.hashCode() : 0);
+            result = 31 * result + (queryKey != null ? queryKey.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Estimates how well index files would block compress, by deflating a sample of them in fixed-size blocks and timing how
+ * long each block takes to inflate again. Nothing on disk is changed, so the estimate can be taken from a live partition.
+ */
+public class BlockCompressionSampler {
+
+    private final int blockSize;
+
+    public BlockCompressionSampler(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Samples the files under the given directories, in order, until maxSampleBytes have been read.
+     */
+    public Sample sample(List<File> dirs, long maxSampleBytes) throws IOException, DataFormatException {
+        byte[] block = new byte[blockSize];
+        byte[] compressed = new byte[blockSize];
+        byte[] decoded = new byte[blockSize];
+        long sampledBytes = 0;
+        long compressedBytes = 0;
+        long decodeNanos = 0;
+        int blocks = 0;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Inflater inflater = new Inflater();
+        try {
+            for (File dir : dirs) {
+                for (File file : files(dir)) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        while (sampledBytes < maxSampleBytes) {
+                            int length = readBlock(in, block, (int) Math.min(blockSize, maxSampleBytes - sampledBytes));
+                            if (length == 0) {
+                                break;
+                            }
+
+                            deflater.reset();
+                            deflater.setInput(block, 0, length);
+                            deflater.finish();
+                            int compressedLength = 0;
+                            while (!deflater.finished()) {
+                                if (compressedLength == compressed.length) {
+                                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                                }
+                                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                            }
+
+                            long start = System.nanoTime();
+                            inflater.reset();
+                            inflater.setInput(compressed, 0, compressedLength);
+                            int decodedLength = 0;
+                            while (!inflater.finished() && decodedLength < decoded.length) {
+                                int inflated = inflater.inflate(decoded, decodedLength, decoded.length - decodedLength);
+                                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                    break;
+                                }
+                                decodedLength += inflated;
+                            }
+                            decodeNanos += System.nanoTime() - start;
+                            if (decodedLength != length) {
+                                throw new IllegalStateException("Decoded " + decodedLength + " bytes of a " + length + " byte block from " + file);
+                            }
+
+                            sampledBytes += length;
+                            compressedBytes += compressedLength;
+                            blocks++;
+                        }
+                    }
+                    if (sampledBytes >= maxSampleBytes) {
+                        return new Sample(sampledBytes, compressedBytes, decodeNanos, blocks);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+            inflater.end();
+        }
+        return new Sample(sampledBytes, compressedBytes, decodeNanos, blocks);
+    }
+
+    private static File[] files(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        List<File> flattened = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                flattened.addAll(Arrays.asList(files(file)));
+            } else {
+                flattened.add(file);
+            }
+        }
+        return flattened.toArray(new File[flattened.size()]);
+    }
+
+    private static int readBlock(InputStream in, byte[] block, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int r = in.read(block, read, length - read);
+            if (r == -1) {
+                break;
+            }
+            read += r;
+        }
+        return read;
+    }
+
+    public static class Sample {
+
+        public final long sampledBytes;
+        public final long compressedBytes;
+        public final long decodeNanos;
+        public final int blocks;
+
+        public Sample(long sampledBytes, long compressedBytes, long decodeNanos, int blocks) {
+            this.sampledBytes = sampledBytes;
+            this.compressedBytes = compressedBytes;
+            this.decodeNanos = decodeNanos;
+            this.blocks = blocks;
+        }
+
+        /**
+         * @return the compressed size as a percentage of the sampled size, or 100 if nothing was sampled
+         */
+        public long compressedPercent() {
+            return sampledBytes > 0 ? compressedBytes * 100 / sampledBytes : 100;
+        }
+
+        /**
+         * @return the time taken to inflate a mebibyte of the sample, or 0 if nothing was sampled
+         */
+        public long decodeMicrosPerMebibyte() {
+            return sampledBytes > 0 ? decodeNanos * 1_048_576L / sampledBytes / 1_000 : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Sample{"
+                + "sampledBytes=" + sampledBytes
+                + ", compressedBytes=" + compressedBytes
+                + ", decodeNanos=" + decodeNanos
+                + ", blocks=" + blocks
+                + '}';
+        }
+    }
+}
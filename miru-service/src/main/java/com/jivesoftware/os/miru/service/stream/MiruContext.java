@@ -195,5 +195,6 @@ public class MiruContext<BM extends IBM, IBM, S extends MiruSipCursor<S>> implem
 
     public void markClosed() {
         closed.set(true);
+        timeIndex.markClosed();
     }
 }
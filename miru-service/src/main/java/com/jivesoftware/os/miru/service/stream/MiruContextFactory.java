@@ -5,6 +5,7 @@ import com.google.common.base.Charsets;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.jivesoftware.os.filer.chunk.store.transaction.MapBackedKeyedFPIndex;
 import com.jivesoftware.os.filer.chunk.store.transaction.MapCreator;
 import com.jivesoftware.os.filer.chunk.store.transaction.MapOpener;
@@ -76,6 +77,7 @@ import com.jivesoftware.os.miru.service.index.filer.MiruFilerTimeIndex;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerUnreadTrackingIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabActivityIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabAuthzIndex;
+import com.jivesoftware.os.miru.service.index.lab.LabBitmapCache;
 import com.jivesoftware.os.miru.service.index.lab.LabFieldIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabInboxIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabRemovalIndex;
@@ -92,15 +94,27 @@ import com.jivesoftware.os.miru.service.stream.cache.LabPluginCacheProvider.LabP
 import com.jivesoftware.os.miru.service.stream.allocator.MiruChunkAllocator;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -119,6 +133,11 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
     private static final int LAB_MONOTIME_MIN_VERSION = 4;
     private static final int LAB_SMALL_FOOTPRINT_MIN_VERSION = 5;
 
+    private static final int SNAPSHOT_MAGIC = 0x4D534E50; // "MSNP"
+
+    // a typical block size for block codecs such as LZ4, so the estimate reflects what one would be fed
+    private static final BlockCompressionSampler CLOSED_INDEX_SAMPLER = new BlockCompressionSampler(64 * 1024);
+
     private final OrderIdProvider idProvider;
     private final TxCogs persistentCogs;
     private final TxCogs transientCogs;
@@ -132,6 +151,7 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
     private final MiruSipIndexMarshaller<S> sipMarshaller;
     private final MiruResourceLocator diskResourceLocator;
     private final int partitionAuthzCacheSize;
+    private final long partitionBitmapCacheMaxSizeInBytes;
     private final StripingLocksProvider<MiruTermId> fieldIndexStripingLocksProvider;
     private final StripingLocksProvider<MiruStreamId> streamStripingLocksProvider;
     private final StripingLocksProvider<String> authzStripingLocksProvider;
@@ -146,6 +166,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
     private final boolean realtimeDelivery;
     private final boolean fsyncOnCommit;
     private final boolean timeIndexVerboseLogging;
+    private final boolean timeIndexColumnEnabled;
+    private final long closedIndexCompressionSampleBytes;
 
     public MiruContextFactory(OrderIdProvider idProvider,
         TxCogs persistentCogs,
@@ -160,6 +182,7 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         MiruSipIndexMarshaller<S> sipMarshaller,
         MiruResourceLocator diskResourceLocator,
         int partitionAuthzCacheSize,
+        long partitionBitmapCacheMaxSizeInBytes,
         StripingLocksProvider<MiruTermId> fieldIndexStripingLocksProvider,
         StripingLocksProvider<MiruStreamId> streamStripingLocksProvider,
         StripingLocksProvider<String> authzStripingLocksProvider,
@@ -173,7 +196,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         boolean useLabIndexes,
         boolean realtimeDelivery,
         boolean fsyncOnCommit,
-        boolean timeIndexVerboseLogging) {
+        boolean timeIndexVerboseLogging,
+        boolean timeIndexColumnEnabled,
+        long closedIndexCompressionSampleBytes) {
 
         this.idProvider = idProvider;
         this.persistentCogs = persistentCogs;
@@ -188,6 +213,7 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         this.sipMarshaller = sipMarshaller;
         this.diskResourceLocator = diskResourceLocator;
         this.partitionAuthzCacheSize = partitionAuthzCacheSize;
+        this.partitionBitmapCacheMaxSizeInBytes = partitionBitmapCacheMaxSizeInBytes;
         this.fieldIndexStripingLocksProvider = fieldIndexStripingLocksProvider;
         this.streamStripingLocksProvider = streamStripingLocksProvider;
         this.authzStripingLocksProvider = authzStripingLocksProvider;
@@ -202,6 +228,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         this.realtimeDelivery = realtimeDelivery;
         this.fsyncOnCommit = fsyncOnCommit;
         this.timeIndexVerboseLogging = timeIndexVerboseLogging;
+        this.timeIndexColumnEnabled = timeIndexColumnEnabled;
+        this.closedIndexCompressionSampleBytes = closedIndexCompressionSampleBytes;
     }
 
     public MiruBackingStorage findBackingStorage(MiruPartitionCoord coord) throws Exception {
@@ -550,7 +578,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             keyBytes("timeIndex"),
             monoTimeIndex,
             rawTimeIndex,
-            timeIndexVerboseLogging);
+            timeIndexVerboseLogging,
+            timeIndexColumnEnabled);
 
         IntTermIdsKeyValueMarshaller intTermIdsKeyValueMarshaller = new IntTermIdsKeyValueMarshaller();
 
@@ -673,6 +702,10 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             }
         }
 
+        LabBitmapCache<BM, IBM> bitmapCache = partitionBitmapCacheMaxSizeInBytes > 0
+            ? new LabBitmapCache<>(bitmaps, partitionBitmapCacheMaxSizeInBytes)
+            : null;
+
         @SuppressWarnings("unchecked")
         MiruFieldIndex<BM, IBM>[] fieldIndexes = new MiruFieldIndex[MiruFieldType.values().length];
         for (MiruFieldType fieldType : MiruFieldType.values()) {
@@ -698,7 +731,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
                 cardinalityPrefix,
                 cardinalityIndex,
                 fieldIndexStripingLocksProvider,
-                termInterner);
+                termInterner,
+                bitmapCache);
         }
         MiruFieldIndexProvider<BM, IBM> fieldIndexProvider = new MiruFieldIndexProvider<>(fieldIndexes);
 
@@ -717,7 +751,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             atomized,
             metaIndex,
             keyBytes("removal"),
-            new Object());
+            new Object(),
+            bitmapCache);
 
         MiruUnreadTrackingIndex<BM, IBM> unreadTrackingIndex = new LabUnreadTrackingIndex<>(
             idProvider,
@@ -756,7 +791,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             atomized,
             bitmapIndex,
             miruAuthzCache,
-            authzStripingLocksProvider);
+            authzStripingLocksProvider,
+            bitmapCache);
 
         StripingLocksProvider<MiruStreamId> streamLocks = new StripingLocksProvider<>(64);
 
@@ -794,6 +830,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
                 cacheProvider.commit(fsyncOnCommit);
             },
             () -> {
+                if (bitmapCache != null) {
+                    bitmapCache.clear();
+                }
                 for (ValueIndex<byte[]> valueIndex : commitables) {
                     valueIndex.close(true, fsyncOnCommit);
                 }
@@ -888,6 +927,180 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         return allocateChunkStore(bitmaps, coord, schema, toChunks, toStorage, null);
     }
 
+    /**
+     * Hard links (or copies, where links are unsupported) the on-disk LAB environments for a persistent context into staging directories,
+     * along with its schema and version. The caller is responsible for quiescing writes and committing the context so that the files
+     * (including the sip index) represent a consistent point, but only for the duration of this call.
+     */
+    public <BM extends IBM, IBM> MiruPartitionSnapshot stageSnapshot(MiruPartitionCoord coord, MiruContext<BM, IBM, S> context) throws Exception {
+        if (context.storage != MiruBackingStorage.disk || !context.hasLabIndex()) {
+            throw new IllegalArgumentException("Only disk backed lab indexes can be exported for " + coord);
+        }
+
+        int labVersion = findLabVersion(coord);
+        File[] labDirs = getAllocator(MiruBackingStorage.disk).getLabDirs(coord, labVersion);
+        byte[] schemaBytes = objectMapper.writeValueAsBytes(context.getSchema());
+
+        File[] stagingDirs = new File[labDirs.length];
+        List<MiruPartitionSnapshot.StagedFile> files = Lists.newArrayList();
+        MiruPartitionSnapshot snapshot = new MiruPartitionSnapshot(coord, labVersion, context.version, schemaBytes, labDirs.length, stagingDirs, files);
+        try {
+            String suffix = ".snapshot-" + idProvider.nextId();
+            for (int i = 0; i < labDirs.length; i++) {
+                if (!labDirs[i].exists()) {
+                    continue;
+                }
+                Path root = labDirs[i].toPath();
+                stagingDirs[i] = new File(labDirs[i].getParentFile(), labDirs[i].getName() + suffix);
+                Path stagingRoot = stagingDirs[i].toPath();
+                List<Path> paths = Lists.newArrayList();
+                try (Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile).sorted().forEach(paths::add);
+                }
+                for (Path path : paths) {
+                    Path relative = root.relativize(path);
+                    Path staged = stagingRoot.resolve(relative);
+                    Files.createDirectories(staged.getParent());
+                    try {
+                        Files.createLink(staged, path);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        Files.copy(path, staged);
+                    }
+                    // a linked file can still grow underneath us, so only the length at this point is part of the snapshot
+                    files.add(new MiruPartitionSnapshot.StagedFile(i, relative.toString(), staged, Files.size(path)));
+                }
+            }
+        } catch (Exception e) {
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Streams a staged snapshot. No partition locks are needed since the staged files are private to the snapshot.
+     */
+    public void exportSnapshot(MiruPartitionSnapshot snapshot, OutputStream outputStream) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1_024));
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(snapshot.labVersion);
+        out.writeLong(snapshot.version);
+        out.writeInt(snapshot.schemaBytes.length);
+        out.write(snapshot.schemaBytes);
+        out.writeInt(snapshot.numLabDirs);
+
+        long totalBytes = 0;
+        for (MiruPartitionSnapshot.StagedFile file : snapshot.files) {
+            out.writeBoolean(true);
+            out.writeInt(file.labDirIndex);
+            out.writeUTF(file.relativePath);
+            out.writeLong(file.length);
+            try (InputStream in = new FileInputStream(file.path.toFile())) {
+                long copied = ByteStreams.copy(ByteStreams.limit(in, file.length), out);
+                if (copied != file.length) {
+                    throw new IOException("Snapshot file " + file.path + " shrank during export for " + snapshot.coord);
+                }
+            }
+            totalBytes += file.length;
+        }
+        out.writeBoolean(false);
+        out.flush();
+        log.inc("snapshot>export>bytes", totalBytes);
+        log.info("Exported snapshot of {} bytes for {}", totalBytes, snapshot.coord);
+    }
+
+    /**
+     * Writes a streamed snapshot into this host's disk storage for the given coord. The schema and version are only saved once every file
+     * has been received, so an incomplete transfer never looks like persistent storage. Any failure removes the partially written files.
+     */
+    public void importSnapshot(MiruPartitionCoord coord, InputStream inputStream) throws Exception {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1_024));
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Invalid snapshot stream for " + coord);
+        }
+        int labVersion = in.readInt();
+        if (!isSupportedLabVersion(labVersion)) {
+            throw new IOException("Unsupported snapshot lab version " + labVersion + " for " + coord);
+        }
+        long version = in.readLong();
+        byte[] schemaBytes = new byte[in.readInt()];
+        in.readFully(schemaBytes);
+        MiruSchema schema = objectMapper.readValue(schemaBytes, MiruSchema.class);
+
+        File[] labDirs = getAllocator(MiruBackingStorage.disk).getLabDirs(coord, labVersion);
+        int numLabDirs = in.readInt();
+        if (numLabDirs != labDirs.length) {
+            throw new IOException("Snapshot has " + numLabDirs + " lab dirs but this host expects " + labDirs.length + " for " + coord);
+        }
+
+        try {
+            for (File labDir : labDirs) {
+                FileUtils.deleteDirectory(labDir);
+                FileUtils.forceMkdir(labDir);
+            }
+
+            long totalBytes = 0;
+            byte[] buffer = new byte[64 * 1_024];
+            while (in.readBoolean()) {
+                int index = in.readInt();
+                Path root = labDirs[index].toPath().normalize();
+                Path path = root.resolve(in.readUTF()).normalize();
+                if (!path.startsWith(root)) {
+                    throw new IOException("Snapshot path " + path + " escapes " + root + " for " + coord);
+                }
+                long length = in.readLong();
+                FileUtils.forceMkdir(path.getParent().toFile());
+                try (OutputStream out = new FileOutputStream(path.toFile())) {
+                    long remaining = length;
+                    while (remaining > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new IOException("Snapshot stream ended early for " + coord);
+                        }
+                        out.write(buffer, 0, read);
+                        remaining -= read;
+                    }
+                }
+                totalBytes += length;
+            }
+
+            saveSchema(coord, schema);
+            saveVersion(coord, version);
+            log.inc("snapshot>import>bytes", totalBytes);
+            log.info("Imported snapshot of {} bytes for {}", totalBytes, coord);
+        } catch (Exception e) {
+            for (File labDir : labDirs) {
+                FileUtils.deleteQuietly(labDir);
+            }
+            throw e;
+        }
+    }
+
+    private boolean isSupportedLabVersion(int labVersion) {
+        if (labVersion == LAB_VERSION) {
+            return true;
+        }
+        for (int supportedLabVersion : SUPPORTED_LAB_VERSIONS) {
+            if (supportedLabVersion == labVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findLabVersion(MiruPartitionCoord coord) throws Exception {
+        MiruChunkAllocator allocator = getAllocator(MiruBackingStorage.disk);
+        if (allocator.hasLabIndex(coord, LAB_VERSION)) {
+            return LAB_VERSION;
+        }
+        for (int labVersion : SUPPORTED_LAB_VERSIONS) {
+            if (allocator.hasLabIndex(coord, labVersion)) {
+                return labVersion;
+            }
+        }
+        throw new IllegalStateException("No lab index found for " + coord);
+    }
+
     public long getVersion(MiruPartitionCoord coord, MiruBackingStorage storage) throws IOException {
         if (storage == MiruBackingStorage.memory) {
             return idProvider.nextId();
@@ -970,6 +1183,64 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         return diskResourceLocator.getFilerFile(identifier, "closed").exists();
     }
 
+    /**
+     * Records the on-disk footprint of each LAB index of a closed partition, summed across its environments, so that the
+     * indexes which dominate the page cache held by historical partitions can be told apart. When sampling is enabled, also
+     * records how well each index would block compress and how long its blocks take to decode. The values are gauges of
+     * the most recently closed partition.
+     */
+    public void recordClosedIndexMetrics(MiruPartitionCoord coord, MiruBackingStorage storage) throws Exception {
+        File[] labDirs = currentLabDirs(getAllocator(storage), coord);
+        if (labDirs == null) {
+            return;
+        }
+        Map<String, List<File>> indexDirs = new TreeMap<>();
+        for (File labDir : labDirs) {
+            File[] dirs = labDir.listFiles(File::isDirectory);
+            if (dirs != null) {
+                for (File indexDir : dirs) {
+                    indexDirs.computeIfAbsent(indexDir.getName(), key -> Lists.newArrayList()).add(indexDir);
+                }
+            }
+        }
+        Map<String, Long> sizes = new TreeMap<>();
+        long total = 0;
+        for (Map.Entry<String, List<File>> entry : indexDirs.entrySet()) {
+            long size = 0;
+            for (File indexDir : entry.getValue()) {
+                size += FileUtils.sizeOfDirectory(indexDir);
+            }
+            sizes.put(entry.getKey(), size);
+            log.set(ValueType.VALUE, "closed>index>" + entry.getKey() + ">bytes", size);
+            total += size;
+
+            if (closedIndexCompressionSampleBytes > 0) {
+                BlockCompressionSampler.Sample sample = CLOSED_INDEX_SAMPLER.sample(entry.getValue(), closedIndexCompressionSampleBytes);
+                log.set(ValueType.VALUE, "closed>index>" + entry.getKey() + ">compressedPercent", sample.compressedPercent());
+                log.set(ValueType.VALUE, "closed>index>" + entry.getKey() + ">decodeMicrosPerMebibyte", sample.decodeMicrosPerMebibyte());
+                log.info("Closed partition {} index {} block compression sample: {}", coord, entry.getKey(), sample);
+            }
+        }
+        log.set(ValueType.VALUE, "closed>index>bytes", total);
+        log.info("Closed partition {} has {} bytes of indexes on disk: {}", coord, total, sizes);
+    }
+
+    /**
+     * @return the lab dirs of the version the partition was allocated with, as chosen by {@link #allocate}, or null if the
+     * partition has no lab index
+     */
+    private File[] currentLabDirs(MiruChunkAllocator allocator, MiruPartitionCoord coord) throws Exception {
+        if (allocator.hasLabIndex(coord, LAB_VERSION)) {
+            return allocator.getLabDirs(coord, LAB_VERSION);
+        }
+        for (int labVersion : SUPPORTED_LAB_VERSIONS) {
+            if (allocator.hasLabIndex(coord, labVersion)) {
+                return allocator.getLabDirs(coord, labVersion);
+            }
+        }
+        return null;
+    }
+
     public void cleanDisk(MiruPartitionCoord coord) throws IOException {
         diskResourceLocator.clean(new MiruPartitionCoordIdentifier(coord));
     }
@@ -97,17 +97,19 @@ public class MiruIndexPrimaryFields<BM extends IBM, IBM> {
 
     public List<Future<?>> index(final MiruContext<BM, IBM, ?> context,
         MiruTenantId tenantId,
-        List<Future<List<PrimaryIndexWork>>> fieldWorkFutures,
+        List<List<Future<List<PrimaryIndexWork>>>> sliceFieldWorkFutures,
         ExecutorService indexExecutor)
         throws Exception {
 
-        List<PrimaryIndexWork>[] work = awaitFieldWorkFutures(fieldWorkFutures);
-
         final MiruFieldIndex<BM, IBM> fieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
         List<Integer> fieldIds = context.getSchema().getFieldIds();
         List<Future<?>> futures = new ArrayList<>(fieldIds.size());
-        for (int fieldId = 0; fieldId < work.length; fieldId++) {
-            List<PrimaryIndexWork> fieldWork = work[fieldId];
+        int numFields = sliceFieldWorkFutures.get(0).size();
+        long waitElapsed = 0;
+        for (int fieldId = 0; fieldId < numFields; fieldId++) {
+            long start = System.currentTimeMillis();
+            List<PrimaryIndexWork> fieldWork = awaitFieldWork(sliceFieldWorkFutures, fieldId);
+            waitElapsed += System.currentTimeMillis() - start;
             MiruFieldDefinition fieldDefinition = context.getSchema().getFieldDefinition(fieldId);
             for (final PrimaryIndexWork primaryIndexWork : fieldWork) {
                 futures.add(indexExecutor.submit(() -> {
@@ -132,19 +134,38 @@ public class MiruIndexPrimaryFields<BM extends IBM, IBM> {
                 }));
             }
         }
+        log.inc("index>compose>elapsed", waitElapsed);
         return futures;
     }
 
-    private List<PrimaryIndexWork>[] awaitFieldWorkFutures(List<Future<List<PrimaryIndexWork>>> fieldWorkFutures)
+    /**
+     * Merges the composed work for a field across slices. Slices are merged in order so each term's ids remain in batch order.
+     */
+    private List<PrimaryIndexWork> awaitFieldWork(List<List<Future<List<PrimaryIndexWork>>>> sliceFieldWorkFutures, int fieldId)
         throws InterruptedException, ExecutionException {
 
-        @SuppressWarnings("unchecked")
-        List<PrimaryIndexWork>[] fieldsWork = new List[fieldWorkFutures.size()];
-        for (int i = 0; i < fieldWorkFutures.size(); i++) {
-            fieldsWork[i] = fieldWorkFutures.get(i).get();
-            Collections.sort(fieldsWork[i]);
+        List<PrimaryIndexWork> fieldWork;
+        if (sliceFieldWorkFutures.size() == 1) {
+            fieldWork = sliceFieldWorkFutures.get(0).get(fieldId).get();
+        } else {
+            Map<MiruTermId, PrimaryIndexWork> merged = Maps.newHashMap();
+            for (List<Future<List<PrimaryIndexWork>>> fieldWorkFutures : sliceFieldWorkFutures) {
+                for (PrimaryIndexWork work : fieldWorkFutures.get(fieldId).get()) {
+                    PrimaryIndexWork existing = merged.get(work.fieldValue);
+                    if (existing == null) {
+                        merged.put(work.fieldValue, work);
+                    } else {
+                        existing.ids.addAll(work.ids);
+                        if (existing.counts != null) {
+                            existing.counts.addAll(work.counts);
+                        }
+                    }
+                }
+            }
+            fieldWork = Lists.newArrayList(merged.values());
         }
-        return fieldsWork;
+        Collections.sort(fieldWork);
+        return fieldWork;
     }
 
     private static class TermWork {
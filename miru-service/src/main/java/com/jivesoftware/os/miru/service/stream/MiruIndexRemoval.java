@@ -0,0 +1,101 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
+import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies hides and unhides to the removal index for a whole batch at a time, as a single bitmap mutation.
+ */
+public class MiruIndexRemoval<BM extends IBM, IBM> {
+
+    private static final MetricLogger log = MetricLoggerFactory.getLogger();
+
+    private final MiruBitmaps<BM, IBM> bitmaps;
+
+    public MiruIndexRemoval(MiruBitmaps<BM, IBM> bitmaps) {
+        this.bitmaps = bitmaps;
+    }
+
+    public void hide(MiruContext<BM, IBM, ?> context, MiruTenantId tenantId, int[] ids, StackBuffer stackBuffer) throws Exception {
+        if (ids.length == 0) {
+            return;
+        }
+        int[] sorted = Arrays.copyOf(ids, ids.length);
+        Arrays.sort(sorted);
+        log.inc("count>hide", ids.length);
+        log.inc("count>hide", ids.length, tenantId.toString());
+        context.removalIndex.or(bitmaps.createWithBits(sorted), stackBuffer);
+    }
+
+    /**
+     * Unhides any activities in the batch that were hidden by an older removal. Must be called before the batch is written
+     * to the activity index, since the removal version is read from there. Only the parts of the removal index covering the
+     * batch are read.
+     */
+    public void unhide(MiruContext<BM, IBM, ?> context,
+        MiruTenantId tenantId,
+        List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+        StackBuffer stackBuffer) throws Exception {
+
+        int[] batchIds = new int[internalActivityAndIds.size()];
+        int minId = Integer.MAX_VALUE;
+        for (int i = 0; i < batchIds.length; i++) {
+            batchIds[i] = internalActivityAndIds.get(i).id;
+            minId = Math.min(minId, batchIds[i]);
+        }
+        // nothing in the batch can be hidden if every id is past the last removal
+        if (minId > context.removalIndex.lastId(stackBuffer)) {
+            return;
+        }
+
+        BitmapAndLastId<BM> container = new BitmapAndLastId<>();
+        context.removalIndex.getIndexForIds(container, batchIds, stackBuffer);
+        if (!container.isSet()) {
+            return;
+        }
+
+        BM removed = container.getBitmap();
+        TIntList hiddenIds = null;
+        List<MiruActivityAndId<MiruInternalActivity>> hiddenActivities = null;
+        for (MiruActivityAndId<MiruInternalActivity> activityAndId : internalActivityAndIds) {
+            if (bitmaps.isSet(removed, activityAndId.id)) {
+                if (hiddenIds == null) {
+                    hiddenIds = new TIntArrayList();
+                    hiddenActivities = Lists.newArrayList();
+                }
+                hiddenIds.add(activityAndId.id);
+                hiddenActivities.add(activityAndId);
+            }
+        }
+        if (hiddenIds == null) {
+            return;
+        }
+
+        TimeVersionRealtime[] existing = context.activityIndex.getAllTimeVersionRealtime("unhide", hiddenIds.toArray(), stackBuffer);
+        TIntList unhideIds = new TIntArrayList(hiddenIds.size());
+        for (int i = 0; i < existing.length; i++) {
+            if (existing[i] == null || hiddenActivities.get(i).activity.version > existing[i].version) {
+                unhideIds.add(hiddenIds.get(i));
+            }
+        }
+        if (!unhideIds.isEmpty()) {
+            int[] ids = unhideIds.toArray();
+            Arrays.sort(ids);
+            log.inc("count>unhide", ids.length);
+            log.inc("count>unhide", ids.length, tenantId.toString());
+            context.removalIndex.andNot(bitmaps.createWithBits(ids), stackBuffer);
+        }
+    }
+}
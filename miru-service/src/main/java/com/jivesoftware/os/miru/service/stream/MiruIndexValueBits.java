@@ -30,11 +30,17 @@ public class MiruIndexValueBits<BM extends IBM, IBM> {
 
     private final static MetricLogger log = MetricLoggerFactory.getLogger();
 
+    /**
+     * Composes the bits to set and clear for each value bits field. A repair may lower a value or drop the field entirely, so
+     * for a repair every bit the field has already indexed is cleared for the batch's ids, besides the bits the batch sets.
+     */
     public List<Future<List<ValueIndexWork>>> compose(MiruContext<BM, IBM, ?> context,
         final List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+        final boolean repair,
         ExecutorService indexExecutor)
         throws Exception {
 
+        final MiruFieldIndex<BM, IBM> valueBitsIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.valueBits);
         TIntList activityIds = null;
         MiruFieldDefinition[] fieldDefinitions = context.getSchema().getFieldDefinitions();
         List<Future<List<ValueIndexWork>>> workFutures = new ArrayList<>(fieldDefinitions.length);
@@ -48,6 +54,8 @@ public class MiruIndexValueBits<BM extends IBM, IBM> {
                 for (MiruActivityAndId<MiruInternalActivity> internalActivityAndId : internalActivityAndIds) {
                     activityIds.add(internalActivityAndId.id);
                 }
+                // repairs are not necessarily in id order, and the set and remove ids are merged in order
+                activityIds.sort();
             }
             TIntList allIds = activityIds;
             workFutures.add(indexExecutor.submit(() -> {
@@ -84,19 +92,41 @@ public class MiruIndexValueBits<BM extends IBM, IBM> {
                 List<ValueIndexWork> workList = Lists.newArrayListWithCapacity(bitIds.length);
                 for (int aye = 0; aye < bitIds.length; aye++) {
                     if (bitIds[aye] != null) {
+                        bitIds[aye].sort();
                         workList.add(new ValueIndexWork(allIds, bitIds[aye], aye));
                     }
                 }
+                if (repair) {
+                    TIntList[] setBitIds = bitIds;
+                    valueBitsIndex.streamTermIdsForField("indexValueBits", fieldDefinition.fieldId, null,
+                        termId -> {
+                            if (!ValueBitsIndex.isValueBit(termId)) {
+                                return true;
+                            }
+                            int bit = ValueBitsIndex.bytesShort(termId.getBytes());
+                            if (bit >= setBitIds.length || setBitIds[bit] == null) {
+                                workList.add(new ValueIndexWork(allIds, new TIntArrayList(0), bit));
+                            }
+                            return true;
+                        },
+                        new StackBuffer());
+                }
                 return workList;
             }));
         }
         return workFutures;
     }
 
+    /**
+     * Indexes the composed bits. Each value bits field also records the first id which was unindexed when the field first
+     * had value bits, since ids before it were indexed without them.
+     *
+     * @param firstUnindexedId the first id past the activity index when the batch began
+     */
     public List<Future<?>> index(final MiruContext<BM, IBM, ?> context,
         MiruTenantId tenantId,
         List<Future<List<ValueIndexWork>>> fieldWorkFutures,
-        final boolean repair,
+        final int firstUnindexedId,
         ExecutorService indexExecutor)
         throws Exception {
 
@@ -108,6 +138,12 @@ public class MiruIndexValueBits<BM extends IBM, IBM> {
         for (int fieldId = 0; fieldId < work.length; fieldId++) {
             List<ValueIndexWork> fieldWork = work[fieldId];
             MiruFieldDefinition fieldDefinition = context.getSchema().getFieldDefinition(fieldId);
+            if (fieldDefinition.type.hasFeature(Feature.indexedValueBits)) {
+                futures.add(indexExecutor.submit(() -> {
+                    valueBitsIndex.setIfEmpty(fieldDefinition, ValueBitsIndex.FIRST_ID_TERM_ID, firstUnindexedId, 0, new StackBuffer());
+                    return null;
+                }));
+            }
             for (final ValueIndexWork valueIndexWork : fieldWork) {
                 futures.add(indexExecutor.submit(() -> {
                     StackBuffer stackBuffer = new StackBuffer();
@@ -6,15 +6,16 @@ import com.jivesoftware.os.miru.api.activity.MiruActivity;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
 import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
+import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Handles indexing of activity, including repair and removal, with synchronization and attention to versioning.
@@ -23,25 +24,31 @@ public class MiruIndexer<BM extends IBM, IBM> {
 
     private final static MetricLogger log = MetricLoggerFactory.getLogger();
 
+    private static final int MIN_FIELDS_PER_SLICE = 1_024;
+    private static final int SLICES_PER_THREAD = 2;
+
     private final MiruIndexAuthz<BM, IBM> indexAuthz;
     private final MiruIndexPrimaryFields<BM, IBM> indexPrimaryFields;
     private final MiruIndexValueBits<BM, IBM> indexValueBits;
     private final MiruIndexBloom<BM, IBM> indexBloom;
     private final MiruIndexLatest<BM, IBM> indexLatest;
     private final MiruIndexPairedLatest<BM, IBM> indexPairedLatest;
+    private final MiruIndexRemoval<BM, IBM> indexRemoval;
 
     public MiruIndexer(MiruIndexAuthz<BM, IBM> indexAuthz,
         MiruIndexPrimaryFields<BM, IBM> indexPrimaryFields,
         MiruIndexValueBits<BM, IBM> indexValueBits,
         MiruIndexBloom<BM, IBM> indexBloom,
         MiruIndexLatest<BM, IBM> indexLatest,
-        MiruIndexPairedLatest<BM, IBM> indexPairedLatest) {
+        MiruIndexPairedLatest<BM, IBM> indexPairedLatest,
+        MiruIndexRemoval<BM, IBM> indexRemoval) {
         this.indexAuthz = indexAuthz;
         this.indexPrimaryFields = indexPrimaryFields;
         this.indexValueBits = indexValueBits;
         this.indexBloom = indexBloom;
         this.indexLatest = indexLatest;
         this.indexPairedLatest = indexPairedLatest;
+        this.indexRemoval = indexRemoval;
     }
 
     public void index(final MiruContext<BM, IBM, ?> context,
@@ -60,71 +67,90 @@ public class MiruIndexer<BM extends IBM, IBM> {
 
         log.debug("Start: Index batch of {}", activityAndIds.size());
 
-        final int numPartitions = 48;
+        // repairs rewrite ids which cached filter results already cover
+        int lastIndexedId = context.activityIndex.lastId(new StackBuffer());
+        boolean repair = hasIndexedIds(lastIndexedId, activityAndIds);
+
         final int numActivities = internalActivityAndIds.size();
-        final int partitionSize = (numActivities + numPartitions - 1) / numPartitions;
+        final int numSlices = sliceCount(numActivities, context.getSchema().getFieldDefinitions().length, parallelism(indexExecutor));
+        final int sliceSize = (numActivities + numSlices - 1) / numSlices;
+        log.inc("index>slices", numSlices);
 
-        List<Future<?>> internFutures = new ArrayList<>(numPartitions);
-        for (int i = 0; i < activityAndIds.size(); i += partitionSize) {
+        List<Future<?>> internFutures = new ArrayList<>(numSlices);
+        for (int i = 0; i < numActivities; i += sliceSize) {
             final int startOfSubList = i;
             internFutures.add(indexExecutor.submit(() -> {
                 StackBuffer stackBuffer = new StackBuffer();
-                context.activityInternExtern.intern(activityAndIds, startOfSubList, partitionSize, internalActivityAndIds, context.getSchema(), stackBuffer);
+                context.activityInternExtern.intern(activityAndIds, startOfSubList, sliceSize, internalActivityAndIds, context.getSchema(), stackBuffer);
                 return null;
             }));
         }
-        awaitFutures(internFutures, "indexIntern");
+
+        // 1. Compose work for each slice as soon as it has been interned
+        long start = System.currentTimeMillis();
+        List<List<Future<List<PrimaryIndexWork>>>> primaryFieldsComposed = new ArrayList<>(internFutures.size());
+        for (int i = 0; i < internFutures.size(); i++) {
+            internFutures.get(i).get();
+            int fromIndex = i * sliceSize;
+            List<MiruActivityAndId<MiruInternalActivity>> slice = internalActivityAndIds.subList(fromIndex, Math.min(fromIndex + sliceSize, numActivities));
+            primaryFieldsComposed.add(indexPrimaryFields.compose(context, slice, indexExecutor));
+        }
+        log.inc("index>intern>elapsed", System.currentTimeMillis() - start);
 
         // free for GC before we begin indexing
         activityAndIds.clear();
 
-        // 1. Compose work
-        List<Future<List<PrimaryIndexWork>>> primaryFieldsComposed = indexPrimaryFields.compose(context, internalActivityAndIds, indexExecutor);
-
-        // 2. Index field values work
-        List<Future<?>> primaryFieldFutures = indexPrimaryFields.index(context, coord.tenantId, primaryFieldsComposed, indexExecutor);
-
-        // 3. Wait for completion
-        awaitFutures(primaryFieldFutures, "indexPrimaryFields");
+        // repairs also unhide (remove from removal), checked before the activity index records the new versions
+        StackBuffer stackBuffer = new StackBuffer();
+        if (repair) {
+            indexRemoval.unhide(context, coord.tenantId, internalActivityAndIds, stackBuffer);
+        }
 
-        // 4. Index remaining work
+        // 2. Authz and activity index only need interned activities, so they run alongside the primary fields
         final List<Future<?>> otherFutures = new ArrayList<>();
         otherFutures.addAll(indexAuthz.index(context, coord.tenantId, internalActivityAndIds, indexExecutor));
-        otherFutures.addAll(indexLatest.index(context, coord.tenantId, internalActivityAndIds, indexExecutor));
-
-        // 5. Update activity index
         otherFutures.add(indexExecutor.submit(() -> {
-            StackBuffer stackBuffer = new StackBuffer();
-            context.activityIndex.set(context.getSchema(), internalActivityAndIds, stackBuffer);
+            StackBuffer setStackBuffer = new StackBuffer();
+            context.activityIndex.set(context.getSchema(), internalActivityAndIds, setStackBuffer);
             return null;
         }));
 
-        /*TODO really? reevaluate if we need removes
-        // 6. Update removal index
-        otherFutures.add(indexExecutor.submit(() -> {
-            // repairs also unhide (remove from removal)
-            log.inc("count>remove", activityAndIds.size());
-            log.inc("count>remove", activityAndIds.size(), coord.tenantId.toString());
-            StackBuffer stackBuffer = new StackBuffer();
-            TIntList ids = new TIntArrayList();
-            for (MiruActivityAndId<MiruActivity> activityAndId : activityAndIds) {
-                ids.add(activityAndId.id);
-            }
-            context.removalIndex.remove(stackBuffer, ids.toArray());
-            return null;
-        }));
-        */
+        // 3. Index field values work, each field is submitted as soon as its composed slices are merged
+        List<Future<?>> primaryFieldFutures = indexPrimaryFields.index(context, coord.tenantId, primaryFieldsComposed, indexExecutor);
 
-        // 7. Wait for completion
-        awaitFutures(otherFutures, "indexOther");
+        // value bits are composed from the whole batch, and are indexed alongside the primary fields
+        List<Future<List<ValueIndexWork>>> valueBitsComposed = indexValueBits.compose(context, internalActivityAndIds, repair, indexExecutor);
+        otherFutures.addAll(indexValueBits.index(context, coord.tenantId, valueBitsComposed, lastIndexedId + 1, indexExecutor));
 
-        // 8. Mark as ready
-        StackBuffer stackBuffer = new StackBuffer();
+        // 4. Wait for completion
+        awaitFutures(primaryFieldFutures, "index>primaryFields>elapsed");
+
+        // 5. Latest reads from the primary field index
+        otherFutures.addAll(indexLatest.index(context, coord.tenantId, internalActivityAndIds, indexExecutor));
+
+        // 6. Wait for completion
+        awaitFutures(otherFutures, "index>other>elapsed");
+
+        // 7. Mark as ready
         context.activityIndex.ready(internalActivityAndIds.get(internalActivityAndIds.size() - 1).id, stackBuffer);
 
+        // 8. Cached filters only ever extend past their last id, so a repair discards them
+        if (repair) {
+            MiruAggregateUtil.invalidateFilterCache(context);
+        }
+
         log.debug("End: Index batch of {}", internalActivityAndIds.size());
     }
 
+    private boolean hasIndexedIds(int lastIndexedId, List<MiruActivityAndId<MiruActivity>> activityAndIds) {
+        for (MiruActivityAndId<MiruActivity> activityAndId : activityAndIds) {
+            if (activityAndId.id <= lastIndexedId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void set(MiruContext<BM, IBM, ?> context, List<MiruActivityAndId<MiruActivity>> activityAndIds) throws Exception {
         @SuppressWarnings("unchecked")
         List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds = Arrays.<MiruActivityAndId<MiruInternalActivity>>asList(
@@ -135,39 +161,88 @@ public class MiruIndexer<BM extends IBM, IBM> {
         context.activityIndex.setAndReady(context.getSchema(), internalActivityAndIds, stackBuffer);
     }
 
-    public void remove(MiruContext<BM, IBM, ?> context, MiruActivity activity, int id) throws Exception {
+    /**
+     * Hides a batch of activities. Each activity is only removed if it is newer than the version already indexed, and the
+     * surviving batch is hidden with a single bitmap mutation on the removal index.
+     */
+    public void remove(MiruContext<BM, IBM, ?> context,
+        MiruPartitionCoord coord,
+        List<MiruActivityAndId<MiruActivity>> activityAndIds)
+        throws Exception {
+        if (activityAndIds.isEmpty()) {
+            return;
+        }
+
         StackBuffer stackBuffer = new StackBuffer();
-        TimeVersionRealtime existing = context.activityIndex.getTimeVersionRealtime("remove", id, stackBuffer);
-        if (existing == null) {
-            log.debug("Can't remove nonexistent activity at {}\n- offered: {}", id, activity);
-        } else if (activity.version <= existing.version) {
-            log.debug("Declined to remove old activity at {}\n- have: {}\n- offered: {}", id, existing, activity);
-        } else {
-            log.debug("Removing activity at {}\n- was: {}\n- now: {}", id, existing, activity);
-            List<MiruActivityAndId<MiruInternalActivity>> internalActivity = Arrays.asList(new MiruActivityAndId[1]);
-            context.activityInternExtern.intern(Collections.singletonList(new MiruActivityAndId<>(activity, id, existing.monoTimestamp)),
-                0,
-                1,
-                internalActivity,
-                context.getSchema(),
-                stackBuffer);
-
-            //TODO apply field changes?
-            // hide (add to removal)
-            context.removalIndex.set(stackBuffer, id);
-
-            // finally, update the activity index
-            context.activityIndex.setAndReady(context.getSchema(), internalActivity, stackBuffer);
+        int[] ids = new int[activityAndIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = activityAndIds.get(i).id;
+        }
+        TimeVersionRealtime[] existing = context.activityIndex.getAllTimeVersionRealtime("remove", ids, stackBuffer);
+
+        List<MiruActivityAndId<MiruActivity>> removables = new ArrayList<>(activityAndIds.size());
+        for (int i = 0; i < ids.length; i++) {
+            MiruActivity activity = activityAndIds.get(i).activity;
+            if (existing[i] == null) {
+                log.debug("Can't remove nonexistent activity at {}\n- offered: {}", ids[i], activity);
+            } else if (activity.version <= existing[i].version) {
+                log.debug("Declined to remove old activity at {}\n- have: {}\n- offered: {}", ids[i], existing[i], activity);
+            } else {
+                log.debug("Removing activity at {}\n- was: {}\n- now: {}", ids[i], existing[i], activity);
+                removables.add(new MiruActivityAndId<>(activity, ids[i], existing[i].monoTimestamp));
+            }
+        }
+        if (removables.isEmpty()) {
+            return;
         }
+
+        @SuppressWarnings("unchecked")
+        List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds = Arrays.<MiruActivityAndId<MiruInternalActivity>>asList(
+            new MiruActivityAndId[removables.size()]);
+        context.activityInternExtern.intern(removables, 0, removables.size(), internalActivityAndIds, context.getSchema(), stackBuffer);
+
+        //TODO apply field changes?
+        // hide (add to removal)
+        int[] removableIds = new int[removables.size()];
+        for (int i = 0; i < removableIds.length; i++) {
+            removableIds[i] = removables.get(i).id;
+        }
+        indexRemoval.hide(context, coord.tenantId, removableIds, stackBuffer);
+
+        // finally, update the activity index
+        context.activityIndex.setAndReady(context.getSchema(), internalActivityAndIds, stackBuffer);
+
+        MiruAggregateUtil.invalidateFilterCache(context);
+    }
+
+    static int parallelism(ExecutorService executor) {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        if (executor instanceof ThreadPoolExecutor) {
+            return Math.max(1, Math.min(((ThreadPoolExecutor) executor).getMaximumPoolSize(), availableProcessors));
+        }
+        return availableProcessors;
+    }
+
+    /**
+     * Sizes intern and compose work so that each slice carries at least {@link #MIN_FIELDS_PER_SLICE} field slots,
+     * with no more than {@link #SLICES_PER_THREAD} slices per thread of available parallelism.
+     */
+    static int sliceCount(int numActivities, int numFields, int parallelism) {
+        long work = (long) numActivities * Math.max(numFields, 1);
+        long slices = (work + MIN_FIELDS_PER_SLICE - 1) / MIN_FIELDS_PER_SLICE;
+        slices = Math.min(slices, (long) parallelism * SLICES_PER_THREAD);
+        return (int) Math.max(1, Math.min(slices, numActivities));
     }
 
-    private void awaitFutures(List<Future<?>> futures, String futureName) throws InterruptedException, ExecutionException {
+    private void awaitFutures(List<Future<?>> futures, String metricName) throws InterruptedException, ExecutionException {
         long start = System.currentTimeMillis();
         for (Future<?> future : futures) {
             future.get();
         }
+        long elapsed = System.currentTimeMillis() - start;
+        log.inc(metricName, elapsed);
         if (log.isTraceEnabled()) {
-            log.trace(futureName + ": Finished waiting for futures in " + (System.currentTimeMillis() - start) + " ms");
+            log.trace(metricName + ": Finished waiting for futures in " + elapsed + " ms");
         }
     }
 }
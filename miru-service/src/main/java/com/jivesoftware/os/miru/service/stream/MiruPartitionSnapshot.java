@@ -0,0 +1,62 @@
+package com.jivesoftware.os.miru.service.stream;
+
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A point-in-time copy of a partition's LAB files, hard linked (or copied) into staging directories so that it can be streamed
+ * to a peer without holding the partition's writers. Closing the snapshot removes the staging directories.
+ */
+public class MiruPartitionSnapshot implements AutoCloseable {
+
+    final MiruPartitionCoord coord;
+    final int labVersion;
+    final long version;
+    final byte[] schemaBytes;
+    final int numLabDirs;
+    final File[] stagingDirs;
+    final List<StagedFile> files;
+
+    MiruPartitionSnapshot(MiruPartitionCoord coord,
+        int labVersion,
+        long version,
+        byte[] schemaBytes,
+        int numLabDirs,
+        File[] stagingDirs,
+        List<StagedFile> files) {
+        this.coord = coord;
+        this.labVersion = labVersion;
+        this.version = version;
+        this.schemaBytes = schemaBytes;
+        this.numLabDirs = numLabDirs;
+        this.stagingDirs = stagingDirs;
+        this.files = files;
+    }
+
+    @Override
+    public void close() {
+        for (File stagingDir : stagingDirs) {
+            if (stagingDir != null) {
+                FileUtils.deleteQuietly(stagingDir);
+            }
+        }
+    }
+
+    static class StagedFile {
+
+        final int labDirIndex;
+        final String relativePath;
+        final Path path;
+        final long length;
+
+        StagedFile(int labDirIndex, String relativePath, Path path, long length) {
+            this.labDirIndex = labDirIndex;
+            this.relativePath = relativePath;
+            this.path = path;
+            this.length = length;
+        }
+    }
+}
@@ -164,6 +164,10 @@ public class FilerPluginCacheProvider<BM extends IBM, IBM> implements MiruPlugin
             @Override
             public void setLastId(byte[] cacheId, int lastId) throws Exception {
             }
+
+            @Override
+            public void remove(int cacheIdLength, byte[] fromInclusive, byte[] toExclusive) throws Exception {
+            }
         };
     }
 
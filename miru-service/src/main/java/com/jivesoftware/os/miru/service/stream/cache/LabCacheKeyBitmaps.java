@@ -1,5 +1,6 @@
 package com.jivesoftware.os.miru.service.stream.cache;
 
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Bytes;
 import com.jivesoftware.os.filer.io.ByteArrayStripingLocksProvider;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
@@ -13,13 +14,18 @@ import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.CacheKeyBit
 import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 import com.jivesoftware.os.miru.service.index.lab.LabInvertedIndex;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  *
  */
 public class LabCacheKeyBitmaps<BM extends IBM, IBM> implements CacheKeyBitmaps<BM, IBM> {
 
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
     private static final int LAST_ID_PREFIX = 0xFFFF;
     private static final byte[] LAST_ID_BYTES = new byte[] { -1, -1 };
 
@@ -63,7 +69,8 @@ public class LabCacheKeyBitmaps<BM extends IBM, IBM> implements CacheKeyBitmaps<
             getStore(cacheId),
             null,
             null,
-            stripingLocksProvider.lock(cacheId, 0));
+            stripingLocksProvider.lock(cacheId, 0),
+            null);
     }
 
     private byte[] bitmapIndexKey(byte[] cacheId) {
@@ -134,6 +141,51 @@ public class LabCacheKeyBitmaps<BM extends IBM, IBM> implements CacheKeyBitmaps<
             new BolBuffer());
     }
 
+    @Override
+    public void remove(int cacheIdLength, byte[] fromInclusive, byte[] toExclusive) throws Exception {
+        byte[] bitmapFrom = bitmapIndexKey(fromInclusive);
+        byte[] bitmapTo = bitmapIndexKey(toExclusive);
+        if (atomized) {
+            // the length prefix of an atomized key comes from the bound, so it must be that of the removed cache ids
+            UIO.shortBytes((short) (cacheIdLength & 0xFFFF), bitmapFrom, 0);
+            UIO.shortBytes((short) (cacheIdLength & 0xFFFF), bitmapTo, 0);
+        }
+        // atomized keys carry their atoms after the cache id, and last id keys only their prefix before it
+        int bitmapKeyLength = atomized ? -1 : cacheIdLength;
+        int lastIdKeyLength = LAST_ID_BYTES.length + cacheIdLength;
+        int removed = 0;
+        for (ValueIndex<byte[]> store : stores) {
+            List<byte[]> keys = Lists.newArrayList();
+            store.rangeScan(bitmapFrom, bitmapTo, (index, key, timestamp, tombstoned, version, payload) -> {
+                byte[] keyBytes = key.copy();
+                if (bitmapKeyLength < 0 || keyBytes.length == bitmapKeyLength) {
+                    keys.add(keyBytes);
+                }
+                return true;
+            }, false);
+            store.rangeScan(lastIdKey(fromInclusive), lastIdKey(toExclusive), (index, key, timestamp, tombstoned, version, payload) -> {
+                byte[] keyBytes = key.copy();
+                if (keyBytes.length == lastIdKeyLength) {
+                    keys.add(keyBytes);
+                }
+                return true;
+            }, false);
+            if (!keys.isEmpty()) {
+                long version = idProvider.nextId();
+                store.append(stream -> {
+                    for (byte[] key : keys) {
+                        if (!stream.stream(-1, key, -1, true, version, null)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }, false, new BolBuffer(), new BolBuffer());
+                removed += keys.size();
+            }
+        }
+        LOG.inc("cacheKeyBitmaps>remove>" + name, removed);
+    }
+
     public void commit(boolean fsyncOnCommit) throws Exception {
         for (ValueIndex<byte[]> index : stores) {
             index.commit(fsyncOnCommit, true);
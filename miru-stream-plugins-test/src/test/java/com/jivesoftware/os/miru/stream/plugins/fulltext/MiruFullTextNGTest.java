@@ -143,6 +143,100 @@ public class MiruFullTextNGTest {
         runQueries(rand, timespan, time.get(), FullTextQuery.Strategy.TF_IDF);
     }
 
+    @Test
+    public void testTfIdfPruningKeepsTopResults() throws Exception {
+        SnowflakeIdPacker snowflakeIdPacker = new SnowflakeIdPacker();
+        long intervalPerActivity = snowflakeIdPacker.pack(1_000, 0, 0);
+        long firstTime = snowflakeIdPacker.pack(System.currentTimeMillis(), 0, 0) - intervalPerActivity * 10_000;
+        AtomicLong time = new AtomicLong(firstTime);
+
+        // "1" is rare but repeated, "2" appears once everywhere, so most ids are bounded well below the heavy ids
+        int numActivities = 3_000;
+        int desiredNumberOfResults = 10;
+        Random rand = new Random(1234);
+        List<Map<String, Integer>> termFrequencies = Lists.newArrayListWithCapacity(numActivities);
+        List<MiruPartitionedActivity> batch = Lists.newArrayListWithCapacity(numActivities);
+        for (int i = 0; i < numActivities; i++) {
+            List<String> text = Lists.newArrayList();
+            text.add("2");
+            if (i % 50 == 0) {
+                for (int j = 0; j < 1 + (i / 50) % 7; j++) {
+                    text.add("1");
+                }
+            }
+            for (int j = 0; j < 10; j++) {
+                text.add(dictionary[4 + rand.nextInt(dictionary.length - 4)]);
+            }
+            Map<String, Integer> tf = Maps.newHashMap();
+            for (String term : text) {
+                tf.merge(term, 1, Integer::sum);
+            }
+            termFrequencies.add(tf);
+            batch.add(textActivity(tenant1, partitionId, time.addAndGet(intervalPerActivity), "bob" + (i % numberOfUsers), text,
+                walIndex.incrementAndGet()));
+        }
+        service.writeToIndex(batch);
+
+        // unpruned scoring by brute force, where each query term is weighted by its inverse global frequency
+        Map<String, Long> globalFrequencies = Maps.newHashMap();
+        for (Map<String, Integer> tf : termFrequencies) {
+            for (Map.Entry<String, Integer> entry : tf.entrySet()) {
+                globalFrequencies.merge(entry.getKey(), (long) entry.getValue(), Long::sum);
+            }
+        }
+        List<Double> expectedScores = Lists.newArrayListWithCapacity(numActivities);
+        for (Map<String, Integer> tf : termFrequencies) {
+            double score = 0d;
+            for (String term : new String[] { "1", "2" }) {
+                if (tf.containsKey(term)) {
+                    score += (double) tf.get(term) / globalFrequencies.get(term);
+                }
+            }
+            expectedScores.add(score);
+        }
+        Collections.sort(expectedScores, Collections.reverseOrder());
+
+        MiruRequest<FullTextQuery> request = new MiruRequest<>("test",
+            tenant1,
+            MiruActorId.NOT_PROVIDED,
+            MiruAuthzExpression.NOT_PROVIDED,
+            new FullTextQuery(new MiruTimeRange(firstTime, time.get()),
+                "text",
+                "en",
+                false,
+                "1 OR 2",
+                -1,
+                MiruFilter.NO_FILTER,
+                FullTextQuery.Strategy.TF_IDF,
+                desiredNumberOfResults,
+                new String[0]),
+            MiruSolutionLogLevel.NONE);
+        MiruResponse<FullTextAnswer> response = injectable.filterCustomStream(request);
+
+        assertTrue(response.answer.pruned > 0, "Expected pruning, got " + response.answer);
+        assertEquals(response.answer.results.size(), desiredNumberOfResults);
+        for (int i = 0; i < desiredNumberOfResults; i++) {
+            double expected = expectedScores.get(i);
+            assertEquals(response.answer.results.get(i).score, expected, expected * 1e-5, "Score " + i + " of " + response.answer.results);
+        }
+    }
+
+    private MiruPartitionedActivity textActivity(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        long time,
+        String user,
+        List<String> text,
+        int index) {
+
+        Map<String, List<String>> fieldsValues = Maps.newHashMap();
+        fieldsValues.put("user", Arrays.asList(user));
+        fieldsValues.put("doc", Arrays.asList(String.valueOf(index)));
+        fieldsValues.put("text", text);
+
+        MiruActivity activity = new MiruActivity(tenantId, time, 0, false, new String[0], fieldsValues, Collections.emptyMap());
+        return partitionedActivityFactory.activity(1, partitionId, index, activity);
+    }
+
     private void runQueries(Random rand, long timespan, long lastTime, FullTextQuery.Strategy strategy) throws MiruQueryServiceException, InterruptedException {
         System.out.println("-------- " + strategy + " --------");
         final MiruTimeRange timeRange = new MiruTimeRange(lastTime - timespan, lastTime);
@@ -24,4 +24,9 @@ public class CatwalkAnswerEvaluator implements MiruAnswerEvaluator<CatwalkAnswer
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
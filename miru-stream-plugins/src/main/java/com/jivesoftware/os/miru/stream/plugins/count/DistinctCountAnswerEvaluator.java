@@ -34,4 +34,9 @@ public class DistinctCountAnswerEvaluator implements MiruAnswerEvaluator<Distinc
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -22,12 +22,12 @@ import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruDeferredGather;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -157,7 +157,9 @@ public class AggregateCounts {
         MiruFieldIndex<BM, IBM> fieldIndex = requestContext.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
         LOG.debug("fieldId={}", fieldId);
 
-        List<AggregateCount> aggregateCounts = new ArrayList<>();
+        List<PendingCount> pendingCounts = new ArrayList<>();
+        // timestamps are only deferred for previously aggregated terms, since new terms need theirs to decide if they are collected
+        MiruDeferredGather deferredGather = new MiruDeferredGather(name, gatherFieldDefinitions, !aggregated.isEmpty());
         BitmapAndLastId<BM> container = new BitmapAndLastId<>();
         if (fieldId >= 0) {
             IBM unreadAnswer = null;
@@ -210,30 +212,12 @@ public class AggregateCounts {
                     afterCount = bitmaps.cardinality(answer);
                 }
 
-                TimeVersionRealtime oldestTVR;
-                MiruValue[][] oldestValues;
-                if (firstIntersectingBit != -1) {
-                    oldestTVR = requestContext.getActivityIndex().getTimeVersionRealtime(name, firstIntersectingBit, stackBuffer);
-
-                    //TODO much more efficient to accumulate bits and gather these once at the end
-                    oldestValues = new MiruValue[gatherFieldDefinitions.length][];
-                    for (int i = 0; i < gatherFieldDefinitions.length; i++) {
-                        MiruFieldDefinition gatherFieldDefinition = gatherFieldDefinitions[i];
-                        MiruTermId[] termIds = requestContext.getActivityIndex().get(name, firstIntersectingBit, gatherFieldDefinition, stackBuffer);
-                        oldestValues[i] = termsToValues(stackBuffer, schema, termComposer, gatherFieldDefinition, termIds);
-                    }
-                    //TODO much more efficient to accumulate bits and gather these once at the end
-                } else {
-                    oldestTVR = null;
-                    oldestValues = null;
-                }
-
-                aggregateCounts.add(new AggregateCount(aggregateTerm,
-                    null,
-                    oldestValues,
+                pendingCounts.add(new PendingCount(aggregateTerm,
+                    -1,
+                    firstIntersectingBit == -1 ? -1 : deferredGather.add(firstIntersectingBit),
                     beforeCount - afterCount,
                     -1L,
-                    oldestTVR == null ? -1 : oldestTVR.timestamp,
+                    -1L,
                     anyUnread,
                     false,
                     oldestUnread));
@@ -332,40 +316,17 @@ public class AggregateCounts {
                     }
 
                     if (collected && collectedDistincts > constraint.startFromDistinctN) {
-                        //TODO much more efficient to accumulate bits and gather these once at the end
-                        MiruValue[][] latestValues = new MiruValue[gatherFieldDefinitions.length][];
-                        MiruValue[][] oldestValues = new MiruValue[gatherFieldDefinitions.length][];
-                        for (int i = 0; i < gatherFieldDefinitions.length; i++) {
-                            MiruFieldDefinition gatherFieldDefinition = gatherFieldDefinitions[i];
-                            if (lastSetBit == firstIntersectingBit) {
-                                MiruTermId[] termIds = requestContext.getActivityIndex().get(name, lastSetBit, gatherFieldDefinition, stackBuffer);
-                                MiruValue[] values = termsToValues(stackBuffer, schema, termComposer, gatherFieldDefinition, termIds);
-                                latestValues[i] = values;
-                                oldestValues[i] = values;
-                            } else {
-                                MiruTermId[][] termIds = requestContext.getActivityIndex().getAll(name,
-                                    new int[] { lastSetBit, firstIntersectingBit },
-                                    gatherFieldDefinition,
-                                    stackBuffer);
-                                latestValues[i] = termsToValues(stackBuffer, schema, termComposer, gatherFieldDefinition, termIds[0]);
-                                oldestValues[i] = termsToValues(stackBuffer, schema, termComposer, gatherFieldDefinition, termIds[1]);
-                            }
-                        }
-                        //TODO much more efficient to accumulate bits and gather these once at the end
-
-                        AggregateCount aggregateCount = new AggregateCount(
-                            aggregateValue,
-                            latestValues,
-                            oldestValues,
+                        pendingCounts.add(new PendingCount(aggregateValue,
+                            deferredGather.add(lastSetBit),
+                            deferredGather.add(firstIntersectingBit),
                             beforeCount - afterCount,
                             latestTVR.timestamp,
                             oldestTVR.timestamp,
                             anyUnread,
                             latestUnread,
-                            oldestUnread);
-                        aggregateCounts.add(aggregateCount);
+                            oldestUnread));
 
-                        if (aggregateCounts.size() >= constraint.desiredNumberOfDistincts) {
+                        if (pendingCounts.size() >= constraint.desiredNumberOfDistincts) {
                             break;
                         }
                     }
@@ -373,26 +334,66 @@ public class AggregateCounts {
                 }
             }
         }
-        return new AggregateCountsAnswerConstraint(aggregateCounts, aggregated, uncollected, skippedDistincts, collectedDistincts);
-    }
 
-    private MiruValue[] termsToValues(StackBuffer stackBuffer,
-        MiruSchema schema,
-        MiruTermComposer termComposer,
-        MiruFieldDefinition gatherFieldDefinition,
-        MiruTermId[] termIds) throws IOException {
-        MiruValue[] values = new MiruValue[termIds.length];
-        for (int j = 0; j < values.length; j++) {
-            values[j] = new MiruValue(termComposer.decompose(schema,
-                gatherFieldDefinition,
-                stackBuffer,
-                termIds[j]));
+        deferredGather.gather(requestContext, stackBuffer);
+        List<AggregateCount> aggregateCounts = new ArrayList<>(pendingCounts.size());
+        for (PendingCount pending : pendingCounts) {
+            long oldestTimestamp = pending.oldestTimestamp;
+            if (oldestTimestamp == -1L && pending.oldestSlot != -1) {
+                TimeVersionRealtime oldestTVR = deferredGather.getTimeVersionRealtime(pending.oldestSlot);
+                oldestTimestamp = oldestTVR == null ? -1L : oldestTVR.timestamp;
+            }
+            aggregateCounts.add(new AggregateCount(pending.distinctValue,
+                pending.latestSlot == -1 ? null : deferredGather.getValues(pending.latestSlot),
+                pending.oldestSlot == -1 ? null : deferredGather.getValues(pending.oldestSlot),
+                pending.count,
+                pending.latestTimestamp,
+                oldestTimestamp,
+                pending.anyUnread,
+                pending.latestUnread,
+                pending.oldestUnread));
         }
-        return values;
+        return new AggregateCountsAnswerConstraint(aggregateCounts, aggregated, uncollected, skippedDistincts, collectedDistincts);
     }
 
     private static boolean contains(MiruTimeRange timeRange, long timestamp) {
         return timeRange.smallestTimestamp <= timestamp && timeRange.largestTimestamp >= timestamp;
     }
 
+    /**
+     * An aggregate count whose gathered values, and for previously aggregated terms its oldest timestamp, are read from the
+     * deferred gather once all counts have been collected.
+     */
+    private static class PendingCount {
+
+        private final MiruValue distinctValue;
+        private final int latestSlot;
+        private final int oldestSlot;
+        private final long count;
+        private final long latestTimestamp;
+        private final long oldestTimestamp;
+        private final boolean anyUnread;
+        private final boolean latestUnread;
+        private final boolean oldestUnread;
+
+        private PendingCount(MiruValue distinctValue,
+            int latestSlot,
+            int oldestSlot,
+            long count,
+            long latestTimestamp,
+            long oldestTimestamp,
+            boolean anyUnread,
+            boolean latestUnread,
+            boolean oldestUnread) {
+            this.distinctValue = distinctValue;
+            this.latestSlot = latestSlot;
+            this.oldestSlot = oldestSlot;
+            this.count = count;
+            this.latestTimestamp = latestTimestamp;
+            this.oldestTimestamp = oldestTimestamp;
+            this.anyUnread = anyUnread;
+            this.latestUnread = latestUnread;
+            this.oldestUnread = oldestUnread;
+        }
+    }
 }
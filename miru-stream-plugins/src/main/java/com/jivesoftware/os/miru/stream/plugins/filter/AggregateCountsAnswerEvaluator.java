@@ -43,4 +43,9 @@ public class AggregateCountsAnswerEvaluator implements MiruAnswerEvaluator<Aggre
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
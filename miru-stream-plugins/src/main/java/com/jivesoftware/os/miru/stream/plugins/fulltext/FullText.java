@@ -2,9 +2,7 @@ package com.jivesoftware.os.miru.stream.plugins.fulltext;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
@@ -13,26 +11,28 @@ import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruTermId;
 import com.jivesoftware.os.miru.api.field.MiruFieldType;
 import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
-import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.plugin.Miru;
 import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruIntIterator;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityInternExtern;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
-import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
+import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
 import com.jivesoftware.os.miru.plugin.solution.FieldAndTermId;
+import com.jivesoftware.os.miru.plugin.solution.MiruDeferredGather;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.stream.plugins.fulltext.FullTextAnswer.ActivityScore;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
 import org.apache.commons.lang.mutable.MutableInt;
+import org.apache.commons.lang.mutable.MutableLong;
 
 /**
  *
@@ -78,8 +78,10 @@ public class FullText {
         }
 
         List<ActivityScore> activityScores;
+        MutableLong pruned = new MutableLong();
         if (request.query.strategy == FullTextQuery.Strategy.TF_IDF) {
-            activityScores = collectTfIdf(name, bitmaps, requestContext, request, lastReport, answer, termCollector, gatherFieldDefinitions, stackBuffer);
+            activityScores = collectTfIdf(name, bitmaps, requestContext, request, lastReport, answer, termCollector, gatherFieldDefinitions, pruned,
+                stackBuffer);
         } else if (request.query.strategy == FullTextQuery.Strategy.TIME) {
             activityScores = collectTime(name, bitmaps, requestContext, request, lastReport, answer, gatherFieldDefinitions, stackBuffer);
         } else {
@@ -91,7 +93,7 @@ public class FullText {
         boolean resultsExhausted = request.query.strategy == FullTextQuery.Strategy.TIME
             && request.query.timeRange.smallestTimestamp > requestContext.getTimeIndex().getLargestTimestamp();
 
-        FullTextAnswer result = new FullTextAnswer(activityScores, found, resultsExhausted);
+        FullTextAnswer result = new FullTextAnswer(activityScores, found, pruned.longValue(), resultsExhausted);
         log.debug("result={}", result);
         return result;
     }
@@ -104,6 +106,7 @@ public class FullText {
         BM answer,
         Map<FieldAndTermId, MutableInt> termCollector,
         MiruFieldDefinition[] gatherFieldDefinitions,
+        MutableLong pruned,
         StackBuffer stackBuffer) throws Exception {
 
         MiruActivityInternExtern internExtern = miruProvider.getActivityInternExtern(request.tenantId);
@@ -115,14 +118,28 @@ public class FullText {
 
         List<ActivityScore> activityScores = Lists.newArrayListWithCapacity(request.query.desiredNumberOfResults);
 
-        Map<FieldAndTermId, Float> termMultipliers = Maps.newHashMapWithExpectedSize(termCollector.size());
+        List<ScoredTerm<BM>> scoredTerms = Lists.newArrayListWithCapacity(termCollector.size());
+        boolean boundsKnown = true;
         for (Map.Entry<FieldAndTermId, MutableInt> entry : termCollector.entrySet()) {
             FieldAndTermId fieldAndTermId = entry.getKey();
             MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldAndTermId.fieldId);
             long idf = primaryFieldIndex.getGlobalCardinality(fieldDefinition, fieldAndTermId.termId, stackBuffer);
             if (idf > 0) {
                 float multiplier = entry.getValue().floatValue() / (float) idf;
-                termMultipliers.put(fieldAndTermId, multiplier);
+                long maxTf = primaryFieldIndex.getMaxCardinality(fieldDefinition, fieldAndTermId.termId, stackBuffer);
+                boundsKnown &= maxTf >= 0;
+                scoredTerms.add(new ScoredTerm<>(fieldDefinition, fieldAndTermId.termId, multiplier, multiplier * (float) maxTf));
+            }
+        }
+
+        if (boundsKnown) {
+            // the term bitmaps tell us which terms can contribute to each id, so ids can be bounded without reading term frequencies
+            BitmapAndLastId<BM> container = new BitmapAndLastId<>();
+            for (ScoredTerm<BM> scoredTerm : scoredTerms) {
+                container.clear();
+                MiruInvertedIndex<BM, IBM> invertedIndex = primaryFieldIndex.get(name, scoredTerm.fieldDefinition.fieldId, scoredTerm.termId);
+                invertedIndex.getIndex(container, stackBuffer);
+                scoredTerm.bitmap = container.isSet() ? container.getBitmap() : bitmaps.create();
             }
         }
 
@@ -143,8 +160,8 @@ public class FullText {
             i++;
 
             if (i == batchSize) {
-                batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termMultipliers, scored, minScore, acceptableBelowMin, ids,
-                    gatherFieldDefinitions, stackBuffer);
+                batchTfIdf(name, bitmaps, requestContext, lastReport.isPresent(), internExtern, primaryFieldIndex, scoredTerms, boundsKnown, scored,
+                    desiredNumberOfResults, minScore, acceptableBelowMin, ids, pruned, stackBuffer);
                 i = 0;
             }
         }
@@ -152,68 +169,112 @@ public class FullText {
         if (i > 0) {
             int[] remainder = new int[i];
             System.arraycopy(ids, 0, remainder, 0, i);
-            batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termMultipliers, scored, minScore, acceptableBelowMin, remainder,
-                gatherFieldDefinitions, stackBuffer);
+            batchTfIdf(name, bitmaps, requestContext, lastReport.isPresent(), internExtern, primaryFieldIndex, scoredTerms, boundsKnown, scored,
+                desiredNumberOfResults, minScore, acceptableBelowMin, remainder, pruned, stackBuffer);
         }
 
-        Iterables.addAll(activityScores, Iterables.transform(scored, (RawBitScore input) -> {
-            try {
-                TimestampedValues timestampedValues = input.values.get();
-                return new ActivityScore(timestampedValues.values, timestampedValues.timestamp, input.score);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }));
+        if (pruned.longValue() > 0) {
+            log.inc("tfidf>pruned", pruned.longValue());
+        }
+
+        MiruDeferredGather deferredGather = new MiruDeferredGather(name, gatherFieldDefinitions, true);
+        List<RawBitScore> rawBitScores = Lists.newArrayList(scored);
+        int[] slots = new int[rawBitScores.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = deferredGather.add(rawBitScores.get(i).id);
+        }
+        deferredGather.gather(requestContext, stackBuffer);
+        for (int i = 0; i < slots.length; i++) {
+            TimeVersionRealtime tvr = deferredGather.getTimeVersionRealtime(slots[i]);
+            activityScores.add(new ActivityScore(deferredGather.getValues(slots[i]), tvr.timestamp, rawBitScores.get(i).score));
+        }
         Collections.sort(activityScores);
 
         return activityScores;
     }
 
+    /**
+     * Scores a batch of ids, first pruning any id whose score is bounded by the per-term max term frequencies below what it
+     * would take to be collected. Term frequencies are only read for the surviving ids that contain each term.
+     */
     private <BM extends IBM, IBM> void batchTfIdf(String name,
+        MiruBitmaps<BM, IBM> bitmaps,
         MiruRequestContext<BM, IBM, ?> requestContext,
-        MiruRequest<FullTextQuery> request,
+        boolean hasLastReport,
         MiruActivityInternExtern internExtern,
         MiruFieldIndex<BM, IBM> primaryFieldIndex,
-        Map<FieldAndTermId, Float> termMultipliers,
+        List<ScoredTerm<BM>> scoredTerms,
+        boolean boundsKnown,
         MinMaxPriorityQueue<RawBitScore> scored,
+        int desiredNumberOfResults,
         float minScore,
         MutableInt acceptableBelowMin,
         int[] ids,
-        MiruFieldDefinition[] gatherFieldDefinitions,
+        MutableLong pruned,
         StackBuffer stackBuffer) throws Exception {
 
-        MiruSchema schema = requestContext.getSchema();
+        // ids below the min score are collected while acceptableBelowMin lasts, so we can only prune once it runs out
+        boolean prunable = boundsKnown && (!hasLastReport || acceptableBelowMin.intValue() <= 0);
+        boolean heapFull = scored.size() >= desiredNumberOfResults;
+        if (prunable && (hasLastReport || heapFull)) {
+            float heapMin = heapFull ? scored.peekLast().score : -Float.MAX_VALUE;
+            int survivors = 0;
+            for (int i = 0; i < ids.length; i++) {
+                float bound = 0f;
+                for (ScoredTerm<BM> scoredTerm : scoredTerms) {
+                    if (bitmaps.isSet(scoredTerm.bitmap, ids[i])) {
+                        bound += scoredTerm.upperBound;
+                    }
+                }
+                // ties are kept since a later id wins a tied score
+                if ((!hasLastReport || bound > minScore) && bound >= heapMin) {
+                    ids[survivors] = ids[i];
+                    survivors++;
+                }
+            }
+            if (survivors < ids.length) {
+                pruned.add(ids.length - survivors);
+                if (survivors == 0) {
+                    return;
+                }
+                ids = Arrays.copyOf(ids, survivors);
+            }
+        }
 
         float[] scores = new float[ids.length];
-        for (Map.Entry<FieldAndTermId, Float> entry : termMultipliers.entrySet()) {
-            FieldAndTermId fieldAndTermId = entry.getKey();
-            float multiplier = entry.getValue();
+        int[] containingIds = boundsKnown ? new int[ids.length] : null;
+        int[] termIndexes = boundsKnown ? new int[ids.length] : null;
+        for (ScoredTerm<BM> scoredTerm : scoredTerms) {
+            int[] tfIds = ids;
+            int count = ids.length;
+            if (boundsKnown) {
+                count = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    if (bitmaps.isSet(scoredTerm.bitmap, ids[i])) {
+                        containingIds[count] = ids[i];
+                        termIndexes[count] = i;
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    continue;
+                }
+                tfIds = Arrays.copyOf(containingIds, count);
+            }
 
-            MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldAndTermId.fieldId);
-            long[] tf = primaryFieldIndex.getCardinalities(fieldDefinition, fieldAndTermId.termId, ids, stackBuffer);
+            long[] tf = primaryFieldIndex.getCardinalities(scoredTerm.fieldDefinition, scoredTerm.termId, tfIds, stackBuffer);
             for (int i = 0; i < tf.length; i++) {
                 if (tf[i] > 0) {
-                    scores[i] += multiplier * (float) tf[i];
+                    scores[boundsKnown ? termIndexes[i] : i] += scoredTerm.multiplier * (float) tf[i];
                 }
             }
         }
 
         for (int i = 0; i < ids.length; i++) {
-            int _i = i;
             if (scores[i] > minScore) {
-                RawBitScore bitScore = new RawBitScore(new Promise<>(() -> {
-                    //TODO formalize gathering of fields/terms
-                    TimeVersionRealtime tvr = requestContext.getActivityIndex().getTimeVersionRealtime(name, ids[_i], stackBuffer);
-                    return new TimestampedValues(tvr.timestamp, gatherValues(name, requestContext, ids[_i], gatherFieldDefinitions, stackBuffer));
-                }), ids[i], scores[i]);
-                scored.add(bitScore);
+                scored.add(new RawBitScore(ids[i], scores[i]));
             } else if (acceptableBelowMin.intValue() > 0) {
-                RawBitScore bitScore = new RawBitScore(new Promise<>(() -> {
-                    //TODO formalize gathering of fields/terms
-                    TimeVersionRealtime tvr = requestContext.getActivityIndex().getTimeVersionRealtime(name, ids[_i], stackBuffer);
-                    return new TimestampedValues(tvr.timestamp, gatherValues(name, requestContext, ids[_i], gatherFieldDefinitions, stackBuffer));
-                }), ids[i], scores[i]);
-                scored.add(bitScore);
+                scored.add(new RawBitScore(ids[i], scores[i]));
                 acceptableBelowMin.decrement();
             }
         }
@@ -232,61 +293,48 @@ public class FullText {
         int collectedResults = lastReport.isPresent() ? lastReport.get().scoredActivities : 0;
 
         List<ActivityScore> activityScores = Lists.newArrayListWithCapacity(request.query.desiredNumberOfResults);
+        MiruDeferredGather deferredGather = new MiruDeferredGather(name, gatherFieldDefinitions, true);
+        int[] slots = new int[Math.max(desiredNumberOfResults - collectedResults, 0)];
+        int count = 0;
         MiruIntIterator iter = bitmaps.descendingIntIterator(answer);
-        while (iter.hasNext()) {
-            int lastSetBit = iter.next();
-            //TODO formalize gathering of fields/terms
-            TimeVersionRealtime tvr = requestContext.getActivityIndex().getTimeVersionRealtime(name, lastSetBit, stackBuffer);
-            MiruValue[][] values = gatherValues(name, requestContext, lastSetBit, gatherFieldDefinitions, stackBuffer);
+        while (iter.hasNext() && count < slots.length) {
+            slots[count] = deferredGather.add(iter.next());
+            count++;
+        }
+
+        deferredGather.gather(requestContext, stackBuffer);
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            TimeVersionRealtime tvr = deferredGather.getTimeVersionRealtime(slot);
             float score = 0f; //TODO ?
-            ActivityScore activityScore = new ActivityScore(values, tvr.timestamp, score);
-            activityScores.add(activityScore);
-            collectedResults++;
-            if (collectedResults >= desiredNumberOfResults) {
-                break;
-            }
+            activityScores.add(new ActivityScore(deferredGather.getValues(slot), tvr.timestamp, score));
         }
 
         return activityScores;
     }
 
-    private <BM extends IBM, IBM> MiruValue[][] gatherValues(String name,
-        MiruRequestContext<BM, IBM, ?> requestContext,
-        int index,
-        MiruFieldDefinition[] gatherFieldDefinitions,
-        StackBuffer stackBuffer) throws Exception {
+    private static class ScoredTerm<BM> {
 
-        MiruTermComposer termComposer = requestContext.getTermComposer();
-        MiruSchema schema = requestContext.getSchema();
+        private final MiruFieldDefinition fieldDefinition;
+        private final MiruTermId termId;
+        private final float multiplier;
+        private final float upperBound;
+        private BM bitmap;
 
-        //TODO much more efficient to accumulate indexes and gather these once at the end
-        MiruValue[][] gatherValues = new MiruValue[gatherFieldDefinitions.length][];
-        for (int i = 0; i < gatherFieldDefinitions.length; i++) {
-            MiruTermId[] termIds = requestContext.getActivityIndex().get(name, index, gatherFieldDefinitions[i], stackBuffer);
-            if (termIds != null) {
-                MiruValue[] gather = new MiruValue[termIds.length];
-                for (int j = 0; j < gather.length; j++) {
-                    gather[j] = new MiruValue(termComposer.decompose(schema,
-                        gatherFieldDefinitions[i],
-                        stackBuffer,
-                        termIds[j]));
-                }
-                gatherValues[i] = gather;
-            }
+        private ScoredTerm(MiruFieldDefinition fieldDefinition, MiruTermId termId, float multiplier, float upperBound) {
+            this.fieldDefinition = fieldDefinition;
+            this.termId = termId;
+            this.multiplier = multiplier;
+            this.upperBound = upperBound;
         }
-        //TODO much more efficient to accumulate indexes and gather these once at the end
-
-        return gatherValues;
     }
 
     private static class RawBitScore implements Comparable<RawBitScore> {
 
-        private final Promise<TimestampedValues> values;
         private final int id;
         private final float score;
 
-        public RawBitScore(Promise<TimestampedValues> values, int id, float score) {
-            this.values = values;
+        public RawBitScore(int id, float score) {
             this.id = id;
             this.score = score;
         }
@@ -302,33 +350,4 @@ public class FullText {
             return -Integer.compare(id, o.id);
         }
     }
-
-    private static final class TimestampedValues {
-        private final long timestamp;
-        private final MiruValue[][] values;
-
-        public TimestampedValues(long timestamp, MiruValue[][] values) {
-            this.timestamp = timestamp;
-            this.values = values;
-        }
-    }
-
-    private static class Promise<V> {
-
-        private final Callable<V> callable;
-        private boolean empty = true;
-        private V value;
-
-        public Promise(Callable<V> callable) {
-            this.callable = callable;
-        }
-
-        public V get() throws Exception {
-            if (empty) {
-                value = callable.call();
-                empty = false;
-            }
-            return value;
-        }
-    }
 }
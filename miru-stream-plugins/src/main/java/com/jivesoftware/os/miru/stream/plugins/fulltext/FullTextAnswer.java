@@ -11,19 +11,22 @@ import java.util.List;
 /** @author jonathan */
 public class FullTextAnswer implements Serializable {
 
-    public static final FullTextAnswer EMPTY_RESULTS = new FullTextAnswer(ImmutableList.<ActivityScore>of(), 0, true);
+    public static final FullTextAnswer EMPTY_RESULTS = new FullTextAnswer(ImmutableList.<ActivityScore>of(), 0, 0, true);
 
     public final List<ActivityScore> results;
     public final long found;
+    public final long pruned;
     public final boolean resultsExhausted;
 
     @JsonCreator
     public FullTextAnswer(
         @JsonProperty("results") List<ActivityScore> results,
         @JsonProperty("found") long found,
+        @JsonProperty("pruned") long pruned,
         @JsonProperty("resultsExhausted") boolean resultsExhausted) {
         this.results = results;
         this.found = found;
+        this.pruned = pruned;
         this.resultsExhausted = resultsExhausted;
     }
 
@@ -32,6 +35,7 @@ public class FullTextAnswer implements Serializable {
         return "FullTextAnswer{" +
             "results=" + results +
             ", found=" + found +
+            ", pruned=" + pruned +
             ", resultsExhausted=" + resultsExhausted +
             '}';
     }
@@ -38,4 +38,9 @@ public class FullTextAnswerEvaluator implements MiruAnswerEvaluator<FullTextAnsw
     public boolean useParallelSolver() {
         return true; //(query.strategy == FullTextQuery.Strategy.TF_IDF);
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -64,7 +64,8 @@ public class FullTextAnswerMerger implements MiruAnswerMerger<FullTextAnswer> {
             }
         }
 
-        return new FullTextAnswer(ImmutableList.copyOf(mergedResults), lastAnswer.found + currentAnswer.found, currentAnswer.resultsExhausted);
+        return new FullTextAnswer(ImmutableList.copyOf(mergedResults), lastAnswer.found + currentAnswer.found, lastAnswer.pruned + currentAnswer.pruned,
+            currentAnswer.resultsExhausted);
     }
 
     @Override
@@ -138,7 +138,8 @@ public class FullTextCustomQuestion implements Question<FullTextQuery, FullTextA
             report = Optional.of(new FullTextReport(
                 answer.get().results.size(),
                 lowestScore,
-                highestScore));
+                highestScore,
+                answer.get().pruned));
         }
         return report;
     }
@@ -12,14 +12,17 @@ public class FullTextReport implements Serializable {
     public final int scoredActivities;
     public final float lowestScore;
     public final float highestScore;
+    public final long prunedActivities;
 
     public FullTextReport(
         @JsonProperty("scoredActivities") int scoredActivities,
         @JsonProperty("lowestScore") float lowestScore,
-        @JsonProperty("highestScore") float highestScore) {
+        @JsonProperty("highestScore") float highestScore,
+        @JsonProperty("prunedActivities") long prunedActivities) {
         this.scoredActivities = scoredActivities;
         this.lowestScore = lowestScore;
         this.highestScore = highestScore;
+        this.prunedActivities = prunedActivities;
     }
 
     @Override
@@ -28,6 +31,7 @@ public class FullTextReport implements Serializable {
             "scoredActivities=" + scoredActivities +
             ", lowestScore=" + lowestScore +
             ", highestScore=" + highestScore +
+            ", prunedActivities=" + prunedActivities +
             '}';
     }
 }
@@ -149,6 +149,7 @@ public class Strut {
             int[][][] counts = new int[modelIds.length][numeratorsCount][catwalkFeatures.length];
             @SuppressWarnings("unchecked")
             List<MiruTermId[]>[][] featuredTermIds = new List[modelIds.length][catwalkFeatures.length];
+            StrutModelScore modelScore = new StrutModelScore();
             aggregateUtil.gatherFeatures(name,
                 coord,
                 bitmaps,
@@ -199,18 +200,17 @@ public class Strut {
                         } else if (model != null && cursorIds[modelIndex] <= answerScoredLastId) {
 
                             featureCount[0]++;
-                            StrutModelScore modelScore = model.score(featureId, termIds);
-                            if (modelScore != null) {
-                                float[] s = new float[modelScore.numerators.length];
+                            if (model.score(featureId, termIds, modelScore)) {
+                                float[] s = new float[modelScore.length()];
                                 for (int i = 0; i < s.length; i++) {
-                                    s[i] = (float) modelScore.numerators[i] / modelScore.denominator;
+                                    s[i] = (float) modelScore.numerator(i) / modelScore.denominator();
                                     if (s[i] > 1.0f) {
                                         LOG.warn("Encountered score {} > 1.0 for answerTermId:{} numerator[{}]:{} denominator:{} featureId:{} termIds:{}",
-                                            s, answerTermId, i, modelScore.numerators[i], modelScore.denominator, featureId, Arrays.toString(termIds));
+                                            s, answerTermId, i, modelScore.numerator(i), modelScore.denominator(), featureId, Arrays.toString(termIds));
                                         s[i] = 1.0f;
                                     } else if (Float.isNaN(s[i])) {
                                         LOG.warn("Encountered score NaN for answerTermId:{} numerator[{}]:{} denominator:{} featureId:{} termIds:{}",
-                                            answerTermId, i, modelScore.numerators[i], modelScore.denominator, featureId, Arrays.toString(termIds));
+                                            answerTermId, i, modelScore.numerator(i), modelScore.denominator(), featureId, Arrays.toString(termIds));
                                         s[i] = 0f;
                                     }
                                     scores[modelIndex][i][featureId] = score(scores[modelIndex][i][featureId], s[i], featureScalars[featureId],
@@ -316,18 +316,17 @@ public class Strut {
 
                     } else {
                         featureCount[0]++;
-                        StrutModelScore modelScore = model.score(featureId, termIds);
-                        if (modelScore != null) {
-                            float[] s = new float[modelScore.numerators.length];
+                        if (model.score(featureId, termIds, modelScore)) {
+                            float[] s = new float[modelScore.length()];
                             for (int i = 0; i < s.length; i++) {
-                                s[i] = (float) modelScore.numerators[i] / modelScore.denominator;
+                                s[i] = (float) modelScore.numerator(i) / modelScore.denominator();
                                 if (s[i] > 1.0f) {
                                     LOG.warn("Encountered score {} > 1.0 for answerTermId:{} numerator[{}]:{} denominator:{} featureId:{} termIds:{}",
-                                        s, answerTermId, i, modelScore.numerators[i], modelScore.denominator, featureId, Arrays.toString(termIds));
+                                        s, answerTermId, i, modelScore.numerator(i), modelScore.denominator(), featureId, Arrays.toString(termIds));
                                     s[i] = 1.0f;
                                 } else if (Float.isNaN(s[i])) {
                                     LOG.warn("Encountered score NaN for answerTermId:{} numerator[{}]:{} denominator:{} featureId:{} termIds:{}",
-                                        answerTermId, i, modelScore.numerators[i], modelScore.denominator, featureId, Arrays.toString(termIds));
+                                        answerTermId, i, modelScore.numerator(i), modelScore.denominator(), featureId, Arrays.toString(termIds));
                                     s[i] = 0f;
                                 }
                             }
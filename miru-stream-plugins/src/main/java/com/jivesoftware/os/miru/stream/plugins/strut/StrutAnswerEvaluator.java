@@ -30,4 +30,9 @@ public class StrutAnswerEvaluator implements MiruAnswerEvaluator<StrutAnswer> {
     public boolean useParallelSolver() {
         return parallelSolverEnabled;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -19,8 +19,14 @@ public interface StrutConfig extends Config {
     @LongDefault(60 * 60 * 1_000L)
     long getModelCacheExpirationInMillis();
 
-    @LongDefault(1024)
-    long getModelCacheMaxSize();
+    @LongDefault(512 * 1024 * 1024L)
+    long getModelCacheMaxWeightInBytes();
+
+    @LongDefault(15 * 60 * 1_000L)
+    long getModelCacheRefreshAfterMillis();
+
+    @IntDefault(4)
+    int getModelCacheRefreshThreadPoolSize();
 
     @IntDefault(24)
     int getAsyncThreadPoolSize();
@@ -9,8 +9,6 @@ import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery;
 import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery.CatwalkFeature;
 import com.jivesoftware.os.miru.catwalk.shared.FeatureScore;
 import com.jivesoftware.os.miru.catwalk.shared.StrutModel;
-import com.jivesoftware.os.miru.catwalk.shared.StrutModelKey;
-import com.jivesoftware.os.miru.catwalk.shared.StrutModelScore;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.routing.bird.http.client.HttpResponse;
@@ -23,14 +21,17 @@ import com.jivesoftware.os.routing.bird.shared.ClientCall.ClientResponse;
 import com.jivesoftware.os.routing.bird.shared.NextClientStrategy;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.xerial.snappy.SnappyInputStream;
 
 /**
+ * Caches decoded models, weighed by their size in bytes, so that a hit never pays to decode a model. A hit on a model older
+ * than the refresh interval also fetches a fresh copy in the background, which replaces the cached model once it is decoded.
+ *
  * @author jonathan.colt
  */
 public class StrutModelCache {
@@ -44,7 +45,9 @@ public class StrutModelCache {
     private final long tasInitialSLAMillis;
     private final ObjectMapper requestMapper;
     private final HttpResponseMapper responseMapper;
-    private final Cache<String, byte[]> modelCache;
+    private final Cache<String, CachedModel> modelCache;
+    private final ExecutorService refreshExecutor;
+    private final long refreshAfterMillis;
 
     private final Map<MiruTenantId, NextClientStrategy> tenantNextClientStrategy = Maps.newConcurrentMap();
 
@@ -55,7 +58,9 @@ public class StrutModelCache {
         long tasInitialSLAMillis,
         ObjectMapper requestMapper,
         HttpResponseMapper responseMapper,
-        Cache<String, byte[]> modelCache) {
+        Cache<String, CachedModel> modelCache,
+        ExecutorService refreshExecutor,
+        long refreshAfterMillis) {
 
         this.catwalkClient = catwalkClient;
         this.tasExecutors = tasExecutors;
@@ -65,6 +70,24 @@ public class StrutModelCache {
         this.requestMapper = requestMapper;
         this.responseMapper = responseMapper;
         this.modelCache = modelCache;
+        this.refreshExecutor = refreshExecutor;
+        this.refreshAfterMillis = refreshAfterMillis;
+    }
+
+    public static class CachedModel {
+
+        private final StrutModel model;
+        private final long timestamp;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedModel(StrutModel model, long timestamp) {
+            this.model = model;
+            this.timestamp = timestamp;
+        }
+
+        public static int weigh(String key, CachedModel cachedModel) {
+            return (int) Math.min(Integer.MAX_VALUE, 2L * key.length() + cachedModel.model.sizeInBytes());
+        }
     }
 
     private static class ModelNotAvailable extends RuntimeException {
@@ -88,23 +111,13 @@ public class StrutModelCache {
             return convert(catwalkQuery, fetchModel(nextClientStrategy, catwalkQuery, key, partitionId));
         }
 
-        StrutModel model = null;
-        byte[] modelBytes = modelCache.getIfPresent(key);
-        if (modelBytes != null) {
-            SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
-            CatwalkModel catwalkModel = requestMapper.readValue(in, CatwalkModel.class);
-            model = convert(catwalkQuery, catwalkModel);
-        }
-
-        if (model == null) {
+        CachedModel cached = modelCache.getIfPresent(key);
+        if (cached == null) {
             try {
-                modelBytes = modelCache.get(key, () -> {
-                    return fetchModelBytes(nextClientStrategy, catwalkQuery, key, partitionId);
+                cached = modelCache.get(key, () -> {
+                    byte[] modelBytes = fetchModelBytes(nextClientStrategy, catwalkQuery, key, partitionId);
+                    return new CachedModel(convert(catwalkQuery, readModel(modelBytes)), System.currentTimeMillis());
                 });
-
-                SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
-                CatwalkModel catwalkModel = requestMapper.readValue(in, CatwalkModel.class);
-                model = convert(catwalkQuery, catwalkModel);
             } catch (ExecutionException ee) {
                 if (ee.getCause() instanceof ModelNotAvailable) {
                     LOG.info(ee.getCause().getMessage());
@@ -114,40 +127,61 @@ public class StrutModelCache {
                 throw ee;
             }
 
-            if (model.model == null) {
-                LOG.info("Discarded null model for tenantId:{} partitionId:{} catwalkId:{} modelId:{}", tenantId, partitionId, catwalkId, modelId);
-                LOG.inc("strut>model>cache>discard");
+            if (cached.model.isEmpty()) {
+                LOG.info("Discarded empty model for tenantId:{} partitionId:{} catwalkId:{} modelId:{}", tenantId, partitionId, catwalkId, modelId);
+                LOG.inc("strut>model>cache>empty");
                 modelCache.invalidate(key);
                 return null;
             } else {
-                boolean empty = true;
-                for (Map<StrutModelKey, StrutModelScore> featureModel : model.model) {
-                    if (!featureModel.isEmpty()) {
-                        empty = false;
-                        break;
-                    }
-                }
-                if (empty) {
-                    LOG.info("Discarded empty model for tenantId:{} partitionId:{} catwalkId:{} modelId:{}", tenantId, partitionId, catwalkId, modelId);
-                    LOG.inc("strut>model>cache>empty");
-                    modelCache.invalidate(key);
-                    return null;
-                } else {
-                    LOG.inc("strut>model>cache>miss");
-                }
+                LOG.inc("strut>model>cache>miss");
             }
         } else {
             LOG.inc("strut>model>cache>hit");
+            refreshAhead(cached, nextClientStrategy, catwalkQuery, key, partitionId);
             String json = requestMapper.writeValueAsString(catwalkQuery);
             catwalkClient.call("",
                 nextClientStrategy,
                 "strutModelCacheUpdate",
                 (c) -> new ClientCall.ClientResponse<>(c.postJson("/miru/catwalk/model/update/" + key + "/" + partitionId, json, null), true));
         }
-        return model;
+        return cached.model;
 
     }
 
+    private void refreshAhead(CachedModel cached, NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) {
+        if (refreshExecutor == null
+            || System.currentTimeMillis() - cached.timestamp < refreshAfterMillis
+            || !cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        refreshExecutor.submit(() -> {
+            try {
+                byte[] modelBytes = fetchModelBytes(nextClientStrategy, catwalkQuery, key, partitionId);
+                StrutModel model = convert(catwalkQuery, readModel(modelBytes));
+                if (!model.isEmpty()) {
+                    modelCache.put(key, new CachedModel(model, System.currentTimeMillis()));
+                    LOG.inc("strut>model>cache>refresh");
+                    return;
+                }
+                LOG.inc("strut>model>cache>refresh>empty");
+            } catch (ModelNotAvailable e) {
+                LOG.info(e.getMessage());
+                LOG.inc("strut>model>cache>refresh>unavailable");
+            } catch (Exception e) {
+                LOG.warn("Failed to refresh model for key:{} partitionId:{}", new Object[] { key, partitionId }, e);
+                LOG.inc("strut>model>cache>refresh>failure");
+            }
+            // keep serving the cached model and try again on a later hit
+            cached.refreshing.set(false);
+        });
+    }
+
+    private CatwalkModel readModel(byte[] modelBytes) throws Exception {
+        SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
+        return requestMapper.readValue(in, CatwalkModel.class);
+    }
+
     private byte[] fetchModelBytes(NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) throws Exception {
 
         String json = requestMapper.writeValueAsString(catwalkQuery);
@@ -193,23 +227,18 @@ public class StrutModelCache {
     private StrutModel convert(CatwalkQuery catwalkQuery, CatwalkModel model) {
 
         CatwalkFeature[] features = catwalkQuery.definition.features;
-        @SuppressWarnings("unchecked")
-        Map<StrutModelKey, StrutModelScore>[] modelFeatureScore = new Map[features.length];
-        for (int i = 0; i < modelFeatureScore.length; i++) {
-            modelFeatureScore[i] = new HashMap<>();
-        }
+        StrutModel.Builder builder = new StrutModel.Builder(features.length);
         for (int i = 0; i < features.length; i++) {
             if (model != null && model.featureScores != null && model.featureScores[i] != null) {
                 List<FeatureScore> featureScores = model.featureScores[i];
                 for (FeatureScore featureScore : featureScores) {
                     // magical deflation
                     long denominator = (featureScore.denominator * model.totalNumPartitions[i]) / featureScore.numPartitions;
-                    modelFeatureScore[i].put(new StrutModelKey(featureScore.termIds), new StrutModelScore(featureScore.numerators, denominator));
+                    builder.add(i, featureScore.termIds, featureScore.numerators, denominator);
                 }
             }
         }
-        return new StrutModel(modelFeatureScore,
-            model != null ? model.modelCounts : new long[features.length],
+        return builder.build(model != null ? model.modelCounts : new long[features.length],
             model != null ? model.totalCount : 0,
             model != null ? model.numberOfModels : new int[features.length],
             model != null ? model.totalNumPartitions : new int[features.length]
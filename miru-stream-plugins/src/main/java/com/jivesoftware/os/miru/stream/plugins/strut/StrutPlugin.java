@@ -95,19 +95,25 @@ public class StrutPlugin implements MiruPlugin<StrutEndpoints, StrutInjectable>,
 
         HttpResponseMapper responseMapper = new HttpResponseMapper(mapper);
 
-        Cache<String, byte[]> modelCache = null;
+        Cache<String, StrutModelCache.CachedModel> modelCache = null;
+        ExecutorService modelRefreshExecutor = null;
         if (config.getModelCacheEnabled()) {
             modelCache = CacheBuilder
                 .newBuilder()
                 .expireAfterWrite(config.getModelCacheExpirationInMillis(), TimeUnit.MILLISECONDS)
                 .softValues()
-                .maximumSize(config.getModelCacheMaxSize())
+                .maximumWeight(config.getModelCacheMaxWeightInBytes())
+                .weigher(StrutModelCache.CachedModel::weigh)
                 .build();
+            if (config.getModelCacheRefreshAfterMillis() > 0) {
+                modelRefreshExecutor = miruProvider.allocateThreadPool("strut-model-refresh", config.getModelCacheRefreshThreadPoolSize());
+            }
         }
 
         ExecutorService stas = miruProvider.allocateThreadPool("strut-tas", 1024);
 
-        StrutModelCache cache = new StrutModelCache(catwalkHttpClient, stas, 100, 95, 1000, mapper, responseMapper, modelCache);
+        StrutModelCache cache = new StrutModelCache(catwalkHttpClient, stas, 100, 95, 1000, mapper, responseMapper, modelCache,
+            modelRefreshExecutor, config.getModelCacheRefreshAfterMillis());
 
         ScheduledExecutorService asyncExecutorService = Executors.newScheduledThreadPool(config.getAsyncThreadPoolSize(),
             new ThreadFactoryBuilder().setNameFormat("strut-async-%d").build());
@@ -19,6 +19,7 @@ import com.jivesoftware.os.miru.api.field.MiruFieldType;
 import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
 import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
 import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
 import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery;
 import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery.CatwalkDefinition;
 import com.jivesoftware.os.miru.catwalk.shared.HotOrNot;
@@ -31,11 +32,12 @@ import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.TimestampedCacheKeyValues;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
-import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
+import com.jivesoftware.os.miru.plugin.index.IdAndTermIdStream;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruDeferredGather;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
@@ -222,8 +224,7 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
         long start = System.currentTimeMillis();
         List<TermIdLastIdCount> termIdLastIdCounts = Lists.newArrayList();
         Optional<BM> counter = request.query.countUnread ? unreadIndex.transform(input -> bitmaps.and(Arrays.asList(input, eligible))) : Optional.absent();
-        aggregateUtil.gather("strut",
-            bitmaps,
+        gather(bitmaps,
             context,
             eligible,
             pivotFieldId,
@@ -346,7 +347,6 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
             }
         }
 
-        MiruActivityIndex activityIndex = context.getActivityIndex();
         MiruFieldDefinition pivotFieldDefinition = schema.getFieldDefinition(pivotFieldId);
         List<HotOrNot> hotOrNots = new ArrayList<>(request.query.desiredNumberOfResults);
 
@@ -360,8 +360,7 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
 
             List<TermIdLastIdCount> nils = Lists.newArrayList();
             BM nilCandidates = nilMask == null ? candidates : bitmaps.and(Arrays.asList(candidates, nilMask));
-            aggregateUtil.gather("strut",
-                bitmaps,
+            gather(bitmaps,
                 context,
                 nilCandidates,
                 pivotFieldId,
@@ -401,40 +400,16 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
             LOG.inc("strut>nilGather>skip");
         }
 
-        int[] scoredLastIds = new int[s.length];
-        for (int j = 0; j < s.length; j++) {
-            scoredLastIds[j] = s[j].lastId;
-        }
-
         long gatherStart = System.currentTimeMillis();
-        MiruValue[][][] gatherScoredValues = null;
-        if (gatherFieldDefinitions != null) {
-            gatherScoredValues = new MiruValue[scoredLastIds.length][gatherFieldDefinitions.length][];
-            int[] consumeLastIds = new int[scoredLastIds.length];
-            for (int j = 0; j < gatherFieldDefinitions.length; j++) {
-                System.arraycopy(scoredLastIds, 0, consumeLastIds, 0, scoredLastIds.length);
-                MiruTermId[][] termIds = activityIndex.getAll("strut", consumeLastIds, gatherFieldDefinitions[j], stackBuffer);
-                for (int k = 0; k < termIds.length; k++) {
-                    if (termIds[k] != null) {
-                        gatherScoredValues[k][j] = new MiruValue[termIds[k].length];
-                        for (int l = 0; l < termIds[k].length; l++) {
-                            gatherScoredValues[k][j][l] = new MiruValue(termComposer.decompose(schema,
-                                gatherFieldDefinitions[j],
-                                stackBuffer,
-                                termIds[k][l]));
-                        }
-                    }
-                }
-            }
+        MiruDeferredGather deferredGather = new MiruDeferredGather("strut",
+            gatherFieldDefinitions != null ? gatherFieldDefinitions : new MiruFieldDefinition[0],
+            true);
+        for (Scored scored1 : s) {
+            deferredGather.add(scored1.lastId);
         }
+        deferredGather.gather(context, stackBuffer);
         long totalTimeGather = System.currentTimeMillis() - gatherStart;
 
-        long timeAndVersionStart = System.currentTimeMillis();
-        int[] consumeLastIds = new int[scoredLastIds.length];
-        System.arraycopy(scoredLastIds, 0, consumeLastIds, 0, scoredLastIds.length);
-        TimeVersionRealtime[] timeVersionRealtimes = activityIndex.getAllTimeVersionRealtime("strut", consumeLastIds, stackBuffer);
-        long totalTimeAndVersion = System.currentTimeMillis() - timeAndVersionStart;
-
         AtomicInteger modelTotalPartitionCount = new AtomicInteger();
         if (request.query.includeFeatures) {
             StrutModelScalar modelScalar = request.query.modelScalars.get(0);
@@ -475,17 +450,20 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
         }
 
         for (int j = 0; j < s.length; j++) {
-            if (timeVersionRealtimes[j] != null) {
+            // rescoring may reorder the scored terms, so look up their gathered results by id
+            int slot = deferredGather.getSlot(s[j].lastId);
+            TimeVersionRealtime timeVersionRealtime = slot == -1 ? null : deferredGather.getTimeVersionRealtime(slot);
+            if (timeVersionRealtime != null) {
                 String[] decomposed = termComposer.decompose(schema, pivotFieldDefinition, stackBuffer, s[j].term);
                 hotOrNots.add(new HotOrNot(new MiruValue(decomposed),
-                    gatherScoredValues != null ? gatherScoredValues[j] : null,
+                    gatherFieldDefinitions != null ? deferredGather.getValues(slot) : null,
                     s[j].scaledScore,
                     s[j].features,
-                    timeVersionRealtimes[j].timestamp,
+                    timeVersionRealtime.timestamp,
                     unreadIndex.isPresent() && bitmaps.isSet(unreadIndex.get(), s[j].lastId),
                     s[j].count));
             } else {
-                LOG.warn("Failed to get timestamp for {}", scoredLastIds[j]);
+                LOG.warn("Failed to get timestamp for {}", s[j].lastId);
             }
         }
 
@@ -497,14 +475,12 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
                 + " cached {} ms,"
                 + " rescore {} ms,"
                 + " gather {} ms,"
-                + " timeAndVersion {} ms,"
                 + " total {} ms",
             termIdLastIdCounts.size(),
             totalTimeFetchingLastId,
             totalTimeFetchingScores,
             totalTimeRescores,
             totalTimeGather,
-            totalTimeAndVersion,
             elapsed);
 
         solutionLog.log(MiruSolutionLogLevel.INFO, "Strut found {} terms", hotOrNots.size());
@@ -512,6 +488,26 @@ public class StrutQuestion implements Question<StrutQuery, StrutAnswer, StrutRep
         return new MiruPartitionResponse<>(strut.composeAnswer(context, request, hotOrNots, modelTotalPartitionCount.get()), solutionLog.asList());
     }
 
+    private <BM extends IBM, IBM, S extends MiruSipCursor<S>> void gather(MiruBitmaps<BM, IBM> bitmaps,
+        MiruRequestContext<BM, IBM, S> context,
+        BM answer,
+        int pivotFieldId,
+        int batchSize,
+        boolean descending,
+        boolean includeCounts,
+        Optional<BM> counter,
+        MiruSolutionLog solutionLog,
+        IdAndTermIdStream idAndTermIdStream,
+        StackBuffer stackBuffer) throws Exception {
+        if (gatherParallel) {
+            aggregateUtil.gatherParallel("strut", bitmaps, context, answer, pivotFieldId, batchSize, descending, includeCounts, counter, solutionLog,
+                gatherExecutorService, idAndTermIdStream, stackBuffer);
+        } else {
+            aggregateUtil.gather("strut", bitmaps, context, answer, pivotFieldId, batchSize, descending, includeCounts, counter, solutionLog,
+                idAndTermIdStream, stackBuffer);
+        }
+    }
+
     @Override
     public MiruPartitionResponse<StrutAnswer> askRemote(MiruHost host,
         MiruPartitionId partitionId,
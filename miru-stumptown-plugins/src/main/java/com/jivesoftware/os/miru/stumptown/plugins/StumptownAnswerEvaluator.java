@@ -24,4 +24,9 @@ public class StumptownAnswerEvaluator implements MiruAnswerEvaluator<StumptownAn
     public boolean useParallelSolver() {
         return false;
     }
+
+    @Override
+    public boolean mergeInCompletionOrder() {
+        return false;
+    }
 }
@@ -119,14 +119,16 @@ public class StumptownQuestion implements Question<StumptownQuery, StumptownAnsw
             throw new RuntimeException("Time range is insufficient to be divided into " + request.query.divideTimeRangeIntoNSegments + " segments");
         }
 
-        int[] indexes = new int[request.query.divideTimeRangeIntoNSegments + 1];
+        long[] boundaries = new long[request.query.divideTimeRangeIntoNSegments + 1];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = currentTime;
+            currentTime += segmentDuration;
+        }
+        int[] indexes = timeIndex.getClosestIds(boundaries, stackBuffer);
         for (int i = 0; i < indexes.length; i++) {
-            int closestId = timeIndex.getClosestId(currentTime, stackBuffer);
-            if (closestId < 0) {
-                closestId = -(closestId + 1); // handle negative "theoretical insertion" index
+            if (indexes[i] < 0) {
+                indexes[i] = -(indexes[i] + 1); // handle negative "theoretical insertion" index
             }
-            indexes[i] = timeIndex.getClosestId(currentTime, stackBuffer);
-            currentTime += segmentDuration;
         }
 
         Map<String, StumptownAnswer.Waveform> waveforms = Maps.newHashMapWithExpectedSize(request.query.stumptownFilters.size());
@@ -0,0 +1,27 @@
+package com.jivesoftware.os.miru.tools.deployable;
+
+import org.merlin.config.Config;
+import org.merlin.config.defaults.FloatDefault;
+import org.merlin.config.defaults.IntDefault;
+import org.merlin.config.defaults.LongDefault;
+
+/**
+ *
+ */
+public interface MiruToolsConfig extends Config {
+
+    @IntDefault(100)
+    int getTasWindowSize();
+
+    @FloatDefault(95f)
+    float getTasPercentile();
+
+    @LongDefault(1_000)
+    long getTasInitialSLAMillis();
+
+    @IntDefault(10_000)
+    int getTasMaxStrategies();
+
+    @LongDefault(60 * 60 * 1_000)
+    long getTasStrategyIdleMillis();
+}
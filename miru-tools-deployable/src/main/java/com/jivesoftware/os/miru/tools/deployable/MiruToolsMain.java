@@ -247,14 +247,17 @@ public class MiruToolsMain {
                 100, mapper);
             edgeWriter.start();
 
+            MiruToolsConfig toolsConfig = deployable.config(MiruToolsConfig.class);
             MiruQueryTASRouting queryTASRouting = new MiruQueryTASRouting(
                 miruReaderClient,
                 mapper,
                 responseMapper,
                 deployable.newBoundedExecutor(1024, "reader-tas"),
-                100, // TODO config
-                95, // TODO config
-                1000,
+                toolsConfig.getTasWindowSize(),
+                toolsConfig.getTasPercentile(),
+                toolsConfig.getTasInitialSLAMillis(),
+                toolsConfig.getTasMaxStrategies(),
+                toolsConfig.getTasStrategyIdleMillis(),
                 (tenantId, actorId, family, destination, latency, tags) -> {
                     try {
                         edgeWriter.write(tenantId.toString(), actorId.toString(), family, instanceConfig.getInstanceKey(), destination, latency,
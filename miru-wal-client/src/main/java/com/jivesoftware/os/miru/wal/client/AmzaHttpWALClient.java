@@ -6,6 +6,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
@@ -28,6 +29,7 @@ import com.jivesoftware.os.routing.bird.http.client.ConnectionDescriptorSelectiv
 import com.jivesoftware.os.routing.bird.http.client.HttpClient;
 import com.jivesoftware.os.routing.bird.http.client.HttpResponse;
 import com.jivesoftware.os.routing.bird.http.client.HttpResponseMapper;
+import com.jivesoftware.os.routing.bird.http.client.HttpStreamResponse;
 import com.jivesoftware.os.routing.bird.http.client.TailAtScaleStrategy;
 import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
 import com.jivesoftware.os.routing.bird.shared.ClientCall;
@@ -35,10 +37,12 @@ import com.jivesoftware.os.routing.bird.shared.ClientCall.ClientResponse;
 import com.jivesoftware.os.routing.bird.shared.HostPort;
 import com.jivesoftware.os.routing.bird.shared.HttpClientException;
 import com.jivesoftware.os.routing.bird.shared.NextClientStrategy;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -49,6 +53,8 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    private static final long STREAM_REPROBE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     private final String routingTenantId;
     private final TenantAwareHttpClient<String> walClient;
     private final ExecutorService tasExecutors;
@@ -60,6 +66,9 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
     private final SickThreads sickThreads;
     private final long sleepOnFailureMillis;
     private final Cache<TenantRoutingGroup<?>, NextClientStrategy> tenantRoutingCache;
+    private final MiruWALEntryStreamCodec streamCodec;
+    // the routing client hands out one HttpClient per connection descriptor, so this tracks the fallback per host
+    private final ConcurrentMap<HttpClient, Long> streamUnsupportedTimestamps = new MapMaker().weakKeys().makeMap();
 
     private final Map<MiruTenantId, NextClientStrategy> tenantNextClientStrategy = Maps.newConcurrentMap();
 
@@ -87,6 +96,7 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
             .maximumSize(50_000) //TODO config
             .expireAfterWrite(5, TimeUnit.MINUTES) //TODO config
             .build();
+        this.streamCodec = new MiruWALEntryStreamCodec(requestMapper);
     }
 
     private HostPort[] getTenantRoutingGroup(RoutingGroupType routingGroupType, MiruTenantId tenantId, boolean createIfAbsent) throws Exception {
@@ -243,18 +253,23 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         Set<TimeAndVersion> lastSeen,
         int batchSize) throws Exception {
         final String jsonCursor = requestMapper.writeValueAsString(new SipAndLastSeen<>(cursor, lastSeen));
+        String path = "/sip/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize;
         try {
             while (true) {
                 try {
                     @SuppressWarnings("unchecked")
                     StreamBatch<MiruWALEntry, AmzaSipCursor> response = sendWithTenantPartition(RoutingGroupType.activity, tenantId, partitionId, false,
                         "sipActivity",
-                        client -> extract(
-                            client.postJson("/miru/wal/amza/sip/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize, jsonCursor,
-                                null),
-                            StreamBatch.class,
-                            new Class[] { MiruWALEntry.class, AmzaSipCursor.class },
-                            null));
+                        client -> {
+                            if (isStreamSupported(client)) {
+                                return extractStream(client, "/miru/wal/amza/stream" + path, jsonCursor, AmzaSipCursor.class, null);
+                            }
+                            return extract(
+                                client.postJson("/miru/wal/amza" + path, jsonCursor, null),
+                                StreamBatch.class,
+                                new Class[] { MiruWALEntry.class, AmzaSipCursor.class },
+                                null);
+                        });
                     if (response != null) {
                         return response;
                     }
@@ -308,7 +323,7 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         long stopAtTimestamp,
         MutableLong bytesCount) throws Exception {
         try {
-            String endpoint = "/miru/wal/amza/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize + "/" + stopAtTimestamp;
+            String path = "/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize + "/" + stopAtTimestamp;
             String jsonCursor = requestMapper.writeValueAsString(cursor);
             while (true) {
                 try {
@@ -316,7 +331,10 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
                     StreamBatch<MiruWALEntry, AmzaCursor> response = sendWithTenantPartition(RoutingGroupType.activity, tenantId, partitionId, false,
                         "getActivity",
                         client -> {
-                            HttpResponse httpResponse = client.postJson(endpoint, jsonCursor, null);
+                            if (isStreamSupported(client)) {
+                                return extractStream(client, "/miru/wal/amza/stream" + path, jsonCursor, AmzaCursor.class, bytesCount);
+                            }
+                            HttpResponse httpResponse = client.postJson("/miru/wal/amza" + path, jsonCursor, null);
                             if (bytesCount != null && httpResponse.getResponseBody() != null) {
                                 bytesCount.add(httpResponse.getResponseBody().length);
                             }
@@ -503,6 +521,42 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         return new ClientResponse<>(new SendResult<>(result, true, false), true);
     }
 
+    private boolean isStreamSupported(HttpClient client) {
+        Long unsupportedTimestamp = streamUnsupportedTimestamps.get(client);
+        return unsupportedTimestamp == null || System.currentTimeMillis() - unsupportedTimestamp > STREAM_REPROBE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * A WAL which predates the binary entry stream answers 404, in which case we remember to use json with that host for a while and let the caller retry.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> ClientResponse<SendResult<R>> extractStream(HttpClient client,
+        String endpoint,
+        String jsonCursor,
+        Class<?> cursorClass,
+        MutableLong bytesCount) throws HttpClientException {
+
+        HttpStreamResponse response = client.streamingPost(endpoint + "?snappy=true", jsonCursor, null);
+        try {
+            if (response.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                LOG.inc("stream>unsupported");
+                streamUnsupportedTimestamps.put(client, System.currentTimeMillis());
+                return new ClientResponse<>(new SendResult<>(null, false, false), true);
+            } else if (response.getStatusCode() == HttpStatus.SC_CONFLICT) {
+                return new ClientResponse<>(new SendResult<>(null, false, false), true);
+            } else if (!responseMapper.isSuccessStatusCode(response.getStatusCode())) {
+                return new ClientResponse<>(new SendResult<>(null, false, true), true);
+            }
+            streamUnsupportedTimestamps.remove(client);
+            R result = (R) streamCodec.read(response.getInputStream(), cursorClass, bytesCount);
+            return new ClientResponse<>(new SendResult<>(result, true, false), true);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read entry stream from " + endpoint, e);
+        } finally {
+            response.close();
+        }
+    }
+
     private static class TenantRoutingGroup<P> {
 
         private final RoutingGroupType type;
@@ -0,0 +1,328 @@
+package com.jivesoftware.os.miru.wal.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruReadEvent;
+import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient.StreamBatch;
+import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.xerial.snappy.SnappyInputStream;
+import org.xerial.snappy.SnappyOutputStream;
+
+/**
+ * Compact binary wire format for streaming WAL entries between the WAL and its readers.
+ * <p>
+ * Layout: magic (int), version (byte), compressed (boolean), then the (optionally snappy framed) body. The body is a sequence of
+ * length-prefixed entry frames, each preceded by {@link #FRAME_ENTRY}, followed by {@link #FRAME_END} and a trailer holding
+ * the cursor, endOfWAL flag and suppressed set. Entries are decoded as their frames arrive rather than after the whole body is read.
+ */
+public class MiruWALEntryStreamCodec {
+
+    private static final int MAGIC = 0x4D57414C; // "MWAL"
+    private static final byte VERSION = 1;
+
+    private static final byte FRAME_END = 0;
+    private static final byte FRAME_ENTRY = 1;
+
+    private static final MiruPartitionedActivity.Type[] TYPES = MiruPartitionedActivity.Type.values();
+
+    private final ObjectMapper mapper;
+
+    public MiruWALEntryStreamCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public <C> void write(StreamBatch<MiruWALEntry, C> batch, boolean compress, OutputStream outputStream) throws IOException {
+        EntryWriter writer = writer(compress, outputStream);
+        if (batch.activities != null) {
+            for (MiruWALEntry entry : batch.activities) {
+                writer.write(entry);
+            }
+        }
+        writer.finish(batch.cursor, batch.endOfWAL, batch.suppressed);
+    }
+
+    /**
+     * @return a writer which frames each entry as it is produced, so a batch never has to be held in memory before it is sent.
+     * Nothing is written to the output stream until the first entry or the trailer, so a failure before then can still be
+     * answered with an error status.
+     */
+    public EntryWriter writer(boolean compress, OutputStream outputStream) {
+        return new EntryWriter(compress, outputStream);
+    }
+
+    public class EntryWriter {
+
+        private final boolean compress;
+        private final OutputStream outputStream;
+        private OutputStream body;
+        private DataOutputStream out;
+
+        private EntryWriter(boolean compress, OutputStream outputStream) {
+            this.compress = compress;
+            this.outputStream = outputStream;
+        }
+
+        public void write(MiruWALEntry entry) throws IOException {
+            open();
+            ByteArrayDataOutput frame = ByteStreams.newDataOutput();
+            writeEntry(entry, frame);
+            byte[] frameBytes = frame.toByteArray();
+            out.writeByte(FRAME_ENTRY);
+            out.writeInt(frameBytes.length);
+            out.write(frameBytes);
+        }
+
+        public <C> void finish(C cursor, boolean endOfWAL, Set<TimeAndVersion> suppressed) throws IOException {
+            open();
+            out.writeByte(FRAME_END);
+            writeBytes(cursor != null ? mapper.writeValueAsBytes(cursor) : null, out);
+            out.writeBoolean(endOfWAL);
+            if (suppressed == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(suppressed.size());
+                for (TimeAndVersion timeAndVersion : suppressed) {
+                    out.writeLong(timeAndVersion.timestamp);
+                    out.writeLong(timeAndVersion.version);
+                }
+            }
+            out.flush();
+            if (body instanceof SnappyOutputStream) {
+                ((SnappyOutputStream) body).flush();
+            }
+        }
+
+        private void open() throws IOException {
+            if (out != null) {
+                return;
+            }
+            DataOutputStream header = new DataOutputStream(outputStream);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeBoolean(compress);
+            header.flush();
+
+            body = compress ? new SnappyOutputStream(outputStream) : outputStream;
+            out = new DataOutputStream(new BufferedOutputStream(body, 8192));
+        }
+    }
+
+    public <C> StreamBatch<MiruWALEntry, C> read(InputStream inputStream, Class<C> cursorClass, MutableLong bytesCount) throws IOException {
+        CountingInputStream counting = new CountingInputStream(inputStream);
+        try {
+            DataInputStream header = new DataInputStream(counting);
+            int magic = header.readInt();
+            if (magic != MAGIC) {
+                throw new IOException("Unexpected magic " + Integer.toHexString(magic) + " in WAL entry stream");
+            }
+            byte version = header.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported WAL entry stream version " + version);
+            }
+            boolean compressed = header.readBoolean();
+
+            InputStream body = compressed ? new SnappyInputStream(counting) : counting;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(body, 8192));
+            List<MiruWALEntry> activities = Lists.newArrayList();
+            byte[] frameBytes = new byte[1024];
+            while (in.readByte() == FRAME_ENTRY) {
+                int length = in.readInt();
+                if (frameBytes.length < length) {
+                    frameBytes = new byte[Math.max(length, frameBytes.length * 2)];
+                }
+                in.readFully(frameBytes, 0, length);
+                activities.add(readEntry(ByteStreams.newDataInput(frameBytes, 0)));
+            }
+
+            byte[] cursorBytes = readBytes(in);
+            C cursor = cursorBytes != null ? mapper.readValue(cursorBytes, cursorClass) : null;
+            boolean endOfWAL = in.readBoolean();
+            int suppressedCount = in.readInt();
+            Set<TimeAndVersion> suppressed = null;
+            if (suppressedCount >= 0) {
+                suppressed = Sets.newHashSetWithExpectedSize(suppressedCount);
+                for (int i = 0; i < suppressedCount; i++) {
+                    suppressed.add(new TimeAndVersion(in.readLong(), in.readLong()));
+                }
+            }
+            return new StreamBatch<>(activities, cursor, endOfWAL, suppressed);
+        } finally {
+            if (bytesCount != null) {
+                bytesCount.add(counting.getCount());
+            }
+        }
+    }
+
+    private void writeEntry(MiruWALEntry entry, DataOutput out) throws IOException {
+        out.writeLong(entry.collisionId);
+        out.writeLong(entry.version);
+
+        MiruPartitionedActivity partitionedActivity = entry.activity;
+        out.writeByte(partitionedActivity.type.ordinal());
+        out.writeInt(partitionedActivity.writerId);
+        out.writeInt(partitionedActivity.partitionId.getId());
+        writeBytes(partitionedActivity.tenantId.getBytes(), out);
+        out.writeInt(partitionedActivity.index);
+        out.writeLong(partitionedActivity.timestamp);
+        out.writeLong(partitionedActivity.clockTimestamp);
+
+        MiruActivity activity = partitionedActivity.activity.orNull();
+        out.writeBoolean(activity != null);
+        if (activity != null) {
+            writeBytes(activity.tenantId != null ? activity.tenantId.getBytes() : null, out);
+            out.writeLong(activity.time);
+            out.writeLong(activity.version);
+            out.writeBoolean(activity.realtimeDelivery);
+            if (activity.authz == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(activity.authz.length);
+                for (String authz : activity.authz) {
+                    writeString(authz, out);
+                }
+            }
+            writeValues(activity.fieldsValues, out);
+            writeValues(activity.propsValues, out);
+        }
+
+        // read events only appear in the read tracking WAL, so they keep their json representation
+        MiruReadEvent readEvent = partitionedActivity.readEvent.orNull();
+        writeBytes(readEvent != null ? mapper.writeValueAsBytes(readEvent) : null, out);
+    }
+
+    private MiruWALEntry readEntry(DataInput in) throws IOException {
+        long collisionId = in.readLong();
+        long version = in.readLong();
+
+        MiruPartitionedActivity.Type type = TYPES[in.readByte()];
+        int writerId = in.readInt();
+        int partitionId = in.readInt();
+        byte[] tenantId = readBytes(in);
+        int index = in.readInt();
+        long timestamp = in.readLong();
+        long clockTimestamp = in.readLong();
+
+        MiruActivity activity = null;
+        if (in.readBoolean()) {
+            byte[] activityTenantId = readBytes(in);
+            long time = in.readLong();
+            long activityVersion = in.readLong();
+            boolean realtimeDelivery = in.readBoolean();
+            int authzCount = in.readInt();
+            String[] authz = null;
+            if (authzCount >= 0) {
+                authz = new String[authzCount];
+                for (int i = 0; i < authzCount; i++) {
+                    authz[i] = readString(in);
+                }
+            }
+            Map<String, List<String>> fieldsValues = readValues(in);
+            Map<String, List<String>> propsValues = readValues(in);
+            activity = new MiruActivity(activityTenantId != null ? new MiruTenantId(activityTenantId) : null,
+                time,
+                activityVersion,
+                realtimeDelivery,
+                authz,
+                fieldsValues,
+                propsValues);
+        }
+
+        byte[] readEventBytes = readBytes(in);
+        MiruReadEvent readEvent = readEventBytes != null ? mapper.readValue(readEventBytes, MiruReadEvent.class) : null;
+
+        return new MiruWALEntry(collisionId, version,
+            MiruPartitionedActivity.fromJson(type, writerId, partitionId, tenantId, index, timestamp, clockTimestamp, activity, readEvent));
+    }
+
+    private static void writeValues(Map<String, List<String>> values, DataOutput out) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            writeString(entry.getKey(), out);
+            List<String> list = entry.getValue();
+            if (list == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(list.size());
+                for (String value : list) {
+                    writeString(value, out);
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readValues(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, List<String>> values = Maps.newHashMapWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            int size = in.readInt();
+            List<String> list = null;
+            if (size >= 0) {
+                list = Lists.newArrayListWithCapacity(size);
+                for (int j = 0; j < size; j++) {
+                    list.add(readString(in));
+                }
+            }
+            values.put(key, list);
+        }
+        return values;
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        writeBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null, out);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,169 @@
+package com.jivesoftware.os.miru.wal.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
+import com.jivesoftware.os.miru.api.activity.MiruReadEvent;
+import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.topology.NamedCursor;
+import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient.StreamBatch;
+import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruWALEntryStreamCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final MiruWALEntryStreamCodec codec = new MiruWALEntryStreamCodec(mapper);
+    private final MiruTenantId tenantId = new MiruTenantId("tenant1".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(3);
+    private final MiruPartitionedActivityFactory factory = new MiruPartitionedActivityFactory();
+
+    @DataProvider(name = "compress")
+    public Object[][] compress() {
+        return new Object[][] { { false }, { true } };
+    }
+
+    @Test(dataProvider = "compress")
+    public void testActivities(boolean compress) throws Exception {
+        MiruActivity activity = new MiruActivity.Builder(tenantId, 1_234L, 5L, true, new String[] { "a", "b" })
+            .putFieldValue("user", "bob")
+            .putFieldValue("verb", "likes")
+            .putFieldValue("verb", "views")
+            .putPropValue("title", "hello \u00e9")
+            .build();
+        MiruActivity noAuthz = new MiruActivity.Builder(tenantId, 1_235L, 6L, false, null)
+            .putFieldValue("user", "jane")
+            .build();
+        MiruReadEvent readEvent = new MiruReadEvent(tenantId.getBytes(), 1_236L, "stream1".getBytes(), null);
+
+        StreamBatch<MiruWALEntry, Long> batch = new StreamBatch<>(Arrays.asList(
+            new MiruWALEntry(11L, 21L, factory.activity(1, partitionId, 0, activity)),
+            new MiruWALEntry(12L, 22L, factory.repair(1, partitionId, 1, noAuthz)),
+            new MiruWALEntry(13L, 23L, factory.begin(1, partitionId, tenantId, 1)),
+            new MiruWALEntry(14L, 24L, factory.read(1, partitionId, 2, readEvent))),
+            42L,
+            false,
+            null);
+
+        MutableLong bytesCount = new MutableLong();
+        StreamBatch<MiruWALEntry, Long> read = roundTrip(batch, compress, Long.class, bytesCount);
+        assertTrue(bytesCount.longValue() > 0);
+        assertEquals(read.cursor, Long.valueOf(42L));
+        assertFalse(read.endOfWAL);
+        assertNull(read.suppressed);
+        assertEquals(read.activities.size(), batch.activities.size());
+        for (int i = 0; i < batch.activities.size(); i++) {
+            assertEntryEquals(read.activities.get(i), batch.activities.get(i));
+        }
+    }
+
+    @Test(dataProvider = "compress")
+    public void testSips(boolean compress) throws Exception {
+        AmzaSipCursor cursor = new AmzaSipCursor(Arrays.asList(new NamedCursor("a", 1L), new NamedCursor("b", 2L)), true);
+        StreamBatch<MiruWALEntry, AmzaSipCursor> batch = new StreamBatch<>(
+            Collections.singletonList(new MiruWALEntry(11L, 21L, factory.end(1, partitionId, tenantId, 7))),
+            cursor,
+            true,
+            Sets.newHashSet(new TimeAndVersion(100L, 1L), new TimeAndVersion(101L, 2L)));
+
+        StreamBatch<MiruWALEntry, AmzaSipCursor> read = roundTrip(batch, compress, AmzaSipCursor.class, null);
+        assertNotNull(read.cursor);
+        assertTrue(read.cursor.endOfStream);
+        assertEquals(read.cursor.cursors.size(), 2);
+        assertEquals(read.cursor.cursors.get(1).name, "b");
+        assertEquals(read.cursor.cursors.get(1).id, 2L);
+        assertTrue(read.endOfWAL);
+        assertEquals(read.suppressed, batch.suppressed);
+        assertEquals(read.activities.size(), 1);
+        assertEntryEquals(read.activities.get(0), batch.activities.get(0));
+    }
+
+    @Test(dataProvider = "compress")
+    public void testEmptyBatch(boolean compress) throws Exception {
+        StreamBatch<MiruWALEntry, Long> read = roundTrip(new StreamBatch<>(null, null, false, Collections.emptySet()), compress, Long.class, null);
+        assertTrue(read.activities.isEmpty());
+        assertNull(read.cursor);
+        assertFalse(read.endOfWAL);
+        assertTrue(read.suppressed.isEmpty());
+    }
+
+    @Test(dataProvider = "compress")
+    public void testWriterStreamsEntries(boolean compress) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MiruWALEntryStreamCodec.EntryWriter writer = codec.writer(compress, out);
+        assertEquals(out.size(), 0);
+
+        for (int i = 0; i < 3; i++) {
+            writer.write(new MiruWALEntry(10L + i, 20L + i, factory.begin(1, partitionId, tenantId, i)));
+        }
+        writer.finish(7L, true, null);
+
+        StreamBatch<MiruWALEntry, Long> read = codec.read(new ByteArrayInputStream(out.toByteArray()), Long.class, null);
+        assertEquals(read.cursor, Long.valueOf(7L));
+        assertTrue(read.endOfWAL);
+        assertNull(read.suppressed);
+        assertEquals(read.activities.size(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(read.activities.get(i).collisionId, 10L + i);
+            assertEquals(read.activities.get(i).version, 20L + i);
+        }
+    }
+
+    private <C> StreamBatch<MiruWALEntry, C> roundTrip(StreamBatch<MiruWALEntry, C> batch,
+        boolean compress,
+        Class<C> cursorClass,
+        MutableLong bytesCount) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(batch, compress, out);
+        return codec.read(new ByteArrayInputStream(out.toByteArray()), cursorClass, bytesCount);
+    }
+
+    private void assertEntryEquals(MiruWALEntry actual, MiruWALEntry expected) {
+        assertEquals(actual.collisionId, expected.collisionId);
+        assertEquals(actual.version, expected.version);
+
+        MiruPartitionedActivity a = actual.activity;
+        MiruPartitionedActivity e = expected.activity;
+        assertEquals(a.type, e.type);
+        assertEquals(a.writerId, e.writerId);
+        assertEquals(a.partitionId, e.partitionId);
+        assertEquals(a.tenantId, e.tenantId);
+        assertEquals(a.index, e.index);
+        assertEquals(a.timestamp, e.timestamp);
+        assertEquals(a.clockTimestamp, e.clockTimestamp);
+        assertEquals(a.readEvent, e.readEvent);
+
+        assertEquals(a.activity.isPresent(), e.activity.isPresent());
+        if (e.activity.isPresent()) {
+            MiruActivity aa = a.activity.get();
+            MiruActivity ea = e.activity.get();
+            assertEquals(aa.tenantId, ea.tenantId);
+            assertEquals(aa.time, ea.time);
+            assertEquals(aa.version, ea.version);
+            assertEquals(aa.realtimeDelivery, ea.realtimeDelivery);
+            assertEquals(aa.authz, ea.authz);
+            assertEquals(aa.fieldsValues, ea.fieldsValues);
+            assertEquals(aa.propsValues, ea.propsValues);
+        }
+    }
+}
@@ -64,6 +64,7 @@ import com.jivesoftware.os.miru.wal.activity.amza.AmzaActivityWALWriter;
 import com.jivesoftware.os.miru.wal.activity.rcvs.RCVSActivityWALReader;
 import com.jivesoftware.os.miru.wal.activity.rcvs.RCVSActivityWALWriter;
 import com.jivesoftware.os.miru.wal.client.AmzaWALClientInitializer;
+import com.jivesoftware.os.miru.wal.client.MiruWALEntryStreamCodec;
 import com.jivesoftware.os.miru.wal.client.RCVSWALClientInitializer;
 import com.jivesoftware.os.miru.wal.deployable.endpoints.AmzaWALEndpoints;
 import com.jivesoftware.os.miru.wal.deployable.endpoints.RCVSWALEndpoints;
@@ -500,6 +501,7 @@ public class MiruWALMain {
             deployable.addInjectables(MiruWALClient.class, miruWALClient);
             deployable.addInjectables(MiruWALRepair.class, miruWALRepair);
             deployable.addInjectables(MiruStats.class, miruStats);
+            deployable.addInjectables(MiruWALEntryStreamCodec.class, new MiruWALEntryStreamCodec(mapper));
 
             deployable.addResource(sourceTree);
             deployable.addEndpoints(LoadBalancerHealthCheckEndpoints.class);
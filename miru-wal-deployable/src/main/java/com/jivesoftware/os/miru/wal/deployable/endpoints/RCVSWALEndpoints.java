@@ -1,9 +1,11 @@
 package com.jivesoftware.os.miru.wal.deployable.endpoints;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
 import com.jivesoftware.os.miru.api.MiruStats;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
@@ -20,11 +22,14 @@ import com.jivesoftware.os.miru.api.wal.SipAndLastSeen;
 import com.jivesoftware.os.miru.wal.MiruWALNotInitializedException;
 import com.jivesoftware.os.miru.wal.MiruWALWrongRouteException;
 import com.jivesoftware.os.miru.wal.RCVSWALDirector;
+import com.jivesoftware.os.miru.wal.client.MiruWALEntryStreamCodec;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.routing.bird.shared.HostPort;
 import com.jivesoftware.os.routing.bird.shared.ResponseHelper;
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import javax.inject.Singleton;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -32,10 +37,13 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * @author jonathan.colt
@@ -48,11 +56,13 @@ public class RCVSWALEndpoints {
 
     private final RCVSWALDirector walDirector;
     private final MiruStats stats;
+    private final MiruWALEntryStreamCodec streamCodec;
     private final ResponseHelper responseHelper = ResponseHelper.INSTANCE;
 
-    public RCVSWALEndpoints(@Context RCVSWALDirector walDirector, @Context MiruStats stats) {
+    public RCVSWALEndpoints(@Context RCVSWALDirector walDirector, @Context MiruStats stats, @Context MiruWALEntryStreamCodec streamCodec) {
         this.walDirector = walDirector;
         this.stats = stats;
+        this.streamCodec = streamCodec;
     }
 
     @GET
@@ -364,6 +374,54 @@ public class RCVSWALEndpoints {
         }
     }
 
+    @POST
+    @Path("/stream/sip/activity/{tenantId}/{partitionId}/{batchSize}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response streamSipActivity(@PathParam("tenantId") String tenantId,
+        @PathParam("partitionId") int partitionId,
+        @PathParam("batchSize") int batchSize,
+        @QueryParam("snappy") boolean snappy,
+        SipAndLastSeen<RCVSSipCursor> sipAndLastSeen)
+        throws Exception {
+        return Response.ok((StreamingOutput) output -> {
+            try {
+                long start = System.currentTimeMillis();
+                MiruWALEntryStreamCodec.EntryWriter writer = streamCodec.writer(snappy, output);
+                Set<TimeAndVersion> suppressed = Sets.newHashSet();
+                int[] count = { 0 };
+                boolean[] endOfWAL = { false };
+                RCVSSipCursor nextCursor = walDirector.streamSipActivity(new MiruTenantId(tenantId.getBytes(Charsets.UTF_8)),
+                    MiruPartitionId.of(partitionId), sipAndLastSeen.sipCursor, sipAndLastSeen.lastSeen, batchSize,
+                    (collisionId, partitionedActivity, timestamp) -> {
+                        if (collisionId != -1) {
+                            writer.write(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
+                            count[0]++;
+                        } else {
+                            endOfWAL[0] = true;
+                        }
+                        return count[0] < batchSize;
+                    },
+                    suppressed::add);
+                writer.finish(nextCursor, endOfWAL[0], suppressed);
+                stats.ingressed("/stream/sip/activity/" + batchSize, 1, System.currentTimeMillis() - start);
+            } catch (MiruWALNotInitializedException x) {
+                log.error("WAL not initialized calling streamSipActivity({},{},{},{})",
+                    new Object[] { tenantId, partitionId, batchSize, sipAndLastSeen }, x);
+                throw new WebApplicationException(responseHelper.errorResponse(Response.Status.SERVICE_UNAVAILABLE, "WAL not initialized", x));
+            } catch (MiruWALWrongRouteException x) {
+                log.error("Wrong route calling streamSipActivity({},{},{},{})",
+                    new Object[] { tenantId, partitionId, batchSize, sipAndLastSeen }, x);
+                throw new WebApplicationException(responseHelper.errorResponse(Response.Status.CONFLICT, "Wrong route", x));
+            } catch (IOException x) {
+                throw x;
+            } catch (Exception x) {
+                log.error("Failed calling streamSipActivity({},{},{},{})", new Object[] { tenantId, partitionId, batchSize, sipAndLastSeen }, x);
+                throw new WebApplicationException(responseHelper.errorResponse("Server error", x));
+            }
+        }).build();
+    }
+
     @POST
     @Path("/activityCount/{tenantId}/{partitionId}")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -420,6 +478,47 @@ public class RCVSWALEndpoints {
         }
     }
 
+    @POST
+    @Path("/stream/activity/{tenantId}/{partitionId}/{batchSize}/{stopAtTimestamp}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response streamActivity(@PathParam("tenantId") String tenantId,
+        @PathParam("partitionId") int partitionId,
+        @PathParam("batchSize") int batchSize,
+        @PathParam("stopAtTimestamp") long stopAtTimestamp,
+        @QueryParam("snappy") boolean snappy,
+        RCVSCursor cursor)
+        throws Exception {
+        return Response.ok((StreamingOutput) output -> {
+            try {
+                long start = System.currentTimeMillis();
+                MiruWALEntryStreamCodec.EntryWriter writer = streamCodec.writer(snappy, output);
+                int[] count = { 0 };
+                RCVSCursor nextCursor = walDirector.streamActivity(new MiruTenantId(tenantId.getBytes(Charsets.UTF_8)),
+                    MiruPartitionId.of(partitionId), cursor, batchSize, stopAtTimestamp,
+                    (collisionId, partitionedActivity, timestamp) -> {
+                        writer.write(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
+                        return ++count[0] < batchSize;
+                    });
+                writer.finish(nextCursor, false, null);
+                stats.ingressed("/stream/activity/" + tenantId + "/" + partitionId + "/" + batchSize, 1, System.currentTimeMillis() - start);
+            } catch (MiruWALNotInitializedException x) {
+                log.error("WAL not initialized calling streamActivity({},{},{},{},{})",
+                    new Object[] { tenantId, partitionId, batchSize, stopAtTimestamp, cursor }, x);
+                throw new WebApplicationException(responseHelper.errorResponse(Response.Status.SERVICE_UNAVAILABLE, "WAL not initialized", x));
+            } catch (MiruWALWrongRouteException x) {
+                log.error("Wrong route calling streamActivity({},{},{},{},{})",
+                    new Object[] { tenantId, partitionId, batchSize, stopAtTimestamp, cursor }, x);
+                throw new WebApplicationException(responseHelper.errorResponse(Response.Status.CONFLICT, "Wrong route", x));
+            } catch (IOException x) {
+                throw x;
+            } catch (Exception x) {
+                log.error("Failed calling streamActivity({},{},{},{},{})", new Object[] { tenantId, partitionId, batchSize, stopAtTimestamp, cursor }, x);
+                throw new WebApplicationException(responseHelper.errorResponse("Server error", x));
+            }
+        }).build();
+    }
+
     @POST
     @Path("/oldestReadEventId/{tenantId}/{streamId}")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -23,6 +23,8 @@ import com.jivesoftware.os.miru.api.wal.MiruWALClient.RoutingGroupType;
 import com.jivesoftware.os.miru.api.wal.MiruWALClient.StreamBatch;
 import com.jivesoftware.os.miru.api.wal.MiruWALClient.WriterCursor;
 import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
+import com.jivesoftware.os.miru.wal.activity.MiruActivityWALReader.StreamMiruActivityWAL;
+import com.jivesoftware.os.miru.wal.activity.MiruActivityWALReader.StreamSuppressed;
 import com.jivesoftware.os.miru.wal.activity.amza.AmzaActivityWALReader;
 import com.jivesoftware.os.miru.wal.activity.amza.AmzaActivityWALWriter;
 import com.jivesoftware.os.miru.wal.lookup.MiruWALLookup;
@@ -340,16 +342,30 @@ public class AmzaWALDirector {
         MutableLong bytesCount)
         throws Exception {
 
+        List<MiruWALEntry> activities = new ArrayList<>();
+        AmzaCursor nextCursor = streamActivity(tenantId, partitionId, cursor, batchSize, stopAtTimestamp,
+            (collisionId, partitionedActivity, timestamp) -> {
+                activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
+                return activities.size() < batchSize;
+            });
+
+        return new StreamBatch<>(activities, nextCursor, false, null);
+    }
+
+    /**
+     * Streams activity as it is read from the WAL, leaving the caller to stop the stream once it has a full batch.
+     */
+    public AmzaCursor streamActivity(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        AmzaCursor cursor,
+        int batchSize,
+        long stopAtTimestamp,
+        StreamMiruActivityWAL streamMiruActivityWAL)
+        throws Exception {
+
         getActivityLatency.startTimer();
         try {
-            List<MiruWALEntry> activities = new ArrayList<>();
-            AmzaCursor nextCursor = activityWALReader.stream(tenantId, partitionId, cursor, batchSize, stopAtTimestamp,
-                (collisionId, partitionedActivity, timestamp) -> {
-                    activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
-                    return activities.size() < batchSize;
-                });
-
-            return new StreamBatch<>(activities, nextCursor, false, null);
+            return activityWALReader.stream(tenantId, partitionId, cursor, batchSize, stopAtTimestamp, streamMiruActivityWAL);
         } finally {
             getActivityLatency.stopTimer("Get activity latency", "Check partition health");
         }
@@ -361,23 +377,37 @@ public class AmzaWALDirector {
         Set<TimeAndVersion> lastSeen,
         final int batchSize) throws Exception {
 
+        List<MiruWALEntry> activities = new ArrayList<>();
+        Set<TimeAndVersion> suppressed = Sets.newHashSet();
+        boolean[] endOfWAL = { false };
+        AmzaSipCursor nextCursor = streamSipActivity(tenantId, partitionId, cursor, lastSeen, batchSize,
+            (collisionId, partitionedActivity, timestamp) -> {
+                if (collisionId != -1) {
+                    activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
+                } else {
+                    endOfWAL[0] = true;
+                }
+                return activities.size() < batchSize;
+            },
+            suppressed::add);
+
+        return new StreamBatch<>(activities, nextCursor, endOfWAL[0], suppressed);
+    }
+
+    /**
+     * Streams sipped activity as it is read from the WAL. A collisionId of -1 marks the end of the WAL.
+     */
+    public AmzaSipCursor streamSipActivity(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        AmzaSipCursor cursor,
+        Set<TimeAndVersion> lastSeen,
+        int batchSize,
+        StreamMiruActivityWAL streamMiruActivityWAL,
+        StreamSuppressed streamSuppressed) throws Exception {
+
         sipActivityLatency.startTimer();
         try {
-            List<MiruWALEntry> activities = new ArrayList<>();
-            Set<TimeAndVersion> suppressed = Sets.newHashSet();
-            boolean[] endOfWAL = { false };
-            AmzaSipCursor nextCursor = activityWALReader.streamSip(tenantId, partitionId, cursor, lastSeen, batchSize,
-                (collisionId, partitionedActivity, timestamp) -> {
-                    if (collisionId != -1) {
-                        activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
-                    } else {
-                        endOfWAL[0] = true;
-                    }
-                    return activities.size() < batchSize;
-                },
-                suppressed::add);
-
-            return new StreamBatch<>(activities, nextCursor, endOfWAL[0], suppressed);
+            return activityWALReader.streamSip(tenantId, partitionId, cursor, lastSeen, batchSize, streamMiruActivityWAL, streamSuppressed);
         } finally {
             sipActivityLatency.stopTimer("Sip activity latency", "Check partition health");
         }
@@ -21,6 +21,8 @@ import com.jivesoftware.os.miru.api.wal.MiruWALClient.WriterCursor;
 import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
 import com.jivesoftware.os.miru.api.wal.RCVSCursor;
 import com.jivesoftware.os.miru.api.wal.RCVSSipCursor;
+import com.jivesoftware.os.miru.wal.activity.MiruActivityWALReader.StreamMiruActivityWAL;
+import com.jivesoftware.os.miru.wal.activity.MiruActivityWALReader.StreamSuppressed;
 import com.jivesoftware.os.miru.wal.activity.rcvs.RCVSActivityWALReader;
 import com.jivesoftware.os.miru.wal.activity.rcvs.RCVSActivityWALWriter;
 import com.jivesoftware.os.miru.wal.lookup.MiruWALLookup;
@@ -266,7 +268,7 @@ public class RCVSWALDirector {
         throws Exception {
 
         List<MiruWALEntry> activities = new ArrayList<>();
-        RCVSCursor nextCursor = activityWALReader.stream(tenantId, partitionId, cursor, batchSize, stopAtTimestamp,
+        RCVSCursor nextCursor = streamActivity(tenantId, partitionId, cursor, batchSize, stopAtTimestamp,
             (collisionId, partitionedActivity, timestamp) -> {
                 activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
                 return activities.size() < batchSize;
@@ -275,6 +277,19 @@ public class RCVSWALDirector {
         return new StreamBatch<>(activities, nextCursor, false, null);
     }
 
+    /**
+     * Streams activity as it is read from the WAL, leaving the caller to stop the stream once it has a full batch.
+     */
+    public RCVSCursor streamActivity(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        RCVSCursor cursor,
+        int batchSize,
+        long stopAtTimestamp,
+        StreamMiruActivityWAL streamMiruActivityWAL)
+        throws Exception {
+        return activityWALReader.stream(tenantId, partitionId, cursor, batchSize, stopAtTimestamp, streamMiruActivityWAL);
+    }
+
     public StreamBatch<MiruWALEntry, RCVSSipCursor> sipActivity(MiruTenantId tenantId,
         MiruPartitionId partitionId,
         RCVSSipCursor cursor,
@@ -284,7 +299,7 @@ public class RCVSWALDirector {
         List<MiruWALEntry> activities = new ArrayList<>();
         Set<TimeAndVersion> suppressed = Sets.newHashSet();
         boolean[] endOfWAL = { false };
-        RCVSSipCursor nextCursor = activityWALReader.streamSip(tenantId, partitionId, cursor, lastSeen, batchSize,
+        RCVSSipCursor nextCursor = streamSipActivity(tenantId, partitionId, cursor, lastSeen, batchSize,
             (collisionId, partitionedActivity, timestamp) -> {
                 if (collisionId != -1) {
                     activities.add(new MiruWALEntry(collisionId, timestamp, partitionedActivity));
@@ -298,6 +313,19 @@ public class RCVSWALDirector {
         return new StreamBatch<>(activities, nextCursor, endOfWAL[0], suppressed);
     }
 
+    /**
+     * Streams sipped activity as it is read from the WAL. A collisionId of -1 marks the end of the WAL.
+     */
+    public RCVSSipCursor streamSipActivity(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        RCVSSipCursor cursor,
+        Set<TimeAndVersion> lastSeen,
+        int batchSize,
+        StreamMiruActivityWAL streamMiruActivityWAL,
+        StreamSuppressed streamSuppressed) throws Exception {
+        return activityWALReader.streamSip(tenantId, partitionId, cursor, lastSeen, batchSize, streamMiruActivityWAL, streamSuppressed);
+    }
+
     public OldestReadResult<RCVSSipCursor> oldestReadEventId(MiruTenantId tenantId, MiruStreamId streamId, RCVSSipCursor sipCursor) throws Exception {
         long[] minEventId = { -1L };
         int[] count = new int[1];
@@ -12,6 +12,12 @@ public interface MiruClientConfig extends Config {
     @IntDefault(24)
     Integer getSendActivitiesThreadPoolSize();
 
+    @IntDefault(10_000)
+    Integer getGroupCommitMaxActivities();
+
+    @LongDefault(0)
+    Long getGroupCommitWindowMillis();
+
     // 1 week
     @LongDefault(1_000 * 60 * 60 * 24 * 7)
     Long getPartitionMaximumAgeInMillis();
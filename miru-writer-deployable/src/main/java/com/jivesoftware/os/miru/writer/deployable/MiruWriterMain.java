@@ -44,6 +44,7 @@ import com.jivesoftware.os.miru.ui.MiruSoyRendererInitializer.MiruSoyRendererCon
 import com.jivesoftware.os.miru.wal.client.AmzaWALClientInitializer;
 import com.jivesoftware.os.miru.wal.client.MiruWALClientInitializer.WALClientSickThreadsHealthCheckConfig;
 import com.jivesoftware.os.miru.wal.client.RCVSWALClientInitializer;
+import com.jivesoftware.os.miru.writer.deployable.base.MiruActivityGroupCommit;
 import com.jivesoftware.os.miru.writer.deployable.base.MiruActivityIngress;
 import com.jivesoftware.os.miru.writer.deployable.endpoints.MiruIngressEndpoints;
 import com.jivesoftware.os.miru.writer.partition.AmzaPartitionIdProvider;
@@ -293,7 +294,14 @@ public class MiruWriterMain {
             ExecutorService sendActivitiesExecutorService = deployable.newBoundedExecutor(clientConfig.getSendActivitiesThreadPoolSize(),
                 "send-activities");
 
-            MiruActivityIngress activityIngress = new MiruActivityIngress(miruPartitioner, latestAlignmentCache, sendActivitiesExecutorService);
+            MiruActivityGroupCommit activityGroupCommit = new MiruActivityGroupCommit(miruPartitioner,
+                clientConfig.getGroupCommitMaxActivities(),
+                clientConfig.getGroupCommitWindowMillis());
+
+            MiruActivityIngress activityIngress = new MiruActivityIngress(miruPartitioner,
+                activityGroupCommit,
+                latestAlignmentCache,
+                sendActivitiesExecutorService);
 
             MiruSoyRendererConfig rendererConfig = deployable.config(MiruSoyRendererConfig.class);
 
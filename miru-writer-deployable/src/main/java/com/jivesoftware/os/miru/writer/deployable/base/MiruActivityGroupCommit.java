@@ -0,0 +1,206 @@
+package com.jivesoftware.os.miru.writer.deployable.base;
+
+import com.google.common.collect.Lists;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.writer.deployable.MiruPartitioner;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent activity writes for the same tenant into a single {@link MiruPartitioner#writeActivities} call, so that
+ * a group pays for one cursor advance and one WAL flush rather than one per caller.
+ * <p>
+ * Callers queue their activities and the first caller to find no commit in progress becomes the leader for the next group.
+ * The leader waits up to the group window for more callers, unless the group is already full, then writes everything that
+ * is queued up to the maximum group size. Every caller in the group shares the outcome of the write, and callers left
+ * behind by a full group are picked up by the next leader. A group is retired from the tenant map as soon as it has nothing
+ * pending or committing, so tenants which stop writing don't hold on to their groups.
+ */
+public class MiruActivityGroupCommit {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final MiruPartitioner miruPartitioner;
+    private final int maxGroupSize;
+    private final long groupWindowMillis;
+    private final ConcurrentMap<GroupKey, Group> groups = Maps.newConcurrentMap();
+
+    public MiruActivityGroupCommit(MiruPartitioner miruPartitioner, int maxGroupSize, long groupWindowMillis) {
+        this.miruPartitioner = miruPartitioner;
+        this.maxGroupSize = maxGroupSize;
+        this.groupWindowMillis = groupWindowMillis;
+    }
+
+    public void writeActivities(MiruTenantId tenantId, List<MiruActivity> activities, boolean recoverFromRemoval) throws Exception {
+        GroupKey groupKey = new GroupKey(tenantId, recoverFromRemoval);
+        Pending pending = new Pending(activities);
+
+        Group group = null;
+        while (group == null) {
+            Group candidate = groups.computeIfAbsent(groupKey, key -> new Group());
+            synchronized (candidate) {
+                // a retired group has already been removed from the map, so join its replacement instead
+                if (!candidate.retired) {
+                    candidate.pending.add(pending);
+                    candidate.pendingSize += activities.size();
+                    candidate.notifyAll();
+                    group = candidate;
+                }
+            }
+        }
+
+        while (true) {
+            List<Pending> batch;
+            synchronized (group) {
+                while (!pending.done && group.committing) {
+                    group.wait();
+                }
+                if (pending.done) {
+                    break;
+                }
+                group.committing = true;
+
+                long deadline = System.currentTimeMillis() + groupWindowMillis;
+                while (group.pendingSize < maxGroupSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        group.wait(remaining);
+                    } catch (InterruptedException e) {
+                        // the group is still ours to commit, so close the window early rather than abandon it
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                batch = drain(group);
+            }
+
+            Throwable failure = null;
+            try {
+                commit(tenantId, batch, recoverFromRemoval);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                synchronized (group) {
+                    for (Pending committed : batch) {
+                        committed.failure = failure;
+                        committed.done = true;
+                    }
+                    group.committing = false;
+                    group.notifyAll();
+                }
+            }
+        }
+
+        synchronized (group) {
+            if (!group.retired && !group.committing && group.pending.isEmpty()) {
+                group.retired = true;
+                groups.remove(groupKey, group);
+            }
+        }
+
+        if (pending.failure != null) {
+            Throwables.propagateIfPossible(pending.failure, Exception.class);
+            throw new RuntimeException(pending.failure);
+        }
+    }
+
+    int groupCount() {
+        return groups.size();
+    }
+
+    private List<Pending> drain(Group group) {
+        List<Pending> batch = Lists.newArrayList();
+        int batchSize = 0;
+        for (Iterator<Pending> iter = group.pending.iterator(); iter.hasNext();) {
+            Pending next = iter.next();
+            if (!batch.isEmpty() && batchSize + next.activities.size() > maxGroupSize) {
+                break;
+            }
+            batch.add(next);
+            batchSize += next.activities.size();
+            iter.remove();
+        }
+        group.pendingSize -= batchSize;
+        return batch;
+    }
+
+    private void commit(MiruTenantId tenantId, List<Pending> batch, boolean recoverFromRemoval) throws Exception {
+        List<MiruActivity> activities;
+        if (batch.size() == 1) {
+            activities = batch.get(0).activities;
+        } else {
+            activities = Lists.newArrayList();
+            for (Pending pending : batch) {
+                activities.addAll(pending.activities);
+            }
+        }
+        miruPartitioner.writeActivities(tenantId, activities, recoverFromRemoval);
+        LOG.inc("groupCommit>groups");
+        LOG.inc("groupCommit>callers", batch.size());
+        LOG.inc("groupCommit>activities", activities.size());
+        LOG.inc("groupCommit>groups", tenantId.toString());
+    }
+
+    private static class Pending {
+
+        private final List<MiruActivity> activities;
+        private boolean done;
+        private Throwable failure;
+
+        private Pending(List<MiruActivity> activities) {
+            this.activities = activities;
+        }
+    }
+
+    private static class Group {
+
+        private final List<Pending> pending = Lists.newArrayList();
+        private int pendingSize;
+        private boolean committing;
+        private boolean retired;
+    }
+
+    private static class GroupKey {
+
+        private final MiruTenantId tenantId;
+        private final boolean recoverFromRemoval;
+
+        private GroupKey(MiruTenantId tenantId, boolean recoverFromRemoval) {
+            this.tenantId = tenantId;
+            this.recoverFromRemoval = recoverFromRemoval;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            GroupKey groupKey = (GroupKey) o;
+
+            if (recoverFromRemoval != groupKey.recoverFromRemoval) {
+                return false;
+            }
+            return tenantId.equals(groupKey.tenantId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tenantId.hashCode();
+            result = 31 * result + (recoverFromRemoval ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -25,13 +25,16 @@ public class MiruActivityIngress {
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
     private final MiruPartitioner miruPartitioner;
+    private final MiruActivityGroupCommit activityGroupCommit;
     private final Map<MiruTenantId, Boolean> latestAlignmentCache;
     private final ExecutorService sendActivitiesExecutorService;
 
     public MiruActivityIngress(MiruPartitioner miruPartitioner,
+        MiruActivityGroupCommit activityGroupCommit,
         Map<MiruTenantId, Boolean> latestAlignmentCache,
         ExecutorService sendActivitiesExecutorService) {
         this.miruPartitioner = miruPartitioner;
+        this.activityGroupCommit = activityGroupCommit;
         this.latestAlignmentCache = latestAlignmentCache;
         this.sendActivitiesExecutorService = sendActivitiesExecutorService;
     }
@@ -48,7 +51,7 @@ public class MiruActivityIngress {
                 checkForWriterAlignmentIfNecessary(tenantId);
 
                 List<MiruActivity> tenantActivities = activitiesPerTenant.get(tenantId);
-                miruPartitioner.writeActivities(tenantId, tenantActivities, recoverFromRemoval);
+                activityGroupCommit.writeActivities(tenantId, tenantActivities, recoverFromRemoval);
                 LOG.inc("sendActivity>wal", tenantActivities.size());
                 LOG.inc("sendActivity>wal", tenantActivities.size(), tenantId.toString());
                 return null;
@@ -0,0 +1,156 @@
+package com.jivesoftware.os.miru.writer.deployable.base;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.writer.deployable.MiruPartitioner;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class MiruActivityGroupCommitTest {
+
+    private final MiruTenantId tenantId = new MiruTenantId("tenant".getBytes());
+
+    private MiruPartitioner partitioner;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        partitioner = mock(MiruPartitioner.class);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLeaderCommitsFollowers() throws Exception {
+        // the window is long enough that the leader only commits once every follower has joined and filled the group
+        MiruActivityGroupCommit groupCommit = new MiruActivityGroupCommit(partitioner, 4, TimeUnit.SECONDS.toMillis(30));
+
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                groupCommit.writeActivities(tenantId, Collections.singletonList(activity(index)), false);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(partitioner, times(1)).writeActivities(eq(tenantId), captor.capture(), eq(false));
+        assertEquals(captor.getValue().size(), 4);
+        assertEquals(groupCommit.groupCount(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullGroupLeavesStragglersToNextLeader() throws Exception {
+        MiruActivityGroupCommit groupCommit = new MiruActivityGroupCommit(partitioner, 2, 100);
+
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                groupCommit.writeActivities(tenantId, Collections.singletonList(activity(index)), false);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        // five single-activity callers in groups of at most two take at least three commits
+        verify(partitioner, atLeast(3)).writeActivities(eq(tenantId), captor.capture(), eq(false));
+        int committed = 0;
+        for (List activities : captor.getAllValues()) {
+            assertTrue(activities.size() <= 2, "Group exceeded max size: " + activities.size());
+            committed += activities.size();
+        }
+        assertEquals(committed, 5);
+        assertEquals(groupCommit.groupCount(), 0);
+    }
+
+    @Test
+    public void testFailurePropagatesToEveryCaller() throws Exception {
+        Exception failure = new Exception("write failed");
+        doThrow(failure).when(partitioner).writeActivities(any(MiruTenantId.class), anyListOf(MiruActivity.class), anyBoolean());
+        MiruActivityGroupCommit groupCommit = new MiruActivityGroupCommit(partitioner, 3, TimeUnit.SECONDS.toMillis(30));
+
+        assertEveryCallerFails(groupCommit, 3, failure);
+    }
+
+    @Test
+    public void testErrorPropagatesToEveryCaller() throws Exception {
+        Error failure = new Error("write failed");
+        doThrow(failure).when(partitioner).writeActivities(any(MiruTenantId.class), anyListOf(MiruActivity.class), anyBoolean());
+        MiruActivityGroupCommit groupCommit = new MiruActivityGroupCommit(partitioner, 3, TimeUnit.SECONDS.toMillis(30));
+
+        assertEveryCallerFails(groupCommit, 3, failure);
+
+        // the failed group was released, so a later write commits normally
+        reset(partitioner);
+        groupCommit.writeActivities(tenantId, Collections.singletonList(activity(0)), true);
+        verify(partitioner, times(1)).writeActivities(eq(tenantId), anyListOf(MiruActivity.class), eq(true));
+        assertEquals(groupCommit.groupCount(), 0);
+    }
+
+    private void assertEveryCallerFails(MiruActivityGroupCommit groupCommit, int numCallers, Throwable failure) throws Exception {
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < numCallers; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                groupCommit.writeActivities(tenantId, Collections.singletonList(activity(index)), false);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Expected the group commit to fail");
+            } catch (ExecutionException e) {
+                assertSame(e.getCause(), failure);
+            }
+        }
+        verify(partitioner, times(1)).writeActivities(eq(tenantId), anyListOf(MiruActivity.class), eq(false));
+        assertEquals(groupCommit.groupCount(), 0);
+    }
+
+    private MiruActivity activity(int index) {
+        return new MiruActivity.Builder(tenantId, index + 1, 0, false, new String[0]).build();
+    }
+}